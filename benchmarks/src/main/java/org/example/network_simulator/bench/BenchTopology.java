@@ -0,0 +1,28 @@
+package org.example.network_simulator.bench;
+
+import org.example.network_simulator.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Shared fixture: a star of switches with up to 15 PCs on each arm, about `devices` devices in total.
+// Every PC is reachable from every other one, and PCs are numbered 10.0.0.1, 10.0.0.2, ...
+final class BenchTopology {
+
+    final Network network = new Network();
+    final List<PC> pcs = new ArrayList<>();
+    final NetworkDevice[] devices;
+
+    BenchTopology(int devices) {
+        this.devices = blueprint(devices).build(network);
+        for (NetworkDevice device : this.devices) {
+            if (device instanceof PC) pcs.add((PC) device);
+        }
+    }
+
+    static TopologyGenerator.Blueprint blueprint(int devices) {
+        int hostsPerArm = Math.max(1, Math.min(15, devices - 2));
+        int arms = Math.max(1, (devices - 1) / (hostsPerArm + 1));
+        return TopologyGenerator.starOfSwitches(arms, hostsPerArm);
+    }
+}
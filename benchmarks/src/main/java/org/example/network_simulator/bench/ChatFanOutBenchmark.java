@@ -0,0 +1,38 @@
+package org.example.network_simulator.bench;
+
+import org.example.network_simulator.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// One chat message from a PC flooded to every other PC in the topology (sendMessage, run to completion).
+// Cost grows with the number of recipients; "-prof gc" should show one formatted line per message and
+// nothing per recipient.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ChatFanOutBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int devices;
+
+    private Network network;
+    private PC sender;
+
+    @Setup(Level.Trial)
+    public void buildTopology() {
+        BenchTopology topology = new BenchTopology(devices);
+        network = topology.network;
+        sender = topology.pcs.get(0);
+    }
+
+    @Benchmark
+    public long fanOut() {
+        network.sendMessage(sender, "hello");
+        network.run();
+        return network.getEngine().getProcessedEvents();
+    }
+}
@@ -0,0 +1,62 @@
+package org.example.network_simulator.bench;
+
+import org.example.network_simulator.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Creating a link, including the duplicate check: a new link (then removed again so the
+// topology stays the same size) and an attempt to add a link that already exists.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConnectionBenchmark {
+
+    private static final int PAIR_COUNT = 1 << 12;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int devices;
+
+    private Network network;
+    private PC[] ends;
+    private NetworkDevice[] existingA;
+    private NetworkDevice[] existingB;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void buildTopology() {
+        BenchTopology topology = new BenchTopology(devices);
+        network = topology.network;
+        Random random = new Random(42);
+        // PC pairs are never linked to each other, so connecting them always makes a new link
+        ends = new PC[2 * PAIR_COUNT];
+        for (int i = 0; i < ends.length; i++) {
+            ends[i] = topology.pcs.get(random.nextInt(topology.pcs.size()));
+        }
+        existingA = new NetworkDevice[PAIR_COUNT];
+        existingB = new NetworkDevice[PAIR_COUNT];
+        for (int i = 0; i < PAIR_COUNT; i++) {
+            Connection connection = network.getConnections(ends[i]).get(0);
+            existingA[i] = connection.getDevice1();
+            existingB[i] = connection.getDevice2();
+        }
+    }
+
+    @Benchmark
+    public Connection connectNew() {
+        int i = cursor++ & (PAIR_COUNT - 1);
+        Connection connection = network.connect(ends[2 * i], ends[2 * i + 1]);
+        if (connection != null) network.disconnect(connection);
+        return connection;
+    }
+
+    @Benchmark
+    public Connection connectDuplicate() {
+        int i = cursor++ & (PAIR_COUNT - 1);
+        return network.connect(existingB[i], existingA[i]);
+    }
+}
@@ -0,0 +1,53 @@
+package org.example.network_simulator.bench;
+
+import org.example.network_simulator.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// findDeviceByIdentifier by name and by IP address, against topology size. Should stay flat.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DeviceLookupBenchmark {
+
+    private static final int QUERY_COUNT = 1 << 12;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int devices;
+
+    private Network network;
+    private String[] names;
+    private String[] addresses;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void buildTopology() {
+        BenchTopology topology = new BenchTopology(devices);
+        network = topology.network;
+        Random random = new Random(42);
+        names = new String[QUERY_COUNT];
+        addresses = new String[QUERY_COUNT];
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            // Mixed case, as typed at a terminal
+            String name = topology.devices[random.nextInt(topology.devices.length)].toString();
+            names[i] = random.nextBoolean() ? name.toLowerCase() : name;
+            addresses[i] = topology.pcs.get(random.nextInt(topology.pcs.size())).getIpAddress();
+        }
+    }
+
+    @Benchmark
+    public Optional<NetworkDevice> byName() {
+        return network.findDeviceByIdentifier(names[cursor++ & (QUERY_COUNT - 1)]);
+    }
+
+    @Benchmark
+    public Optional<NetworkDevice> byAddress() {
+        return network.findDeviceByIdentifier(addresses[cursor++ & (QUERY_COUNT - 1)]);
+    }
+}
@@ -0,0 +1,57 @@
+package org.example.network_simulator.bench;
+
+import org.example.network_simulator.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Flow-level simulation of an hour of traffic: random PC pairs in a fat tree, exponentially sized
+// flows (mean 1 MB) arriving uniformly, run until every flow has finished. Reports the whole run.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class FlowModelBenchmark {
+
+    private static final long HOUR = 3600L * 1_000_000_000L;
+
+    @Param({"10000", "1000000"})
+    public int flows;
+
+    private Network network;
+    private NetworkDevice[] pcs;
+
+    @Setup(Level.Trial)
+    public void buildTopology() {
+        network = new Network();
+        pcs = Arrays.stream(TopologyGenerator.fatTree(8).build(network))
+                .filter(device -> device instanceof PC)
+                .toArray(NetworkDevice[]::new);
+    }
+
+    @Setup(Level.Invocation)
+    public void addFlows() {
+        FlowModel model = network.getFlowModel();
+        model.reset();
+        Random random = new Random(42);
+        long start = model.now();
+        for (int i = 0; i < flows; i++) {
+            int source = random.nextInt(pcs.length);
+            int target = random.nextInt(pcs.length - 1);
+            if (target >= source) target++;
+            long bytes = 1 + (long) (-Math.log(1 - random.nextDouble()) * 1_000_000);
+            model.addFlow(pcs[source], pcs[target], bytes, start + (long) (random.nextDouble() * HOUR));
+        }
+    }
+
+    @Benchmark
+    public long hourOfFlows() {
+        FlowModel model = network.getFlowModel();
+        model.run();
+        return model.getCompletedFlows();
+    }
+}
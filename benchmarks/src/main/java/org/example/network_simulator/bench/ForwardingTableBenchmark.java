@@ -0,0 +1,59 @@
+package org.example.network_simulator.bench;
+
+import org.example.network_simulator.ForwardingTable;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Longest-prefix-match lookup cost against forwarding table size
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ForwardingTableBenchmark {
+
+    private static final int ADDRESS_COUNT = 1 << 16;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int prefixes;
+
+    private ForwardingTable table;
+    private int[] addresses;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void buildTable() {
+        Random random = new Random(42);
+        table = new ForwardingTable();
+        int[] installed = new int[prefixes];
+        for (int i = 0; i < prefixes; i++) {
+            int length = randomPrefixLength(random);
+            int prefix = random.nextInt();
+            table.addRoute(prefix, length, i & 0xffff);
+            installed[i] = prefix;
+        }
+        // Mostly addresses inside installed prefixes, some misses
+        addresses = new int[ADDRESS_COUNT];
+        for (int i = 0; i < ADDRESS_COUNT; i++) {
+            addresses[i] = random.nextInt(4) == 0 ? random.nextInt() : installed[random.nextInt(prefixes)] ^ random.nextInt(256);
+        }
+    }
+
+    @Benchmark
+    public int lookup() {
+        int address = addresses[cursor++ & (ADDRESS_COUNT - 1)];
+        return table.lookup(address);
+    }
+
+    // Rough shape of a real routing table: /24 dominates, then /22-/23 and /16-/21
+    private static int randomPrefixLength(Random random) {
+        int roll = random.nextInt(100);
+        if (roll < 60) return 24;
+        if (roll < 75) return 22 + random.nextInt(2);
+        if (roll < 95) return 16 + random.nextInt(6);
+        return 8 + random.nextInt(8);
+    }
+}
@@ -0,0 +1,51 @@
+package org.example.network_simulator.bench;
+
+import org.example.network_simulator.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Link-state re-convergence on a 50x100 grid of 5000 routers: fail one router link, run until
+// every router has re-routed, restore it and run again. Incremental SPF against full Dijkstra.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class LinkStateBenchmark {
+
+    @Param({"true", "false"})
+    public boolean incremental;
+
+    private Network network;
+    private List<Connection> links;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void converge() {
+        network = new Network();
+        TopologyGenerator.grid(50, 100, false, 0).routed().build(network);
+        links = new ArrayList<>(network.getConnections());
+        Collections.shuffle(links, new Random(42));
+        LinkStateRouting routing = network.getLinkStateRouting();
+        routing.setIncremental(incremental);
+        routing.start();
+        network.run();
+    }
+
+    @Benchmark
+    public long failAndRestore() {
+        int i = next++ % links.size();
+        Connection link = links.get(i);
+        network.disconnect(link);
+        network.run();
+        links.set(i, network.connect(link.getDevice1(), link.getDevice2()));
+        network.run();
+        return network.getLinkStateRouting().getSpfVisited();
+    }
+}
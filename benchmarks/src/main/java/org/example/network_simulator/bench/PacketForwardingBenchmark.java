@@ -0,0 +1,58 @@
+package org.example.network_simulator.bench;
+
+import org.example.network_simulator.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Echo request/reply across a chain of learning switches. Run with "-prof gc" to see the
+// allocation rate: gc.alloc.rate.norm should be ~0 B/op once the packet pool has warmed up.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PacketForwardingBenchmark {
+
+    @Param({"1", "8", "64"})
+    public int switches;
+
+    private Network network;
+    private PC sender;
+    private PC receiver;
+    private NetworkDevice firstHop;
+
+    @Setup(Level.Trial)
+    public void buildChain() {
+        network = new Network();
+        sender = new PC(0, 0);
+        receiver = new PC(0, 0);
+        network.addDevice(sender);
+        network.addDevice(receiver);
+        NetworkDevice previous = sender;
+        for (int i = 0; i < switches; i++) {
+            Switch sw = new Switch(0, 0);
+            network.addDevice(sw);
+            network.connect(previous, sw);
+            if (i == 0) firstHop = sw;
+            previous = sw;
+        }
+        network.connect(previous, receiver);
+        // Let the switches learn the receiver's address so the steady state is pure forwarding
+        forwardOne();
+    }
+
+    @Benchmark
+    public long forwardEcho() {
+        return forwardOne();
+    }
+
+    private long forwardOne() {
+        Packet request = network.getPacketPool().acquire().writeEcho(true, sender.getMacAddress(),
+                receiver.getMacAddress(), sender.getAddress(), receiver.getAddress(), 0, 0);
+        network.transmit(sender, firstHop, request);
+        network.run();
+        return network.getEngine().getProcessedEvents();
+    }
+}
@@ -0,0 +1,58 @@
+package org.example.network_simulator.bench;
+
+import org.example.network_simulator.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// The work behind the ping command: the reachability check it starts with, and a full
+// four-echo session run to completion through the switches.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PingBenchmark {
+
+    private static final int PAIR_COUNT = 1 << 12;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int devices;
+
+    private Network network;
+    private PC[] sources;
+    private PC[] targets;
+    private String[][] pingArgs;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void buildTopology() {
+        BenchTopology topology = new BenchTopology(devices);
+        network = topology.network;
+        Random random = new Random(42);
+        sources = new PC[PAIR_COUNT];
+        targets = new PC[PAIR_COUNT];
+        pingArgs = new String[PAIR_COUNT][];
+        for (int i = 0; i < PAIR_COUNT; i++) {
+            sources[i] = topology.pcs.get(random.nextInt(topology.pcs.size()));
+            targets[i] = topology.pcs.get(random.nextInt(topology.pcs.size()));
+            pingArgs[i] = new String[] {targets[i].getIpAddress()};
+        }
+    }
+
+    @Benchmark
+    public boolean reachability() {
+        int i = cursor++ & (PAIR_COUNT - 1);
+        return network.isReachable(sources[i], targets[i]);
+    }
+
+    @Benchmark
+    public long pingSession() {
+        int i = cursor++ & (PAIR_COUNT - 1);
+        network.executeCommand(sources[i], "ping", pingArgs[i]);
+        network.run();
+        return network.getEngine().getProcessedEvents();
+    }
+}
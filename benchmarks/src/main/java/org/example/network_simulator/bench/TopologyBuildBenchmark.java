@@ -0,0 +1,48 @@
+package org.example.network_simulator.bench;
+
+import org.example.network_simulator.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Building a whole topology from nothing: one device and link at a time through the public
+// API (as the editor does), and as one batch through TopologyGenerator.
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class TopologyBuildBenchmark {
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int devices;
+
+    @Benchmark
+    public Network oneByOne() {
+        Network network = new Network();
+        Switch hub = new Switch(0, 0);
+        network.addDevice(hub);
+        Switch arm = null;
+        for (int i = 1; i < devices; i++) {
+            // Same shape as BenchTopology: a new arm switch, then up to 15 PCs on it
+            if (arm == null || (i - 1) % 16 == 0) {
+                arm = new Switch(i, 0);
+                network.addDevice(arm);
+                network.connect(hub, arm);
+            } else {
+                PC pc = new PC(i, 100);
+                network.addDevice(pc);
+                network.connect(arm, pc);
+            }
+        }
+        return network;
+    }
+
+    @Benchmark
+    public Network generated() {
+        Network network = new Network();
+        BenchTopology.blueprint(devices).build(network);
+        return network;
+    }
+}
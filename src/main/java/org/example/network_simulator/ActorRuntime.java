@@ -0,0 +1,242 @@
+package org.example.network_simulator;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Alternative to the event engine: every device runs as an actor on its own virtual thread and
+// the network runs in real time. Frames and tasks go into a bounded mailbox. The actor
+// sleeps until each frame's hop latency has passed, then hands it to receiveFrame. Timers
+// (ping intervals/timeouts) live on the actor that set them. Device state is therefore
+// only ever touched by its own thread.
+// A sender whose target's mailbox is full blocks for up to sendTimeout, then drops the frame (tail drop).
+// Those waits and drops are the backpressure metrics.
+public class ActorRuntime implements AutoCloseable {
+
+    public static final int DEFAULT_MAILBOX_CAPACITY = 64;
+    public static final long DEFAULT_SEND_TIMEOUT = 10 * SimulationEngine.NANOS_PER_MILLI;
+
+    private final Network network;
+    private final Actor[] actors; // Indexed by device index
+    private final int mailboxCapacity;
+    private final long sendTimeout;
+    private final long startNanos = System.nanoTime();
+    final ConcurrentPacketPool packetPool = new ConcurrentPacketPool();
+
+    private final LongAdder framesPosted = new LongAdder();
+    private final LongAdder framesProcessed = new LongAdder();
+    private final LongAdder fullMailboxWaits = new LongAdder(); // Sends that found the mailbox full
+    private final LongAdder blockedNanos = new LongAdder();    // Time senders spent waiting for room
+    private final LongAdder droppedFrames = new LongAdder();   // Still full after sendTimeout
+
+    ActorRuntime(Network network, int mailboxCapacity, long sendTimeout) {
+        if (mailboxCapacity < 1) throw new IllegalArgumentException("Mailbox capacity must be positive: " + mailboxCapacity);
+        this.network = network;
+        this.mailboxCapacity = mailboxCapacity;
+        this.sendTimeout = sendTimeout;
+        this.actors = new Actor[network.getGraph().vertexLimit()];
+        for (NetworkDevice device : network.getDevices()) {
+            actors[device.index] = new Actor(device);
+        }
+        for (Actor actor : actors) {
+            if (actor != null) actor.thread.start();
+        }
+    }
+
+    // Real time since the actors started, in nanoseconds
+    public long now() {
+        return System.nanoTime() - startNanos;
+    }
+
+    // Hand a frame to the target's actor; it is processed once the hop latency has passed.
+    // The caller's packet reference moves with it.
+    void post(NetworkDevice from, NetworkDevice to, Packet packet, long latency) {
+        Envelope envelope = new Envelope();
+        envelope.due = now() + latency;
+        envelope.from = from;
+        // Shared references (floods, chat fan-out) are copied so each receiving thread owns its packet
+        envelope.packet = packet.refCount() == 1 ? packet : packet.copyTo(packetPool);
+        if (envelope.packet != packet) packet.release();
+        framesPosted.increment();
+        if (!actors[to.index].offer(envelope)) {
+            envelope.packet.release();
+            droppedFrames.increment();
+            network.getMetrics().frameDropped(to);
+        }
+    }
+
+    // Run an event on the owner's thread after the delay
+    void schedule(NetworkDevice owner, long delayNanos, SimulationEvent event) {
+        Actor actor = actors[owner.index];
+        long due = now() + delayNanos;
+        if (Thread.currentThread() == actor.thread) {
+            actor.addTimer(due, event);
+        } else {
+            Envelope envelope = new Envelope();
+            envelope.due = due;
+            envelope.task = event;
+            if (!actor.offer(envelope)) {
+                throw new IllegalStateException("Mailbox of " + owner + " is full");
+            }
+        }
+    }
+
+    public int getMailboxCapacity() { return mailboxCapacity; }
+    public long getFramesPosted() { return framesPosted.sum(); }
+    public long getFramesProcessed() { return framesProcessed.sum(); }
+    public long getFullMailboxWaits() { return fullMailboxWaits.sum(); }
+    public long getBlockedNanos() { return blockedNanos.sum(); }
+    public long getDroppedFrames() { return droppedFrames.sum(); }
+
+    // Current mailbox length of one device
+    public int getMailboxDepth(NetworkDevice device) {
+        return actors[device.index].mailbox.size();
+    }
+
+    // Deepest any mailbox has been since the actors started
+    public int getMaxMailboxDepth() {
+        int max = 0;
+        for (Actor actor : actors) {
+            if (actor != null) max = Math.max(max, actor.highWaterMark);
+        }
+        return max;
+    }
+
+    // Stop every actor and release the frames still waiting in their mailboxes
+    @Override
+    public void close() {
+        for (Actor actor : actors) {
+            if (actor != null) actor.thread.interrupt();
+        }
+        for (Actor actor : actors) {
+            if (actor == null) continue;
+            try {
+                actor.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            actor.drain();
+        }
+    }
+
+    private static final class Envelope {
+        long due;
+        NetworkDevice from;
+        Packet packet;        // A frame...
+        SimulationEvent task; // ...or a task to run on the actor
+    }
+
+    private static final class Timer implements Comparable<Timer> {
+        final long due;
+        final long seq;
+        final SimulationEvent event;
+
+        Timer(long due, long seq, SimulationEvent event) {
+            this.due = due;
+            this.seq = seq;
+            this.event = event;
+        }
+
+        @Override
+        public int compareTo(Timer other) {
+            int byDue = Long.compare(due, other.due);
+            return byDue != 0 ? byDue : Long.compare(seq, other.seq);
+        }
+    }
+
+    private final class Actor implements Runnable {
+        final NetworkDevice device;
+        final BlockingQueue<Envelope> mailbox;
+        final Thread thread;
+        volatile int highWaterMark = 0;
+        private PriorityQueue<Timer> timers; // Created on first use; most devices never set one
+        private Envelope pending;            // Taken from the mailbox, waiting out its latency
+        private long timerSeq = 0;
+
+        Actor(NetworkDevice device) {
+            this.device = device;
+            this.mailbox = new ArrayBlockingQueue<>(mailboxCapacity);
+            this.thread = Thread.ofVirtual().name("device-" + device).unstarted(this);
+        }
+
+        boolean offer(Envelope envelope) {
+            if (!mailbox.offer(envelope)) {
+                fullMailboxWaits.increment();
+                long start = System.nanoTime();
+                try {
+                    if (!mailbox.offer(envelope, sendTimeout, TimeUnit.NANOSECONDS)) return false;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                } finally {
+                    blockedNanos.add(System.nanoTime() - start);
+                }
+            }
+            int depth = mailbox.size();
+            if (depth > highWaterMark) highWaterMark = depth; // Racy max; good enough for a metric
+            return true;
+        }
+
+        void addTimer(long due, SimulationEvent event) {
+            if (timers == null) timers = new PriorityQueue<>();
+            timers.add(new Timer(due, timerSeq++, event));
+        }
+
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    step();
+                } catch (InterruptedException e) {
+                    return; // Stopped
+                } catch (RuntimeException e) {
+                    // One bad frame or timer shouldn't take the device down
+                    Log.warn("actor.failed", e, "device", device);
+                }
+            }
+        }
+
+        private void step() throws InterruptedException {
+            long now = now();
+            Timer timer = timers == null ? null : timers.peek();
+            if (timer != null && timer.due <= now) {
+                timers.poll();
+                timer.event.fire();
+            } else if (pending != null) {
+                if (pending.due <= now) {
+                    Envelope envelope = pending;
+                    pending = null;
+                    framesProcessed.increment();
+                    network.arrive(envelope.from, device, envelope.packet);
+                } else {
+                    long wake = timer == null ? pending.due : Math.min(pending.due, timer.due);
+                    LockSupport.parkNanos(wake - now);
+                }
+            } else {
+                Envelope next = timer == null
+                        ? mailbox.take()
+                        : mailbox.poll(timer.due - now, TimeUnit.NANOSECONDS);
+                if (next == null) return;
+                if (next.task != null) {
+                    addTimer(next.due, next.task);
+                } else {
+                    pending = next;
+                }
+            }
+        }
+
+        // Only called once the thread has finished
+        void drain() {
+            if (pending != null) pending.packet.release();
+            pending = null;
+            for (Envelope envelope : mailbox) {
+                if (envelope.packet != null) envelope.packet.release();
+            }
+            mailbox.clear();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package org.example.network_simulator;
+
+import java.util.Arrays;
+
+// The network's broadcast domains: sets of links a frame can cross without passing a router.
+// Switches join every link they touch into one domain; a link between two other devices (a PC
+// cabled straight to a router, two routers) is a domain of its own. A domain's gateway is its
+// lowest-indexed router, the one hosts hand off-link traffic to.
+// Like switches running spanning tree, each domain's switches forward over a tree rooted at the
+// lowest-indexed one, and block their other links to each other, so flooded frames can't loop.
+// A device with several links into one domain uses only the first. Frames are never sent over a
+// blocked link, so a switch only learns and floods on the tree.
+// Built from the topology in one O(V + E) pass and kept until the graph's version changes (see Network.domains).
+final class BroadcastDomains {
+
+    final int[] domainOfEdge;   // By edge id; -1 for unused ids
+    final int[] domainOfSwitch; // By vertex index; -1 for devices other than switches
+    final int[] gateway;        // Router index by domain; -1 if there is none
+    final int count;
+    final long version;         // The graph's version they were built from
+    final boolean[] blocked;    // By edge id
+    private final int[] parentEdge; // By switch index: its link towards the root of its tree, -1 at the root
+    private final int[] depth;      // By switch index: links from the root
+
+    private BroadcastDomains(int[] domainOfEdge, int[] domainOfSwitch, int[] gateway, int count, long version,
+                             boolean[] blocked, int[] parentEdge, int[] depth) {
+        this.domainOfEdge = domainOfEdge;
+        this.domainOfSwitch = domainOfSwitch;
+        this.gateway = gateway;
+        this.count = count;
+        this.version = version;
+        this.blocked = blocked;
+        this.parentEdge = parentEdge;
+        this.depth = depth;
+    }
+
+    static BroadcastDomains build(Network network) {
+        TopologyGraph graph = network.getGraph();
+        int[] domainOfEdge = new int[graph.edgeLimit()];
+        int[] domainOfSwitch = new int[graph.vertexLimit()];
+        boolean[] blocked = new boolean[graph.edgeLimit()];
+        int[] parentEdge = new int[graph.vertexLimit()];
+        int[] depth = new int[graph.vertexLimit()];
+        int[] hostSeen = new int[graph.vertexLimit()]; // 1 + the domain a non-switch was last linked into
+        Arrays.fill(domainOfEdge, -1);
+        Arrays.fill(domainOfSwitch, -1);
+        int count = 0;
+
+        // Each group of linked switches, with every link touching it, breadth first from its root
+        int[] queue = new int[graph.vertexLimit()];
+        for (int s = 0; s < graph.vertexLimit(); s++) {
+            if (!(network.getDeviceByIndex(s) instanceof Switch) || domainOfSwitch[s] >= 0) continue;
+            int domain = count++;
+            int head = 0, tail = 0;
+            queue[tail++] = s;
+            domainOfSwitch[s] = domain;
+            parentEdge[s] = -1;
+            while (head < tail) {
+                int at = queue[head++];
+                for (int i = 0, d = graph.degree(at); i < d; i++) {
+                    int e = graph.incidentEdge(at, i);
+                    int next = graph.neighbour(at, i);
+                    domainOfEdge[e] = domain;
+                    if (network.getDeviceByIndex(next) instanceof Switch) {
+                        if (domainOfSwitch[next] < 0) {
+                            domainOfSwitch[next] = domain;
+                            parentEdge[next] = e;
+                            depth[next] = depth[at] + 1;
+                            queue[tail++] = next;
+                        }
+                        blocked[e] = parentEdge[next] != e && parentEdge[at] != e;
+                    } else if (hostSeen[next] == domain + 1) {
+                        blocked[e] = true; // Another way into the domain for the same device
+                    } else {
+                        hostSeen[next] = domain + 1;
+                    }
+                }
+            }
+        }
+        // Links between two devices that aren't switches
+        for (int e = 0; e < graph.edgeLimit(); e++) {
+            if (domainOfEdge[e] < 0 && network.getConnectionByEdge(e) != null) domainOfEdge[e] = count++;
+        }
+
+        int[] gateway = new int[count];
+        Arrays.fill(gateway, -1);
+        for (int e = 0; e < graph.edgeLimit(); e++) {
+            int domain = domainOfEdge[e];
+            if (domain < 0) continue;
+            gateway[domain] = lowerRouter(network, gateway[domain], graph.edgeFrom(e));
+            gateway[domain] = lowerRouter(network, gateway[domain], graph.edgeTo(e));
+        }
+        return new BroadcastDomains(domainOfEdge, domainOfSwitch, gateway, count, graph.version(), blocked, parentEdge, depth);
+    }
+
+    private static int lowerRouter(Network network, int current, int v) {
+        if (!(network.getDeviceByIndex(v) instanceof Router)) return current;
+        return current < 0 ? v : Math.min(current, v);
+    }
+
+    // The device's forwarding link into the domain, or -1 if it has none
+    int port(TopologyGraph graph, int v, int domain) {
+        for (int i = 0, d = graph.degree(v); i < d; i++) {
+            int e = graph.incidentEdge(v, i);
+            if (domainOfEdge[e] == domain && !blocked[e]) return e;
+        }
+        return -1;
+    }
+
+    // A forwarding link of a's into a domain b is also in (a direct link if there is one), or -1 if they share none
+    int sharedPort(TopologyGraph graph, int a, int b) {
+        int direct = graph.edgeId(a, b);
+        if (direct >= 0 && !blocked[direct]) return direct;
+        if (domainOfSwitch[b] >= 0) return port(graph, a, domainOfSwitch[b]);
+        for (int i = 0, d = graph.degree(b); i < d; i++) {
+            int e = port(graph, a, domainOfEdge[graph.incidentEdge(b, i)]);
+            if (e >= 0) return e;
+        }
+        return -1;
+    }
+
+    // The device's first link into a domain with a gateway other than itself, or -1
+    int gatewayPort(TopologyGraph graph, int v) {
+        for (int i = 0, d = graph.degree(v); i < d; i++) {
+            int e = graph.incidentEdge(v, i);
+            int router = gateway[domainOfEdge[e]];
+            if (router >= 0 && router != v && !blocked[e]) return e;
+        }
+        return -1;
+    }
+
+    // The directed links (see Network.route) from switch a to switch b of the same domain along its
+    // tree, written into links from index size on; returns the new size. links must have room for
+    // depth(a) + depth(b) more.
+    int treePath(TopologyGraph graph, int a, int b, int[] links, int size) {
+        // Climb to where the two sides meet, counting the links on each
+        int x = a, y = b, up = 0, down = 0;
+        while (x != y) {
+            if (depth[x] >= depth[y]) {
+                x = parent(graph, x);
+                up++;
+            } else {
+                y = parent(graph, y);
+                down++;
+            }
+        }
+        int end = size + up + down;
+        for (; a != x; a = parent(graph, a)) {
+            links[size++] = link(graph, parentEdge[a], a);
+        }
+        for (int at = end; b != x; b = parent(graph, b)) {
+            links[--at] = link(graph, parentEdge[b], parent(graph, b)); // b's side is filled in backwards
+        }
+        return end;
+    }
+
+    int depth(int v) {
+        return depth[v];
+    }
+
+    private int parent(TopologyGraph graph, int v) {
+        return graph.otherEnd(parentEdge[v], v);
+    }
+
+    // Directed link for crossing edge e from the given end: 2 * e, plus 1 from its second end
+    static int link(TopologyGraph graph, int e, int from) {
+        return 2 * e + (graph.edgeFrom(e) == from ? 0 : 1);
+    }
+}
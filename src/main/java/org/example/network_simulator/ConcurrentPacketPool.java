@@ -0,0 +1,32 @@
+package org.example.network_simulator;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+// PacketPool shared by many threads (actor mode). A lock rather than synchronized so virtual
+// threads don't pin their carrier while they wait for it.
+// The packets themselves are still single-owner: hand a packet to another thread only when you
+// hold its sole reference.
+class ConcurrentPacketPool extends PacketPool {
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    @Override
+    public Packet acquire() {
+        lock.lock();
+        try {
+            return super.acquire();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    void recycle(Packet packet) {
+        lock.lock();
+        try {
+            super.recycle(packet);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -2,21 +2,221 @@ package org.example.network_simulator;
 
 import javafx.scene.shape.Line;
 
+import java.util.Map;
+
+// A full-duplex link between two devices. Each direction has its own transmit queue (see
+// TransmitQueue); both share the link's bandwidth, propagation delay, jitter, loss rate and
+// queue settings, which can be changed while the network is idle.
 public class Connection {
+
+    public static final long DEFAULT_BANDWIDTH = 1_000_000_000L; // Bits per second
+    public static final long DEFAULT_DELAY = SimulationEngine.NANOS_PER_MILLI / 2;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1000; // Frames, like Linux's default txqueuelen
+
     private final NetworkDevice device1;
     private final NetworkDevice device2;
-    private final Line line; // Visual representation
+    private Line line; // Visual representation, may be attached later
+    int edgeId = -1; // Edge id in the owning Network's TopologyGraph
+    Network network; // Owning network, null once disconnected
+
+    private long bandwidth = DEFAULT_BANDWIDTH;
+    private long delay = DEFAULT_DELAY;  // Propagation delay, nanoseconds
+    private long jitter = 0;             // Extra delay drawn uniformly from [0, jitter) per frame
+    private double lossRate = 0;         // Share of frames lost on the wire
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private QueueDiscipline discipline = QueueDiscipline.DROP_TAIL;
+    private TransmitQueue queue1, queue2; // From device1 and from device2; created on first use
 
     public Connection(NetworkDevice device1, NetworkDevice device2, Line line) {
         this.device1 = device1;
         this.device2 = device2;
         this.line = line;
-        bindLineToDevices();
+        if (line != null) {
+            bindLineToDevices();
+        }
+    }
+
+    // Headless connection with no visual representation
+    public Connection(NetworkDevice device1, NetworkDevice device2) {
+        this(device1, device2, null);
     }
 
     public NetworkDevice getDevice1() { return device1; }
     public NetworkDevice getDevice2() { return device2; }
     public Line getLine() { return line; }
+    public int getEdgeId() { return edgeId; }
+
+    public long getBandwidth() { return bandwidth; }
+    public long getDelay() { return delay; }
+    public long getJitter() { return jitter; }
+    public double getLossRate() { return lossRate; }
+    public int getQueueCapacity() { return queueCapacity; }
+    public QueueDiscipline getDiscipline() { return discipline; }
+
+    public void setBandwidth(long bitsPerSecond) {
+        configure(bitsPerSecond, delay, jitter, lossRate, queueCapacity, discipline);
+    }
+
+    public void setDelay(long nanos) {
+        configure(bandwidth, nanos, jitter, lossRate, queueCapacity, discipline);
+    }
+
+    public void setJitter(long nanos) {
+        configure(bandwidth, delay, nanos, lossRate, queueCapacity, discipline);
+    }
+
+    public void setLossRate(double lossRate) {
+        configure(bandwidth, delay, jitter, lossRate, queueCapacity, discipline);
+    }
+
+    public void setQueueCapacity(int frames) {
+        configure(bandwidth, delay, jitter, lossRate, frames, discipline);
+    }
+
+    public void setDiscipline(QueueDiscipline discipline) {
+        configure(bandwidth, delay, jitter, lossRate, queueCapacity, discipline);
+    }
+
+    // Set every link parameter at once. Only allowed while the network is idle.
+    public void configure(long bandwidth, long delay, long jitter, double lossRate, int queueCapacity, QueueDiscipline discipline) {
+        if (bandwidth <= 0) throw new IllegalArgumentException("Bandwidth must be positive: " + bandwidth);
+        if (delay <= 0) throw new IllegalArgumentException("Delay must be positive: " + delay);
+        if (jitter < 0) throw new IllegalArgumentException("Jitter cannot be negative: " + jitter);
+        if (!(lossRate >= 0 && lossRate <= 1)) throw new IllegalArgumentException("Loss rate must be between 0 and 1: " + lossRate);
+        if (queueCapacity < 1) throw new IllegalArgumentException("Queue capacity must be positive: " + queueCapacity);
+        if (discipline == null) throw new IllegalArgumentException("No queue discipline");
+        if (network != null) network.checkNotRunning();
+        this.bandwidth = bandwidth;
+        this.delay = delay;
+        this.jitter = jitter;
+        this.lossRate = lossRate;
+        this.queueCapacity = queueCapacity;
+        this.discipline = discipline;
+        if (network != null) network.linkConfigured(this);
+    }
+
+    // Settings in the form "bandwidth=100M delay=2ms jitter=0.5ms loss=1% queue=64 discipline=red";
+    // parameters left out keep their current values
+    public void configure(String settings) {
+        Map<String, String> p = TopologyGenerator.parseParameters(settings);
+        long newBandwidth = bandwidth, newDelay = delay, newJitter = jitter;
+        double newLossRate = lossRate;
+        int newCapacity = queueCapacity;
+        QueueDiscipline newDiscipline = discipline;
+        for (Map.Entry<String, String> entry : p.entrySet()) {
+            String value = entry.getValue();
+            try {
+                switch (entry.getKey()) {
+                    case "bandwidth": newBandwidth = parseBandwidth(value); break;
+                    case "delay": newDelay = parseDuration(value); break;
+                    case "jitter": newJitter = parseDuration(value); break;
+                    case "loss":
+                        newLossRate = value.endsWith("%")
+                                ? Double.parseDouble(value.substring(0, value.length() - 1)) / 100
+                                : Double.parseDouble(value);
+                        break;
+                    case "queue": newCapacity = Integer.parseInt(value); break;
+                    case "discipline": newDiscipline = QueueDiscipline.fromLabel(value); break;
+                    default: throw new IllegalArgumentException("Unknown link setting: " + entry.getKey());
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad value for " + entry.getKey() + ": " + value);
+            }
+        }
+        configure(newBandwidth, newDelay, newJitter, newLossRate, newCapacity, newDiscipline);
+    }
+
+    // The settings in the form configure(String) reads
+    public String getSettings() {
+        return "bandwidth=" + formatBandwidth(bandwidth) + " delay=" + formatDuration(delay)
+                + " jitter=" + formatDuration(jitter) + " loss=" + lossRate
+                + " queue=" + queueCapacity + " discipline=" + discipline.getLabel();
+    }
+
+    public boolean hasDefaultSettings() {
+        return bandwidth == DEFAULT_BANDWIDTH && delay == DEFAULT_DELAY && jitter == 0 && lossRate == 0
+                && queueCapacity == DEFAULT_QUEUE_CAPACITY && discipline == QueueDiscipline.DROP_TAIL;
+    }
+
+    // How long a frame of this size occupies the link
+    public long serializationTime(int bytes) {
+        return (bytes * 8L * SimulationEngine.NANOS_PER_SECOND + bandwidth - 1) / bandwidth;
+    }
+
+    // Transmit queue for frames sent by the given end of the link
+    TransmitQueue queueFrom(NetworkDevice sender) {
+        if (sender == device1) {
+            if (queue1 == null) queue1 = new TransmitQueue(network, this, device1);
+            return queue1;
+        }
+        if (queue2 == null) queue2 = new TransmitQueue(network, this, device2);
+        return queue2;
+    }
+
+    // Frames waiting in the given end's queue, and the most there have been
+    public int getQueueDepth(NetworkDevice sender) {
+        TransmitQueue queue = sender == device1 ? queue1 : queue2;
+        return queue == null ? 0 : queue.depth();
+    }
+
+    public int getMaxQueueDepth(NetworkDevice sender) {
+        TransmitQueue queue = sender == device1 ? queue1 : queue2;
+        return queue == null ? 0 : queue.getMaxDepth();
+    }
+
+    // Drop whatever is waiting in both directions
+    void flushQueues() {
+        if (queue1 != null) queue1.flush();
+        if (queue2 != null) queue2.flush();
+    }
+
+    // "100M", "1.5G", "64k" or plain bits per second
+    static long parseBandwidth(String text) {
+        String value = text.trim();
+        double scale = 1;
+        char unit = Character.toLowerCase(value.charAt(value.length() - 1));
+        if (unit == 'k' || unit == 'm' || unit == 'g') {
+            scale = unit == 'k' ? 1e3 : unit == 'm' ? 1e6 : 1e9;
+            value = value.substring(0, value.length() - 1);
+        }
+        return Math.round(Double.parseDouble(value) * scale);
+    }
+
+    // "2ms", "150us", "1s", "800ns" or 0
+    static long parseDuration(String text) {
+        String value = text.trim().toLowerCase();
+        long scale;
+        int unitLength = 2;
+        if (value.endsWith("ms")) {
+            scale = SimulationEngine.NANOS_PER_MILLI;
+        } else if (value.endsWith("us")) {
+            scale = 1_000;
+        } else if (value.endsWith("ns")) {
+            scale = 1;
+        } else if (value.endsWith("s")) {
+            scale = SimulationEngine.NANOS_PER_SECOND;
+            unitLength = 1;
+        } else if (Double.parseDouble(value) == 0) {
+            return 0;
+        } else {
+            throw new NumberFormatException("Missing unit (s, ms, us or ns)");
+        }
+        return Math.round(Double.parseDouble(value.substring(0, value.length() - unitLength)) * scale);
+    }
+
+    static String formatBandwidth(long bitsPerSecond) {
+        if (bitsPerSecond % 1_000_000_000 == 0) return bitsPerSecond / 1_000_000_000 + "G";
+        if (bitsPerSecond % 1_000_000 == 0) return bitsPerSecond / 1_000_000 + "M";
+        if (bitsPerSecond % 1_000 == 0) return bitsPerSecond / 1_000 + "k";
+        return Long.toString(bitsPerSecond);
+    }
+
+    static String formatDuration(long nanos) {
+        if (nanos == 0) return "0";
+        if (nanos % SimulationEngine.NANOS_PER_MILLI == 0) return nanos / SimulationEngine.NANOS_PER_MILLI + "ms";
+        if (nanos % 1_000 == 0) return nanos / 1_000 + "us";
+        return nanos + "ns";
+    }
 
     // Check if this connection involves a specific device
     public boolean involves(NetworkDevice device) {
@@ -30,6 +230,15 @@ public class Connection {
         return null; // Should not happen if involves() is checked first
     }
 
+    // Give a headless connection (e.g. one loaded from a file) its visual line, or detach it with null
+    public void attachLine(Line line) {
+        unbind();
+        this.line = line;
+        if (line != null) {
+            bindLineToDevices();
+        }
+    }
+
     // Bind line ends to device centers
     private void bindLineToDevices() {
         // Assuming visual node size is around 50x50 for centering
@@ -45,6 +254,7 @@ public class Connection {
 
     // Call this if a device involved in the connection is removed
     public void unbind() {
+        if (line == null) return;
         line.startXProperty().unbind();
         line.startYProperty().unbind();
         line.endXProperty().unbind();
@@ -0,0 +1,122 @@
+package org.example.network_simulator;
+
+import java.util.Arrays;
+
+// Connected components of a TopologyGraph, kept in a union-find forest.
+// Link adds are folded in incrementally; removals only mark the forest stale and it is
+// rebuilt from the graph's CSR snapshot on the next query, so bursts of edits cost one rebuild.
+public class ConnectivityIndex {
+
+    private final TopologyGraph graph;
+    private int[] parent = new int[16];
+    private int[] size = new int[16];
+    private boolean stale = false;
+    private long rebuilds = 0;
+
+    public ConnectivityIndex(TopologyGraph graph) {
+        this.graph = graph;
+    }
+
+    // --- Graph change notifications ---
+
+    public void vertexAdded(int v) {
+        ensureCapacity(v + 1);
+        parent[v] = v;
+        size[v] = 1;
+    }
+
+    public void edgeAdded(int a, int b) {
+        if (!stale) union(a, b);
+    }
+
+    // Splitting a component can't be done incrementally in a union-find; rebuild lazily
+    public void edgeRemoved(int a, int b) {
+        stale = true;
+    }
+
+    public void vertexRemoved(int v) {
+        stale = true;
+    }
+
+    // --- Queries ---
+
+    public boolean connected(int a, int b) {
+        if (a == b) return true;
+        refresh();
+        return find(a) == find(b);
+    }
+
+    // Representative of v's component; stable until the next graph change
+    public int component(int v) {
+        refresh();
+        return find(v);
+    }
+
+    public int componentSize(int v) {
+        refresh();
+        return size[find(v)];
+    }
+
+    public long getRebuilds() {
+        return rebuilds;
+    }
+
+    // --- Internals ---
+
+    private void refresh() {
+        if (!stale) return;
+        int limit = graph.vertexLimit();
+        ensureCapacity(limit);
+        for (int v = 0; v < limit; v++) {
+            parent[v] = v;
+            size[v] = 1;
+        }
+        int[] offsets = graph.csrOffsets();
+        int[] targets = graph.csrTargets();
+        for (int v = 0; v < limit; v++) {
+            for (int i = offsets[v], end = offsets[v + 1]; i < end; i++) {
+                int u = targets[i];
+                if (u > v) union(v, u); // Each undirected edge once
+            }
+        }
+        stale = false;
+        rebuilds++;
+    }
+
+    // Bring the forest up to date and point every vertex straight at its root. Until the next
+    // graph change, queries then only read the arrays, so they are safe from several threads.
+    public void prepareForConcurrentReads() {
+        refresh();
+        for (int v = 0; v < graph.vertexLimit(); v++) {
+            parent[v] = find(v);
+        }
+    }
+
+    private int find(int v) {
+        while (true) {
+            int p = parent[v];
+            if (p == v) return v;
+            int grandparent = parent[p];
+            if (grandparent == p) return p;
+            parent[v] = grandparent; // Path halving; never writes once the forest is flat
+            v = grandparent;
+        }
+    }
+
+    private void union(int a, int b) {
+        int ra = find(a), rb = find(b);
+        if (ra == rb) return;
+        if (size[ra] < size[rb]) {
+            int t = ra; ra = rb; rb = t;
+        }
+        parent[rb] = ra;
+        size[ra] += size[rb];
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= parent.length) return;
+        int newCapacity = Math.max(capacity, parent.length * 2);
+        parent = Arrays.copyOf(parent, newCapacity);
+        size = Arrays.copyOf(size, newCapacity);
+    }
+}
@@ -0,0 +1,123 @@
+package org.example.network_simulator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Name and address indexes over the devices of a Network.
+// Names ("PC1", "switch2", ...) are keyed by (type, id) so a lookup only parses the query;
+// PC addresses are keyed by their packed IPv4 value. Neither lookup allocates.
+class DeviceDirectory {
+
+    private final List<String> typeNames = new ArrayList<>(); // Position is the type code
+    private final LongIntHashMap byName = new LongIntHashMap(64, -1); // (type, id) -> device index
+    private final LongIntHashMap byAddress = new LongIntHashMap(64, -1); // packed IPv4 -> device index
+    private final LongIntHashMap byMac = new LongIntHashMap(64, -1); // MAC -> device index
+    private final Network network;
+
+    DeviceDirectory(Network network) {
+        this.network = network;
+    }
+
+    void add(NetworkDevice device) {
+        byName.put(nameKey(typeCode(device.getType()), device.getId()), device.index);
+        byMac.put(device.getMacAddress(), device.index);
+        if (device instanceof PC) {
+            addAddress((PC) device, ((PC) device).getIpAddress());
+        }
+    }
+
+    void remove(NetworkDevice device) {
+        byName.remove(nameKey(typeCode(device.getType()), device.getId()));
+        byMac.remove(device.getMacAddress());
+        if (device instanceof PC) {
+            removeAddress((PC) device, ((PC) device).getIpAddress());
+        }
+    }
+
+    void addressChanged(PC pc, String oldAddress, String newAddress) {
+        removeAddress(pc, oldAddress);
+        addAddress(pc, newAddress);
+    }
+
+    // Resolve a device name (case-insensitive) or PC address; null if nothing matches
+    NetworkDevice resolve(String identifier) {
+        if (identifier == null) return null;
+        int start = 0, end = identifier.length();
+        while (start < end && Character.isWhitespace(identifier.charAt(start))) start++;
+        while (end > start && Character.isWhitespace(identifier.charAt(end - 1))) end--;
+        if (start == end) return null;
+
+        int index = resolveName(identifier, start, end);
+        if (index < 0) {
+            long address = Ipv4.parse(identifier, start, end);
+            if (address != Ipv4.INVALID) index = byAddress.get(address);
+        }
+        return index < 0 ? null : network.getDeviceByIndex(index);
+    }
+
+    PC resolveAddress(int address) {
+        int index = byAddress.get(address & 0xffffffffL);
+        return index < 0 ? null : (PC) network.getDeviceByIndex(index);
+    }
+
+    NetworkDevice resolveMac(long mac) {
+        int index = byMac.get(mac);
+        return index < 0 ? null : network.getDeviceByIndex(index);
+    }
+
+    private int resolveName(String text, int start, int end) {
+        for (int code = 0; code < typeNames.size(); code++) {
+            String type = typeNames.get(code);
+            int digitsStart = start + type.length();
+            if (digitsStart >= end || !text.regionMatches(true, start, type, 0, type.length())) continue;
+            if (text.charAt(digitsStart) == '0') continue; // Ids are printed without leading zeros
+            long id = 0;
+            int i = digitsStart;
+            while (i < end && id <= Integer.MAX_VALUE) {
+                char c = text.charAt(i);
+                if (c < '0' || c > '9') break;
+                id = id * 10 + (c - '0');
+                i++;
+            }
+            if (i == end && id <= Integer.MAX_VALUE) {
+                int index = byName.get(nameKey(code, (int) id));
+                if (index >= 0) return index;
+            }
+        }
+        return -1;
+    }
+
+    private void addAddress(PC pc, String address) {
+        long key = Ipv4.parse(address);
+        // On duplicate addresses the device that claimed it first wins, as in a linear scan. 0.0.0.0
+        // means no address (see PC.parseAddress), so it never names a PC.
+        if (key != Ipv4.INVALID && key != 0 && byAddress.get(key) < 0) {
+            byAddress.put(key, pc.index);
+        }
+    }
+
+    private void removeAddress(PC pc, String address) {
+        long key = Ipv4.parse(address);
+        if (key == Ipv4.INVALID || key == 0 || byAddress.get(key) != pc.index) return;
+        byAddress.remove(key);
+        // Hand the address to the next PC still using it, if any (rare, so a scan is fine)
+        for (NetworkDevice device : network.getDevices()) {
+            if (device != pc && device instanceof PC && Ipv4.parse(((PC) device).getIpAddress()) == key) {
+                byAddress.put(key, device.index);
+                return;
+            }
+        }
+    }
+
+    private int typeCode(String type) {
+        for (int code = 0; code < typeNames.size(); code++) {
+            if (typeNames.get(code).equalsIgnoreCase(type)) return code;
+        }
+        typeNames.add(type);
+        return typeNames.size() - 1;
+    }
+
+    private static long nameKey(int typeCode, int id) {
+        return ((long) typeCode << 32) | (id & 0xffffffffL);
+    }
+}
@@ -0,0 +1,728 @@
+package org.example.network_simulator;
+
+import java.util.Arrays;
+
+// Flow-level (fluid) simulation: traffic between PCs as flows over the links instead of packets.
+// A flow has a size and takes the same route its packets would; every link direction shares
+// its bandwidth max-min fairly among the flows crossing it, and a flow ends once its bytes are
+// through. Flow starts and ends (and link changes) are the only events, so hours of traffic between
+// millions of flows take seconds to simulate. There are no queues, delays or losses: a flow runs
+// at its fair rate from the moment it starts. The model keeps its own clock, apart from the packet engine.
+//
+// Rates are kept incrementally. Flows between the same two PCs form a class and all get the same
+// rate, so the rate solver works on classes, not flows. A class tracks its progress as virtual time
+// (the bytes each of its flows has received so far), so a rate change touches the class and its one
+// completion event, never its flows. A change re-runs water-filling only over the links and classes
+// coupled to it (its component), once for all changes at the same instant, or within the batch window.
+//
+//     FlowModel flows = network.getFlowModel();
+//     flows.addFlow(pc1, pc2, 10_000_000, 0);
+//     flows.run();
+//     flows.getFlowCompletionTimes().getPercentile(0.99);
+public class FlowModel {
+
+    // A flow finished (completed) or lost its route to a topology change (not completed)
+    public interface Listener {
+        void flowEnded(NetworkDevice source, NetworkDevice target, long bytes, long startNanos, long endNanos,
+                       boolean completed);
+    }
+
+    private static final double FINISH_SLACK = 1e-3; // Bytes; flows this close to done finish together
+
+    private final Network network;
+    private long now = 0;
+    private long batchWindow = 0;
+    private Listener listener;
+
+    // Flows by id; ids are reused once a flow ends
+    private int[] flowClass = new int[16]; // -1 while pending
+    private double[] flowFinish = new double[16]; // Class virtual time at which the flow is done
+    private long[] flowStart = new long[16];
+    private long[] flowSize = new long[16];
+    private NetworkDevice[] flowSource = new NetworkDevice[16];
+    private NetworkDevice[] flowTarget = new NetworkDevice[16];
+    private int flowLimit = 0;
+    private int[] freeFlows = new int[16];
+    private int freeFlowCount = 0;
+
+    // Flows waiting to start, as a min-heap on start time
+    private long[] arrivalTimes = new long[16];
+    private int[] arrivalFlows = new int[16];
+    private int arrivalCount = 0;
+
+    // Classes by id: route (directed links), flows on it as a heap on virtual finish, and its rate
+    private final LongIntHashMap classByEnds = new LongIntHashMap(16, -1);
+    private long[] classEnds = new long[16];
+    private int[][] classRoute = new int[16][];
+    private int[][] classSlots = new int[16][]; // Position of the class in each route link's class list
+    private int[][] classHeap = new int[16][];
+    private int[] classFlows = new int[16];
+    private double[] classRate = new double[16]; // Bits per second, per flow
+    private double[] classVirtual = new double[16]; // Bytes each flow has received, as of classUpdated
+    private long[] classUpdated = new long[16];
+    private int classLimit = 0;
+    private int[] freeClasses = new int[16];
+    private int freeClassCount = 0;
+
+    // Classes with flows, as an indexed min-heap on their next completion
+    private long[] classDue = new long[16];
+    private int[] duePositions = new int[16];
+    private int[] dueHeap = new int[16];
+    private int dueCount = 0;
+
+    // Directed links (2 * edge id, plus 1 when crossed from device2 to device1)
+    private double[] capacity = new double[0]; // Bits per second
+    private int[][] linkClasses = new int[0][];
+    private int[] linkClassCount = new int[0];
+    private long[] linkFlows = new long[0];
+
+    // Rate solver scratch, reused between recomputes
+    private int[] dirty = new int[16];
+    private int dirtyCount = 0;
+    private int[] linkMark = new int[0];
+    private int[] classMark = new int[16];
+    private int epoch = 0;
+    private int[] componentLinks = new int[16];
+    private double[] remaining = new double[0];
+    private long[] unfrozen = new long[0];
+    private double[] shareKeys = new double[16];
+    private int[] shareLinks = new int[16];
+
+    // Statistics
+    private int activeFlows = 0;
+    private long completedFlows = 0;
+    private long failedFlows = 0;
+    private long deliveredBytes = 0;
+    private long recomputes = 0;
+    private final Histogram completionTimes = new Histogram();
+
+    FlowModel(Network network) {
+        this.network = network;
+    }
+
+    public long now() {
+        return now;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    // Recompute rates at most once per this much simulated time (0 = after every change, exact).
+    // Events inside a window still happen at their own times; only the rates lag behind them.
+    public void setBatchWindow(long nanos) {
+        if (nanos < 0) throw new IllegalArgumentException("Batch window must not be negative: " + nanos);
+        batchWindow = nanos;
+    }
+
+    // A flow of the given size from one PC to another, starting at the given time (not before now())
+    public void addFlow(NetworkDevice source, NetworkDevice target, long bytes, long startNanos) {
+        if (!(source instanceof PC) || !(target instanceof PC) || !network.contains(source) || !network.contains(target)) {
+            throw new IllegalArgumentException("Flows run between PCs in the network: " + source + " -> " + target);
+        }
+        if (source == target) throw new IllegalArgumentException("A flow needs two different PCs: " + source);
+        if (bytes <= 0) throw new IllegalArgumentException("Flow size must be positive: " + bytes);
+        if (startNanos < now) throw new IllegalArgumentException("Cannot start a flow in the past: " + startNanos + " < " + now);
+        int flow = newFlow();
+        flowClass[flow] = -1;
+        flowStart[flow] = startNanos;
+        flowSize[flow] = bytes;
+        flowSource[flow] = source;
+        flowTarget[flow] = target;
+        pushArrival(startNanos, flow);
+    }
+
+    // Run until no flows are left
+    public void run() {
+        runUntil(Long.MAX_VALUE);
+    }
+
+    // Process every start and end up to and including the given time, then park the clock there
+    public void runUntil(long timeNanos) {
+        while (true) {
+            long next = nextEventTime();
+            if (next > timeNanos || next == Long.MAX_VALUE) break;
+            long batchEnd = Math.min(timeNanos, next > Long.MAX_VALUE - batchWindow ? Long.MAX_VALUE : next + batchWindow);
+            // Every start and end in the batch at its own time, then one recompute
+            while ((next = nextEventTime()) <= batchEnd) {
+                now = next;
+                if (arrivalCount > 0 && arrivalTimes[0] == next) {
+                    start(popArrival());
+                } else {
+                    finishDue(dueHeap[0]);
+                }
+            }
+            recompute();
+        }
+        if (timeNanos != Long.MAX_VALUE && timeNanos > now) now = timeNanos;
+    }
+
+    private long nextEventTime() {
+        long next = arrivalCount > 0 ? arrivalTimes[0] : Long.MAX_VALUE;
+        return dueCount > 0 ? Math.min(next, classDue[dueHeap[0]]) : next;
+    }
+
+    // --- Statistics ---
+
+    public int getActiveFlows() { return activeFlows; }
+    public int getPendingFlows() { return arrivalCount; }
+    public long getCompletedFlows() { return completedFlows; }
+    public long getFailedFlows() { return failedFlows; }
+    public long getDeliveredBytes() { return deliveredBytes; } // By completed flows
+    public long getRecomputeCount() { return recomputes; }
+    public int getClassCount() { return classLimit - freeClassCount; }
+
+    // Flow completion times (start to last byte), in nanoseconds
+    public Histogram getFlowCompletionTimes() {
+        return completionTimes;
+    }
+
+    // Bits per second flowing over the link from the given end right now
+    public double getLinkLoad(Connection connection, NetworkDevice from) {
+        int edge = connection.edgeId;
+        if (edge < 0) return 0;
+        int link = 2 * edge + (from == connection.getDevice1() ? 0 : 1);
+        if (link >= linkClassCount.length) return 0;
+        double load = 0;
+        for (int i = 0; i < linkClassCount[link]; i++) {
+            int c = linkClasses[link][i];
+            load += classRate[c] * classFlows[c];
+        }
+        return load;
+    }
+
+    // Forget every flow, pending or running, and the statistics; the clock stays where it is
+    public void reset() {
+        for (int c = 0; c < classLimit; c++) {
+            if (classRoute[c] != null) removeClass(c);
+        }
+        Arrays.fill(flowSource, 0, flowLimit, null);
+        Arrays.fill(flowTarget, 0, flowLimit, null);
+        flowLimit = 0;
+        freeFlowCount = 0;
+        arrivalCount = 0;
+        classLimit = 0;
+        freeClassCount = 0;
+        classByEnds.clear();
+        dueCount = 0;
+        dirtyCount = 0;
+        activeFlows = 0;
+        completedFlows = 0;
+        failedFlows = 0;
+        deliveredBytes = 0;
+        recomputes = 0;
+        completionTimes.reset();
+    }
+
+    // --- Topology changes (called by the Network) ---
+
+    // New bandwidth: the flows over the link get new rates at once
+    void linkChanged(Connection connection) {
+        int edge = connection.edgeId;
+        if (edge < 0 || 2 * edge + 1 >= capacity.length) return;
+        for (int link = 2 * edge; link <= 2 * edge + 1; link++) {
+            capacity[link] = connection.getBandwidth();
+            if (linkClassCount[link] > 0) markDirty(link);
+        }
+        recompute();
+    }
+
+    // The link is gone: its classes move to their new route, or end if there is none
+    void linkRemoved(int edge) {
+        for (int link = 2 * edge; link <= 2 * edge + 1 && link < linkClassCount.length; link++) {
+            while (linkClassCount[link] > 0) {
+                int c = linkClasses[link][linkClassCount[link] - 1];
+                settle(c);
+                unlinkClass(c);
+                int[] route = network.route(flowSourceOf(c), flowTargetOf(c));
+                if (route == null) {
+                    failClass(c);
+                } else {
+                    linkClass(c, route);
+                }
+            }
+            capacity[link] = 0;
+        }
+        recompute();
+    }
+
+    // --- Flows ---
+
+    private void start(int flow) {
+        NetworkDevice source = flowSource[flow], target = flowTarget[flow];
+        long ends = ((long) source.index << 32) | (target.index & 0xffffffffL);
+        int c = source.network == network && target.network == network ? classByEnds.get(ends) : -1;
+        if (c < 0) {
+            int[] route = source.network == network && target.network == network ? network.route(source, target) : null;
+            if (route == null) {
+                endFlow(flow, false);
+                return;
+            }
+            c = newClass(ends, route);
+        } else {
+            settle(c);
+        }
+        flowClass[flow] = c;
+        flowFinish[flow] = classVirtual[c] + flowSize[flow];
+        pushClassFlow(c, flow);
+        classFlows[c]++;
+        activeFlows++;
+        for (int link : classRoute[c]) {
+            linkFlows[link]++;
+            markDirty(link);
+        }
+        updateDue(c);
+    }
+
+    // The class's next flow is due: end it, and any that finish with it
+    private void finishDue(int c) {
+        settle(c);
+        int[] heap = classHeap[c];
+        do {
+            int flow = popClassFlow(c);
+            classFlows[c]--;
+            activeFlows--;
+            for (int link : classRoute[c]) {
+                linkFlows[link]--;
+                markDirty(link);
+            }
+            endFlow(flow, true);
+        } while (classFlows[c] > 0 && flowFinish[heap[0]] <= classVirtual[c] + FINISH_SLACK);
+        if (classFlows[c] == 0) {
+            removeClass(c);
+        } else {
+            updateDue(c);
+        }
+    }
+
+    private void endFlow(int flow, boolean completed) {
+        if (completed) {
+            completedFlows++;
+            deliveredBytes += flowSize[flow];
+            completionTimes.record(now - flowStart[flow]);
+        } else {
+            failedFlows++;
+        }
+        if (listener != null) {
+            listener.flowEnded(flowSource[flow], flowTarget[flow], flowSize[flow], flowStart[flow], now, completed);
+        }
+        flowSource[flow] = null;
+        flowTarget[flow] = null;
+        flowClass[flow] = -1;
+        if (freeFlowCount == freeFlows.length) freeFlows = Arrays.copyOf(freeFlows, freeFlowCount * 2);
+        freeFlows[freeFlowCount++] = flow;
+    }
+
+    // Every flow of a class that has lost its route
+    private void failClass(int c) {
+        for (int i = 0; i < classFlows[c]; i++) {
+            endFlow(classHeap[c][i], false);
+            activeFlows--;
+        }
+        classFlows[c] = 0;
+        removeClass(c);
+    }
+
+    private NetworkDevice flowSourceOf(int c) {
+        return flowSource[classHeap[c][0]];
+    }
+
+    private NetworkDevice flowTargetOf(int c) {
+        return flowTarget[classHeap[c][0]];
+    }
+
+    private int newFlow() {
+        if (freeFlowCount > 0) return freeFlows[--freeFlowCount];
+        if (flowLimit == flowClass.length) {
+            int capacity = flowLimit * 2;
+            flowClass = Arrays.copyOf(flowClass, capacity);
+            flowFinish = Arrays.copyOf(flowFinish, capacity);
+            flowStart = Arrays.copyOf(flowStart, capacity);
+            flowSize = Arrays.copyOf(flowSize, capacity);
+            flowSource = Arrays.copyOf(flowSource, capacity);
+            flowTarget = Arrays.copyOf(flowTarget, capacity);
+        }
+        return flowLimit++;
+    }
+
+    // --- Classes ---
+
+    private int newClass(long ends, int[] route) {
+        int c;
+        if (freeClassCount > 0) {
+            c = freeClasses[--freeClassCount];
+        } else {
+            if (classLimit == classRoute.length) growClasses(classLimit * 2);
+            c = classLimit++;
+        }
+        classEnds[c] = ends;
+        classByEnds.put(ends, c);
+        classFlows[c] = 0;
+        classRate[c] = 0;
+        classVirtual[c] = 0;
+        classUpdated[c] = now;
+        classDue[c] = Long.MAX_VALUE;
+        duePositions[c] = -1;
+        if (classHeap[c] == null) classHeap[c] = new int[4];
+        linkClass(c, route);
+        return c;
+    }
+
+    private void growClasses(int size) {
+        classEnds = Arrays.copyOf(classEnds, size);
+        classRoute = Arrays.copyOf(classRoute, size);
+        classSlots = Arrays.copyOf(classSlots, size);
+        classHeap = Arrays.copyOf(classHeap, size);
+        classFlows = Arrays.copyOf(classFlows, size);
+        classRate = Arrays.copyOf(classRate, size);
+        classVirtual = Arrays.copyOf(classVirtual, size);
+        classUpdated = Arrays.copyOf(classUpdated, size);
+        classDue = Arrays.copyOf(classDue, size);
+        duePositions = Arrays.copyOf(duePositions, size);
+        dueHeap = Arrays.copyOf(dueHeap, size);
+        classMark = Arrays.copyOf(classMark, size);
+    }
+
+    private void removeClass(int c) {
+        if (classRoute[c] != null) unlinkClass(c);
+        if (duePositions[c] >= 0) removeDue(c);
+        classByEnds.remove(classEnds[c]);
+        classFlows[c] = 0;
+        if (classHeap[c].length > 64) classHeap[c] = new int[4]; // Don't hold on to a big burst
+        if (freeClassCount == freeClasses.length) freeClasses = Arrays.copyOf(freeClasses, freeClassCount * 2);
+        freeClasses[freeClassCount++] = c;
+    }
+
+    // Put the class on each link of its route
+    private void linkClass(int c, int[] route) {
+        classRoute[c] = route;
+        int[] slots = new int[route.length];
+        for (int i = 0; i < route.length; i++) {
+            int link = route[i];
+            ensureLink(link);
+            if (capacity[link] == 0) {
+                capacity[link] = network.getConnectionByEdge(link >> 1).getBandwidth();
+            }
+            if (linkClassCount[link] == linkClasses[link].length) {
+                linkClasses[link] = Arrays.copyOf(linkClasses[link], linkClassCount[link] * 2);
+            }
+            slots[i] = linkClassCount[link];
+            linkClasses[link][linkClassCount[link]++] = c;
+            linkFlows[link] += classFlows[c];
+            markDirty(link);
+        }
+        classSlots[c] = slots;
+    }
+
+    // Take the class off its route's links (swap-remove from each link's list)
+    private void unlinkClass(int c) {
+        int[] route = classRoute[c];
+        for (int i = 0; i < route.length; i++) {
+            int link = route[i];
+            int slot = classSlots[c][i];
+            int last = linkClasses[link][--linkClassCount[link]];
+            linkClasses[link][slot] = last;
+            if (last != c) {
+                int[] lastRoute = classRoute[last];
+                for (int j = 0; j < lastRoute.length; j++) {
+                    if (lastRoute[j] == link) {
+                        classSlots[last][j] = slot;
+                        break;
+                    }
+                }
+            }
+            linkFlows[link] -= classFlows[c];
+            markDirty(link);
+        }
+        classRoute[c] = null;
+        classSlots[c] = null;
+    }
+
+    // Bring the class's virtual time up to now at its current rate
+    private void settle(int c) {
+        if (now > classUpdated[c]) {
+            classVirtual[c] += classRate[c] * (now - classUpdated[c]) / (8.0 * SimulationEngine.NANOS_PER_SECOND);
+            classUpdated[c] = now;
+        }
+    }
+
+    // When the class's first flow will be done at its current rate
+    private void updateDue(int c) {
+        long due = Long.MAX_VALUE;
+        if (classFlows[c] > 0 && classRate[c] > 0) {
+            double bytesLeft = Math.max(0, flowFinish[classHeap[c][0]] - classVirtual[c]);
+            double nanos = Math.ceil(bytesLeft * 8.0 * SimulationEngine.NANOS_PER_SECOND / classRate[c]);
+            due = nanos >= Long.MAX_VALUE - now ? Long.MAX_VALUE : now + (long) nanos;
+        }
+        if (due == Long.MAX_VALUE) {
+            if (duePositions[c] >= 0) removeDue(c);
+            classDue[c] = due;
+            return;
+        }
+        long old = classDue[c];
+        classDue[c] = due;
+        if (duePositions[c] < 0) {
+            duePositions[c] = dueCount;
+            dueHeap[dueCount++] = c;
+            dueUp(duePositions[c]);
+        } else if (due < old) {
+            dueUp(duePositions[c]);
+        } else {
+            dueDown(duePositions[c]);
+        }
+    }
+
+    // --- Rate solver ---
+
+    private void markDirty(int link) {
+        if (dirtyCount == dirty.length) dirty = Arrays.copyOf(dirty, dirtyCount * 2);
+        dirty[dirtyCount++] = link;
+    }
+
+    // Max-min fair rates by progressive filling over the component of the dirty links: the link with
+    // the smallest fair share (capacity left / flows not yet fixed) fixes all its flows at that share,
+    // the share is taken off the other links on their routes, and so on until every flow is fixed.
+    private void recompute() {
+        if (dirtyCount == 0) return;
+        recomputes++;
+        if (++epoch == 0) { // Wrapped: start the marks over
+            Arrays.fill(linkMark, 0);
+            Arrays.fill(classMark, 0);
+            epoch = 1;
+        }
+        // The component: links reachable from the dirty ones through shared classes
+        int linkCount = 0;
+        for (int i = 0; i < dirtyCount; i++) {
+            int link = dirty[i];
+            if (linkMark[link] == epoch) continue;
+            linkMark[link] = epoch;
+            if (linkCount == componentLinks.length) componentLinks = Arrays.copyOf(componentLinks, linkCount * 2);
+            componentLinks[linkCount++] = link;
+        }
+        dirtyCount = 0;
+        for (int i = 0; i < linkCount; i++) {
+            int link = componentLinks[i];
+            for (int k = 0; k < linkClassCount[link]; k++) {
+                int c = linkClasses[link][k];
+                if (classMark[c] == epoch) continue;
+                classMark[c] = epoch;
+                for (int other : classRoute[c]) {
+                    if (linkMark[other] == epoch) continue;
+                    linkMark[other] = epoch;
+                    if (linkCount == componentLinks.length) componentLinks = Arrays.copyOf(componentLinks, linkCount * 2);
+                    componentLinks[linkCount++] = other;
+                }
+            }
+        }
+        // Progressive filling. Classes still marked with this epoch are not fixed yet.
+        int heapSize = 0;
+        for (int i = 0; i < linkCount; i++) {
+            int link = componentLinks[i];
+            remaining[link] = capacity[link];
+            unfrozen[link] = linkFlows[link];
+            if (unfrozen[link] > 0) heapSize = pushShare(heapSize, remaining[link] / unfrozen[link], link);
+        }
+        while (heapSize > 0) {
+            int link = shareLinks[0];
+            double key = shareKeys[0];
+            heapSize = popShare(heapSize);
+            if (unfrozen[link] == 0) continue;
+            // Fixing flows elsewhere only ever raises a link's share, so entries are pushed once and
+            // brought up to date when they come out on top, not every time a share changes
+            double share = remaining[link] / unfrozen[link];
+            if (share > key) {
+                heapSize = pushShare(heapSize, share, link);
+                continue;
+            }
+            share = Math.max(0, share);
+            for (int k = 0; k < linkClassCount[link]; k++) {
+                int c = linkClasses[link][k];
+                if (classMark[c] != epoch) continue;
+                classMark[c] = epoch - 1; // Fixed
+                setRate(c, share);
+                long flows = classFlows[c];
+                for (int other : classRoute[c]) {
+                    remaining[other] -= share * flows;
+                    unfrozen[other] -= flows;
+                }
+            }
+        }
+    }
+
+    private void setRate(int c, double rate) {
+        if (rate == classRate[c]) return;
+        settle(c);
+        classRate[c] = rate;
+        updateDue(c);
+    }
+
+    private int pushShare(int size, double share, int link) {
+        if (size == shareKeys.length) {
+            shareKeys = Arrays.copyOf(shareKeys, size * 2);
+            shareLinks = Arrays.copyOf(shareLinks, size * 2);
+        }
+        int pos = size;
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (shareKeys[parent] <= share) break;
+            shareKeys[pos] = shareKeys[parent];
+            shareLinks[pos] = shareLinks[parent];
+            pos = parent;
+        }
+        shareKeys[pos] = share;
+        shareLinks[pos] = link;
+        return size + 1;
+    }
+
+    private int popShare(int size) {
+        size--;
+        double share = shareKeys[size];
+        int link = shareLinks[size];
+        int pos = 0;
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= size) break;
+            if (child + 1 < size && shareKeys[child + 1] < shareKeys[child]) child++;
+            if (shareKeys[child] >= share) break;
+            shareKeys[pos] = shareKeys[child];
+            shareLinks[pos] = shareLinks[child];
+            pos = child;
+        }
+        shareKeys[pos] = share;
+        shareLinks[pos] = link;
+        return size;
+    }
+
+    private void ensureLink(int link) {
+        if (link < capacity.length) return;
+        int size = Math.max(link + 1, capacity.length * 2);
+        int old = capacity.length;
+        capacity = Arrays.copyOf(capacity, size);
+        linkClasses = Arrays.copyOf(linkClasses, size);
+        for (int i = old; i < size; i++) {
+            linkClasses[i] = new int[2];
+        }
+        linkClassCount = Arrays.copyOf(linkClassCount, size);
+        linkFlows = Arrays.copyOf(linkFlows, size);
+        linkMark = Arrays.copyOf(linkMark, size);
+        remaining = Arrays.copyOf(remaining, size);
+        unfrozen = Arrays.copyOf(unfrozen, size);
+    }
+
+    // --- Heaps ---
+
+    private void pushArrival(long time, int flow) {
+        if (arrivalCount == arrivalTimes.length) {
+            arrivalTimes = Arrays.copyOf(arrivalTimes, arrivalCount * 2);
+            arrivalFlows = Arrays.copyOf(arrivalFlows, arrivalCount * 2);
+        }
+        int pos = arrivalCount++;
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (arrivalTimes[parent] <= time) break;
+            arrivalTimes[pos] = arrivalTimes[parent];
+            arrivalFlows[pos] = arrivalFlows[parent];
+            pos = parent;
+        }
+        arrivalTimes[pos] = time;
+        arrivalFlows[pos] = flow;
+    }
+
+    private int popArrival() {
+        int first = arrivalFlows[0];
+        int size = --arrivalCount;
+        long time = arrivalTimes[size];
+        int flow = arrivalFlows[size];
+        int pos = 0;
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= size) break;
+            if (child + 1 < size && arrivalTimes[child + 1] < arrivalTimes[child]) child++;
+            if (arrivalTimes[child] >= time) break;
+            arrivalTimes[pos] = arrivalTimes[child];
+            arrivalFlows[pos] = arrivalFlows[child];
+            pos = child;
+        }
+        arrivalTimes[pos] = time;
+        arrivalFlows[pos] = flow;
+        return first;
+    }
+
+    // A class's flows, as a min-heap on virtual finish
+    private void pushClassFlow(int c, int flow) {
+        int[] heap = classHeap[c];
+        int size = classFlows[c];
+        if (size == heap.length) heap = classHeap[c] = Arrays.copyOf(heap, size * 2);
+        double finish = flowFinish[flow];
+        int pos = size;
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (flowFinish[heap[parent]] <= finish) break;
+            heap[pos] = heap[parent];
+            pos = parent;
+        }
+        heap[pos] = flow;
+    }
+
+    private int popClassFlow(int c) {
+        int[] heap = classHeap[c];
+        int first = heap[0];
+        int size = classFlows[c] - 1;
+        int flow = heap[size];
+        double finish = flowFinish[flow];
+        int pos = 0;
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= size) break;
+            if (child + 1 < size && flowFinish[heap[child + 1]] < flowFinish[heap[child]]) child++;
+            if (flowFinish[heap[child]] >= finish) break;
+            heap[pos] = heap[child];
+            pos = child;
+        }
+        heap[pos] = flow;
+        return first;
+    }
+
+    private void removeDue(int c) {
+        int pos = duePositions[c];
+        duePositions[c] = -1;
+        int last = dueHeap[--dueCount];
+        if (last == c) return;
+        dueHeap[pos] = last;
+        duePositions[last] = pos;
+        dueUp(pos);
+        dueDown(duePositions[last]);
+    }
+
+    private void dueUp(int pos) {
+        int c = dueHeap[pos];
+        long due = classDue[c];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            int p = dueHeap[parent];
+            if (classDue[p] <= due) break;
+            dueHeap[pos] = p;
+            duePositions[p] = pos;
+            pos = parent;
+        }
+        dueHeap[pos] = c;
+        duePositions[c] = pos;
+    }
+
+    private void dueDown(int pos) {
+        int c = dueHeap[pos];
+        long due = classDue[c];
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= dueCount) break;
+            if (child + 1 < dueCount && classDue[dueHeap[child + 1]] < classDue[dueHeap[child]]) child++;
+            int d = dueHeap[child];
+            if (classDue[d] >= due) break;
+            dueHeap[pos] = d;
+            duePositions[d] = pos;
+            pos = child;
+        }
+        dueHeap[pos] = c;
+        duePositions[c] = pos;
+    }
+}
@@ -0,0 +1,170 @@
+package org.example.network_simulator;
+
+import java.util.Arrays;
+
+// IPv4 longest-prefix-match table: a multibit trie with four 8-bit strides and controlled
+// prefix expansion. Blocks of 256 slots live in flat primitive arrays, so a lookup is at most
+// four array reads and never allocates. Exact routes are kept on the side so removals can
+// restore the next-shorter covering route in the slots they vacate.
+public class ForwardingTable {
+
+    public static final int NO_ROUTE = -1;
+
+    private static final int STRIDE = 8;
+    private static final int BLOCK_SIZE = 1 << STRIDE;
+    private static final int LEVELS = 32 / STRIDE;
+
+    // Slot arrays; block b occupies [b * BLOCK_SIZE, (b + 1) * BLOCK_SIZE). Block 0 is the root.
+    private int[] nextHop = new int[BLOCK_SIZE];
+    private byte[] owner = new byte[BLOCK_SIZE]; // Prefix length that set nextHop, -1 if none
+    private int[] child = new int[BLOCK_SIZE]; // Block holding the next stride, 0 if none
+    private int blocks = 1;
+
+    private int defaultRoute = NO_ROUTE; // The /0 route lives outside the trie
+    private final LongIntHashMap routes = new LongIntHashMap(64, NO_ROUTE); // (length, prefix) -> next hop
+
+    public ForwardingTable() {
+        Arrays.fill(nextHop, NO_ROUTE);
+        Arrays.fill(owner, (byte) -1);
+    }
+
+    // Next hop for the longest prefix covering the address, or NO_ROUTE
+    public int lookup(int address) {
+        int best = defaultRoute;
+        int block = 0;
+        for (int level = 0; level < LEVELS; level++) {
+            int slot = (block << STRIDE) | ((address >>> (32 - STRIDE * (level + 1))) & (BLOCK_SIZE - 1));
+            if (owner[slot] >= 0) best = nextHop[slot];
+            block = child[slot];
+            if (block == 0) break;
+        }
+        return best;
+    }
+
+    // Adds or replaces a route. Host bits of the prefix are ignored.
+    public void addRoute(int prefix, int prefixLength, int hop) {
+        checkLength(prefixLength);
+        if (hop < 0) throw new IllegalArgumentException("Next hop must be non-negative: " + hop);
+        prefix &= Ipv4.mask(prefixLength);
+        routes.put(routeKey(prefix, prefixLength), hop);
+        if (prefixLength == 0) {
+            defaultRoute = hop;
+            return;
+        }
+        int level = (prefixLength - 1) / STRIDE;
+        int block = blockFor(prefix, level, true);
+        int first = slotIndex(prefix, level);
+        int count = 1 << (STRIDE * (level + 1) - prefixLength);
+        for (int i = 0; i < count; i++) {
+            int slot = (block << STRIDE) | (first + i);
+            // Longer prefixes already expanded into this slot keep it
+            if (owner[slot] <= prefixLength) {
+                nextHop[slot] = hop;
+                owner[slot] = (byte) prefixLength;
+            }
+        }
+    }
+
+    // Returns false if the route was not present
+    public boolean removeRoute(int prefix, int prefixLength) {
+        checkLength(prefixLength);
+        prefix &= Ipv4.mask(prefixLength);
+        if (routes.remove(routeKey(prefix, prefixLength)) == NO_ROUTE) return false;
+        if (prefixLength == 0) {
+            defaultRoute = NO_ROUTE;
+            return true;
+        }
+        int level = (prefixLength - 1) / STRIDE;
+        int block = blockFor(prefix, level, false);
+        int first = slotIndex(prefix, level);
+        int count = 1 << (STRIDE * (level + 1) - prefixLength);
+        int levelBits = STRIDE * (level + 1);
+        for (int i = 0; i < count; i++) {
+            int slot = (block << STRIDE) | (first + i);
+            if (owner[slot] != prefixLength) continue;
+            // Fall back to the longest shorter route at this level that still covers the slot
+            int slotPrefix = prefix | ((first + i) << (32 - levelBits));
+            nextHop[slot] = NO_ROUTE;
+            owner[slot] = -1;
+            for (int length = prefixLength - 1; length > STRIDE * level; length--) {
+                int hop = routes.get(routeKey(slotPrefix & Ipv4.mask(length), length));
+                if (hop != NO_ROUTE) {
+                    nextHop[slot] = hop;
+                    owner[slot] = (byte) length;
+                    break;
+                }
+            }
+        }
+        return true;
+    }
+
+    // Exact-match read of a configured route, or NO_ROUTE
+    public int getRoute(int prefix, int prefixLength) {
+        checkLength(prefixLength);
+        return routes.get(routeKey(prefix & Ipv4.mask(prefixLength), prefixLength));
+    }
+
+    public int size() {
+        return routes.size();
+    }
+
+    // Approximate heap footprint of the trie arrays, in bytes
+    public long footprintBytes() {
+        return (long) nextHop.length * (Integer.BYTES * 2 + 1);
+    }
+
+    public void clear() {
+        Arrays.fill(nextHop, 0, BLOCK_SIZE, NO_ROUTE);
+        Arrays.fill(owner, 0, BLOCK_SIZE, (byte) -1);
+        Arrays.fill(child, 0, BLOCK_SIZE, 0);
+        blocks = 1;
+        defaultRoute = NO_ROUTE;
+        routes.clear();
+    }
+
+    // --- Internals ---
+
+    // Walks (and optionally builds) the chain of blocks down to the given level
+    private int blockFor(int prefix, int level, boolean create) {
+        int block = 0;
+        for (int l = 0; l < level; l++) {
+            int slot = (block << STRIDE) | ((prefix >>> (32 - STRIDE * (l + 1))) & (BLOCK_SIZE - 1));
+            if (child[slot] == 0) {
+                if (!create) throw new IllegalStateException("Missing trie block for a stored route");
+                int allocated = allocateBlock(); // May grow the arrays, so read child afterwards
+                child[slot] = allocated;
+            }
+            block = child[slot];
+        }
+        return block;
+    }
+
+    private int allocateBlock() {
+        int block = blocks++;
+        int end = blocks << STRIDE;
+        if (end > nextHop.length) {
+            int capacity = Math.max(end, nextHop.length * 2);
+            int oldLength = nextHop.length;
+            nextHop = Arrays.copyOf(nextHop, capacity);
+            owner = Arrays.copyOf(owner, capacity);
+            child = Arrays.copyOf(child, capacity);
+            Arrays.fill(nextHop, oldLength, capacity, NO_ROUTE);
+            Arrays.fill(owner, oldLength, capacity, (byte) -1);
+        }
+        return block;
+    }
+
+    private static int slotIndex(int prefix, int level) {
+        return (prefix >>> (32 - STRIDE * (level + 1))) & (BLOCK_SIZE - 1);
+    }
+
+    private static long routeKey(int prefix, int prefixLength) {
+        return ((long) prefixLength << 32) | (prefix & 0xffffffffL);
+    }
+
+    private static void checkLength(int prefixLength) {
+        if (prefixLength < 0 || prefixLength > 32) {
+            throw new IllegalArgumentException("Prefix length out of range: " + prefixLength);
+        }
+    }
+}
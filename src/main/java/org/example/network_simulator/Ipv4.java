@@ -0,0 +1,53 @@
+package org.example.network_simulator;
+
+// IPv4 helpers working on addresses packed into ints (network byte order, a.b.c.d -> a<<24|b<<16|c<<8|d)
+public final class Ipv4 {
+
+    public static final long INVALID = -1L;
+
+    private Ipv4() {
+    }
+
+    // Parses dotted-quad text without allocating. Returns the address as an unsigned value
+    // in the low 32 bits, or INVALID if the text is not a well-formed address.
+    public static long parse(CharSequence text, int start, int end) {
+        int address = 0;
+        int octets = 0;
+        int i = start;
+        while (true) {
+            int value = 0;
+            int digits = 0;
+            while (i < end && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+                value = value * 10 + (text.charAt(i) - '0');
+                if (++digits > 3) return INVALID;
+                i++;
+            }
+            if (digits == 0 || value > 255) return INVALID;
+            address = (address << 8) | value;
+            octets++;
+            if (octets == 4) break;
+            if (i >= end || text.charAt(i) != '.') return INVALID;
+            i++;
+        }
+        return i == end ? (address & 0xffffffffL) : INVALID;
+    }
+
+    public static long parse(CharSequence text) {
+        return text == null ? INVALID : parse(text, 0, text.length());
+    }
+
+    public static String format(int address) {
+        return (address >>> 24) + "." + ((address >>> 16) & 0xff) + "." + ((address >>> 8) & 0xff) + "." + (address & 0xff);
+    }
+
+    // Network mask with the top prefixLength bits set
+    public static int mask(int prefixLength) {
+        return prefixLength == 0 ? 0 : -1 << (32 - prefixLength);
+    }
+
+    // Prefix length of a contiguous mask, or -1 if the mask has holes
+    public static int prefixLength(int mask) {
+        int length = Integer.bitCount(mask);
+        return mask(length) == mask ? length : -1;
+    }
+}
@@ -0,0 +1,129 @@
+package org.example.network_simulator;
+
+import java.util.Arrays;
+
+// One router's view of its own surroundings, as flooded by the link-state protocol: its
+// neighbouring routers with the cost of reaching each, and the prefixes of the PCs it serves.
+// Immutable, so every router that holds the same version shares one decoded copy.
+//
+// On the wire: router id, sequence, link and prefix counts, then 8 bytes per link
+// (neighbour router id, cost) and per prefix (address, length << 24 | cost).
+final class LinkStateAdvertisement {
+
+    static final int HEADER = 12;
+    static final int ENTRY = 8;
+    static final int MAX_ENTRIES = (Packet.MAX_LINK_STATE_BODY - HEADER) / ENTRY;
+
+    final int router; // Device id of the originating router
+    final int slot; // The router's slot in LinkStateRouting
+    final int sequence;
+    final int[] neighbours; // Slots, ascending
+    final int[] neighbourIds; // Their router ids, in the same order
+    final int[] costs;
+    final long[] prefixes; // Prefix keys (see prefixKey), ascending
+    final int[] prefixCosts;
+
+    LinkStateAdvertisement(int router, int slot, int sequence, int[] neighbours, int[] neighbourIds, int[] costs,
+                           long[] prefixes, int[] prefixCosts) {
+        this.router = router;
+        this.slot = slot;
+        this.sequence = sequence;
+        this.neighbours = neighbours;
+        this.neighbourIds = neighbourIds;
+        this.costs = costs;
+        this.prefixes = prefixes;
+        this.prefixCosts = prefixCosts;
+    }
+
+    static long prefixKey(int prefix, int length) {
+        return ((long) length << 32) | (prefix & 0xffffffffL);
+    }
+
+    static int keyPrefix(long key) {
+        return (int) key;
+    }
+
+    static int keyLength(long key) {
+        return (int) (key >>> 32);
+    }
+
+    // Cost of the link to the neighbour in the given slot, or -1 if there is none
+    int cost(int neighbour) {
+        int i = Arrays.binarySearch(neighbours, neighbour);
+        return i >= 0 ? costs[i] : -1;
+    }
+
+    // Cost to the advertised prefix, or -1 if it is not advertised
+    int prefixCost(long key) {
+        int i = Arrays.binarySearch(prefixes, key);
+        return i >= 0 ? prefixCosts[i] : -1;
+    }
+
+    // Same links and prefixes (the sequence aside)
+    boolean sameContent(LinkStateAdvertisement other) {
+        return other != null && Arrays.equals(neighbours, other.neighbours) && Arrays.equals(costs, other.costs)
+                && Arrays.equals(prefixes, other.prefixes) && Arrays.equals(prefixCosts, other.prefixCosts);
+    }
+
+    int size() {
+        return HEADER + ENTRY * (neighbours.length + prefixes.length);
+    }
+
+    void write(Packet packet, int offset) {
+        packet.setLinkStateInt(offset, router);
+        packet.setLinkStateInt(offset + 4, sequence);
+        packet.setLinkStateInt(offset + 8, (neighbours.length << 16) | prefixes.length);
+        int at = offset + HEADER;
+        for (int i = 0; i < neighbours.length; i++, at += ENTRY) {
+            packet.setLinkStateInt(at, neighbourIds[i]);
+            packet.setLinkStateInt(at + 4, costs[i]);
+        }
+        for (int i = 0; i < prefixes.length; i++, at += ENTRY) {
+            packet.setLinkStateInt(at, keyPrefix(prefixes[i]));
+            packet.setLinkStateInt(at + 4, (keyLength(prefixes[i]) << 24) | prefixCosts[i]);
+        }
+    }
+
+    static int router(Packet packet, int offset) {
+        return packet.linkStateInt(offset);
+    }
+
+    static int sequence(Packet packet, int offset) {
+        return packet.linkStateInt(offset + 4);
+    }
+
+    static int size(Packet packet, int offset) {
+        int counts = packet.linkStateInt(offset + 8);
+        return HEADER + ENTRY * ((counts >>> 16) + (counts & 0xffff));
+    }
+
+    // Decode the advertisement at the offset; links to routers the protocol doesn't know are left out
+    static LinkStateAdvertisement read(Packet packet, int offset, int slot, LinkStateRouting routing) {
+        int counts = packet.linkStateInt(offset + 8);
+        int links = counts >>> 16, prefixCount = counts & 0xffff;
+        long[] sorted = new long[links]; // slot << 32 | index, to sort the links by slot
+        int known = 0;
+        int at = offset + HEADER;
+        for (int i = 0; i < links; i++, at += ENTRY) {
+            int neighbour = routing.slotOf(packet.linkStateInt(at));
+            if (neighbour >= 0) sorted[known++] = ((long) neighbour << 32) | i;
+        }
+        Arrays.sort(sorted, 0, known);
+        int[] neighbours = new int[known], ids = new int[known], costs = new int[known];
+        for (int i = 0; i < known; i++) {
+            int entry = offset + HEADER + ENTRY * (int) sorted[i];
+            neighbours[i] = (int) (sorted[i] >>> 32);
+            ids[i] = packet.linkStateInt(entry);
+            costs[i] = packet.linkStateInt(entry + 4);
+        }
+        long[] prefixes = new long[prefixCount];
+        int[] prefixCosts = new int[prefixCount];
+        for (int i = 0; i < prefixCount; i++, at += ENTRY) {
+            int lengthAndCost = packet.linkStateInt(at + 4);
+            prefixes[i] = prefixKey(packet.linkStateInt(at), lengthAndCost >>> 24);
+            prefixCosts[i] = lengthAndCost & 0xffffff;
+        }
+        return new LinkStateAdvertisement(router(packet, offset), slot, sequence(packet, offset), neighbours, ids,
+                costs, prefixes, prefixCosts); // Prefixes go out sorted, so they arrive sorted
+    }
+}
@@ -0,0 +1,681 @@
+package org.example.network_simulator;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+
+// One router's side of the link-state protocol (see LinkStateRouting): its link-state database,
+// its adjacencies with neighbouring routers, flooding, and the SPF runs that fill its forwarding
+// table. Only its router's thread touches it: events are owned by the router and packets arrive there.
+//
+// Incremental SPF, for a batch of changed advertisements: a router whose tree link got worse or
+// went away loses its distance, and so does the subtree below it; those routers take the best
+// distance offered by a neighbour outside the subtree, the changed links that got better offer
+// theirs too, and a Dijkstra from just those routers settles everything that moved. The work is
+// proportional to the routers whose shortest path changed, not to the size of the network.
+final class LinkStateRouter {
+
+    static final int UPDATE = 4, ACK = 5; // OSPF's packet type numbers
+
+    private static final int INFINITY = Integer.MAX_VALUE;
+    private static final int AFFECTED = -2; // Parent mark for routers losing their distance
+
+    private final LinkStateRouting routing;
+    private final Network network;
+    private final Router router;
+    final int slot;
+
+    // Link-state database: the newest advertisement from each router, by slot
+    private LinkStateAdvertisement[] database = new LinkStateAdvertisement[16];
+    private LinkStateAdvertisement own;
+    private int sequence = 0;
+    private long lastOriginated = Long.MIN_VALUE;
+    private boolean originatePending = false;
+    private LongIntHashMap localPorts = new LongIntHashMap(8, ForwardingTable.NO_ROUTE); // Own prefix -> port
+    private Neighbour[] neighbours = new Neighbour[0];
+    private long[] prefixKeys = new long[8]; // Scratch for originate
+    private int prefixCount;
+
+    // Advertisements changed since the last SPF run, each with the version it replaced
+    private final BitSet changed = new BitSet();
+    private int[] changedSlots = new int[16];
+    private LinkStateAdvertisement[] changedBefore = new LinkStateAdvertisement[16];
+    private int changedCount = 0;
+    private boolean spfPending = false;
+
+    // Shortest-path tree over router slots
+    private int[] distance = new int[0];
+    private int[] parent = new int[0];
+    private long[] heap = new long[16]; // distance << 32 | slot
+    private int heapSize = 0;
+    private int[] touched = new int[16]; // Slots whose distance or parent changed in this run
+    private int touchedCount = 0;
+    private long visited = 0;
+    private final BitSet evaluated = new BitSet(); // Advertisers whose prefixes this run has routed
+
+    LinkStateRouter(LinkStateRouting routing, Network network, Router router, int slot) {
+        this.routing = routing;
+        this.network = network;
+        this.router = router;
+        this.slot = slot;
+    }
+
+    private boolean stale() {
+        return router.linkState != this;
+    }
+
+    // --- Origination ---
+
+    // Put out a new advertisement as soon as the origination interval allows
+    void requestOriginate() {
+        if (originatePending) return;
+        originatePending = true;
+        long now = network.now(router);
+        long at = lastOriginated == Long.MIN_VALUE ? now : Math.max(now, lastOriginated + routing.getOriginateInterval());
+        network.scheduleAt(router, at, this::originate);
+    }
+
+    private void originate() {
+        originatePending = false;
+        if (stale()) return;
+        lastOriginated = network.now(router);
+        TopologyGraph graph = network.getGraph();
+        int degree = graph.degree(router.index);
+        // Router neighbours, as (slot << 32 | position) to sort them by slot
+        long[] links = new long[degree];
+        int[] linkCosts = new int[degree];
+        int linkCount = 0;
+        LongIntHashMap ports = new LongIntHashMap(8, ForwardingTable.NO_ROUTE);
+        LongIntHashMap prefixCosts = new LongIntHashMap(8, -1);
+        prefixCount = 0;
+        BitSet seen = new BitSet();
+        seen.set(router.index);
+        for (int i = 0; i < degree; i++) {
+            NetworkDevice next = network.getDeviceByIndex(graph.neighbour(router.index, i));
+            int cost = LinkStateRouting.cost(network.getConnectionByEdge(graph.incidentEdge(router.index, i)));
+            if (next instanceof Router) {
+                LinkStateRouter peer = ((Router) next).linkState;
+                if (peer != null) {
+                    linkCosts[linkCount] = cost;
+                    links[linkCount] = ((long) peer.slot << 32) | linkCount;
+                    linkCount++;
+                }
+            } else if (!seen.get(next.index)) {
+                collectPrefixes(graph, next, cost, seen, ports, prefixCosts);
+            }
+        }
+        Arrays.sort(links, 0, linkCount);
+        long[] prefixes = Arrays.copyOf(prefixKeys, prefixCount);
+        Arrays.sort(prefixes);
+        if (linkCount + prefixes.length > LinkStateAdvertisement.MAX_ENTRIES) {
+            Log.warn("linkstate.advertisement.truncated", "router", router, "links", linkCount, "prefixes", prefixes.length);
+            linkCount = Math.min(linkCount, LinkStateAdvertisement.MAX_ENTRIES);
+            prefixes = Arrays.copyOf(prefixes, LinkStateAdvertisement.MAX_ENTRIES - linkCount);
+        }
+        int[] neighbourSlots = new int[linkCount], ids = new int[linkCount], costs = new int[linkCount];
+        for (int i = 0; i < linkCount; i++) {
+            neighbourSlots[i] = (int) (links[i] >>> 32);
+            ids[i] = routing.router(neighbourSlots[i]).getId();
+            costs[i] = linkCosts[(int) links[i]];
+        }
+        int[] costsByPrefix = new int[prefixes.length];
+        for (int i = 0; i < prefixes.length; i++) {
+            costsByPrefix[i] = prefixCosts.get(prefixes[i]);
+        }
+        LinkStateAdvertisement next = new LinkStateAdvertisement(router.getId(), slot, sequence + 1, neighbourSlots, ids,
+                costs, prefixes, costsByPrefix);
+        boolean changedContent = !next.sameContent(own);
+        boolean portsMoved = !samePorts(ports, prefixes);
+        localPorts = ports;
+        if (changedContent) {
+            sequence++;
+            LinkStateAdvertisement previous = own;
+            own = next;
+            routing.originated(next, previous);
+            install(next);
+        } else if (portsMoved) {
+            recordChange(slot, own); // Same advertisement, but our own routes go out of other ports
+            scheduleSpf();
+        }
+        updateAdjacencies(neighbourSlots);
+        if (changedContent) {
+            for (Neighbour neighbour : neighbours) {
+                neighbour.queue(slot);
+            }
+        }
+    }
+
+    // PC prefixes reachable through the port without crossing a router, at the port's cost
+    private void collectPrefixes(TopologyGraph graph, NetworkDevice port, int cost, BitSet seen,
+                                 LongIntHashMap ports, LongIntHashMap prefixCosts) {
+        ArrayDeque<NetworkDevice> queue = new ArrayDeque<>();
+        seen.set(port.index);
+        queue.add(port);
+        while (!queue.isEmpty()) {
+            NetworkDevice at = queue.poll();
+            if (at instanceof PC && ((PC) at).getAddress() != 0) {
+                PC pc = (PC) at;
+                long mask = Ipv4.parse(pc.getSubnetMask());
+                int length = mask == Ipv4.INVALID ? 32 : Ipv4.prefixLength((int) mask);
+                long key = LinkStateAdvertisement.prefixKey(pc.getAddress() & Ipv4.mask(length), length);
+                int known = prefixCosts.get(key);
+                if (known < 0) {
+                    if (prefixCount == prefixKeys.length) prefixKeys = Arrays.copyOf(prefixKeys, prefixCount * 2);
+                    prefixKeys[prefixCount++] = key;
+                }
+                if (known < 0 || cost < known) {
+                    prefixCosts.put(key, cost);
+                    ports.put(key, port.index);
+                }
+            }
+            for (int i = 0, d = graph.degree(at.index); i < d; i++) {
+                int v = graph.neighbour(at.index, i);
+                if (seen.get(v)) continue;
+                NetworkDevice next = network.getDeviceByIndex(v);
+                if (next instanceof Router) continue; // The segment ends there
+                seen.set(v);
+                queue.add(next);
+            }
+        }
+    }
+
+    private boolean samePorts(LongIntHashMap ports, long[] prefixes) {
+        if (ports.size() != localPorts.size()) return false;
+        for (long key : prefixes) {
+            if (ports.get(key) != localPorts.get(key)) return false;
+        }
+        return true;
+    }
+
+    // --- Adjacencies and flooding ---
+
+    // Keep neighbour state for the routers linked now; a new neighbour gets the whole database
+    private void updateAdjacencies(int[] neighbourSlots) {
+        Neighbour[] kept = new Neighbour[neighbourSlots.length];
+        for (int i = 0; i < neighbourSlots.length; i++) {
+            Neighbour existing = neighbour(neighbourSlots[i]);
+            kept[i] = existing != null ? existing : new Neighbour(routing.router(neighbourSlots[i]), neighbourSlots[i]);
+        }
+        Neighbour[] before = neighbours;
+        neighbours = kept;
+        for (Neighbour neighbour : kept) {
+            if (!contains(before, neighbour)) neighbour.queueDatabase();
+        }
+    }
+
+    private static boolean contains(Neighbour[] list, Neighbour neighbour) {
+        for (Neighbour n : list) {
+            if (n == neighbour) return true;
+        }
+        return false;
+    }
+
+    private Neighbour neighbour(int neighbourSlot) {
+        for (Neighbour neighbour : neighbours) {
+            if (neighbour.slot == neighbourSlot) return neighbour;
+        }
+        return null;
+    }
+
+    // A link-state packet from a neighbouring router. Takes over the packet reference.
+    void receive(Packet packet, NetworkDevice from) {
+        if (stale() || !(from instanceof Router) || ((Router) from).linkState == null) {
+            packet.release();
+            return;
+        }
+        int fromSlot = ((Router) from).linkState.slot;
+        Neighbour neighbour = neighbour(fromSlot);
+        if (neighbour == null) {
+            // It saw the link before we did: take it as a neighbour now, and advertise the link soon
+            neighbour = new Neighbour((Router) from, fromSlot);
+            neighbours = Arrays.copyOf(neighbours, neighbours.length + 1);
+            neighbours[neighbours.length - 1] = neighbour;
+            neighbour.queueDatabase();
+            requestOriginate();
+        }
+        if (packet.linkStateType() == UPDATE) {
+            receiveUpdate(packet, neighbour);
+        } else if (packet.linkStateType() == ACK) {
+            for (int i = 0, offset = 0; i < packet.linkStateCount(); i++, offset += 8) {
+                int ackedSlot = routing.slotOf(packet.linkStateInt(offset));
+                if (ackedSlot >= 0) neighbour.acknowledged(ackedSlot, packet.linkStateInt(offset + 4));
+            }
+        }
+        packet.release();
+    }
+
+    private void receiveUpdate(Packet packet, Neighbour from) {
+        for (int i = 0, offset = 0; i < packet.linkStateCount(); i++) {
+            int id = LinkStateAdvertisement.router(packet, offset);
+            int seq = LinkStateAdvertisement.sequence(packet, offset);
+            int origin = routing.slotOf(id);
+            from.ack(id, seq);
+            if (origin >= 0) {
+                LinkStateAdvertisement current = origin < database.length ? database[origin] : null;
+                if (origin == slot) {
+                    if (seq > sequence) { // Left over from before a restart: outnumber it
+                        sequence = seq;
+                        own = null;
+                        requestOriginate();
+                    }
+                } else if (current == null || seq > current.sequence) {
+                    install(routing.intern(packet, offset, origin));
+                    routing.received();
+                    from.acknowledged(origin, Integer.MAX_VALUE);
+                    for (Neighbour neighbour : neighbours) {
+                        if (neighbour != from) neighbour.queue(origin);
+                    }
+                } else if (seq == current.sequence) {
+                    from.acknowledged(origin, seq); // Implied acknowledgement
+                } else {
+                    from.queue(origin); // Ours is newer: send it back
+                }
+            }
+            offset += LinkStateAdvertisement.size(packet, offset);
+        }
+    }
+
+    private void install(LinkStateAdvertisement advertisement) {
+        int origin = advertisement.slot;
+        if (origin >= database.length) database = Arrays.copyOf(database, Math.max(origin + 1, database.length * 2));
+        recordChange(origin, database[origin]);
+        database[origin] = advertisement;
+        scheduleSpf();
+    }
+
+    private void recordChange(int origin, LinkStateAdvertisement before) {
+        if (changed.get(origin)) return; // Keep the version from the last SPF run
+        changed.set(origin);
+        if (changedCount == changedSlots.length) {
+            changedSlots = Arrays.copyOf(changedSlots, changedCount * 2);
+            changedBefore = Arrays.copyOf(changedBefore, changedCount * 2);
+        }
+        changedSlots[changedCount] = origin;
+        changedBefore[changedCount] = before;
+        changedCount++;
+    }
+
+    // Per-neighbour flooding state: advertisements and acknowledgements waiting to go out (sent
+    // together at most once per flood interval), and what was sent but not acknowledged yet.
+    // Both sets are by origin slot and mean our database's version, so they stay a bit per router.
+    private final class Neighbour implements SimulationEvent {
+        final Router device;
+        final int slot;
+        private final BitSet queued = new BitSet();
+        private int[] acks = new int[16]; // Router id, sequence pairs
+        private int ackCount = 0;
+        private final BitSet unacked = new BitSet();
+        private long lastSent = Long.MIN_VALUE;
+        private boolean sendScheduled = false;
+        private boolean retransmitScheduled = false;
+
+        Neighbour(Router device, int slot) {
+            this.device = device;
+            this.slot = slot;
+        }
+
+        void queue(int origin) {
+            queued.set(origin);
+            scheduleSend();
+        }
+
+        void queueDatabase() {
+            for (int origin = 0; origin < database.length; origin++) {
+                if (database[origin] != null) queue(origin);
+            }
+        }
+
+        void ack(int routerId, int seq) {
+            if (ackCount + 2 > acks.length) acks = Arrays.copyOf(acks, acks.length * 2);
+            acks[ackCount++] = routerId;
+            acks[ackCount++] = seq;
+            scheduleSend();
+        }
+
+        // The neighbour has this version (or, with MAX_VALUE, whatever we hold)
+        void acknowledged(int origin, int seq) {
+            LinkStateAdvertisement current = database[origin];
+            if (current == null || current.sequence <= seq) unacked.clear(origin);
+        }
+
+        private void scheduleSend() {
+            if (sendScheduled) return;
+            sendScheduled = true;
+            long now = network.now(router);
+            long at = lastSent == Long.MIN_VALUE ? now : Math.max(now, lastSent + routing.getFloodInterval());
+            network.scheduleAt(router, at, this);
+        }
+
+        @Override
+        public void fire() {
+            sendScheduled = false;
+            if (stale() || neighbour(slot) != this) return;
+            lastSent = network.now(router);
+            sendAcks();
+            sendUpdates();
+        }
+
+        private void sendAcks() {
+            int perPacket = Packet.MAX_LINK_STATE_BODY / 8;
+            for (int first = 0; first < ackCount; first += 2 * perPacket) {
+                int count = Math.min(perPacket, (ackCount - first) / 2);
+                Packet packet = network.packetPoolFor(router).acquire()
+                        .writeLinkState(router.getMacAddress(), device.getMacAddress(), ACK, count, 8 * count);
+                for (int i = 0; i < 2 * count; i++) {
+                    packet.setLinkStateInt(4 * i, acks[first + i]);
+                }
+                network.transmit(router, device, packet);
+                routing.ackSent();
+            }
+            ackCount = 0;
+        }
+
+        // Everything queued, in as few packets as fit
+        private void sendUpdates() {
+            int i = queued.nextSetBit(0);
+            while (i >= 0) {
+                int count = 0, length = 0, end = i;
+                for (; end >= 0; end = queued.nextSetBit(end + 1)) {
+                    LinkStateAdvertisement advertisement = database[end];
+                    if (advertisement == null) continue;
+                    if (count > 0 && length + advertisement.size() > Packet.MAX_LINK_STATE_BODY) break;
+                    count++;
+                    length += advertisement.size();
+                }
+                if (count > 0) {
+                    Packet packet = network.packetPoolFor(router).acquire()
+                            .writeLinkState(router.getMacAddress(), device.getMacAddress(), UPDATE, count, length);
+                    for (int offset = 0; i >= 0 && i != end; i = queued.nextSetBit(i + 1)) {
+                        LinkStateAdvertisement advertisement = database[i];
+                        if (advertisement == null) continue;
+                        advertisement.write(packet, offset);
+                        offset += advertisement.size();
+                        unacked.set(i);
+                    }
+                    network.transmit(router, device, packet);
+                    routing.updateSent();
+                }
+                i = end;
+            }
+            queued.clear();
+            if (!unacked.isEmpty() && !retransmitScheduled) {
+                retransmitScheduled = true;
+                network.schedule(router, routing.getRetransmitInterval(), this::retransmit);
+            }
+        }
+
+        // Send again whatever is still unacknowledged
+        private void retransmit() {
+            retransmitScheduled = false;
+            if (stale() || neighbour(slot) != this || unacked.isEmpty()) return;
+            queued.or(unacked);
+            scheduleSend();
+        }
+    }
+
+    // --- SPF ---
+
+    private void scheduleSpf() {
+        if (spfPending) return;
+        spfPending = true;
+        network.schedule(router, routing.getSpfDelay(), this::runSpf);
+    }
+
+    private void runSpf() {
+        spfPending = false;
+        if (stale()) return;
+        int n = routing.slotCount();
+        if (distance.length < n) {
+            int old = distance.length;
+            distance = Arrays.copyOf(distance, n);
+            parent = Arrays.copyOf(parent, n);
+            Arrays.fill(distance, old, n, INFINITY);
+            Arrays.fill(parent, old, n, -1);
+        }
+        if (database.length < n) database = Arrays.copyOf(database, n);
+        touchedCount = 0;
+        visited = 0;
+        boolean full = !routing.isIncremental() || distance[slot] != 0;
+        if (full) {
+            fullSpf(n);
+        } else {
+            incrementalSpf();
+        }
+        long now = network.now(router);
+        routing.spfRun(visited, touchedCount > 0, now);
+        updateRoutes(full, now);
+        changed.clear();
+        Arrays.fill(changedBefore, 0, changedCount, null);
+        changedCount = 0;
+    }
+
+    // Plain Dijkstra over the whole database
+    private void fullSpf(int n) {
+        int[] oldDistance = Arrays.copyOf(distance, n);
+        int[] oldParent = Arrays.copyOf(parent, n);
+        Arrays.fill(distance, 0, n, INFINITY);
+        Arrays.fill(parent, 0, n, -1);
+        distance[slot] = 0;
+        push(slot);
+        dijkstra();
+        touchedCount = 0;
+        for (int v = 0; v < n; v++) {
+            if (distance[v] != oldDistance[v] || parent[v] != oldParent[v]) touch(v);
+        }
+    }
+
+    private void incrementalSpf() {
+        // Routers whose tree link got worse or went away, then the subtrees below them
+        int affectedStart = touchedCount;
+        for (int c = 0; c < changedCount; c++) {
+            int u = changedSlots[c];
+            checkWorse(u, changedBefore[c]);
+            checkWorse(u, database[u]);
+        }
+        for (int i = affectedStart; i < touchedCount; i++) {
+            LinkStateAdvertisement advertisement = database[touched[i]];
+            if (advertisement == null) continue;
+            for (int v : advertisement.neighbours) {
+                if (parent[v] == touched[i]) markAffected(v);
+            }
+        }
+        int affectedEnd = touchedCount;
+        for (int i = affectedStart; i < affectedEnd; i++) {
+            distance[touched[i]] = INFINITY;
+            parent[touched[i]] = -1;
+        }
+        // Each takes the best offer from a neighbour that kept its distance
+        for (int i = affectedStart; i < affectedEnd; i++) {
+            int x = touched[i];
+            LinkStateAdvertisement advertisement = database[x];
+            if (advertisement == null) continue;
+            for (int y : advertisement.neighbours) {
+                if (distance[y] == INFINITY) continue;
+                int w = weight(y, x);
+                if (w >= 0 && distance[y] + w < distance[x]) {
+                    distance[x] = distance[y] + w;
+                    parent[x] = y;
+                }
+            }
+            if (distance[x] != INFINITY) push(x);
+        }
+        // Links that got better
+        for (int c = 0; c < changedCount; c++) {
+            int u = changedSlots[c];
+            LinkStateAdvertisement advertisement = database[u];
+            if (advertisement == null) continue;
+            for (int v : advertisement.neighbours) {
+                relax(u, v);
+                relax(v, u);
+            }
+        }
+        dijkstra();
+    }
+
+    // Tree links between u and the neighbours in its (old or new) advertisement
+    private void checkWorse(int u, LinkStateAdvertisement advertisement) {
+        if (advertisement == null) return;
+        for (int v : advertisement.neighbours) {
+            checkWorse(u, v);
+            checkWorse(v, u);
+        }
+    }
+
+    private void checkWorse(int a, int b) {
+        if (parent[b] != a) return;
+        int w = weight(a, b);
+        if (w < 0 || distance[a] + w != distance[b]) markAffected(b);
+    }
+
+    private void markAffected(int v) {
+        parent[v] = AFFECTED;
+        touch(v);
+    }
+
+    // Link cost from a to b, or -1 unless both advertise the link (the two-way check)
+    private int weight(int a, int b) {
+        LinkStateAdvertisement from = database[a], to = database[b];
+        if (from == null || to == null || to.cost(a) < 0) return -1;
+        return from.cost(b);
+    }
+
+    private void relax(int a, int b) {
+        if (distance[a] == INFINITY) return;
+        int w = weight(a, b);
+        if (w < 0 || distance[a] + w >= distance[b]) return;
+        distance[b] = distance[a] + w;
+        parent[b] = a;
+        push(b);
+        touch(b);
+    }
+
+    private void dijkstra() {
+        while (heapSize > 0) {
+            long top = pop();
+            int x = (int) top;
+            if ((int) (top >>> 32) != distance[x]) continue; // Superseded
+            visited++;
+            LinkStateAdvertisement advertisement = database[x];
+            if (advertisement == null) continue;
+            for (int v : advertisement.neighbours) {
+                relax(x, v);
+            }
+        }
+    }
+
+    private void touch(int v) {
+        if (touchedCount == touched.length) touched = Arrays.copyOf(touched, touchedCount * 2);
+        touched[touchedCount++] = v;
+    }
+
+    private void push(int v) {
+        if (heapSize == heap.length) heap = Arrays.copyOf(heap, heapSize * 2);
+        long key = ((long) distance[v] << 32) | v;
+        int pos = heapSize++;
+        while (pos > 0) {
+            int up = (pos - 1) >>> 1;
+            if (heap[up] <= key) break;
+            heap[pos] = heap[up];
+            pos = up;
+        }
+        heap[pos] = key;
+    }
+
+    private long pop() {
+        long top = heap[0];
+        long key = heap[--heapSize];
+        int pos = 0;
+        while (true) {
+            int child = 2 * pos + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && heap[child + 1] < heap[child]) child++;
+            if (heap[child] >= key) break;
+            heap[pos] = heap[child];
+            pos = child;
+        }
+        heap[pos] = key;
+        return top;
+    }
+
+    // --- Routes ---
+
+    // Re-evaluate the prefixes of every router whose path moved or whose advertisement changed.
+    // A prefix with several advertisers may be evaluated more than once; that is cheap and rare.
+    private void updateRoutes(boolean full, long now) {
+        evaluated.clear();
+        for (int c = 0; c < changedCount; c++) {
+            evaluated.set(changedSlots[c]);
+            evaluate(changedBefore[c], now); // Prefixes it may have dropped
+            evaluate(database[changedSlots[c]], now);
+        }
+        if (full) {
+            for (int v = 0; v < database.length; v++) {
+                if (!evaluated.get(v)) evaluate(database[v], now);
+            }
+        } else {
+            for (int i = 0; i < touchedCount; i++) {
+                if (!evaluated.get(touched[i])) {
+                    evaluated.set(touched[i]);
+                    evaluate(database[touched[i]], now);
+                }
+            }
+        }
+    }
+
+    private void evaluate(LinkStateAdvertisement advertisement, long now) {
+        if (advertisement == null) return;
+        for (long key : advertisement.prefixes) {
+            evaluate(key, now);
+        }
+    }
+
+    // Route the prefix towards its nearest advertiser (ties to the lowest slot)
+    private void evaluate(long key, long now) {
+        int best = -1;
+        long bestCost = Long.MAX_VALUE;
+        for (int advertiser : routing.advertisers(key)) {
+            if (advertiser >= distance.length || distance[advertiser] == INFINITY) continue;
+            LinkStateAdvertisement advertisement = database[advertiser];
+            int cost = advertisement == null ? -1 : advertisement.prefixCost(key);
+            if (cost < 0) continue;
+            long total = (long) distance[advertiser] + cost;
+            if (total < bestCost || (total == bestCost && advertiser < best)) {
+                best = advertiser;
+                bestCost = total;
+            }
+        }
+        int hop;
+        if (best < 0) {
+            hop = ForwardingTable.NO_ROUTE;
+        } else if (best == slot) {
+            hop = localPorts.get(key);
+        } else {
+            int first = best;
+            while (parent[first] != slot) {
+                first = parent[first];
+            }
+            hop = routing.router(first).index;
+        }
+        // The table holds the installed hop, so no copy of it is kept here
+        ForwardingTable table = router.getForwardingTable();
+        int prefix = LinkStateAdvertisement.keyPrefix(key), length = LinkStateAdvertisement.keyLength(key);
+        if (hop == table.getRoute(prefix, length)) return;
+        if (hop == ForwardingTable.NO_ROUTE) {
+            table.removeRoute(prefix, length);
+        } else {
+            table.addRoute(prefix, length, hop);
+        }
+        routing.routeChanged(now);
+    }
+
+    // Take out every route this router installed (the protocol is stopping)
+    void withdrawRoutes() {
+        for (LinkStateAdvertisement advertisement : database) {
+            if (advertisement == null) continue;
+            for (long key : advertisement.prefixes) {
+                router.getForwardingTable().removeRoute(LinkStateAdvertisement.keyPrefix(key),
+                        LinkStateAdvertisement.keyLength(key));
+            }
+        }
+    }
+}
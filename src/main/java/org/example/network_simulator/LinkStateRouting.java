@@ -0,0 +1,309 @@
+package org.example.network_simulator;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Link-state routing between Routers, OSPF-style, filling their forwarding tables as the network runs.
+// Each router advertises its router neighbours (direct links, cost from bandwidth) and the prefixes
+// of the PCs it serves through switches. Advertisements flood hop by hop as real packets, so they
+// take the links' time and can be lost. Every router keeps a database of them and turns it into
+// routes with a shortest-path-first (SPF) run. See LinkStateRouter for the per-router side.
+//
+// Flooding is rate-limited: a router originates at most once per origination interval, and sends
+// to each neighbour at most once per flood interval, batching everything due into full packets.
+// SPF waits for the SPF delay after a change, so it takes a burst of advertisements in one run,
+// and is incremental: only the routers whose shortest path changed are revisited, not all of them.
+//
+//     LinkStateRouting routing = network.getLinkStateRouting();
+//     routing.start();
+//     network.run();                     // converges
+//     network.disconnect(connection);
+//     network.run();
+//     routing.getConvergenceTime();      // how long re-routing took, in simulated time
+public class LinkStateRouting {
+
+    static final long REFERENCE_BANDWIDTH = 100_000_000_000L; // A link this fast costs 1
+    static final int MAX_COST = 0xffff;
+
+    private static final int[] NONE = new int[0];
+
+    private final Network network;
+    private boolean running = false;
+
+    private volatile long originateInterval = SimulationEngine.NANOS_PER_SECOND;
+    private volatile long floodInterval = 33 * SimulationEngine.NANOS_PER_MILLI;
+    private volatile long spfDelay = 50 * SimulationEngine.NANOS_PER_MILLI;
+    private volatile long retransmitInterval = 5 * SimulationEngine.NANOS_PER_SECOND;
+    private volatile boolean incremental = true;
+
+    // Routers by slot. Slots are handed out while the network is stopped and never reused.
+    private final LongIntHashMap slots = new LongIntHashMap(64, -1);
+    private Router[] routers = new Router[16];
+    private volatile int slotCount = 0;
+    // Newest advertisement per router, shared by every database that holds that version
+    private volatile AtomicReferenceArray<LinkStateAdvertisement> latest = new AtomicReferenceArray<>(16);
+    private final ConcurrentHashMap<Long, int[]> advertisers = new ConcurrentHashMap<>(); // Prefix key -> slots
+
+    // Statistics; updated from every partition thread
+    private final LongAdder originated = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder updatesSent = new LongAdder();
+    private final LongAdder acksSent = new LongAdder();
+    private final LongAdder spfRuns = new LongAdder();
+    private final LongAdder spfVisited = new LongAdder();
+    private final LongAdder routeChanges = new LongAdder();
+    private volatile long changedAt = 0;
+    private final AtomicLong lastUpdate = new AtomicLong();
+
+    LinkStateRouting(Network network) {
+        this.network = network;
+    }
+
+    // Run the protocol on every router, now and as they are added
+    public void start() {
+        if (running) return;
+        running = true;
+        changedAt = network.getEngine().now();
+        lastUpdate.set(changedAt);
+        for (NetworkDevice device : network.getDevices()) {
+            if (device instanceof Router) attach((Router) device);
+        }
+        for (NetworkDevice device : network.getDevices()) {
+            if (device instanceof Router) ((Router) device).linkState.requestOriginate();
+        }
+        Log.info("linkstate.started", "routers", slotCount);
+    }
+
+    // Stop the protocol and take out every route it installed
+    public void stop() {
+        if (!running) return;
+        running = false;
+        for (NetworkDevice device : network.getDevices()) {
+            if (device instanceof Router && ((Router) device).linkState != null) {
+                ((Router) device).linkState.withdrawRoutes();
+                ((Router) device).linkState = null;
+            }
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    // --- Settings ---
+
+    public long getOriginateInterval() { return originateInterval; }
+    public long getFloodInterval() { return floodInterval; }
+    public long getSpfDelay() { return spfDelay; }
+    public long getRetransmitInterval() { return retransmitInterval; }
+    public boolean isIncremental() { return incremental; }
+
+    // Shortest time between two advertisements from one router
+    public void setOriginateInterval(long nanos) { originateInterval = checkInterval(nanos); }
+    // Shortest time between two batches of updates to one neighbour
+    public void setFloodInterval(long nanos) { floodInterval = checkInterval(nanos); }
+    // Wait after a change before running SPF, to take in the rest of the burst
+    public void setSpfDelay(long nanos) { spfDelay = checkInterval(nanos); }
+    // Resend advertisements a neighbour hasn't acknowledged after this long
+    public void setRetransmitInterval(long nanos) { retransmitInterval = Math.max(1, checkInterval(nanos)); }
+    // False runs a full Dijkstra on every SPF run instead, e.g. to compare the two
+    public void setIncremental(boolean incremental) { this.incremental = incremental; }
+
+    private static long checkInterval(long nanos) {
+        if (nanos < 0) throw new IllegalArgumentException("Interval must not be negative: " + nanos);
+        return nanos;
+    }
+
+    // --- Statistics ---
+
+    public long getAdvertisementsOriginated() { return originated.sum(); }
+    public long getAdvertisementsReceived() { return received.sum(); } // New ones, not duplicates
+    public long getUpdatesSent() { return updatesSent.sum(); } // Packets
+    public long getAcksSent() { return acksSent.sum(); } // Packets
+    public long getSpfRuns() { return spfRuns.sum(); }
+    public long getSpfVisited() { return spfVisited.sum(); } // Routers settled by all SPF runs together
+    public long getRouteChanges() { return routeChanges.sum(); }
+
+    // Simulated time from the last topology change to the last shortest path or route it changed
+    public long getConvergenceTime() {
+        return Math.max(0, lastUpdate.get() - changedAt);
+    }
+
+    public void resetStatistics() {
+        originated.reset();
+        received.reset();
+        updatesSent.reset();
+        acksSent.reset();
+        spfRuns.reset();
+        spfVisited.reset();
+        routeChanges.reset();
+    }
+
+    // --- Topology changes (called by the Network while it is stopped) ---
+
+    void deviceAdded(NetworkDevice device) {
+        if (!running || !(device instanceof Router)) return;
+        attach((Router) device);
+        ((Router) device).linkState.requestOriginate();
+    }
+
+    void deviceRemoved(NetworkDevice device) {
+        if (device instanceof Router) ((Router) device).linkState = null;
+    }
+
+    // A link between the two came or went, or changed its bandwidth
+    void linkChanged(NetworkDevice a, NetworkDevice b) {
+        if (!running) return;
+        changedAt = network.getEngine().now();
+        if (a.network == network) reoriginateAround(a);
+        if (b.network == network) reoriginateAround(b);
+    }
+
+    // The PC's address or mask changed, so the prefixes its routers advertise may have
+    void addressChanged(PC pc) {
+        if (!running || pc.network != network) return;
+        changedAt = network.getEngine().now();
+        reoriginateAround(pc);
+    }
+
+    // The router itself, or every router bordering the switched segment the device is on
+    private void reoriginateAround(NetworkDevice device) {
+        if (device instanceof Router) {
+            LinkStateRouter instance = ((Router) device).linkState;
+            if (instance != null) instance.requestOriginate();
+            return;
+        }
+        TopologyGraph graph = network.getGraph();
+        BitSet seen = new BitSet();
+        ArrayDeque<NetworkDevice> queue = new ArrayDeque<>();
+        seen.set(device.index);
+        queue.add(device);
+        while (!queue.isEmpty()) {
+            NetworkDevice at = queue.poll();
+            for (int i = 0, d = graph.degree(at.index); i < d; i++) {
+                int v = graph.neighbour(at.index, i);
+                if (seen.get(v)) continue;
+                seen.set(v);
+                NetworkDevice next = network.getDeviceByIndex(v);
+                if (next instanceof Router) {
+                    LinkStateRouter instance = ((Router) next).linkState;
+                    if (instance != null) instance.requestOriginate();
+                } else {
+                    queue.add(next);
+                }
+            }
+        }
+    }
+
+    // --- Shared state (called by LinkStateRouter) ---
+
+    private void attach(Router router) {
+        int slot = slots.get(router.getId());
+        if (slot < 0) {
+            slot = slotCount;
+            slots.put(router.getId(), slot);
+            if (slot == routers.length) routers = Arrays.copyOf(routers, slot * 2);
+            routers[slot] = router;
+            if (slot == latest.length()) {
+                AtomicReferenceArray<LinkStateAdvertisement> grown = new AtomicReferenceArray<>(slot * 2);
+                for (int i = 0; i < slot; i++) {
+                    grown.set(i, latest.get(i));
+                }
+                latest = grown;
+            }
+            slotCount = slot + 1;
+        }
+        router.linkState = new LinkStateRouter(this, network, router, slot);
+    }
+
+    int slotOf(int routerId) {
+        return slots.get(routerId);
+    }
+
+    Router router(int slot) {
+        return routers[slot];
+    }
+
+    int slotCount() {
+        return slotCount;
+    }
+
+    // The advertisement at the offset, decoded once however many routers receive that version
+    LinkStateAdvertisement intern(Packet packet, int offset, int slot) {
+        int sequence = LinkStateAdvertisement.sequence(packet, offset);
+        LinkStateAdvertisement current = latest.get(slot);
+        if (current != null && current.sequence == sequence) return current;
+        LinkStateAdvertisement decoded = LinkStateAdvertisement.read(packet, offset, slot, this);
+        while (current == null || current.sequence < sequence) {
+            if (latest.compareAndSet(slot, current, decoded)) break;
+            current = latest.get(slot);
+        }
+        return decoded;
+    }
+
+    // A router put out a new advertisement (replacing previous, which may be null)
+    void originated(LinkStateAdvertisement advertisement, LinkStateAdvertisement previous) {
+        latest.set(advertisement.slot, advertisement);
+        originated.increment();
+        if (previous != null) {
+            for (long key : previous.prefixes) {
+                if (advertisement.prefixCost(key) < 0) {
+                    advertisers.computeIfPresent(key, (k, slots) -> without(slots, advertisement.slot));
+                }
+            }
+        }
+        for (long key : advertisement.prefixes) {
+            if (previous == null || previous.prefixCost(key) < 0) {
+                advertisers.merge(key, new int[]{advertisement.slot}, LinkStateRouting::with);
+            }
+        }
+    }
+
+    // Routers that advertise the prefix (or did, by the last advertisement they put out)
+    int[] advertisers(long key) {
+        return advertisers.getOrDefault(key, NONE);
+    }
+
+    private static int[] with(int[] slots, int[] added) {
+        for (int slot : slots) {
+            if (slot == added[0]) return slots;
+        }
+        int[] grown = Arrays.copyOf(slots, slots.length + 1);
+        grown[slots.length] = added[0];
+        return grown;
+    }
+
+    private static int[] without(int[] slots, int removed) {
+        int[] kept = new int[slots.length];
+        int count = 0;
+        for (int slot : slots) {
+            if (slot != removed) kept[count++] = slot;
+        }
+        return count == 0 ? null : Arrays.copyOf(kept, count);
+    }
+
+    static int cost(Connection connection) {
+        return (int) Math.max(1, Math.min(MAX_COST, REFERENCE_BANDWIDTH / connection.getBandwidth()));
+    }
+
+    // Counters and the convergence clock, from the routers
+    void received() { received.increment(); }
+    void updateSent() { updatesSent.increment(); }
+    void ackSent() { acksSent.increment(); }
+
+    void spfRun(long visited, boolean changed, long now) {
+        spfRuns.increment();
+        spfVisited.add(visited);
+        if (changed) lastUpdate.accumulateAndGet(now, Math::max);
+    }
+
+    void routeChanged(long now) {
+        routeChanges.increment();
+        lastUpdate.accumulateAndGet(now, Math::max);
+    }
+}
@@ -0,0 +1,99 @@
+package org.example.network_simulator;
+
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+
+// Structured, level-gated logging: one line per event, "time LEVEL event key=value ...".
+// The level is fixed at startup with -Dlog.level=debug|info|warn|error|off (default info).
+// The DEBUG/INFO/WARN flags are constants, so a guarded call compiles away when its level is off:
+//     if (Log.DEBUG) Log.debug("frame.dropped", "device", this, "reason", "ttl");
+// Unguarded calls still skip formatting but build their varargs array; keep those off hot paths.
+public final class Log {
+
+    private static final int LEVEL_DEBUG = 0, LEVEL_INFO = 1, LEVEL_WARN = 2, LEVEL_ERROR = 3;
+    private static final int LEVEL = parseLevel(System.getProperty("log.level", "info"));
+
+    public static final boolean DEBUG = LEVEL <= LEVEL_DEBUG;
+    public static final boolean INFO = LEVEL <= LEVEL_INFO;
+    public static final boolean WARN = LEVEL <= LEVEL_WARN;
+    public static final boolean ERROR = LEVEL <= LEVEL_ERROR;
+
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("HH:mm:ss.SSS");
+
+    private Log() {
+    }
+
+    // fields are alternating keys and values
+    public static void debug(String event, Object... fields) {
+        if (DEBUG) write("DEBUG", event, fields, null);
+    }
+
+    public static void info(String event, Object... fields) {
+        if (INFO) write("INFO", event, fields, null);
+    }
+
+    public static void warn(String event, Object... fields) {
+        if (WARN) write("WARN", event, fields, null);
+    }
+
+    public static void warn(String event, Throwable error, Object... fields) {
+        if (WARN) write("WARN", event, fields, error);
+    }
+
+    public static void error(String event, Throwable error, Object... fields) {
+        if (ERROR) write("ERROR", event, fields, error);
+    }
+
+    private static void write(String level, String event, Object[] fields, Throwable error) {
+        StringBuilder line = new StringBuilder(64);
+        line.append(LocalTime.now().format(TIME)).append(' ').append(level).append(' ').append(event);
+        for (int i = 0; i + 1 < fields.length; i += 2) {
+            line.append(' ').append(fields[i]).append('=');
+            appendValue(line, String.valueOf(fields[i + 1]));
+        }
+        if (error != null) {
+            line.append(" error=");
+            appendValue(line, String.valueOf(error.getMessage()));
+        }
+        if (level.equals("WARN") || level.equals("ERROR")) {
+            System.err.println(line);
+            if (error != null && level.equals("ERROR")) error.printStackTrace();
+        } else {
+            System.out.println(line);
+        }
+    }
+
+    // Quote values with spaces or quotes so every line splits cleanly into key=value pairs
+    private static void appendValue(StringBuilder line, String value) {
+        boolean quote = value.isEmpty() || value.indexOf(' ') >= 0 || value.indexOf('"') >= 0 || value.indexOf('=') >= 0;
+        if (!quote) {
+            line.append(value);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') line.append('\\');
+            line.append(c == '\n' ? ' ' : c);
+        }
+        line.append('"');
+    }
+
+    private static int parseLevel(String name) {
+        switch (name.trim().toLowerCase()) {
+            case "debug":
+            case "trace":
+                return LEVEL_DEBUG;
+            case "warn":
+            case "warning":
+                return LEVEL_WARN;
+            case "error":
+                return LEVEL_ERROR;
+            case "off":
+            case "none":
+                return LEVEL_ERROR + 1;
+            default:
+                return LEVEL_INFO;
+        }
+    }
+}
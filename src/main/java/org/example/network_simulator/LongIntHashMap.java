@@ -0,0 +1,133 @@
+package org.example.network_simulator;
+
+import java.util.Arrays;
+
+// Open-addressing long -> int map with linear probing. No boxing, no per-entry objects.
+// Used for the hot lookups where a HashMap would allocate on every get.
+public class LongIntHashMap {
+
+    private static final long EMPTY = Long.MIN_VALUE; // Reserved key
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private final int missingValue;
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+    private int resizeAt;
+
+    public LongIntHashMap(int expectedSize, int missingValue) {
+        this.missingValue = missingValue;
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    public LongIntHashMap() {
+        this(16, -1);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new int[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int get(long key) {
+        int slot = mix(key) & mask;
+        while (true) {
+            long k = keys[slot];
+            if (k == key) return values[slot];
+            if (k == EMPTY) return missingValue;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public boolean containsKey(long key) {
+        return indexOf(key) >= 0;
+    }
+
+    // Returns the previous value, or the missing value if the key was new
+    public int put(long key, int value) {
+        if (key == EMPTY) throw new IllegalArgumentException("Reserved key");
+        int slot = mix(key) & mask;
+        while (true) {
+            long k = keys[slot];
+            if (k == key) {
+                int old = values[slot];
+                values[slot] = value;
+                return old;
+            }
+            if (k == EMPTY) {
+                keys[slot] = key;
+                values[slot] = value;
+                if (++size > resizeAt) rehash();
+                return missingValue;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    // Returns the removed value, or the missing value if absent
+    public int remove(long key) {
+        int slot = indexOf(key);
+        if (slot < 0) return missingValue;
+        int old = values[slot];
+        // Backward-shift deletion keeps probe chains intact without tombstones
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (keys[next] != EMPTY) {
+            int home = mix(keys[next]) & mask;
+            // Move the entry back if the hole lies between its home slot and its current slot
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = EMPTY;
+        size--;
+        return old;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    private int indexOf(long key) {
+        int slot = mix(key) & mask;
+        while (true) {
+            long k = keys[slot];
+            if (k == key) return slot;
+            if (k == EMPTY) return -1;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(keys.length << 1);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) put(oldKeys[i], oldValues[i]);
+        }
+    }
+
+    // Murmur3 finalizer - spreads sequential ids across the table
+    static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
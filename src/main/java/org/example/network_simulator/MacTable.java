@@ -0,0 +1,164 @@
+package org.example.network_simulator;
+
+import java.util.Arrays;
+
+// Learned MAC address -> port table for a Switch.
+// Open addressing over parallel primitive arrays (about 16 bytes per slot), with aging done
+// lazily: a lookup that finds an expired entry drops it, and every learn also sweeps a couple
+// of slots so idle entries get reclaimed without ever scanning the whole table.
+public final class MacTable {
+
+    public static final int UNKNOWN = -1;
+    public static final long DEFAULT_AGING_TIME = 300 * SimulationEngine.NANOS_PER_SECOND;
+
+    private static final long EMPTY = 0L; // Not a valid unicast MAC in this simulator
+    private static final float LOAD_FACTOR = 0.5f;
+    private static final int SWEEP_PER_LEARN = 2;
+
+    private long[] macs;
+    private int[] ports;
+    private int[] lastSeen; // Simulated milliseconds, compared with wrap-safe subtraction
+    private int size;
+    private int mask;
+    private int resizeAt;
+    private int sweepCursor;
+    private int agingMillis;
+
+    public MacTable(int expectedEntries, long agingTimeNanos) {
+        int capacity = Integer.highestOneBit(Math.max(8, (int) (expectedEntries / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+        setAgingTime(agingTimeNanos);
+    }
+
+    public MacTable() {
+        this(64, DEFAULT_AGING_TIME);
+    }
+
+    public void setAgingTime(long agingTimeNanos) {
+        this.agingMillis = (int) Math.min(Integer.MAX_VALUE, agingTimeNanos / SimulationEngine.NANOS_PER_MILLI);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Record that the address was seen on a port
+    public void learn(long mac, int port, long nowNanos) {
+        if (mac == EMPTY) return;
+        int now = toMillis(nowNanos);
+        sweep(now);
+        int slot = LongIntHashMap.mix(mac) & mask;
+        while (true) {
+            long k = macs[slot];
+            if (k == mac) {
+                ports[slot] = port;
+                lastSeen[slot] = now;
+                return;
+            }
+            if (k == EMPTY) {
+                macs[slot] = mac;
+                ports[slot] = port;
+                lastSeen[slot] = now;
+                if (++size > resizeAt) rehash();
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    // Port the address was last seen on, or UNKNOWN if never learned or aged out
+    public int lookup(long mac, long nowNanos) {
+        int slot = LongIntHashMap.mix(mac) & mask;
+        while (true) {
+            long k = macs[slot];
+            if (k == mac) {
+                if (expired(slot, toMillis(nowNanos))) {
+                    removeAt(slot);
+                    return UNKNOWN;
+                }
+                return ports[slot];
+            }
+            if (k == EMPTY) return UNKNOWN;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public void forget(long mac) {
+        int slot = LongIntHashMap.mix(mac) & mask;
+        while (macs[slot] != EMPTY) {
+            if (macs[slot] == mac) {
+                removeAt(slot);
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(macs, EMPTY);
+        size = 0;
+    }
+
+    // --- Internals ---
+
+    private boolean expired(int slot, int now) {
+        return now - lastSeen[slot] > agingMillis;
+    }
+
+    // Incremental aging: inspect a few slots per learn
+    private void sweep(int now) {
+        for (int i = 0; i < SWEEP_PER_LEARN; i++) {
+            int slot = sweepCursor;
+            if (macs[slot] != EMPTY && expired(slot, now)) {
+                removeAt(slot); // Backward shift may pull another entry into this slot; revisit it next time
+            } else {
+                sweepCursor = (slot + 1) & mask;
+            }
+        }
+    }
+
+    private void removeAt(int slot) {
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (macs[next] != EMPTY) {
+            int home = LongIntHashMap.mix(macs[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                macs[hole] = macs[next];
+                ports[hole] = ports[next];
+                lastSeen[hole] = lastSeen[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        macs[hole] = EMPTY;
+        size--;
+    }
+
+    private void allocate(int capacity) {
+        macs = new long[capacity];
+        ports = new int[capacity];
+        lastSeen = new int[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+        sweepCursor = 0;
+    }
+
+    private void rehash() {
+        long[] oldMacs = macs;
+        int[] oldPorts = ports;
+        int[] oldSeen = lastSeen;
+        allocate(macs.length << 1);
+        for (int i = 0; i < oldMacs.length; i++) {
+            if (oldMacs[i] == EMPTY) continue;
+            int slot = LongIntHashMap.mix(oldMacs[i]) & mask;
+            while (macs[slot] != EMPTY) slot = (slot + 1) & mask;
+            macs[slot] = oldMacs[i];
+            ports[slot] = oldPorts[i];
+            lastSeen[slot] = oldSeen[i];
+        }
+    }
+
+    private static int toMillis(long nanos) {
+        return (int) (nanos / SimulationEngine.NANOS_PER_MILLI);
+    }
+}
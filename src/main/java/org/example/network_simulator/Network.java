@@ -0,0 +1,941 @@
+package org.example.network_simulator;
+
+import javafx.scene.shape.Line;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// Headless network model: devices, connections and the simulation engine that drives them.
+// NetworkController owns one of these and only renders it / subscribes to its results.
+public final class Network {
+
+    public static final long DEFAULT_SEED = 42L;
+
+    // Most routers a packet can pass before its TTL runs out; a longer route is a routing loop
+    private static final int MAX_ROUTED_HOPS = 255;
+
+    private final long seed;
+    private SimulationPartition[] partitions;
+    private ParallelRunner parallelRunner; // Only when split into several partitions
+    private ActorRuntime actors; // Only while running in actor mode
+    private volatile boolean running = false;
+
+    // Model Data
+    private final List<NetworkDevice> devices = new ArrayList<>();
+    private final TopologyGraph graph = new TopologyGraph();
+    private final ConnectivityIndex connectivity = new ConnectivityIndex(graph);
+    private final DeviceDirectory directory = new DeviceDirectory(this);
+    private NetworkDevice[] deviceByIndex = new NetworkDevice[16];
+    private Connection[] connectionByEdge = new Connection[16];
+    private volatile BroadcastDomains domains; // Rebuilt when the graph's version moves on
+    private volatile ChatLine lastChat; // The latest chat broadcast as shown to recipients
+
+    // Listeners may be called from simulation worker threads during parallel runs
+    private final List<SimulationListener> listeners = new CopyOnWriteArrayList<>();
+    private final NetworkMetrics metrics = new NetworkMetrics(this);
+    private volatile TraceLog trace; // Null unless tracing
+    private FlowModel flowModel; // Created on first use
+    private LinkStateRouting linkStateRouting; // Created on first use
+
+    public Network() {
+        this(DEFAULT_SEED);
+    }
+
+    public Network(long seed) {
+        this.seed = seed;
+        this.partitions = new SimulationPartition[]{new SimulationPartition(this, 0, 1)};
+    }
+
+    // The engine of the first partition; the only one unless the network is partitioned
+    public SimulationEngine getEngine() {
+        return partitions[0].engine;
+    }
+
+    SimulationEngine engine(int partition) {
+        return partitions[partition].engine;
+    }
+
+    public NetworkMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Link-state routing between the routers (see LinkStateRouting); not running until started
+    public LinkStateRouting getLinkStateRouting() {
+        if (linkStateRouting == null) linkStateRouting = new LinkStateRouting(this);
+        return linkStateRouting;
+    }
+
+    // Flow-level traffic over this topology, with its own clock (see FlowModel)
+    public FlowModel getFlowModel() {
+        if (flowModel == null) flowModel = new FlowModel(this);
+        return flowModel;
+    }
+
+    // Engine that owns the device's events (its clock is the device's notion of "now")
+    public SimulationEngine engineFor(NetworkDevice device) {
+        return partitions[device.partition].engine;
+    }
+
+    public PacketPool packetPoolFor(NetworkDevice device) {
+        ActorRuntime runtime = actors;
+        return runtime != null ? runtime.packetPool : partitions[device.partition].packetPool;
+    }
+
+    // The device's current time: simulated, or real time since the actors started in actor mode
+    public long now(NetworkDevice device) {
+        ActorRuntime runtime = actors;
+        return runtime != null ? runtime.now() : engineFor(device).now();
+    }
+
+    public void addListener(SimulationListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(SimulationListener listener) {
+        listeners.remove(listener);
+    }
+
+    // --- Topology ---
+
+    public void addDevice(NetworkDevice device) {
+        checkNotRunning();
+        if (device.index >= 0) {
+            throw new IllegalStateException(device + " already belongs to a network");
+        }
+        int v = graph.addVertex();
+        if (v >= deviceByIndex.length) {
+            deviceByIndex = Arrays.copyOf(deviceByIndex, Math.max(v + 1, deviceByIndex.length * 2));
+        }
+        deviceByIndex[v] = device;
+        device.index = v;
+        device.network = this;
+        device.partition = 0;
+        device.seedRandom(seed);
+        devices.add(device);
+        connectivity.vertexAdded(v);
+        directory.add(device);
+        metrics.deviceAdded(v);
+        TraceLog t = trace;
+        if (t != null) t.deviceAdded(getEngine().now(), device);
+        LinkStateRouting routing = linkStateRouting;
+        if (routing != null) routing.deviceAdded(device);
+    }
+
+    // Removes the device together with all of its connections (lines are unbound)
+    public void removeDevice(NetworkDevice device) {
+        checkNotRunning();
+        if (!contains(device)) return;
+        detach(device);
+        devices.remove(device);
+    }
+
+    // Removes every device and connection, e.g. before loading another topology
+    public void clear() {
+        checkNotRunning();
+        for (NetworkDevice device : devices) {
+            detach(device);
+        }
+        devices.clear(); // One clear instead of an O(n) list removal per device
+    }
+
+    private void detach(NetworkDevice device) {
+        int v = device.index;
+        while (graph.degree(v) > 0) {
+            disconnect(connectionByEdge[graph.incidentEdge(v, 0)]);
+        }
+        TraceLog t = trace;
+        if (t != null) t.deviceRemoved(getEngine().now(), device);
+        directory.remove(device);
+        LinkStateRouting routing = linkStateRouting;
+        if (routing != null) routing.deviceRemoved(device);
+        graph.removeVertex(v);
+        connectivity.vertexRemoved(v);
+        deviceByIndex[v] = null;
+        device.index = -1;
+        device.network = null;
+    }
+
+    public boolean contains(NetworkDevice device) {
+        int v = device.index;
+        return v >= 0 && v < deviceByIndex.length && deviceByIndex[v] == device;
+    }
+
+    public List<NetworkDevice> getDevices() {
+        return Collections.unmodifiableList(devices);
+    }
+
+    public NetworkDevice getDeviceByIndex(int index) {
+        return deviceByIndex[index];
+    }
+
+    public TopologyGraph getGraph() {
+        return graph;
+    }
+
+    // Snapshot of the live connections, in edge id order
+    public List<Connection> getConnections() {
+        List<Connection> result = new ArrayList<>(graph.edgeCount());
+        for (int e = 0; e < graph.edgeLimit(); e++) {
+            if (connectionByEdge[e] != null) result.add(connectionByEdge[e]);
+        }
+        return result;
+    }
+
+    // Connections touching a single device
+    public List<Connection> getConnections(NetworkDevice device) {
+        if (!contains(device)) return List.of();
+        int v = device.index;
+        List<Connection> result = new ArrayList<>(graph.degree(v));
+        for (int i = 0; i < graph.degree(v); i++) {
+            result.add(connectionByEdge[graph.incidentEdge(v, i)]);
+        }
+        return result;
+    }
+
+    public Connection getConnection(NetworkDevice a, NetworkDevice b) {
+        if (!contains(a) || !contains(b) || a == b) return null;
+        int e = graph.edgeId(a.index, b.index);
+        return e < 0 ? null : connectionByEdge[e];
+    }
+
+    public Connection getConnectionByEdge(int edgeId) {
+        return connectionByEdge[edgeId];
+    }
+
+    // Link parameters changed (see Connection.configure)
+    void linkConfigured(Connection connection) {
+        TraceLog t = trace;
+        if (t != null) t.linkConfigured(getEngine().now(), connection);
+        FlowModel flows = flowModel;
+        if (flows != null) flows.linkChanged(connection);
+        LinkStateRouting routing = linkStateRouting;
+        if (routing != null) routing.linkChanged(connection.getDevice1(), connection.getDevice2());
+    }
+
+    public boolean areConnected(NetworkDevice a, NetworkDevice b) {
+        return contains(a) && contains(b) && a != b && graph.hasEdge(a.index, b.index);
+    }
+
+    // True if a path of any length (through switches and routers) joins the two devices
+    public boolean isReachable(NetworkDevice a, NetworkDevice b) {
+        return contains(a) && contains(b) && connectivity.connected(a.index, b.index);
+    }
+
+    public ConnectivityIndex getConnectivity() {
+        return connectivity;
+    }
+
+    // Connect two devices. Returns null if they are already connected.
+    public Connection connect(NetworkDevice a, NetworkDevice b, Line line) {
+        checkNotRunning();
+        if (!contains(a) || !contains(b)) {
+            throw new IllegalArgumentException("Both devices must be added before connecting them");
+        }
+        if (a == b) {
+            return null;
+        }
+        int e = graph.addEdge(a.index, b.index);
+        if (e < 0) {
+            return null;
+        }
+        connectivity.edgeAdded(a.index, b.index);
+        Connection connection = new Connection(a, b, line);
+        connection.edgeId = e;
+        connection.network = this;
+        if (e >= connectionByEdge.length) {
+            connectionByEdge = Arrays.copyOf(connectionByEdge, Math.max(e + 1, connectionByEdge.length * 2));
+        }
+        connectionByEdge[e] = connection;
+        metrics.linkAdded(e);
+        TraceLog t = trace;
+        if (t != null) t.linkChanged(getEngine().now(), true, a, b);
+        LinkStateRouting routing = linkStateRouting;
+        if (routing != null) routing.linkChanged(a, b);
+        return connection;
+    }
+
+    public Connection connect(NetworkDevice a, NetworkDevice b) {
+        return connect(a, b, null);
+    }
+
+    public void disconnect(Connection connection) {
+        checkNotRunning();
+        int e = connection.edgeId;
+        if (e < 0 || connectionByEdge[e] != connection) return;
+        graph.removeEdge(connection.getDevice1().index, connection.getDevice2().index);
+        connectivity.edgeRemoved(connection.getDevice1().index, connection.getDevice2().index);
+        connectionByEdge[e] = null;
+        connection.edgeId = -1;
+        connection.network = null;
+        connection.flushQueues(); // Frames waiting to go out on it are lost
+        connection.unbind();
+        FlowModel flows = flowModel;
+        if (flows != null) flows.linkRemoved(e);
+        LinkStateRouting routing = linkStateRouting;
+        if (routing != null) routing.linkChanged(connection.getDevice1(), connection.getDevice2());
+        TraceLog t = trace;
+        if (t != null) t.linkChanged(getEngine().now(), false, connection.getDevice1(), connection.getDevice2());
+    }
+
+    // --- Helper Method to Find Device by Identifier (Name or IP) ---
+    public Optional<NetworkDevice> findDeviceByIdentifier(String identifier) {
+        return Optional.ofNullable(resolveDevice(identifier));
+    }
+
+    // Name (case-insensitive, e.g. "pc1", "Switch2") or PC IP address; null if unknown.
+    // Served from hash indexes, so this is O(1) and does not allocate.
+    public NetworkDevice resolveDevice(String identifier) {
+        return directory.resolve(identifier);
+    }
+
+    public NetworkDevice findDeviceByMac(long mac) {
+        return directory.resolveMac(mac);
+    }
+
+    // PC currently holding the packed IPv4 address, or null
+    public PC findPcByAddress(int address) {
+        return directory.resolveAddress(address);
+    }
+
+    void addressChanged(PC pc, String oldAddress, String newAddress) {
+        directory.addressChanged(pc, oldAddress, newAddress);
+        subnetMaskChanged(pc);
+    }
+
+    void subnetMaskChanged(PC pc) {
+        TraceLog t = trace;
+        if (t != null) t.addressChanged(now(pc), pc);
+        LinkStateRouting routing = linkStateRouting;
+        if (routing != null) routing.addressChanged(pc);
+    }
+
+    // Move a device on screen; positions don't affect the simulation, so this is allowed while running
+    public void moveDevice(NetworkDevice device, double x, double y) {
+        device.setXPosition(x);
+        device.setYPosition(y);
+        TraceLog t = trace;
+        if (t != null && contains(device)) t.deviceMoved(now(device), device);
+    }
+
+    // --- Running ---
+
+    // Drain the event queues as fast as possible
+    public void run() {
+        runUntil(Long.MAX_VALUE);
+    }
+
+    // Process every event up to and including the given simulated time
+    public void runUntil(long timeNanos) {
+        checkNotRunning();
+        running = true;
+        try {
+            if (parallelRunner == null) {
+                if (timeNanos == Long.MAX_VALUE) {
+                    partitions[0].engine.runUntilIdle(); // Leave the clock at the last event
+                } else {
+                    partitions[0].engine.runUntil(timeNanos);
+                }
+            } else {
+                connectivity.prepareForConcurrentReads();
+                parallelRunner.runUntil(timeNanos, getLookahead());
+            }
+        } finally {
+            running = false;
+        }
+    }
+
+    // Run the events due in the next sliceNanos of simulated time, counted from the earliest pending
+    // one, so a long run can be interleaved with other work (see SimulationDriver). Like run(), a
+    // sequential network leaves its clock at the last event. Returns false once nothing is pending.
+    public boolean runSlice(long sliceNanos) {
+        long next = nextEventTime();
+        if (next == Long.MAX_VALUE) return false;
+        long until = next > Long.MAX_VALUE - sliceNanos ? Long.MAX_VALUE : next + sliceNanos;
+        checkNotRunning();
+        running = true;
+        try {
+            if (parallelRunner == null) {
+                SimulationEngine engine = partitions[0].engine;
+                while (engine.nextEventTime() <= until) {
+                    engine.step();
+                }
+            } else {
+                connectivity.prepareForConcurrentReads();
+                parallelRunner.runUntil(until, getLookahead());
+            }
+        } finally {
+            running = false;
+        }
+        return nextEventTime() != Long.MAX_VALUE;
+    }
+
+    // Time of the earliest pending event in any partition, or Long.MAX_VALUE if there is none
+    public long nextEventTime() {
+        long next = Long.MAX_VALUE;
+        for (SimulationPartition partition : partitions) {
+            next = Math.min(next, partition.engine.nextEventTime());
+        }
+        return next;
+    }
+
+    // Split the devices into this many partitions, each simulated by its own worker thread.
+    // Results are identical to a single-partition run with the same seed. Only allowed while idle;
+    // partition(1) returns to sequential mode.
+    public void partition(int count) {
+        checkNotRunning();
+        if (count < 1) throw new IllegalArgumentException("Partition count must be positive: " + count);
+        for (SimulationPartition partition : partitions) {
+            if (!partition.engine.isIdle()) {
+                throw new IllegalStateException("Cannot repartition while events are pending");
+            }
+        }
+        long now = getEngine().now();
+        if (parallelRunner != null) {
+            parallelRunner.close();
+            parallelRunner = null;
+        }
+        int[] assignment = count == 1 ? null : TopologyPartitioner.partition(graph, count);
+        partitions = new SimulationPartition[count];
+        for (int i = 0; i < count; i++) {
+            partitions[i] = new SimulationPartition(this, i, count);
+            partitions[i].engine.runUntil(now); // Carry the clock over
+        }
+        for (NetworkDevice device : devices) {
+            device.partition = assignment == null ? 0 : assignment[device.index];
+        }
+        if (count > 1) {
+            parallelRunner = new ParallelRunner(partitions);
+        }
+    }
+
+    public int getPartitionCount() {
+        return partitions.length;
+    }
+
+    // Smallest delay any delivery between devices can have (the shortest link delay);
+    // the safe window size for parallel runs
+    public long getLookahead() {
+        long lookahead = Long.MAX_VALUE;
+        for (int e = 0; e < graph.edgeLimit(); e++) {
+            if (connectionByEdge[e] != null) lookahead = Math.min(lookahead, connectionByEdge[e].getDelay());
+        }
+        return lookahead == Long.MAX_VALUE ? Connection.DEFAULT_DELAY : lookahead;
+    }
+
+    // --- Tracing ---
+
+    // Record everything from now on into a trace in this directory (see TraceLog). The trace
+    // opens with the current topology, so it can be replayed on its own. Only allowed while idle.
+    public TraceLog startTrace(Path directory) throws IOException {
+        checkNotRunning();
+        for (SimulationPartition partition : partitions) {
+            if (!partition.engine.isIdle()) {
+                throw new IllegalStateException("Cannot start a trace while events are pending");
+            }
+        }
+        stopTrace();
+        TraceLog t = new TraceLog(directory);
+        long now = getEngine().now();
+        t.start(now, seed);
+        for (NetworkDevice device : devices) {
+            t.deviceAdded(now, device);
+        }
+        for (Connection connection : getConnections()) {
+            t.linkChanged(now, true, connection.getDevice1(), connection.getDevice2());
+            if (!connection.hasDefaultSettings()) t.linkConfigured(now, connection);
+        }
+        trace = t;
+        return t;
+    }
+
+    // Stop recording and close the trace (flushing it and writing its index)
+    public void stopTrace() throws IOException {
+        TraceLog t = trace;
+        if (t == null) return;
+        trace = null;
+        t.close();
+    }
+
+    public TraceLog getTrace() {
+        return trace;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    // --- Actor mode ---
+
+    // Switch to actor mode: every device runs on its own virtual thread with a bounded mailbox and
+    // the network runs in real time, with no run() calls. Commands and chat messages are
+    // posted to the PC's actor. The topology is frozen until stopActors().
+    public ActorRuntime startActors(int mailboxCapacity) {
+        checkNotRunning();
+        for (SimulationPartition partition : partitions) {
+            if (!partition.engine.isIdle()) {
+                throw new IllegalStateException("Cannot start actors while events are pending");
+            }
+        }
+        connectivity.prepareForConcurrentReads();
+        resetLinks(); // Link queues keep time on the engine's clock, actors on the real one
+        running = true;
+        actors = new ActorRuntime(this, mailboxCapacity, ActorRuntime.DEFAULT_SEND_TIMEOUT);
+        return actors;
+    }
+
+    public ActorRuntime startActors() {
+        return startActors(ActorRuntime.DEFAULT_MAILBOX_CAPACITY);
+    }
+
+    // Stop the actors and return to the event engine. Frames still in flight are dropped.
+    public void stopActors() {
+        if (actors == null) return;
+        actors.close();
+        actors = null;
+        resetLinks();
+        running = false;
+    }
+
+    private void resetLinks() {
+        for (int e = 0; e < graph.edgeLimit(); e++) {
+            if (connectionByEdge[e] != null) connectionByEdge[e].flushQueues();
+        }
+    }
+
+    public ActorRuntime getActors() {
+        return actors;
+    }
+
+    void checkNotRunning() {
+        if (running) throw new IllegalStateException("The network cannot be changed while it is running");
+    }
+
+    // Schedule a device-owned event on that device's engine
+    void schedule(NetworkDevice owner, long delayNanos, SimulationEvent event) {
+        ActorRuntime runtime = actors;
+        if (runtime != null) {
+            runtime.schedule(owner, delayNanos, event);
+            return;
+        }
+        SimulationEngine engine = engineFor(owner);
+        engine.scheduleAt(engine.now() + delayNanos, owner.nextEventKey(), event);
+    }
+
+    void scheduleAt(NetworkDevice owner, long timeNanos, SimulationEvent event) {
+        ActorRuntime runtime = actors;
+        if (runtime != null) {
+            runtime.schedule(owner, Math.max(0, timeNanos - runtime.now()), event);
+            return;
+        }
+        engineFor(owner).scheduleAt(timeNanos, owner.nextEventKey(), event);
+    }
+
+    // --- Commands (scheduled as events at the current simulated time) ---
+
+    // A line typed at the PC's terminal: ipconfig, ping or iperf, or else a chat message.
+    // A malformed command gets an error in the PC's output instead.
+    public void executeInput(PC pc, String input) {
+        String[] parts = input.trim().split("\\s+", 2); // Split into command and the rest
+        String command = parts[0].toLowerCase(); // Case-insensitive command
+        String rest = parts.length == 2 ? parts[1].trim() : "";
+        switch (command) {
+            case "ipconfig":
+                if (rest.isEmpty()) {
+                    executeCommand(pc, command, new String[]{});
+                } else {
+                    output(pc, "Error: 'ipconfig' does not take arguments.");
+                }
+                break;
+            case "ping":
+                if (!rest.isEmpty()) {
+                    executeCommand(pc, command, new String[]{rest});
+                } else {
+                    output(pc, "Error: 'ping' requires a target destination (e.g., ping PC2 or ping 192.168.1.101).");
+                }
+                break;
+            case "iperf":
+                // e.g. "iperf PC2 -u -b 20M -t 10 -P 4"; the test reports as it runs
+                executeCommand(pc, command, rest.isEmpty() ? new String[]{} : rest.split("\\s+"));
+                break;
+            default:
+                sendMessage(pc, input.trim());
+                break;
+        }
+    }
+
+    public void executeCommand(PC sourcePc, String command, String[] args) {
+        TraceLog t = trace;
+        if (t != null) t.text(now(sourcePc), TraceLog.COMMAND, sourcePc, TraceReplay.joinCommand(command, args));
+        schedule(sourcePc, 0, () -> runCommand(sourcePc, command, args));
+    }
+
+    public void sendMessage(PC senderPc, String message) {
+        TraceLog t = trace;
+        if (t != null) t.text(now(senderPc), TraceLog.CHAT, senderPc, message);
+        schedule(senderPc, 0, () -> broadcastChat(senderPc, message));
+    }
+
+    private void runCommand(PC sourcePc, String command, String[] args) {
+        switch (command.toLowerCase()) {
+            case "ipconfig":
+                handleIpConfig(sourcePc);
+                break;
+            case "ping":
+                handlePing(sourcePc, args);
+                break;
+            case "iperf":
+                handleIperf(sourcePc, args);
+                break;
+            // Add more command cases here
+            default:
+                output(sourcePc, "Error: Unknown command '" + command + "'");
+                break;
+        }
+    }
+
+    private void handleIpConfig(PC pc) {
+        StringBuilder output = new StringBuilder();
+        output.append("\nEthernet adapter Local Area Connection:\n\n");
+        output.append("   IPv4 Address. . . . . . . . . . . : ").append(pc.getIpAddress()).append("\n");
+        output.append("   Subnet Mask . . . . . . . . . . . : ").append(pc.getSubnetMask()).append("\n");
+        output.append("\n");
+        output(pc, output.toString());
+    }
+
+    private void handlePing(PC sourcePc, String[] args) {
+        if (args.length < 1 || args[0].isEmpty()) {
+            output(sourcePc, "Usage: ping <target_identifier>");
+            return;
+        }
+        String targetIdentifier = args[0];
+        NetworkDevice target = resolveDevice(targetIdentifier);
+
+        // Reachable across any number of hops through switches and routers
+        boolean reachable = target != null && isReachable(sourcePc, target);
+
+        PingSession session = new PingSession(this, sourcePc.nextPingIdentifier++, sourcePc, target, targetIdentifier, reachable);
+        sourcePc.pingSessions.put(session.getIdentifier(), session);
+        session.start();
+    }
+
+    void pingFinished(PingSession session) {
+        session.getSource().pingSessions.remove(session.getIdentifier());
+    }
+
+    private void handleIperf(PC sourcePc, String[] args) {
+        TrafficSession session;
+        try {
+            session = TrafficSession.parse(this, sourcePc, args);
+        } catch (IllegalArgumentException e) {
+            output(sourcePc, "iperf: " + e.getMessage());
+            output(sourcePc, TrafficSession.USAGE);
+            return;
+        }
+        sourcePc.trafficSessions.put(session.getIdentifier(), session);
+        session.start();
+    }
+
+    void trafficFinished(TrafficSession session) {
+        session.getSource().trafficSessions.remove(session.getIdentifier());
+    }
+
+    // A traffic-test segment for this PC: acks and reports go to the session that sent the data,
+    // everything else to the receiving end, which starts with the first segment. Takes over the packet.
+    void receiveTraffic(PC pc, Packet packet) {
+        int kind = packet.trafficKind();
+        if (kind == TrafficSession.ACK || kind == TrafficSession.REPORT) {
+            TrafficSession session = pc.trafficSessions.get(packet.trafficSession());
+            if (session != null) session.onPacket(packet);
+            packet.release();
+            return;
+        }
+        NetworkDevice sender = originOf(packet);
+        if (sender == null) {
+            packet.release();
+            return;
+        }
+        long key = (sender.getMacAddress() << 16) | packet.trafficSession();
+        TrafficSession.Receiver receiver = pc.trafficReceivers.get(key);
+        if (receiver == null) {
+            if (kind == TrafficSession.FIN) {
+                packet.release();
+                return;
+            }
+            receiver = new TrafficSession.Receiver(sender);
+            pc.trafficReceivers.put(key, receiver);
+        }
+        if (!receiver.onPacket(this, pc, packet)) {
+            pc.trafficReceivers.remove(key);
+        }
+    }
+
+    // --- Communication Simulation (Chat) ---
+
+    private void broadcastChat(PC senderPc, String message) {
+        if (Log.DEBUG) Log.debug("chat.send", "from", senderPc, "text", message);
+        if (!contains(senderPc)) return;
+        // Every other PC in the sender's broadcast domain receives the message; they all share one packet
+        Packet packet = packetPoolFor(senderPc).acquire().writeChat(senderPc.getMacAddress(), Packet.BROADCAST_MAC,
+                senderPc.getAddress(), -1, message);
+        broadcast(senderPc, packet);
+    }
+
+    // --- Packet delivery ---
+
+    // Pool of the first partition; use packetPoolFor(device) when the network may be partitioned
+    public PacketPool getPacketPool() {
+        return partitions[0].packetPool;
+    }
+
+    // Flood a broadcast frame through the sender's broadcast domain: switches pass it on along their
+    // spanning tree, and PCs and routers keep it. The frame carries an id made of the sender's id and
+    // its own count of broadcasts, and a device that receives an id it has seen among its last few
+    // broadcasts (say a PC with a cable straight to the sender as well as a switch between them,
+    // while other floods are under way) drops the copy on arrival. Arrivals run in the engine's (time, key) order, so which copy wins doesn't depend
+    // on the partition threads. Every copy shares the one packet.
+    // Ownership of the packet reference passes to the network.
+    public void broadcast(NetworkDevice from, Packet packet) {
+        if (!contains(from)) {
+            packet.release();
+            return;
+        }
+        long id = ((long) from.getId() << 32) | (++from.broadcastCounter & 0xffffffffL);
+        from.seenBroadcast(id); // Copies that find their way back are dropped
+        packet.setBroadcastId(id);
+        if (Log.DEBUG) Log.debug("broadcast.sent", "from", from, "id", id);
+        if (from instanceof Switch sw) {
+            sw.forward(this, packet, null);
+            return;
+        }
+        BroadcastDomains domains = domains();
+        NetworkDevice pending = null; // Sent last so it can take over the caller's reference
+        for (int i = 0, d = graph.degree(from.index); i < d; i++) {
+            if (domains.blocked[graph.incidentEdge(from.index, i)]) continue;
+            if (pending != null) {
+                transmit(from, pending, packet.retain());
+            }
+            pending = deviceByIndex[graph.neighbour(from.index, i)];
+        }
+        if (pending != null) {
+            transmit(from, pending, packet);
+        } else {
+            packet.release();
+        }
+    }
+
+    // Send a packet from one device to a neighbour over their link: it waits in the link's
+    // transmit queue, takes the link's serialization time and arrives after its delay (see Connection).
+    // Ownership of the packet reference passes to the network. Packets in flight on a link
+    // that is removed before they arrive are lost.
+    public void transmit(NetworkDevice from, NetworkDevice to, Packet packet) {
+        Connection connection = getConnection(from, to);
+        if (connection == null) {
+            drop(from, to, packet);
+            return;
+        }
+        connection.queueFrom(from).offer(packet);
+    }
+
+    // Send a packet end to end across any number of hops. The sender only picks the first hop, the
+    // way a host would: straight to the destination if they share a broadcast domain, otherwise to
+    // its domain's gateway router (switches and routers use their own tables). From there every
+    // device on the way handles it in receiveFrame, switches by MAC table and routers by forwarding
+    // table, so its path, delay and loss come from the tables and links it meets. A packet nothing
+    // can carry on towards its destination is dropped where it gets stuck.
+    public void send(NetworkDevice from, NetworkDevice to, Packet packet) {
+        if (!isReachable(from, to)) {
+            drop(from, to, packet);
+            return;
+        }
+        if (from == to) {
+            launch(from, to, packet, -1, now(from)); // Loopback
+            return;
+        }
+        if (from instanceof Switch) {
+            ((Switch) from).forward(this, packet, null);
+            return;
+        }
+        BroadcastDomains domains = domains();
+        int port = domains.sharedPort(graph, from.index, to.index);
+        if (port >= 0) {
+            connectionByEdge[port].queueFrom(from).offer(packet);
+            return;
+        }
+        if (from instanceof Router) {
+            ((Router) from).route(this, packet);
+            return;
+        }
+        port = domains.gatewayPort(graph, from.index);
+        if (port < 0 || packet.destinationIp() == 0) {
+            drop(from, to, packet); // No router to hand it to, or nothing to route it by
+            return;
+        }
+        Packet routed = packet.exclusive();
+        routed.setDestinationMac(deviceByIndex[domains.gateway[domains.domainOfEdge[port]]].getMacAddress());
+        connectionByEdge[port].queueFrom(from).offer(routed);
+    }
+
+    // Device that sent the packet end to end: the PC holding its source address, since routers
+    // rewrite the source MAC on every hop, or else the device with its source MAC
+    NetworkDevice originOf(Packet packet) {
+        PC pc = packet.isIpv4() && packet.sourceIp() != 0 ? findPcByAddress(packet.sourceIp()) : null;
+        return pc != null ? pc : findDeviceByMac(packet.sourceMac());
+    }
+
+    // The broadcast domains of the current topology, built on first use after a change.
+    // Several partition threads may ask at once; only one builds them.
+    BroadcastDomains domains() {
+        BroadcastDomains current = domains;
+        return current != null && current.version == graph.version() ? current : buildDomains();
+    }
+
+    private synchronized BroadcastDomains buildDomains() {
+        BroadcastDomains current = domains;
+        if (current == null || current.version != graph.version()) domains = current = BroadcastDomains.build(this);
+        return current;
+    }
+
+    // Directed links (2 * edge id, plus 1 when crossed from device2 to device1) a unicast packet from
+    // source to target crosses, or null if it would not get there. Makes the same choices packets do:
+    // the first hop as in send, switches along their domain's tree (where their MAC tables point once
+    // learned) and routers by connected routes and then their forwarding tables.
+    int[] route(NetworkDevice source, NetworkDevice target) {
+        if (!isReachable(source, target)) return null;
+        BroadcastDomains domains = domains();
+        int address = target instanceof PC ? ((PC) target).getAddress() : 0;
+        int[] links = new int[8];
+        int size = 0;
+        NetworkDevice at = source;
+        for (int hops = 0; at != target; hops++) {
+            if (hops > MAX_ROUTED_HOPS) return null;
+            // The link out of at, and the device the frame on it is addressed to
+            int port = -1;
+            NetworkDevice to = target;
+            if (!(at instanceof Switch) && (port = domains.sharedPort(graph, at.index, target.index)) < 0) {
+                if (address == 0) return null;
+                if (at instanceof Router) {
+                    to = ((Router) at).nextHop(address);
+                    if (!(to instanceof Router)) return null;
+                    port = graph.edgeId(at.index, to.index);
+                } else {
+                    port = domains.gatewayPort(graph, at.index);
+                    if (port < 0) return null;
+                    to = deviceByIndex[domains.gateway[domains.domainOfEdge[port]]];
+                }
+            }
+            int s = at.index; // Where the frame is; a switch of the domain unless it has arrived
+            if (port >= 0) {
+                if (size == links.length) links = Arrays.copyOf(links, size * 2);
+                links[size++] = BroadcastDomains.link(graph, port, s);
+                s = graph.otherEnd(port, s);
+            }
+            if (s != to.index) {
+                int domain = domains.domainOfSwitch[s];
+                int last = -1, x = to.index; // The switch to is on, and its link from there
+                if (!(to instanceof Switch)) {
+                    last = domains.port(graph, to.index, domain);
+                    if (last < 0) return null;
+                    x = graph.otherEnd(last, to.index);
+                } else if (domains.domainOfSwitch[x] != domain) {
+                    return null;
+                }
+                int needed = size + domains.depth(s) + domains.depth(x) + 1;
+                if (needed > links.length) links = Arrays.copyOf(links, Math.max(needed, links.length * 2));
+                size = domains.treePath(graph, s, x, links, size);
+                if (last >= 0) links[size++] = BroadcastDomains.link(graph, last, x);
+            }
+            at = to;
+        }
+        return Arrays.copyOf(links, size);
+    }
+
+    // A frame leaves from's link (or loops back when edge is -1) and arrives at to at the given time.
+    // Called by the link's TransmitQueue on the sender's thread.
+    void launch(NetworkDevice from, NetworkDevice to, Packet packet, int edge, long arrival) {
+        metrics.frameSent(from, edge, packet.length());
+        TraceLog t = trace;
+        if (t != null) t.packet(now(from), TraceLog.PACKET_SENT, from, to, packet);
+        ActorRuntime runtime = actors;
+        if (runtime != null) {
+            runtime.post(from, to, packet, arrival - runtime.now());
+            return;
+        }
+        partitions[from.partition].deliver(arrival, from.nextEventKey(), from, to, packet);
+    }
+
+    // Count a lost frame against the device and let go of it
+    void drop(NetworkDevice device, NetworkDevice peer, Packet packet) {
+        drop(device, peer, packet, -1);
+    }
+
+    // The same, and against the link with this edge id when the frame was lost leaving by it (edge >= 0)
+    void drop(NetworkDevice device, NetworkDevice peer, Packet packet, int edge) {
+        if (edge >= 0) {
+            metrics.frameDropped(device, edge);
+        } else {
+            metrics.frameDropped(device);
+        }
+        TraceLog t = trace;
+        if (t != null) t.packet(now(device), TraceLog.PACKET_DROPPED, device, peer, packet);
+        packet.release();
+    }
+
+    // Called by a partition when a delivery event fires, or by the receiver's actor
+    void arrive(NetworkDevice from, NetworkDevice to, Packet packet) {
+        if (from != to && !areConnected(from, to)) {
+            drop(to, from, packet);
+            return;
+        }
+        metrics.frameReceived(to, packet.length());
+        TraceLog t = trace;
+        if (t != null) t.packet(now(to), TraceLog.PACKET_RECEIVED, to, from, packet);
+        long broadcastId = packet.broadcastId();
+        if (broadcastId != 0 && to.seenBroadcast(broadcastId)) {
+            packet.release(); // A copy that came another way
+            return;
+        }
+        to.receiveFrame(this, packet, from);
+    }
+
+    void handleEchoReply(PC receiver, Packet packet) {
+        PingSession session = receiver.pingSessions.get(packet.icmpIdentifier());
+        if (session != null && session.getSource() == receiver) {
+            session.onReply(packet);
+        }
+    }
+
+    void deliverChat(PC recipient, Packet packet) {
+        // A broadcast is formatted by its first recipient and shared with the rest
+        long broadcastId = packet.broadcastId();
+        ChatLine line = lastChat;
+        String formattedMessage;
+        if (broadcastId != 0 && line != null && line.broadcastId == broadcastId) {
+            formattedMessage = line.text;
+        } else {
+            NetworkDevice sender = findDeviceByMac(packet.sourceMac());
+            formattedMessage = "[" + (sender != null ? sender : Ipv4.format(packet.sourceIp())) + "]: " + packet.chatText();
+            if (broadcastId != 0) lastChat = new ChatLine(broadcastId, formattedMessage);
+        }
+        for (SimulationListener listener : listeners) {
+            listener.onChatMessage(recipient, formattedMessage);
+        }
+    }
+
+    private static final class ChatLine {
+        final long broadcastId;
+        final String text;
+
+        ChatLine(long broadcastId, String text) {
+            this.broadcastId = broadcastId;
+            this.text = text;
+        }
+    }
+
+    void output(PC pc, String text) {
+        for (SimulationListener listener : listeners) {
+            listener.onOutput(pc, text);
+        }
+    }
+}
@@ -1,24 +1,30 @@
 package org.example.network_simulator;
 
+import javafx.application.Platform;
+import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.Label;
-import javafx.fxml.FXMLLoader;
+import javafx.scene.control.MenuItem;
+import javafx.scene.control.TextInputDialog;
 import javafx.scene.Cursor;
 import javafx.scene.Node;
-import javafx.scene.Parent;
-import javafx.scene.Scene;
+import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.*;
 import javafx.scene.layout.AnchorPane;
 import javafx.scene.layout.VBox;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Line;
-import javafx.stage.Modality;
-import javafx.stage.Stage;
+import javafx.stage.DirectoryChooser;
+import javafx.stage.FileChooser;
 
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 public class NetworkController {
 
@@ -26,14 +32,29 @@ public class NetworkController {
     @FXML private VBox palette;
     @FXML private Label infoLabel;
 
-    // Model Data
-    private final List<NetworkDevice> devices = new ArrayList<>();
-    private final List<Connection> connections = new ArrayList<>();
+    private static final double DEVICE_ICON_SIZE = 50.0;
+    // Past this many devices the view moves to the canvas renderer by itself (-Drenderer.threshold)
+    private static final int CANVAS_THRESHOLD = Integer.getInteger("renderer.threshold", 2000);
+
+    // Model Data (headless; this controller only renders it and subscribes to its results)
+    private final Network network = new Network();
+    // Runs commands and the engine off the FX thread; topology edits below go through it
+    private final SimulationDriver simulation = new SimulationDriver(network);
 
     // UI Mappings
     private final Map<Node, NetworkDevice> nodeToDeviceMap = new HashMap<>();
     private final Map<NetworkDevice, Node> deviceToNodeMap = new HashMap<>();
-    private final Map<PC, TerminalController> openTerminals = new HashMap<>();
+    // Read by the TerminalRouter, which may run on simulation worker threads
+    private final Map<PC, TerminalSession> terminals = new ConcurrentHashMap<>();
+    private TerminalConsole console; // Created with the first terminal
+
+    // Canvas renderer for large topologies (from the start with -Drenderer=canvas, or once the
+    // topology outgrows CANVAS_THRESHOLD unless run with -Drenderer=nodes); null when devices
+    // are drawn as ImageView nodes
+    private TopologyCanvas topologyCanvas;
+
+    // A topology is being loaded on the simulation thread; edits are turned away until it is shown
+    private boolean loading = false;
 
     // State for connecting devices
     private boolean isConnecting = false;
@@ -50,7 +71,83 @@ public class NetworkController {
         setupPaletteDrag();
         setupPaneDrop();
         setupPaneClick(); // For initiating connections
-        infoLabel.setText("Drag icons to add devices.\nClick device, then another to connect.\nDouble-click PC to open terminal.");
+        network.addListener(new TerminalRouter());
+        network.getLinkStateRouting().start(); // Routers fill their forwarding tables as devices and links are added
+        if ("canvas".equals(System.getProperty("renderer"))) {
+            setupCanvasRenderer();
+        }
+        setupMetrics();
+        setupTrace();
+        infoLabel.setText("Drag icons to add devices.\nClick device, then another to connect.\nDouble-click PC to open terminal.\nRight-click a device to remove it.");
+    }
+
+    // Counters over JMX, plus a snapshot file when asked for, e.g. -Dmetrics.file=metrics.txt -Dmetrics.interval=5
+    private void setupMetrics() {
+        NetworkMetrics metrics = network.getMetrics();
+        metrics.registerMBean();
+        String file = System.getProperty("metrics.file");
+        if (file != null) {
+            metrics.startSnapshots(Path.of(file), Long.getLong("metrics.interval", 10) * 1000);
+            Log.info("metrics.snapshots", "file", file);
+        }
+    }
+
+    // Record the session from the start with -Dtrace.dir=some/directory (see TraceLog)
+    private void setupTrace() {
+        String directory = System.getProperty("trace.dir");
+        if (directory == null) return;
+        try {
+            network.startTrace(Path.of(directory));
+            Log.info("trace.started", "dir", directory);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    network.stopTrace();
+                } catch (IOException e) {
+                    Log.warn("trace.close.failed", e, "dir", directory);
+                }
+            }));
+        } catch (IOException e) {
+            Log.warn("trace.start.failed", e, "dir", directory);
+        }
+    }
+
+    private void setupCanvasRenderer() {
+        Map<String, Image> icons = new HashMap<>();
+        for (String type : new String[]{"PC", "Switch", "Router"}) {
+            icons.put(type, iconFor(type));
+        }
+        topologyCanvas = new TopologyCanvas(network, icons);
+        AnchorPane.setTopAnchor(topologyCanvas, 0.0);
+        AnchorPane.setBottomAnchor(topologyCanvas, 0.0);
+        AnchorPane.setLeftAnchor(topologyCanvas, 0.0);
+        AnchorPane.setRightAnchor(topologyCanvas, 0.0);
+        networkPane.getChildren().add(topologyCanvas);
+        // Same gestures as the per-node handlers in setupDeviceNodeEvents; dragging is handled by the canvas
+        topologyCanvas.setOnDeviceClicked((device, event) -> {
+            if (event.getButton() == MouseButton.PRIMARY) {
+                if (event.getClickCount() == 1) {
+                    handleDeviceClickForConnection(null, device);
+                } else if (event.getClickCount() == 2) {
+                    handleDeviceDoubleClick(device);
+                }
+            } else if (event.getButton() == MouseButton.SECONDARY) {
+                removeDevice(device);
+            }
+        });
+    }
+
+    // Move to the canvas renderer if the topology has grown too big for a node per device; true if
+    // it did, in which case the caller shows the whole topology on it
+    private boolean switchToCanvasIfLarge() {
+        int devices = network.getDevices().size();
+        if (topologyCanvas != null || devices <= CANVAS_THRESHOLD || "nodes".equals(System.getProperty("renderer"))) {
+            return false;
+        }
+        Log.info("renderer.canvas", "devices", devices, "threshold", CANVAS_THRESHOLD);
+        removeNodeViews();
+        setupCanvasRenderer();
+        infoLabel.setText("Switched to the canvas view for " + devices + " devices.");
+        return true;
     }
 
     // --- Drag and Drop from Palette ---
@@ -77,7 +174,7 @@ public class NetworkController {
             // db.setDragView(((ImageView) sourceNode).getImage());
             db.setContent(content);
             event.consume();
-            System.out.println("Drag detected: " + deviceType);
+            Log.debug("palette.drag", "type", deviceType);
         }
     }
 
@@ -114,8 +211,7 @@ public class NetworkController {
 
 
                         // Update model position (which updates node via binding)
-                        device.setXPosition(newX);
-                        device.setYPosition(newY);
+                        network.moveDevice(device, newX, newY);
 
                         // Ensure node's layout properties are also set directly
                         // Sometimes binding needs a nudge or direct setting is clearer for initial placement/move
@@ -123,13 +219,13 @@ public class NetworkController {
                         draggedNode.setLayoutY(newY);
 
 
-                        System.out.println("Moved " + device.getType() + " to (" + newX + ", " + newY + ")");
+                        if (Log.DEBUG) Log.debug("device.moved", "device", device, "x", newX, "y", newY);
                         success = true;
                     }
                 } else {
                     // It's a drop from the palette (COPY operation)
                     String deviceType = db.getString();
-                    System.out.println("Dropped: " + deviceType);
+                    Log.debug("palette.drop", "type", deviceType);
                     addDeviceToPane(deviceType, event.getX(), event.getY());
                     success = true;
                 }
@@ -163,59 +259,91 @@ public class NetworkController {
 
 
     private void addDeviceToPane(String type, double x, double y) {
-        NetworkDevice device = null;
-        ImageView deviceIcon = new ImageView();
-        deviceIcon.setFitHeight(50.0); // Match palette size or define elsewhere
-        deviceIcon.setFitWidth(50.0);
-        deviceIcon.setPreserveRatio(true);
-
+        if (isLoading()) return;
+        double size = DEVICE_ICON_SIZE;
         // Center the icon on the drop point (adjusting for icon size)
-        double placeX = x - deviceIcon.getFitWidth() / 2;
-        double placeY = y - deviceIcon.getFitHeight() / 2;
+        double placeX = x - size / 2;
+        double placeY = y - size / 2;
 
-        // Prevent placing outside bounds (simple)
-        placeX = Math.max(0, Math.min(networkPane.getWidth() - deviceIcon.getFitWidth(), placeX));
-        placeY = Math.max(0, Math.min(networkPane.getHeight() - deviceIcon.getFitHeight(), placeY));
+        if (topologyCanvas != null) {
+            // The canvas view pans and zooms; place the device where it was dropped in the world
+            placeX = Math.max(0, topologyCanvas.toWorldX(x) - size / 2);
+            placeY = Math.max(0, topologyCanvas.toWorldY(y) - size / 2);
+        } else {
+            // Prevent placing outside bounds (simple)
+            placeX = Math.max(0, Math.min(networkPane.getWidth() - size, placeX));
+            placeY = Math.max(0, Math.min(networkPane.getHeight() - size, placeY));
+        }
 
+        NetworkDevice device;
         switch (type) {
             case "PC":
                 device = new PC(placeX, placeY);
-                // Use the actual icon image used in the palette
-                deviceIcon.setImage(((ImageView) palette.lookup("#pcPaletteIcon")).getImage());
-                deviceIcon.getStyleClass().add("pc-icon"); // Add CSS class
                 break;
             case "Switch":
                 device = new Switch(placeX, placeY);
-                deviceIcon.setImage(((ImageView) palette.lookup("#switchPaletteIcon")).getImage());
-                deviceIcon.getStyleClass().add("switch-icon");
                 break;
             case "Router":
                 device = new Router(placeX, placeY);
-                deviceIcon.setImage(((ImageView) palette.lookup("#routerPaletteIcon")).getImage());
-                deviceIcon.getStyleClass().add("router-icon");
                 break;
             default:
-                System.err.println("Unknown device type dropped: " + type);
+                Log.warn("palette.drop.unknown", "type", type);
                 return;
         }
+        simulation.edit(() -> network.addDevice(device));
+        if (switchToCanvasIfLarge()) {
+            showTopology(); // Everything, now on the canvas
+        } else {
+            showDevice(device);
+        }
+    }
 
-        if (device != null) {
-            deviceIcon.setLayoutX(placeX);
-            deviceIcon.setLayoutY(placeY);
-
-            // Bind visual node position to model position
-            // deviceIcon.layoutXProperty().bind(device.xPositionProperty());
-            // deviceIcon.layoutYProperty().bind(device.yPositionProperty());
-            // Direct setting might be initially less complex than pure binding for drag/drop
-            // If using binding, ensure the model updates trigger UI updates reliably.
+    // Create the on-screen representation of a device that is already in the network
+    private void showDevice(NetworkDevice device) {
+        if (topologyCanvas != null) {
+            topologyCanvas.deviceAdded(device);
+            return;
+        }
+        ImageView deviceIcon = new ImageView();
+        deviceIcon.setFitHeight(DEVICE_ICON_SIZE); // Match palette size or define elsewhere
+        deviceIcon.setFitWidth(DEVICE_ICON_SIZE);
+        deviceIcon.setPreserveRatio(true);
+        // Use the actual icon image used in the palette
+        deviceIcon.setImage(iconFor(device.getType()));
+        deviceIcon.getStyleClass().add(device.getType().toLowerCase() + "-icon"); // Add CSS class
+        deviceIcon.setLayoutX(device.getXPosition());
+        deviceIcon.setLayoutY(device.getYPosition());
+
+        networkPane.getChildren().add(deviceIcon);
+        nodeToDeviceMap.put(deviceIcon, device);
+        deviceToNodeMap.put(device, deviceIcon);
+
+        // Add event handlers for the newly created device icon
+        setupDeviceNodeEvents(deviceIcon, device);
+    }
 
-            devices.add(device);
-            networkPane.getChildren().add(deviceIcon);
-            nodeToDeviceMap.put(deviceIcon, device);
-            deviceToNodeMap.put(device, deviceIcon);
+    // Give a connection its line (ImageView renderer) or just redraw (canvas renderer)
+    private void showConnection(Connection connection) {
+        if (topologyCanvas != null) {
+            topologyCanvas.requestRedraw();
+            return;
+        }
+        Line line = new Line();
+        line.setStroke(Color.BLACK);
+        line.setStrokeWidth(2);
+        line.setMouseTransparent(true); // Line shouldn't intercept mouse events
+
+        // Add line to the pane (ensure it's behind devices)
+        networkPane.getChildren().add(0, line); // Add at index 0 to be in the back
+        connection.attachLine(line); // Binds the line ends to the devices
+    }
 
-            // Add event handlers for the newly created device icon
-            setupDeviceNodeEvents(deviceIcon, device);
+    private Image iconFor(String type) {
+        switch (type) {
+            case "PC": return ((ImageView) palette.lookup("#pcPaletteIcon")).getImage();
+            case "Switch": return ((ImageView) palette.lookup("#switchPaletteIcon")).getImage();
+            case "Router": return ((ImageView) palette.lookup("#routerPaletteIcon")).getImage();
+            default: return null;
         }
     }
 
@@ -232,6 +360,10 @@ public class NetworkController {
                     handleDeviceDoubleClick(device);
                 }
                 event.consume(); // Consume to prevent pane click handler firing
+            } else if (event.getButton() == MouseButton.SECONDARY) {
+                // Right-click removes the device and its connections
+                removeDevice(device);
+                event.consume();
             }
         });
 
@@ -261,8 +393,7 @@ public class NetworkController {
                 // --- --- --- --- --- --- ---
 
                 // Update model position first
-                device.setXPosition(newX);
-                device.setYPosition(newY);
+                network.moveDevice(device, newX, newY);
 
                 // Update the node's layout properties directly
                 node.setLayoutX(newX);
@@ -312,45 +443,35 @@ public class NetworkController {
     // --- Device Connection Logic ---
 
     private void handleDeviceClickForConnection(Node clickedNode, NetworkDevice clickedDevice) {
-        System.out.println("Clicked on device: " + clickedDevice);
+        if (isLoading()) return;
+        Log.debug("device.clicked", "device", clickedDevice);
         if (!isConnecting) {
             // Start connection process
             firstDeviceSelected = clickedDevice;
             firstNodeSelected = clickedNode;
             isConnecting = true;
             // Optional: Visual feedback (e.g., highlight the selected node)
-            clickedNode.setStyle("-fx-effect: dropshadow(three-pass-box, blue, 10, 0.5, 0, 0);");
+            if (topologyCanvas != null) {
+                topologyCanvas.setSelected(clickedDevice);
+            } else {
+                clickedNode.setStyle("-fx-effect: dropshadow(three-pass-box, blue, 10, 0.5, 0, 0);");
+            }
             infoLabel.setText("Connecting... Click second device.");
-            System.out.println("Starting connection from: " + clickedDevice);
+            Log.debug("connection.start", "from", clickedDevice);
         } else {
             // Complete connection process
             if (clickedDevice != firstDeviceSelected) { // Ensure not connecting to itself
                 NetworkDevice secondDeviceSelected = clickedDevice;
-                System.out.println("Connecting " + firstDeviceSelected + " to " + secondDeviceSelected);
 
                 // Check if connection already exists (basic check)
-                boolean alreadyConnected = connections.stream().anyMatch(conn ->
-                        (conn.getDevice1() == firstDeviceSelected && conn.getDevice2() == secondDeviceSelected) ||
-                                (conn.getDevice1() == secondDeviceSelected && conn.getDevice2() == firstDeviceSelected)
-                );
+                boolean alreadyConnected = network.areConnected(firstDeviceSelected, secondDeviceSelected);
 
                 if (!alreadyConnected) {
-                    // Create visual line
-                    Line line = new Line();
-                    line.setStroke(Color.BLACK);
-                    line.setStrokeWidth(2);
-                    line.setMouseTransparent(true); // Line shouldn't intercept mouse events
-
-                    // Add line to the pane (ensure it's behind devices)
-                    networkPane.getChildren().add(0, line); // Add at index 0 to be in the back
-
-                    // Create Connection model object (this also binds the line ends)
-                    Connection newConnection = new Connection(firstDeviceSelected, secondDeviceSelected, line);
-                    connections.add(newConnection);
-
-                    System.out.println("Connection created.");
+                    // Create Connection model object, then its line
+                    showConnection(simulation.editAndGet(() -> network.connect(firstDeviceSelected, secondDeviceSelected)));
+                    Log.info("connection.created", "a", firstDeviceSelected, "b", secondDeviceSelected);
                 } else {
-                    System.out.println("Devices already connected.");
+                    Log.debug("connection.duplicate", "a", firstDeviceSelected, "b", secondDeviceSelected);
                     infoLabel.setText("Devices already connected.");
                 }
 
@@ -358,7 +479,7 @@ public class NetworkController {
 
             } else {
                 // Clicked the same device again - cancel connection
-                System.out.println("Connection cancelled (clicked same device).");
+                Log.debug("connection.cancelled", "device", clickedDevice);
                 resetConnectionState();
             }
         }
@@ -368,229 +489,372 @@ public class NetworkController {
         if (firstNodeSelected != null) {
             firstNodeSelected.setStyle(""); // Remove visual feedback
         }
+        if (topologyCanvas != null) {
+            topologyCanvas.setSelected(null);
+        }
         isConnecting = false;
         firstDeviceSelected = null;
         firstNodeSelected = null;
         infoLabel.setText("Drag icons to add. Click devices to connect.");
     }
 
-    // --- Terminal Handling ---
+    // --- Saving and Loading ---
 
-    private void handleDeviceDoubleClick(NetworkDevice device) {
-        if (device instanceof PC) {
-            PC pc = (PC) device;
-            System.out.println("Double-clicked on PC: " + pc);
-
-            // Check if terminal is already open
-            if (openTerminals.containsKey(pc)) {
-                // Bring existing terminal to front
-                Stage stage = (Stage) openTerminals.get(pc).getOutputArea().getScene().getWindow();
-                if (stage != null) {
-                    stage.toFront();
-                }
-                System.out.println("Terminal already open for " + pc);
-                return;
-            }
-
-            // Open new terminal window
-            try {
-                FXMLLoader loader = new FXMLLoader(getClass().getResource("TerminalView.fxml"));
-                Parent root = loader.load();
-                TerminalController terminalController = loader.getController();
-
-                // Pass necessary references to the terminal controller
-                terminalController.setNetworkController(this);
-                terminalController.setPcDevice(pc);
-
-                Stage terminalStage = new Stage();
-                terminalStage.setTitle("Terminal - " + pc.toString());
-                terminalStage.setScene(new Scene(root));
-                terminalStage.initModality(Modality.NONE); // Allow interaction with main window
-                terminalStage.initOwner(networkPane.getScene().getWindow()); // Optional: Associate with main window
+    @FXML
+    private void handleOpenTopology() {
+        loadTopology("Open Topology", new FileChooser.ExtensionFilter("Topology", "*.nstp"),
+                path -> TopologyFile.open(path).loadInto(network));
+    }
 
-                // Keep track of open terminal
-                openTerminals.put(pc, terminalController);
+    @FXML
+    private void handleImportText() {
+        loadTopology("Import Topology", new FileChooser.ExtensionFilter("Topology text", "*.txt"),
+                path -> TopologyText.importInto(network, path));
+    }
 
-                // Handle terminal window closing
-                terminalStage.setOnCloseRequest(event -> {
-                    openTerminals.remove(pc);
-                    System.out.println("Closed terminal for " + pc);
-                });
+    @FXML
+    private void handleSaveTopology() {
+        saveTopology("Save Topology", new FileChooser.ExtensionFilter("Topology", "*.nstp"),
+                path -> TopologyFile.save(network, path));
+    }
 
+    @FXML
+    private void handleExportText() {
+        saveTopology("Export Topology", new FileChooser.ExtensionFilter("Topology text", "*.txt"),
+                path -> TopologyText.export(network, path));
+    }
 
-                terminalStage.show();
-                System.out.println("Opened terminal for " + pc);
+    private interface TopologyIo {
+        void apply(Path path) throws IOException;
+    }
 
+    private void loadTopology(String title, FileChooser.ExtensionFilter filter, TopologyIo loader) {
+        if (isLoading()) return;
+        File file = chooseFile(title, filter).showOpenDialog(networkPane.getScene().getWindow());
+        if (file == null) return;
+        replaceTopology("Loading " + file.getName() + "...", () -> {
+            try {
+                loader.apply(file.toPath());
+                return "Loaded " + network.getDevices().size() + " devices.";
             } catch (IOException e) {
-                System.err.println("Error loading TerminalView.fxml: " + e.getMessage());
-                e.printStackTrace();
+                Log.warn("topology.load.failed", e, "file", file);
+                return "Could not load " + file.getName() + ": " + e.getMessage();
             }
-        }
+        });
     }
 
-    // --- Helper Method to Find Device by Identifier (Name or IP) ---
-    private Optional<NetworkDevice> findDeviceByIdentifier(String identifier) {
-        if (identifier == null || identifier.trim().isEmpty()) {
-            return Optional.empty();
-        }
-        String targetId = identifier.trim(); //.toUpperCase(); // Make case-insensitive if desired
-
-        return devices.stream()
-                .filter(dev -> {
-                    // Check against toString() representation (e.g., "PC1", "Switch2")
-                    if (dev.toString().equalsIgnoreCase(targetId)) {
-                        return true;
-                    }
-                    // If it's a PC, also check against its IP address
-                    if (dev instanceof PC) {
-                        return ((PC) dev).getIpAddress().equals(targetId);
-                    }
-                    return false;
-                })
-                .findFirst();
+    // Swap in a new topology without holding up the FX thread: the views are cleared here, the model
+    // is cleared and rebuilt by load on the simulation thread (under the simulation lock, like any
+    // command), and whatever it built is shown once it is done, even if it was cut short. load
+    // returns the message to show.
+    private void replaceTopology(String progress, Supplier<String> load) {
+        clearTopology();
+        loading = true;
+        infoLabel.setText(progress);
+        simulation.submit(() -> {
+            String message;
+            try {
+                network.clear();
+                message = load.get();
+            } catch (RuntimeException e) {
+                Log.warn("topology.load.failed", e);
+                message = "Could not load the topology: " + e.getMessage();
+            }
+            String result = message;
+            Platform.runLater(() -> {
+                loading = false;
+                showTopology();
+                infoLabel.setText(result);
+            });
+        });
     }
 
+    // True, after saying so, while a topology is loading
+    private boolean isLoading() {
+        if (loading) infoLabel.setText("Still loading the topology...");
+        return loading;
+    }
 
-    // --- Command Execution Logic ---
-    public void executeCommand(PC sourcePc, String command, String[] args) {
-        TerminalController sourceTerminal = openTerminals.get(sourcePc);
-        if (sourceTerminal == null) {
-            System.err.println("Command executed for PC with no open terminal: " + sourcePc);
-            return; // Should not happen if called from TerminalController
+    // Add views for everything in the model (after a bulk load). Big topologies go on the canvas,
+    // so this doesn't build a node per device and link for them.
+    private void showTopology() {
+        switchToCanvasIfLarge();
+        for (NetworkDevice device : network.getDevices()) {
+            showDevice(device);
         }
-
-        switch (command.toLowerCase()) {
-            case "ipconfig":
-                handleIpConfig(sourcePc, sourceTerminal);
-                break;
-            case "ping":
-                handlePing(sourcePc, args, sourceTerminal);
-                break;
-            // Add more command cases here
-            default:
-                sourceTerminal.displayOutput("Error: Unknown command '" + command + "'");
-                break;
+        for (Connection connection : network.getConnections()) {
+            showConnection(connection);
+        }
+        if (topologyCanvas != null) {
+            topologyCanvas.fitToContent();
         }
     }
 
-    private void handleIpConfig(PC pc, TerminalController terminal) {
-        StringBuilder output = new StringBuilder();
-        output.append("\nEthernet adapter Local Area Connection:\n\n");
-        output.append("   IPv4 Address. . . . . . . . . . . : ").append(pc.getIpAddress()).append("\n");
-        output.append("   Subnet Mask . . . . . . . . . . . : ").append(pc.getSubnetMask()).append("\n");
-        // output.append("   Default Gateway . . . . . . . . . : ").append(pc.getGateway() != null ? pc.getGateway() : "").append("\n"); // Add gateway later if needed
-        output.append("\n");
-        terminal.displayOutput(output.toString());
-    }
+    // --- Generated Topologies ---
 
-    private void handlePing(PC sourcePc, String[] args, TerminalController terminal) {
-        if (args.length < 1 || args[0].isEmpty()) {
-            terminal.displayOutput("Usage: ping <target_identifier>");
+    // Menu items carry the shape name as their user data
+    @FXML
+    private void handleGenerate(ActionEvent event) {
+        if (isLoading()) return;
+        String shape = (String) ((MenuItem) event.getSource()).getUserData();
+        TextInputDialog dialog = new TextInputDialog(TopologyGenerator.SHAPES.get(shape));
+        dialog.setTitle("Generate Topology");
+        dialog.setHeaderText("Generate a " + shape + " topology (replaces the current one)");
+        dialog.setContentText("Parameters:");
+        Optional<String> parameters = dialog.showAndWait();
+        if (parameters.isEmpty()) return;
+        TopologyGenerator.Blueprint blueprint;
+        try {
+            blueprint = TopologyGenerator.generate(shape, parameters.get());
+        } catch (IllegalArgumentException e) {
+            infoLabel.setText("Could not generate " + shape + ": " + e.getMessage());
             return;
         }
-        String targetIdentifier = args[0];
+        replaceTopology("Generating " + blueprint.getDeviceCount() + " devices...", () -> {
+            long start = System.nanoTime();
+            blueprint.build(network);
+            Log.info("topology.generated", "shape", shape, "devices", blueprint.getDeviceCount(),
+                    "links", blueprint.getLinkCount(), "ms", (System.nanoTime() - start) / 1_000_000);
+            return "Generated " + blueprint.getDeviceCount() + " devices, " + blueprint.getLinkCount() + " links.";
+        });
+    }
 
-        // Find the target device
-        Optional<NetworkDevice> targetOpt = findDeviceByIdentifier(targetIdentifier);
+    // Change one link's bandwidth, delay, jitter, loss or queue, e.g. "pc1 switch1 bandwidth=100M delay=2ms"
+    @FXML
+    private void handleConfigureLink() {
+        if (isLoading()) return;
+        TextInputDialog dialog = new TextInputDialog();
+        dialog.setTitle("Configure Link");
+        dialog.setHeaderText("Two devices, then any of: bandwidth=100M delay=2ms jitter=1ms loss=1% queue=64 discipline=red");
+        dialog.setContentText("Link and settings:");
+        Optional<String> input = dialog.showAndWait();
+        if (input.isEmpty()) return;
+        String[] parts = input.get().trim().split("\\s+", 3);
+        if (parts.length < 2) {
+            infoLabel.setText("Name the two devices at the ends of the link.");
+            return;
+        }
+        String message;
+        try {
+            // Finding the link reads the model too, so it happens under the lock with the change
+            message = simulation.editAndGet(() -> {
+                NetworkDevice a = network.resolveDevice(parts[0]);
+                NetworkDevice b = network.resolveDevice(parts[1]);
+                Connection connection = a == null || b == null ? null : network.getConnection(a, b);
+                if (connection == null) return "No link between " + parts[0] + " and " + parts[1] + ".";
+                if (parts.length == 3) connection.configure(parts[2]);
+                Log.info("link.configured", "a", a, "b", b, "settings", connection.getSettings());
+                return a + "-" + b + ": " + connection.getSettings();
+            });
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            message = "Could not configure the link: " + e.getMessage();
+        }
+        infoLabel.setText(message);
+    }
 
-        if (!targetOpt.isPresent()) {
-            terminal.displayOutput("\nPinging " + targetIdentifier + " [" + targetIdentifier + "] with 32 bytes of data:");
-            terminal.displayOutput("Request timed out.");
-            terminal.displayOutput("Request timed out.");
-            terminal.displayOutput("Request timed out.");
-            terminal.displayOutput("Request timed out.");
-            terminal.displayOutput("\nPing statistics for " + targetIdentifier + ":");
-            terminal.displayOutput("    Packets: Sent = 4, Received = 0, Lost = 4 (100% loss),");
+    // Apply the same settings to every link
+    @FXML
+    private void handleConfigureAllLinks() {
+        if (isLoading()) return;
+        TextInputDialog dialog = new TextInputDialog();
+        dialog.setTitle("Configure All Links");
+        dialog.setHeaderText("Any of: bandwidth=100M delay=2ms jitter=1ms loss=1% queue=64 discipline=red");
+        dialog.setContentText("Settings:");
+        Optional<String> input = dialog.showAndWait();
+        if (input.isEmpty() || input.get().isBlank()) return;
+        int count;
+        try {
+            count = simulation.editAndGet(() -> {
+                List<Connection> connections = network.getConnections();
+                for (Connection connection : connections) {
+                    connection.configure(input.get());
+                }
+                return connections.size();
+            });
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            infoLabel.setText("Could not configure the links: " + e.getMessage());
             return;
         }
+        Log.info("links.configured", "links", count, "settings", input.get());
+        infoLabel.setText("Configured " + count + " links.");
+    }
 
-        NetworkDevice targetDevice = targetOpt.get();
+    // Rebuild a traced run from its recorded inputs, optionally stopping at a simulated time
+    @FXML
+    private void handleReplayTrace() {
+        if (isLoading()) return;
+        DirectoryChooser chooser = new DirectoryChooser();
+        chooser.setTitle("Replay Trace");
+        File directory = chooser.showDialog(networkPane.getScene().getWindow());
+        if (directory == null) return;
+        TextInputDialog dialog = new TextInputDialog();
+        dialog.setTitle("Replay Trace");
+        dialog.setHeaderText("Replay " + directory.getName() + " (replaces the current topology)");
+        dialog.setContentText("Stop at (ms, blank for the whole run):");
+        Optional<String> stopAt = dialog.showAndWait();
+        if (stopAt.isEmpty()) return;
+        long until;
+        try {
+            until = stopAt.get().isBlank() ? Long.MAX_VALUE
+                    : (long) (Double.parseDouble(stopAt.get().trim()) * SimulationEngine.NANOS_PER_MILLI);
+        } catch (NumberFormatException e) {
+            infoLabel.setText("Not a time in milliseconds: " + stopAt.get());
+            return;
+        }
+        replaceTopology("Replaying " + directory.getName() + "...", () -> {
+            try {
+                TraceReader reader = TraceReader.open(directory.toPath());
+                TraceReader.Cursor first = reader.cursor();
+                if (first.next() && first.type() == TraceLog.TRACE_START && first.seed() != network.getSeed()) {
+                    Log.warn("trace.seed.mismatch", "trace", first.seed(), "network", network.getSeed());
+                }
+                long start = System.nanoTime();
+                TraceReplay.replayInto(network, reader, until);
+                Log.info("trace.replayed", "dir", directory, "events", network.getEngine().getProcessedEvents(),
+                        "ms", (System.nanoTime() - start) / 1_000_000);
+                return "Replayed " + directory.getName() + " to t="
+                        + network.getEngine().now() / SimulationEngine.NANOS_PER_MILLI + " ms.";
+            } catch (IOException | RuntimeException e) {
+                Log.warn("trace.replay.failed", e, "dir", directory);
+                return "Could not replay " + directory.getName() + ": " + e.getMessage();
+            }
+        });
+    }
 
-        // --- Basic Reachability Check (Direct Connection Only for now) ---
-        boolean directlyConnected = connections.stream().anyMatch(conn ->
-                (conn.getDevice1() == sourcePc && conn.getDevice2() == targetDevice) ||
-                        (conn.getDevice1() == targetDevice && conn.getDevice2() == sourcePc)
-        );
-        // TODO: Enhance reachability to check via switches/routers later
+    // The save reads the whole model, so like a load it runs on the simulation thread under the lock,
+    // and not at all while a load is still building the model
+    private void saveTopology(String title, FileChooser.ExtensionFilter filter, TopologyIo saver) {
+        if (isLoading()) return;
+        File file = chooseFile(title, filter).showSaveDialog(networkPane.getScene().getWindow());
+        if (file == null) return;
+        infoLabel.setText("Saving " + file.getName() + "...");
+        simulation.submit(() -> {
+            String message;
+            try {
+                saver.apply(file.toPath());
+                message = "Saved " + network.getDevices().size() + " devices.";
+            } catch (IOException e) {
+                Log.warn("topology.save.failed", e, "file", file);
+                message = "Could not save " + file.getName() + ": " + e.getMessage();
+            }
+            String result = message;
+            Platform.runLater(() -> infoLabel.setText(result));
+        });
+    }
 
-        // --- Simulate Ping Results ---
-        String targetIp = (targetDevice instanceof PC) ? ((PC) targetDevice).getIpAddress() : targetDevice.toString(); // Use IP if PC, else ID
-        terminal.displayOutput("\nPinging " + targetDevice.toString() + " [" + targetIp + "] with 32 bytes of data:");
+    private FileChooser chooseFile(String title, FileChooser.ExtensionFilter filter) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle(title);
+        chooser.getExtensionFilters().add(filter);
+        return chooser;
+    }
 
-        if (directlyConnected) {
-            // Simulate successful pings (instantaneous for now)
-            for (int i = 0; i < 4; i++) {
-                int time = (int) (Math.random() * 10) + 1; // Simulate 1-10 ms delay
-                terminal.displayOutput("Reply from " + targetIp + ": bytes=32 time=" + time + "ms TTL=128");
-                // Optional: Add a small delay visually if desired, but complicates things
-                // try { Thread.sleep(300); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    // Remove every device view, line and terminal (the model itself is cleared by replaceTopology)
+    private void clearTopology() {
+        if (isConnecting) {
+            resetConnectionState();
+        }
+        if (console != null) {
+            console.closeAll();
+        }
+        removeNodeViews();
+        if (topologyCanvas != null) {
+            for (NetworkDevice device : network.getDevices()) {
+                topologyCanvas.deviceRemoved(device);
             }
-            terminal.displayOutput("\nPing statistics for " + targetIp + ":");
-            terminal.displayOutput("    Packets: Sent = 4, Received = 4, Lost = 0 (0% loss),");
-            // Approximate round trip times (can be more elaborate)
-            terminal.displayOutput("Approximate round trip times in milli-seconds:");
-            terminal.displayOutput("    Minimum = 1ms, Maximum = 10ms, Average = " + (int)(Math.random()*5 + 3) +"ms"); // Fake average
+        }
+    }
 
-        } else {
-            // Simulate failure
-            for (int i = 0; i < 4; i++) {
-                // Could vary message: "Request timed out." or "Destination host unreachable."
-                terminal.displayOutput("Request timed out.");
-                // Optional delay
-                // try { Thread.sleep(1000); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    // Take every device icon and link line off the pane (the ImageView renderer's views)
+    private void removeNodeViews() {
+        if (isConnecting) {
+            resetConnectionState();
+        }
+        for (Connection connection : network.getConnections()) {
+            if (connection.getLine() != null) {
+                networkPane.getChildren().remove(connection.getLine());
+                connection.attachLine(null);
             }
-            terminal.displayOutput("\nPing statistics for " + targetIp + ":");
-            terminal.displayOutput("    Packets: Sent = 4, Received = 0, Lost = 4 (100% loss),");
         }
+        networkPane.getChildren().removeAll(nodeToDeviceMap.keySet());
+        nodeToDeviceMap.clear();
+        deviceToNodeMap.clear();
     }
 
+    // --- Terminal Handling ---
 
-    // --- Communication Simulation (Chat - Update to use receiveChatMessage) ---
-    public void sendMessage(PC senderPc, String message) {
-        System.out.println("Attempting to send CHAT from " + senderPc + ": " + message);
+    private void handleDeviceDoubleClick(NetworkDevice device) {
+        if (device instanceof PC) {
+            PC pc = (PC) device;
+            Log.debug("pc.double-clicked", "pc", pc);
 
-        boolean messageDelivered = false;
-        for (Connection connection : connections) {
-            NetworkDevice recipientDevice = null;
-            if (connection.getDevice1() == senderPc) {
-                recipientDevice = connection.getDevice2();
-            } else if (connection.getDevice2() == senderPc) {
-                recipientDevice = connection.getDevice1();
+            if (console == null) {
+                console = new TerminalConsole(this, networkPane.getScene().getWindow(), terminals);
             }
+            console.open(pc); // A tab in the terminal console, or the existing one brought to front
+        }
+    }
 
-            if (recipientDevice instanceof PC) {
-                PC recipientPc = (PC) recipientDevice;
-                if (openTerminals.containsKey(recipientPc)) {
-                    TerminalController recipientTerminal = openTerminals.get(recipientPc);
-                    String formattedMessage = "[" + senderPc.toString() + "]: " + message; // Use toString() for consistent ID
-                    // *** CHANGE THIS CALL ***
-                    recipientTerminal.receiveChatMessage(formattedMessage); // Use the new method for chat
-                    System.out.println("Chat message delivered to " + recipientPc);
-                    messageDelivered = true; // Mark that at least one recipient got it
-                } else {
-                    System.out.println("Recipient " + recipientPc + " has no open terminal for chat.");
-                }
-            } else if (recipientDevice != null) {
-                System.out.println("Chat message reached non-PC device: " + recipientDevice);
+    // --- Command Execution and Chat ---
+    public void executeInput(PC sourcePc, String input) {
+        if (!terminals.containsKey(sourcePc)) {
+            Log.warn("command.no-terminal", "pc", sourcePc);
+            return; // Should not happen if called from TerminalController
+        }
+        simulation.submit(() -> network.executeInput(sourcePc, input)); // Output arrives through the TerminalRouter
+    }
+
+    // Routes simulation results to the open terminals, shown or not
+    private class TerminalRouter implements SimulationListener {
+        @Override
+        public void onOutput(PC pc, String text) {
+            TerminalSession terminal = terminals.get(pc);
+            if (terminal != null) {
+                terminal.displayOutput(text);
             }
         }
 
-        // Optional: Inform sender if message couldn't be delivered anywhere
-        if (!messageDelivered && openTerminals.containsKey(senderPc)) {
-            // Check if it was *intended* for a specific PC that wasn't connected/open
-            // For now, just a generic message if no PC terminal received it.
-            // openTerminals.get(senderPc).displayOutput("(Message could not be delivered to any open PC terminals)");
+        @Override
+        public void onChatMessage(PC pc, String message) {
+            TerminalSession recipientTerminal = terminals.get(pc);
+            if (recipientTerminal != null) {
+                recipientTerminal.displayOutput(message);
+                if (Log.DEBUG) Log.debug("chat.delivered", "pc", pc);
+            } else {
+                if (Log.DEBUG) Log.debug("chat.unseen", "pc", pc);
+            }
         }
     }
 
-    // --- Communication Simulation ---
 
+    // --- Utility for removing devices ---
+    private void removeDevice(NetworkDevice device) {
+        if (isLoading()) return;
+        if (isConnecting) {
+            resetConnectionState();
+        }
+        // Remove the lines of every connection involving the device
+        for (Connection connection : network.getConnections(device)) {
+            if (connection.getLine() != null) {
+                networkPane.getChildren().remove(connection.getLine());
+            }
+        }
+        if (topologyCanvas != null) {
+            topologyCanvas.deviceRemoved(device); // While its index is still valid
+        }
+        // Unbinds the lines and drops the device from the model
+        simulation.edit(() -> network.removeDevice(device));
 
-    // --- Utility for removing devices (More complex - requires handling connections) ---
-    // TODO: Implement device removal (right-click context menu?)
-    // - Remove device from devices list
-    // - Remove node from pane
-    // - Remove mappings (nodeToDeviceMap, deviceToNodeMap)
-    // - Find and remove all connections involving the device (unbind lines!)
-    // - Close terminal if open
+        Node node = deviceToNodeMap.remove(device);
+        if (node != null) {
+            nodeToDeviceMap.remove(node);
+            networkPane.getChildren().remove(node);
+        }
+
+        // Close terminal if open
+        if (device instanceof PC && console != null) {
+            console.close((PC) device);
+        }
+        Log.info("device.removed", "device", device);
+    }
 }
\ No newline at end of file
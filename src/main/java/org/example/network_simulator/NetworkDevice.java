@@ -3,25 +3,91 @@ package org.example.network_simulator;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 public abstract class NetworkDevice {
-    private static int idCounter = 0;
+    private static final AtomicInteger idCounter = new AtomicInteger(); // Devices may be built in parallel
     private final int id;
     private final String type;
+    Network network; // Owning network, null when detached
+    int index = -1; // Dense vertex id in the owning Network's TopologyGraph, -1 when detached
+    int partition = 0; // Simulation partition that owns this device's events
+
+    // Per-device event ordering and random stream; keeps runs reproducible for a given seed
+    // no matter how devices are spread over partitions
+    private long eventCounter = 0;
+    private long randomState = 0;
+    // Broadcasts: how many this device has sent, and the ids of the last few it sent or received, a ring
+    // made on first use (see Network.broadcast)
+    static final int RECENT_BROADCASTS = 8;
+    long broadcastCounter = 0;
+    private long[] recentBroadcasts;
+    private int nextRecentBroadcast = 0;
     // JavaFX properties to allow binding with visual elements
     private final DoubleProperty xPosition = new SimpleDoubleProperty();
     private final DoubleProperty yPosition = new SimpleDoubleProperty();
 
     public NetworkDevice(String type, double x, double y) {
-        this.id = ++idCounter;
+        this(type, idCounter.incrementAndGet(), x, y);
+    }
+
+    // With a given id, e.g. when loading a saved topology; later devices are numbered after it
+    protected NetworkDevice(String type, int id, double x, double y) {
+        this.id = id;
+        idCounter.accumulateAndGet(id, Math::max);
         this.type = type;
         this.xPosition.set(x);
         this.yPosition.set(y);
     }
 
+    // Reserve a block of consecutive ids for devices built in bulk; returns the first
+    static int reserveIds(int count) {
+        return idCounter.getAndAdd(count) + 1;
+    }
+
     public int getId() {
         return id;
     }
 
+    public int getIndex() {
+        return index;
+    }
+
+    // Whether a broadcast with this id has been through here lately; notes it if not
+    boolean seenBroadcast(long id) {
+        if (recentBroadcasts == null) recentBroadcasts = new long[RECENT_BROADCASTS];
+        for (long recent : recentBroadcasts) {
+            if (recent == id) return true;
+        }
+        recentBroadcasts[nextRecentBroadcast] = id;
+        nextRecentBroadcast = (nextRecentBroadcast + 1) % RECENT_BROADCASTS;
+        return false;
+    }
+
+    // Tie-break key for the next event this device schedules
+    long nextEventKey() {
+        return ((long) id << 32) | (eventCounter++ & 0xffffffffL);
+    }
+
+    void seedRandom(long seed) {
+        randomState = seed ^ (id * 0x9e3779b97f4a7c15L);
+        eventCounter = 0;
+    }
+
+    // Uniform double in [0, 1) from this device's SplitMix64 stream
+    double nextRandom() {
+        long z = (randomState += 0x9e3779b97f4a7c15L);
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        z ^= z >>> 31;
+        return (z >>> 11) * 0x1.0p-53;
+    }
+
+    // Locally administered unicast MAC derived from the device id (02:00:xx:xx:xx:xx)
+    public long getMacAddress() {
+        return 0x0200_0000_0000L | (id & 0xffffffffL);
+    }
+
     public String getType() {
         return type;
     }
@@ -40,5 +106,20 @@ public abstract class NetworkDevice {
         return type + getId();
     }
 
+    // Called by the Network when a packet arrives. The device owns the packet reference and must
+    // pass it on or release it. Every device answers pings addressed to it; subclasses add their own behaviour.
+    protected void receiveFrame(Network network, Packet packet, NetworkDevice from) {
+        if (packet.isEchoRequest() && packet.destinationMac() == getMacAddress()) {
+            NetworkDevice requester = network.originOf(packet);
+            if (requester != null) {
+                Packet reply = packet.exclusive();
+                reply.turnAroundEcho(getMacAddress()); // Reuse the request's buffer for the reply
+                network.send(this, requester, reply);
+                return;
+            }
+        }
+        packet.release();
+    }
+
     // Could add lists for connections later
 }
\ No newline at end of file
@@ -0,0 +1,327 @@
+package org.example.network_simulator;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Packet, byte and drop counters per device and per link direction (with link queue depths), plus
+// RTT and event-time histograms.
+// Counters live in flat arrays indexed by device index / edge id. Each device gets its own
+// 64-byte cache line and is only ever written by the thread that runs it (its partition's
+// worker or its actor), so counting is a plain increment with no contention or false sharing.
+// Drops can come from other threads (a full mailbox) and are added atomically; a link's drops (queue
+// overflow, RED, loss) only ever come from its sender's thread.
+// Readers on other threads see values that are at most slightly stale.
+// Totals count since the network was created, including devices that have since been removed: a
+// removed device's counts stay in its slot until the index is reused, and then move to retired.
+public class NetworkMetrics implements NetworkMetricsMXBean {
+
+    public static final String OBJECT_NAME = "org.example.network_simulator:type=NetworkMetrics";
+
+    private static final int FRAMES_IN = 0, BYTES_IN = 1, FRAMES_OUT = 2, BYTES_OUT = 3, DROPS = 4;
+    private static final String[] DEVICE_COUNTERS = {"framesIn", "bytesIn", "framesOut", "bytesOut", "drops"};
+    private static final int DEVICE_STRIDE = 8; // One cache line per device
+    private static final int LINK_PACKETS = 0, LINK_BYTES = 1, LINK_DROPS = 2;
+    private static final String[] LINK_COUNTERS = {"packets", "bytes", "drops"};
+    private static final int LINK_STRIDE = 6;   // Packets, bytes and drops in each direction
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final Network network;
+    private volatile long[] deviceCounters = new long[16 * DEVICE_STRIDE];
+    private volatile long[] linkCounters = new long[16 * LINK_STRIDE];
+    private final long[] retired = new long[DEVICE_COUNTERS.length]; // Counts of removed devices' reused slots
+    private final Histogram rtt = new Histogram();
+    private final Histogram eventTimes = new Histogram();
+    private ScheduledExecutorService snapshots;
+
+    NetworkMetrics(Network network) {
+        this.network = network;
+    }
+
+    public Histogram getRtt() { return rtt; }
+    public Histogram getEventTimes() { return eventTimes; }
+
+    // --- Recording (called by the model) ---
+
+    // A reused index or edge id starts again from zero; a device's counts go on in the totals
+    void deviceAdded(int v) {
+        long[] counters = deviceCounters;
+        if ((v + 1) * DEVICE_STRIDE > counters.length) {
+            counters = Arrays.copyOf(counters, Math.max((v + 1) * DEVICE_STRIDE, counters.length * 2));
+            deviceCounters = counters;
+        }
+        for (int c = 0; c < DEVICE_COUNTERS.length; c++) {
+            retired[c] += counters[v * DEVICE_STRIDE + c];
+        }
+        Arrays.fill(counters, v * DEVICE_STRIDE, (v + 1) * DEVICE_STRIDE, 0);
+    }
+
+    void linkAdded(int e) {
+        long[] counters = linkCounters;
+        if ((e + 1) * LINK_STRIDE > counters.length) {
+            counters = Arrays.copyOf(counters, Math.max((e + 1) * LINK_STRIDE, counters.length * 2));
+            linkCounters = counters;
+        }
+        Arrays.fill(counters, e * LINK_STRIDE, (e + 1) * LINK_STRIDE, 0);
+    }
+
+    // On the sender's thread. edge is the link the frame goes over, or -1 for end-to-end delivery.
+    void frameSent(NetworkDevice from, int edge, int bytes) {
+        long[] counters = deviceCounters;
+        int base = from.index * DEVICE_STRIDE;
+        counters[base + FRAMES_OUT]++;
+        counters[base + BYTES_OUT] += bytes;
+        if (edge >= 0) {
+            long[] links = linkCounters;
+            int link = linkBase(edge, from);
+            links[link + LINK_PACKETS]++;
+            links[link + LINK_BYTES] += bytes;
+        }
+    }
+
+    // On the receiver's thread
+    void frameReceived(NetworkDevice to, int bytes) {
+        long[] counters = deviceCounters;
+        int base = to.index * DEVICE_STRIDE;
+        counters[base + FRAMES_IN]++;
+        counters[base + BYTES_IN] += bytes;
+    }
+
+    // From any thread
+    void frameDropped(NetworkDevice device) {
+        int v = device.index;
+        if (v >= 0) LONGS.getAndAdd(deviceCounters, v * DEVICE_STRIDE + DROPS, 1L);
+    }
+
+    // On the sender's thread, for a frame lost on its way out over the link with this edge id
+    void frameDropped(NetworkDevice from, int edge) {
+        frameDropped(from);
+        if (from.index >= 0) linkCounters[linkBase(edge, from) + LINK_DROPS]++;
+    }
+
+    // Where the counters of the edge's direction leaving from start
+    private int linkBase(int edge, NetworkDevice from) {
+        return edge * LINK_STRIDE + (network.getGraph().edgeFrom(edge) == from.index ? 0 : LINK_STRIDE / 2);
+    }
+
+    // --- Reading ---
+
+    public long getDeviceCounter(NetworkDevice device, int counter) {
+        return deviceCounters[device.index * DEVICE_STRIDE + counter];
+    }
+
+    // Frames dropped on the way out of from over the connection
+    public long getLinkDrops(Connection connection, NetworkDevice from) {
+        return linkCounters[linkBase(connection.edgeId, from) + LINK_DROPS];
+    }
+
+    @Override
+    public Map<String, Long> linkCounters(String from, String to) {
+        NetworkDevice a = network.resolveDevice(from), b = network.resolveDevice(to);
+        Connection connection = a == null || b == null ? null : network.getConnection(a, b);
+        if (connection == null) throw new IllegalArgumentException("No link from " + from + " to " + to);
+        long[] links = linkCounters;
+        int base = linkBase(connection.edgeId, a);
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int c = 0; c < LINK_COUNTERS.length; c++) {
+            result.put(LINK_COUNTERS[c], links[base + c]);
+        }
+        result.put("queue", (long) connection.getQueueDepth(a));
+        result.put("queueMax", (long) connection.getMaxQueueDepth(a));
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> deviceCounters(String identifier) {
+        NetworkDevice device = network.resolveDevice(identifier);
+        if (device == null) throw new IllegalArgumentException("No device named " + identifier);
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int c = 0; c < DEVICE_COUNTERS.length; c++) {
+            result.put(DEVICE_COUNTERS[c], getDeviceCounter(device, c));
+        }
+        if (network.getActors() != null) {
+            result.put("mailboxDepth", (long) network.getActors().getMailboxDepth(device));
+        }
+        return result;
+    }
+
+    @Override public int getDeviceCount() { return network.getGraph().vertexCount(); }
+    @Override public int getLinkCount() { return network.getGraph().edgeCount(); }
+    @Override public long getFramesSent() { return total(FRAMES_OUT); }
+    @Override public long getFramesReceived() { return total(FRAMES_IN); }
+    @Override public long getBytesSent() { return total(BYTES_OUT); }
+    @Override public long getBytesReceived() { return total(BYTES_IN); }
+    @Override public long getDroppedFrames() { return total(DROPS); }
+
+    @Override
+    public long getEventsProcessed() {
+        long events = 0;
+        for (int p = 0; p < network.getPartitionCount(); p++) {
+            events += network.engine(p).getProcessedEvents();
+        }
+        return events;
+    }
+
+    // Events waiting in the engines' queues (the simulator's own queue depth)
+    @Override
+    public long getPendingEvents() {
+        long pending = 0;
+        for (int p = 0; p < network.getPartitionCount(); p++) {
+            pending += network.engine(p).getPendingEvents();
+        }
+        return pending;
+    }
+
+    @Override
+    public int getMaxMailboxDepth() {
+        ActorRuntime actors = network.getActors();
+        return actors == null ? 0 : actors.getMaxMailboxDepth();
+    }
+
+    @Override public long getRttCount() { return rtt.getCount(); }
+    @Override public long getRttMedianNanos() { return rtt.getPercentile(0.5); }
+    @Override public long getRttP99Nanos() { return rtt.getPercentile(0.99); }
+    @Override public long getRttMaxNanos() { return rtt.getMax(); }
+    @Override public long getEventTimeMedianNanos() { return eventTimes.getPercentile(0.5); }
+    @Override public long getEventTimeP99Nanos() { return eventTimes.getPercentile(0.99); }
+    @Override public long getEventTimeMaxNanos() { return eventTimes.getMax(); }
+
+    @Override
+    public void reset() {
+        Arrays.fill(deviceCounters, 0);
+        Arrays.fill(linkCounters, 0);
+        Arrays.fill(retired, 0);
+        rtt.reset();
+        eventTimes.reset();
+    }
+
+    private long total(int counter) {
+        long[] counters = deviceCounters;
+        long sum = retired[counter];
+        for (int i = counter; i < counters.length; i += DEVICE_STRIDE) {
+            sum += counters[i];
+        }
+        return sum;
+    }
+
+    // --- Export ---
+
+    // Make the metrics visible over JMX; returns false if something is already registered
+    public boolean registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) return false;
+            server.registerMBean(this, name);
+            return true;
+        } catch (JMException e) {
+            Log.warn("metrics.jmx.failed", e);
+            return false;
+        }
+    }
+
+    // Rewrite the snapshot file every period on a background thread (until the JVM exits)
+    public synchronized void startSnapshots(Path path, long periodMillis) {
+        if (snapshots != null) snapshots.shutdownNow();
+        snapshots = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().daemon().name("metrics-snapshot").factory());
+        snapshots.scheduleAtFixedRate(() -> {
+            try {
+                writeSnapshot(path);
+            } catch (IOException | RuntimeException e) {
+                // The topology may change under us; the next snapshot will catch up
+                Log.warn("metrics.snapshot.failed", e, "file", path);
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void writeSnapshot(String path) throws IOException {
+        writeSnapshot(Path.of(path));
+    }
+
+    // Totals and histograms, then one line per device and link that has seen traffic.
+    // Written to a temporary file and moved into place, so readers never see half a snapshot.
+    public void writeSnapshot(Path path) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temporary)) {
+            out.write("# Network metrics " + Instant.now() + "\n");
+            line(out, "devices", getDeviceCount());
+            line(out, "links", getLinkCount());
+            line(out, "frames.sent", getFramesSent());
+            line(out, "frames.received", getFramesReceived());
+            line(out, "bytes.sent", getBytesSent());
+            line(out, "bytes.received", getBytesReceived());
+            line(out, "frames.dropped", getDroppedFrames());
+            line(out, "events.processed", getEventsProcessed());
+            line(out, "events.pending", getPendingEvents());
+            line(out, "mailbox.depth.max", getMaxMailboxDepth());
+            histogram(out, "rtt.nanos", rtt);
+            histogram(out, "event.nanos", eventTimes);
+
+            TopologyGraph graph = network.getGraph();
+            long[] counters = deviceCounters;
+            ActorRuntime actors = network.getActors();
+            for (int v = 0; v < graph.vertexLimit() && (v + 1) * DEVICE_STRIDE <= counters.length; v++) {
+                NetworkDevice device = network.getDeviceByIndex(v);
+                int base = v * DEVICE_STRIDE;
+                if (device == null || counters[base + FRAMES_IN] + counters[base + FRAMES_OUT] + counters[base + DROPS] == 0) {
+                    continue;
+                }
+                out.write("device " + device);
+                for (int c = 0; c < DEVICE_COUNTERS.length; c++) {
+                    out.write(" " + DEVICE_COUNTERS[c] + "=" + counters[base + c]);
+                }
+                if (actors != null) out.write(" mailboxDepth=" + actors.getMailboxDepth(device));
+                out.write("\n");
+            }
+            long[] links = linkCounters;
+            for (int e = 0; e < graph.edgeLimit() && (e + 1) * LINK_STRIDE <= links.length; e++) {
+                Connection connection = network.getConnectionByEdge(e);
+                int base = e * LINK_STRIDE, back = base + LINK_STRIDE / 2;
+                if (connection == null || links[base] + links[base + LINK_DROPS] + links[back] + links[back + LINK_DROPS] == 0) {
+                    continue;
+                }
+                NetworkDevice a = network.getDeviceByIndex(graph.edgeFrom(e));
+                NetworkDevice b = network.getDeviceByIndex(graph.edgeTo(e));
+                linkLine(out, a, b, connection, links, base);
+                linkLine(out, b, a, connection, links, back);
+            }
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void linkLine(BufferedWriter out, NetworkDevice from, NetworkDevice to, Connection connection,
+                                 long[] links, int base) throws IOException {
+        out.write("link " + from + "->" + to);
+        for (int c = 0; c < LINK_COUNTERS.length; c++) {
+            out.write(" " + LINK_COUNTERS[c] + "=" + links[base + c]);
+        }
+        out.write(" queue=" + connection.getQueueDepth(from) + " queueMax=" + connection.getMaxQueueDepth(from) + "\n");
+    }
+
+    private static void line(BufferedWriter out, String name, long value) throws IOException {
+        out.write(name + " " + value + "\n");
+    }
+
+    private static void histogram(BufferedWriter out, String name, Histogram histogram) throws IOException {
+        out.write(name + " count=" + histogram.getCount() + " mean=" + histogram.getMean()
+                + " p50=" + histogram.getPercentile(0.5) + " p90=" + histogram.getPercentile(0.9)
+                + " p99=" + histogram.getPercentile(0.99) + " max=" + histogram.getMax() + "\n");
+    }
+}
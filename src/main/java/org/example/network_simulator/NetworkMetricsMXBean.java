@@ -0,0 +1,41 @@
+package org.example.network_simulator;
+
+import java.io.IOException;
+import java.util.Map;
+
+// What NetworkMetrics shows over JMX (jconsole, VisualVM, ...), under
+// org.example.network_simulator:type=NetworkMetrics. Times are in nanoseconds.
+public interface NetworkMetricsMXBean {
+
+    int getDeviceCount();
+    int getLinkCount();
+
+    long getFramesSent();
+    long getFramesReceived();
+    long getBytesSent();
+    long getBytesReceived();
+    long getDroppedFrames();
+
+    long getEventsProcessed();
+    long getPendingEvents();
+    int getMaxMailboxDepth();
+
+    long getRttCount();
+    long getRttMedianNanos();
+    long getRttP99Nanos();
+    long getRttMaxNanos();
+
+    long getEventTimeMedianNanos();
+    long getEventTimeP99Nanos();
+    long getEventTimeMaxNanos();
+
+    // Counters of one device, by name or IP address
+    Map<String, Long> deviceCounters(String identifier);
+
+    // Counters of one direction of a link, from the first device to the second
+    Map<String, Long> linkCounters(String from, String to);
+
+    void writeSnapshot(String path) throws IOException;
+
+    void reset();
+}
@@ -1,17 +1,35 @@
 package org.example.network_simulator;
 
 // PC.java
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 
-public class PC extends NetworkDevice {
+public final class PC extends NetworkDevice {
 
     private String ipAddress;
+    private int address; // ipAddress packed into an int (0 if it does not parse)
     private String subnetMask = "255.255.255.0"; // Default mask
 
+    // Running ping commands by ICMP identifier; only touched from this PC's partition
+    final Map<Integer, PingSession> pingSessions = new HashMap<>();
+    int nextPingIdentifier = 1;
+    // Traffic tests this PC is sending, by session id, and the ones it is receiving, by sender MAC and session id
+    final Map<Integer, TrafficSession> trafficSessions = new HashMap<>();
+    final Map<Long, TrafficSession.Receiver> trafficReceivers = new HashMap<>();
+    int nextTrafficIdentifier = 1;
+
     public PC(double x, double y) {
         super("PC", x, y);
         // Assign a default IP based on ID (simple scheme)
-        this.ipAddress = "192.168.1." + (100 + getId());
+        this.ipAddress = defaultAddress(getId());
+        this.address = parseAddress(ipAddress);
+    }
+
+    PC(int id, double x, double y) {
+        super("PC", id, x, y);
+        this.ipAddress = defaultAddress(getId());
+        this.address = parseAddress(ipAddress);
     }
 
     public String getIpAddress() {
@@ -19,7 +37,30 @@ public class PC extends NetworkDevice {
     }
 
     public void setIpAddress(String ipAddress) {
+        String oldAddress = this.ipAddress;
         this.ipAddress = ipAddress;
+        this.address = parseAddress(ipAddress);
+        if (network != null) {
+            network.addressChanged(this, oldAddress, ipAddress); // Keep the address index current
+        }
+    }
+
+    // PC 1 gets 192.168.1.101, and so on up to .254; later ids carry on from 192.168.2.1, skipping
+    // the .0 and .255 of each /24 (so PC 155 is 192.168.2.1), and past 192.168.255.254 into 192.169
+    static String defaultAddress(int id) {
+        int host = 99 + id; // Counting the usable addresses from 192.168.1.1
+        int base = (192 << 24) | (168 << 16);
+        return Ipv4.format(base + ((1 + host / 254) << 8) + 1 + host % 254);
+    }
+
+    // Text that isn't an address is kept as 0, which the network never indexes or routes to
+    private static int parseAddress(String ipAddress) {
+        long parsed = Ipv4.parse(ipAddress);
+        return parsed == Ipv4.INVALID ? 0 : (int) parsed;
+    }
+
+    public int getAddress() {
+        return address;
     }
 
     public String getSubnetMask() {
@@ -28,6 +69,26 @@ public class PC extends NetworkDevice {
 
     public void setSubnetMask(String subnetMask) {
         this.subnetMask = subnetMask;
+        if (network != null) {
+            network.subnetMaskChanged(this);
+        }
+    }
+
+    @Override
+    protected void receiveFrame(Network network, Packet packet, NetworkDevice from) {
+        if (packet.destinationMac() != getMacAddress() && !packet.isBroadcast()) {
+            packet.release(); // Not for us (e.g. flooded by a switch)
+        } else if (packet.isEchoReply()) {
+            network.handleEchoReply(this, packet);
+            packet.release();
+        } else if (packet.isChat()) {
+            network.deliverChat(this, packet);
+            packet.release();
+        } else if (packet.isTraffic()) {
+            network.receiveTraffic(this, packet);
+        } else {
+            super.receiveFrame(network, packet, from);
+        }
     }
 
     // Override toString for better identification (used in ping target parsing)
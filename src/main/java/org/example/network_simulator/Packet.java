@@ -0,0 +1,354 @@
+package org.example.network_simulator;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+
+// A simulated Ethernet frame held in a fixed cell of a PacketPool slab.
+// Header fields are read and written in place through typed accessors (Ethernet, IPv4, ICMP echo
+// and simple chat, traffic-test and link-state payloads), so forwarding a packet never allocates. Packets are reference
+// counted: whoever holds a reference must pass it on or release() it, and retain() lets several
+// receivers share one packet (e.g. a flood). Mutate only through exclusive().
+public final class Packet {
+
+    public static final long BROADCAST_MAC = 0xffff_ffff_ffffL;
+    public static final int ETHERTYPE_IPV4 = 0x0800;
+    public static final int PROTOCOL_ICMP = 1;
+    public static final int PROTOCOL_CHAT = 253; // RFC 3692 experimental protocol number
+    public static final int PROTOCOL_TRAFFIC = 254; // The other experimental number, for traffic tests
+    public static final int PROTOCOL_LINK_STATE = 89; // OSPF's protocol number, for router link-state messages
+    public static final int ICMP_ECHO_REPLY = 0;
+    public static final int ICMP_ECHO_REQUEST = 8;
+    public static final int DEFAULT_TTL = 128;
+    public static final int ECHO_DATA_BYTES = 32;
+
+    // Layout
+    private static final int ETH_DST = 0, ETH_SRC = 6, ETH_TYPE = 12, ETH_HEADER = 14;
+    private static final int IP_VERSION_IHL = ETH_HEADER, IP_TOS = ETH_HEADER + 1, IP_TOTAL_LENGTH = ETH_HEADER + 2,
+            IP_TTL = ETH_HEADER + 8, IP_PROTOCOL = ETH_HEADER + 9, IP_CHECKSUM = ETH_HEADER + 10,
+            IP_SRC = ETH_HEADER + 12, IP_DST = ETH_HEADER + 16, IP_HEADER = 20;
+    private static final int L4 = ETH_HEADER + IP_HEADER;
+    private static final int ICMP_TYPE = L4, ICMP_CODE = L4 + 1, ICMP_CHECKSUM = L4 + 2,
+            ICMP_IDENTIFIER = L4 + 4, ICMP_SEQUENCE = L4 + 6, ICMP_HEADER = 8;
+    private static final int CHAT_LENGTH = L4, CHAT_TEXT = L4 + 2;
+    private static final int TRAFFIC_SESSION = L4, TRAFFIC_STREAM = L4 + 2, TRAFFIC_KIND = L4 + 3,
+            TRAFFIC_SEQUENCE = L4 + 4, TRAFFIC_TIME = L4 + 8, TRAFFIC_HEADER = 16;
+    private static final int LINK_STATE_TYPE = L4, LINK_STATE_COUNT = L4 + 2, LINK_STATE_HEADER = 4;
+
+    // Largest traffic payload that keeps the IP packet within a 1500-byte Ethernet MTU
+    public static final int MAX_TRAFFIC_PAYLOAD = 1500 - IP_HEADER - TRAFFIC_HEADER;
+
+    // Largest link-state body that keeps the IP packet within a 1500-byte Ethernet MTU
+    public static final int MAX_LINK_STATE_BODY = 1500 - IP_HEADER - LINK_STATE_HEADER;
+
+    static final int MIN_SIZE = L4 + ICMP_HEADER + ECHO_DATA_BYTES;
+
+    private static final AtomicLong nextTraceId = new AtomicLong();
+
+    private final PacketPool pool;
+    private final ByteBuffer buffer;
+    private int length;
+    private int refCount;
+    private long traceId; // Simulator metadata, not on the wire: identifies one logical packet across copies
+    private long broadcastId; // Likewise; names a broadcast for duplicate suppression, 0 for other packets
+
+    Packet(PacketPool pool, ByteBuffer buffer) {
+        this.pool = pool;
+        this.buffer = buffer;
+    }
+
+    void reset() {
+        length = 0;
+        refCount = 1;
+        traceId = nextTraceId.incrementAndGet();
+        broadcastId = 0;
+    }
+
+    // --- Lifecycle ---
+
+    public Packet retain() {
+        checkLive();
+        refCount++;
+        return this;
+    }
+
+    public void release() {
+        checkLive();
+        if (--refCount == 0) {
+            pool.recycle(this);
+        }
+    }
+
+    public int refCount() {
+        return refCount;
+    }
+
+    // A packet the caller may modify: this one if unshared, otherwise a private copy
+    // (the caller's reference to the shared packet is given up either way)
+    public Packet exclusive() {
+        if (refCount == 1) return this;
+        Packet copy = copyTo(pool);
+        release();
+        return copy;
+    }
+
+    // Copy into another pool (e.g. when a packet crosses to another partition's thread)
+    Packet copyTo(PacketPool target) {
+        Packet copy = target.acquire();
+        copy.buffer.put(0, buffer, 0, length);
+        copy.length = length;
+        copy.traceId = traceId;
+        copy.broadcastId = broadcastId;
+        return copy;
+    }
+
+    public long traceId() { return traceId; }
+    long broadcastId() { return broadcastId; }
+    void setBroadcastId(long broadcastId) { this.broadcastId = broadcastId; }
+    public int length() { return length; }
+
+    // --- Builders ---
+
+    public Packet writeEcho(boolean request, long srcMac, long dstMac, int srcIp, int dstIp, int identifier, int sequence) {
+        writeIpv4Header(srcMac, dstMac, srcIp, dstIp, PROTOCOL_ICMP, ICMP_HEADER + ECHO_DATA_BYTES);
+        buffer.put(ICMP_TYPE, (byte) (request ? ICMP_ECHO_REQUEST : ICMP_ECHO_REPLY));
+        buffer.put(ICMP_CODE, (byte) 0);
+        buffer.putShort(ICMP_IDENTIFIER, (short) identifier);
+        buffer.putShort(ICMP_SEQUENCE, (short) sequence);
+        for (int i = 0; i < ECHO_DATA_BYTES; i++) {
+            buffer.put(L4 + ICMP_HEADER + i, (byte) ('a' + i % 23)); // Same filler as Windows ping
+        }
+        updateIcmpChecksum();
+        return this;
+    }
+
+    // Encodes the text as UTF-8 straight into the cell; text that does not fit is truncated
+    public Packet writeChat(long srcMac, long dstMac, int srcIp, int dstIp, CharSequence text) {
+        int capacity = buffer.capacity() - CHAT_TEXT;
+        int pos = CHAT_TEXT;
+        for (int i = 0; i < text.length(); i++) {
+            int c = text.charAt(i);
+            if (Character.isHighSurrogate((char) c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+                c = Character.toCodePoint((char) c, text.charAt(++i));
+            }
+            int bytes = c < 0x80 ? 1 : c < 0x800 ? 2 : c < 0x10000 ? 3 : 4;
+            if (pos + bytes > CHAT_TEXT + capacity) break;
+            if (bytes == 1) {
+                buffer.put(pos++, (byte) c);
+            } else if (bytes == 2) {
+                buffer.put(pos++, (byte) (0xc0 | (c >> 6)));
+                buffer.put(pos++, (byte) (0x80 | (c & 0x3f)));
+            } else if (bytes == 3) {
+                buffer.put(pos++, (byte) (0xe0 | (c >> 12)));
+                buffer.put(pos++, (byte) (0x80 | ((c >> 6) & 0x3f)));
+                buffer.put(pos++, (byte) (0x80 | (c & 0x3f)));
+            } else {
+                buffer.put(pos++, (byte) (0xf0 | (c >> 18)));
+                buffer.put(pos++, (byte) (0x80 | ((c >> 12) & 0x3f)));
+                buffer.put(pos++, (byte) (0x80 | ((c >> 6) & 0x3f)));
+                buffer.put(pos++, (byte) (0x80 | (c & 0x3f)));
+            }
+        }
+        int textLength = pos - CHAT_TEXT;
+        writeIpv4Header(srcMac, dstMac, srcIp, dstIp, PROTOCOL_CHAT, 2 + textLength);
+        buffer.putShort(CHAT_LENGTH, (short) textLength);
+        return this;
+    }
+
+    // A traffic-test segment (see TrafficSession). Only the header is written: the payload bytes
+    // are whatever the cell held before, since only their length matters.
+    public Packet writeTraffic(long srcMac, long dstMac, int srcIp, int dstIp, int session, int stream, int kind,
+                               int sequence, long time, int payloadLength) {
+        writeIpv4Header(srcMac, dstMac, srcIp, dstIp, PROTOCOL_TRAFFIC, TRAFFIC_HEADER + payloadLength);
+        buffer.putShort(TRAFFIC_SESSION, (short) session);
+        buffer.put(TRAFFIC_STREAM, (byte) stream);
+        buffer.put(TRAFFIC_KIND, (byte) kind);
+        buffer.putInt(TRAFFIC_SEQUENCE, sequence);
+        buffer.putLong(TRAFFIC_TIME, time);
+        return this;
+    }
+
+    // A link-state message between neighbouring routers (see LinkStateRouter): a type, a count of
+    // the records in the body, and the body itself, written afterwards with setLinkStateInt
+    public Packet writeLinkState(long srcMac, long dstMac, int type, int count, int bodyLength) {
+        writeIpv4Header(srcMac, dstMac, 0, 0, PROTOCOL_LINK_STATE, LINK_STATE_HEADER + bodyLength);
+        buffer.put(LINK_STATE_TYPE, (byte) type);
+        buffer.put(LINK_STATE_TYPE + 1, (byte) 0);
+        buffer.putShort(LINK_STATE_COUNT, (short) count);
+        return this;
+    }
+
+    private void writeIpv4Header(long srcMac, long dstMac, int srcIp, int dstIp, int protocol, int payloadLength) {
+        setDestinationMac(dstMac);
+        setSourceMac(srcMac);
+        buffer.putShort(ETH_TYPE, (short) ETHERTYPE_IPV4);
+        buffer.put(IP_VERSION_IHL, (byte) 0x45);
+        buffer.put(IP_TOS, (byte) 0);
+        buffer.putShort(IP_TOTAL_LENGTH, (short) (IP_HEADER + payloadLength));
+        buffer.putInt(IP_VERSION_IHL + 4, 0); // Identification, flags, fragment offset
+        buffer.put(IP_TTL, (byte) DEFAULT_TTL);
+        buffer.put(IP_PROTOCOL, (byte) protocol);
+        buffer.putInt(IP_SRC, srcIp);
+        buffer.putInt(IP_DST, dstIp);
+        updateIpChecksum();
+        length = L4 + payloadLength;
+    }
+
+    // --- Ethernet ---
+
+    public long destinationMac() { return readMac(ETH_DST); }
+    public long sourceMac() { return readMac(ETH_SRC); }
+    public void setDestinationMac(long mac) { writeMac(ETH_DST, mac); }
+    public void setSourceMac(long mac) { writeMac(ETH_SRC, mac); }
+    public int etherType() { return buffer.getShort(ETH_TYPE) & 0xffff; }
+    public boolean isBroadcast() { return destinationMac() == BROADCAST_MAC; }
+
+    // --- IPv4 ---
+
+    public boolean isIpv4() { return etherType() == ETHERTYPE_IPV4; }
+    public int ttl() { return buffer.get(IP_TTL) & 0xff; }
+    public int protocol() { return buffer.get(IP_PROTOCOL) & 0xff; }
+    public int sourceIp() { return buffer.getInt(IP_SRC); }
+    public int destinationIp() { return buffer.getInt(IP_DST); }
+    public int tos() { return buffer.get(IP_TOS) & 0xff; }
+
+    // Goes first through PRIORITY link queues: ICMP, and anything marked with an IP precedence
+    public boolean isPriority() {
+        return isIcmp() || (isIpv4() && (tos() >> 5) != 0);
+    }
+
+    public void setTos(int tos) {
+        buffer.put(IP_TOS, (byte) tos);
+        updateIpChecksum();
+    }
+
+    public void setTtl(int ttl) {
+        buffer.put(IP_TTL, (byte) ttl);
+        updateIpChecksum();
+    }
+
+    public void setSourceIp(int address) {
+        buffer.putInt(IP_SRC, address);
+        updateIpChecksum();
+    }
+
+    public void setDestinationIp(int address) {
+        buffer.putInt(IP_DST, address);
+        updateIpChecksum();
+    }
+
+    public boolean isIpChecksumValid() {
+        return checksum(ETH_HEADER, IP_HEADER) == 0;
+    }
+
+    // --- ICMP echo ---
+
+    public boolean isEchoRequest() { return isIcmp() && buffer.get(ICMP_TYPE) == ICMP_ECHO_REQUEST; }
+    public boolean isEchoReply() { return isIcmp() && buffer.get(ICMP_TYPE) == ICMP_ECHO_REPLY; }
+    public int icmpIdentifier() { return buffer.getShort(ICMP_IDENTIFIER) & 0xffff; }
+    public int icmpSequence() { return buffer.getShort(ICMP_SEQUENCE) & 0xffff; }
+    public int echoDataLength() { return length - L4 - ICMP_HEADER; }
+
+    // Turn an echo request into its reply in place: swap addresses, flip the type, reset the TTL
+    public void turnAroundEcho(long replierMac) {
+        long requesterMac = sourceMac();
+        int requesterIp = sourceIp();
+        int replierIp = destinationIp();
+        setDestinationMac(requesterMac);
+        setSourceMac(replierMac);
+        buffer.putInt(IP_SRC, replierIp);
+        buffer.putInt(IP_DST, requesterIp);
+        buffer.put(IP_TTL, (byte) DEFAULT_TTL);
+        updateIpChecksum();
+        buffer.put(ICMP_TYPE, (byte) ICMP_ECHO_REPLY);
+        updateIcmpChecksum();
+    }
+
+    private boolean isIcmp() {
+        return isIpv4() && protocol() == PROTOCOL_ICMP;
+    }
+
+    // --- Chat ---
+
+    public boolean isChat() { return isIpv4() && protocol() == PROTOCOL_CHAT; }
+    public int chatTextLength() { return buffer.getShort(CHAT_LENGTH) & 0xffff; }
+
+    public String chatText() {
+        byte[] bytes = new byte[chatTextLength()];
+        buffer.get(CHAT_TEXT, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // --- Traffic tests ---
+
+    public boolean isTraffic() { return isIpv4() && protocol() == PROTOCOL_TRAFFIC; }
+    public int trafficSession() { return buffer.getShort(TRAFFIC_SESSION) & 0xffff; }
+    public int trafficStream() { return buffer.get(TRAFFIC_STREAM) & 0xff; }
+    public int trafficKind() { return buffer.get(TRAFFIC_KIND); }
+    public int trafficSequence() { return buffer.getInt(TRAFFIC_SEQUENCE); }
+    public long trafficTime() { return buffer.getLong(TRAFFIC_TIME); }
+    public int trafficPayloadLength() { return length - L4 - TRAFFIC_HEADER; }
+
+    // Payload ints, e.g. the per-stream counters of a receiver report
+    public int trafficInt(int index) { return buffer.getInt(L4 + TRAFFIC_HEADER + 4 * index); }
+    public void setTrafficInt(int index, int value) { buffer.putInt(L4 + TRAFFIC_HEADER + 4 * index, value); }
+
+    // --- Link state ---
+
+    public boolean isLinkState() { return isIpv4() && protocol() == PROTOCOL_LINK_STATE; }
+    public int linkStateType() { return buffer.get(LINK_STATE_TYPE); }
+    public int linkStateCount() { return buffer.getShort(LINK_STATE_COUNT) & 0xffff; }
+    public int linkStateBodyLength() { return length - L4 - LINK_STATE_HEADER; }
+
+    // Body ints by byte offset from the start of the body
+    public int linkStateInt(int offset) { return buffer.getInt(L4 + LINK_STATE_HEADER + offset); }
+    public void setLinkStateInt(int offset, int value) { buffer.putInt(L4 + LINK_STATE_HEADER + offset, value); }
+
+    // --- Internals ---
+
+    private long readMac(int offset) {
+        return ((buffer.getShort(offset) & 0xffffL) << 32) | (buffer.getInt(offset + 2) & 0xffffffffL);
+    }
+
+    private void writeMac(int offset, long mac) {
+        buffer.putShort(offset, (short) (mac >>> 32));
+        buffer.putInt(offset + 2, (int) mac);
+    }
+
+    private void updateIpChecksum() {
+        buffer.putShort(IP_CHECKSUM, (short) 0);
+        buffer.putShort(IP_CHECKSUM, (short) checksum(ETH_HEADER, IP_HEADER));
+    }
+
+    private void updateIcmpChecksum() {
+        buffer.putShort(ICMP_CHECKSUM, (short) 0);
+        buffer.putShort(ICMP_CHECKSUM, (short) checksum(L4, length - L4));
+    }
+
+    // RFC 1071 one's complement sum
+    private int checksum(int offset, int count) {
+        int sum = 0;
+        int end = offset + (count & ~1);
+        for (int i = offset; i < end; i += 2) {
+            sum += buffer.getShort(i) & 0xffff;
+        }
+        if ((count & 1) != 0) {
+            sum += (buffer.get(offset + count - 1) & 0xff) << 8;
+        }
+        while ((sum >>> 16) != 0) {
+            sum = (sum & 0xffff) + (sum >>> 16);
+        }
+        return ~sum & 0xffff;
+    }
+
+    private void checkLive() {
+        if (refCount <= 0) throw new IllegalStateException("Packet used after release");
+    }
+
+    @Override
+    public String toString() {
+        String kind = isEchoRequest() ? "ECHO_REQUEST" : isEchoReply() ? "ECHO_REPLY" : isChat() ? "CHAT"
+                : isTraffic() ? "TRAFFIC" : isLinkState() ? "LINK_STATE" : "FRAME";
+        return kind + " " + Ipv4.format(sourceIp()) + " -> " + Ipv4.format(destinationIp()) + " ttl=" + ttl();
+    }
+}
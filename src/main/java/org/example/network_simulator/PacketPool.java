@@ -0,0 +1,71 @@
+package org.example.network_simulator;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Recycles Packets carved out of large ByteBuffer slabs (heap or direct).
+// Once the pool has grown to the working-set size, acquire/release allocate nothing.
+// Not thread-safe: give each engine thread its own pool.
+public class PacketPool {
+
+    public static final int DEFAULT_PACKET_SIZE = 2048; // Room for a full 1518-byte Ethernet frame
+    public static final int DEFAULT_PACKETS_PER_SLAB = 1024;
+
+    private final int packetSize;
+    private final int packetsPerSlab;
+    private final boolean direct;
+
+    private Packet[] free = new Packet[0];
+    private int freeCount = 0;
+    private int slabs = 0;
+    private long acquired = 0;
+    private long released = 0;
+
+    public PacketPool(int packetSize, int packetsPerSlab, boolean direct) {
+        if (packetSize < Packet.MIN_SIZE) {
+            throw new IllegalArgumentException("Packet size must be at least " + Packet.MIN_SIZE + " bytes");
+        }
+        this.packetSize = packetSize;
+        this.packetsPerSlab = packetsPerSlab;
+        this.direct = direct;
+    }
+
+    public PacketPool() {
+        this(DEFAULT_PACKET_SIZE, DEFAULT_PACKETS_PER_SLAB, false);
+    }
+
+    // A cleared packet with one reference owned by the caller
+    public Packet acquire() {
+        if (freeCount == 0) {
+            addSlab();
+        }
+        Packet packet = free[--freeCount];
+        free[freeCount] = null;
+        packet.reset();
+        acquired++;
+        return packet;
+    }
+
+    void recycle(Packet packet) {
+        released++;
+        free[freeCount++] = packet;
+    }
+
+    public int getPacketSize() { return packetSize; }
+    public int getCapacity() { return slabs * packetsPerSlab; }
+    public long getInUse() { return acquired - released; }
+    public long getAcquired() { return acquired; }
+    public int getSlabs() { return slabs; }
+
+    private void addSlab() {
+        ByteBuffer slab = direct
+                ? ByteBuffer.allocateDirect(packetSize * packetsPerSlab)
+                : ByteBuffer.allocate(packetSize * packetsPerSlab);
+        free = Arrays.copyOf(free, Math.max(free.length, getCapacity() + packetsPerSlab));
+        for (int i = packetsPerSlab - 1; i >= 0; i--) {
+            ByteBuffer cell = slab.slice(i * packetSize, packetSize);
+            free[freeCount++] = new Packet(this, cell);
+        }
+        slabs++;
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.network_simulator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+// Runs a partitioned Network on one worker thread per partition using conservative,
+// window-based synchronisation. No cross-partition delivery arrives sooner than the network's
+// lookahead (its minimum link latency), so every partition can safely process
+// [start, start + lookahead) on its own before the windows' outboxes are exchanged.
+class ParallelRunner implements AutoCloseable {
+
+    private final SimulationPartition[] partitions;
+    private final ExecutorService workers;
+    private final List<Callable<Void>> processTasks = new ArrayList<>();
+    private final List<Callable<Void>> exchangeTasks = new ArrayList<>();
+    private long windowEnd; // Inclusive; published to workers by the executor hand-off
+    private long windows = 0;
+
+    ParallelRunner(SimulationPartition[] partitions) {
+        this.partitions = partitions;
+        this.workers = Executors.newFixedThreadPool(partitions.length, runnable -> {
+            Thread thread = new Thread(runnable, "simulation-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (SimulationPartition partition : partitions) {
+            processTasks.add(() -> {
+                partition.clearOutboxes(); // Everything in them was copied during the last exchange
+                partition.engine.runUntil(windowEnd);
+                return null;
+            });
+            exchangeTasks.add(() -> {
+                for (SimulationPartition source : partitions) {
+                    if (source != partition) partition.importFrom(source);
+                }
+                return null;
+            });
+        }
+    }
+
+    void runUntil(long limit, long lookahead) {
+        if (lookahead <= 0) throw new IllegalStateException("Parallel runs need a positive lookahead");
+        while (true) {
+            long start = Long.MAX_VALUE;
+            for (SimulationPartition partition : partitions) {
+                start = Math.min(start, partition.engine.nextEventTime());
+            }
+            if (start == Long.MAX_VALUE || start > limit) break;
+            windowEnd = Math.min(limit, start + lookahead - 1);
+            invokeAll(processTasks);
+            invokeAll(exchangeTasks);
+            windows++;
+        }
+        long end = limit;
+        if (end == Long.MAX_VALUE) {
+            end = 0;
+            for (SimulationPartition partition : partitions) {
+                end = Math.max(end, partition.engine.now());
+            }
+        }
+        // Leave every clock at the same instant, as a sequential run would
+        for (SimulationPartition partition : partitions) {
+            partition.clearOutboxes();
+            partition.engine.runUntil(end);
+        }
+    }
+
+    long getWindows() {
+        return windows;
+    }
+
+    private void invokeAll(List<Callable<Void>> tasks) {
+        try {
+            for (Future<Void> result : workers.invokeAll(tasks)) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted during a parallel run", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Simulation worker failed", e.getCause());
+        }
+    }
+
+    @Override
+    public void close() {
+        workers.shutdownNow();
+    }
+}
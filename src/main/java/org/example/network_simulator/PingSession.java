@@ -0,0 +1,110 @@
+package org.example.network_simulator;
+
+// One run of the "ping" command: four echo requests, one second apart in simulated time
+class PingSession {
+
+    static final int ECHO_COUNT = 4;
+    static final long INTERVAL = SimulationEngine.NANOS_PER_SECOND;
+    static final long TIMEOUT = SimulationEngine.NANOS_PER_SECOND;
+
+    private final Network network;
+    private final int identifier;
+    private final PC source;
+    private final NetworkDevice target; // null if the identifier did not resolve
+    private final String targetName;
+    private final String targetAddress;
+    private final boolean reachable;
+
+    private int sent = 0;
+    private int received = 0;
+    private long minRtt = Long.MAX_VALUE, maxRtt = 0, totalRtt = 0;
+    private long sentAt;
+    private boolean awaitingReply = false;
+
+    PingSession(Network network, int identifier, PC source, NetworkDevice target, String identifierText, boolean reachable) {
+        this.network = network;
+        this.identifier = identifier;
+        this.source = source;
+        this.target = target;
+        this.reachable = reachable;
+        if (target == null) {
+            this.targetName = identifierText;
+            this.targetAddress = identifierText;
+        } else {
+            this.targetName = target.toString();
+            // Use IP if PC, else ID
+            this.targetAddress = (target instanceof PC) ? ((PC) target).getIpAddress() : target.toString();
+        }
+    }
+
+    int getIdentifier() { return identifier; }
+    PC getSource() { return source; }
+
+    void start() {
+        network.output(source, "\nPinging " + targetName + " [" + targetAddress + "] with 32 bytes of data:");
+        sendNext();
+    }
+
+    private void sendNext() {
+        if (sent == ECHO_COUNT) {
+            finish();
+            return;
+        }
+        int sequence = sent++;
+        sentAt = network.now(source);
+        awaitingReply = true;
+        if (reachable) {
+            int targetIp = (target instanceof PC) ? ((PC) target).getAddress() : 0;
+            Packet request = network.packetPoolFor(source).acquire().writeEcho(true, source.getMacAddress(),
+                    target.getMacAddress(), source.getAddress(), targetIp, identifier, sequence);
+            network.send(source, target, request);
+        }
+        network.schedule(source, TIMEOUT, () -> onTimeout(sequence));
+    }
+
+    void onReply(Packet reply) {
+        if (!awaitingReply || reply.icmpSequence() != sent - 1) {
+            return; // Late or duplicate reply
+        }
+        awaitingReply = false;
+        received++;
+        long rtt = network.now(source) - sentAt;
+        minRtt = Math.min(minRtt, rtt);
+        maxRtt = Math.max(maxRtt, rtt);
+        totalRtt += rtt;
+        network.getMetrics().getRtt().record(rtt);
+        network.output(source, "Reply from " + targetAddress + ": bytes=" + reply.echoDataLength()
+                + " time" + formatTime(rtt) + " TTL=" + reply.ttl());
+        network.scheduleAt(source, sentAt + INTERVAL, this::sendNext);
+    }
+
+    private void onTimeout(int sequence) {
+        if (!awaitingReply || sequence != sent - 1) {
+            return; // Reply already arrived
+        }
+        awaitingReply = false;
+        network.output(source, "Request timed out.");
+        sendNext();
+    }
+
+    private void finish() {
+        int lost = sent - received;
+        network.output(source, "\nPing statistics for " + targetAddress + ":");
+        network.output(source, "    Packets: Sent = " + sent + ", Received = " + received
+                + ", Lost = " + lost + " (" + (lost * 100 / sent) + "% loss),");
+        if (received > 0) {
+            network.output(source, "Approximate round trip times in milli-seconds:");
+            network.output(source, "    Minimum = " + toMillis(minRtt) + "ms, Maximum = " + toMillis(maxRtt)
+                    + "ms, Average = " + toMillis(totalRtt / received) + "ms");
+        }
+        network.pingFinished(this);
+    }
+
+    private static String formatTime(long rttNanos) {
+        return rttNanos < SimulationEngine.NANOS_PER_MILLI ? "<1ms" : "=" + toMillis(rttNanos) + "ms";
+    }
+
+    private static long toMillis(long nanos) {
+        return Math.round((double) nanos / SimulationEngine.NANOS_PER_MILLI);
+    }
+}
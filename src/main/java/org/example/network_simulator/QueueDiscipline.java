@@ -0,0 +1,33 @@
+package org.example.network_simulator;
+
+// How a link's transmit queue decides what to drop and what to send next
+public enum QueueDiscipline {
+    // First in, first out; arrivals that find the queue full are dropped
+    DROP_TAIL("drop-tail"),
+    // Random Early Detection: drops a growing share of arrivals as the average queue length
+    // climbs between a quarter and three quarters of the capacity, so senders back off before it fills
+    RED("red"),
+    // Strict priority: priority packets (see Packet.isPriority) always go first, and one arriving
+    // at a full queue pushes out the newest ordinary packet instead of being dropped
+    PRIORITY("priority");
+
+    private final String label;
+
+    QueueDiscipline(String label) {
+        this.label = label;
+    }
+
+    // Name used in link settings and saved topologies
+    public String getLabel() {
+        return label;
+    }
+
+    public static QueueDiscipline fromLabel(String label) {
+        for (QueueDiscipline discipline : values()) {
+            if (discipline.label.equalsIgnoreCase(label) || discipline.name().equalsIgnoreCase(label)) {
+                return discipline;
+            }
+        }
+        throw new IllegalArgumentException("Unknown queue discipline: " + label + " (use drop-tail, red or priority)");
+    }
+}
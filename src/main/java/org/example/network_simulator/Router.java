@@ -1,8 +1,113 @@
 package org.example.network_simulator;
 
 public class Router extends NetworkDevice {
+
+    private final ForwardingTable forwardingTable = new ForwardingTable(); // Next hops are neighbour device indexes
+    LinkStateRouter linkState; // Null unless the network runs link-state routing
+
     public Router(double x, double y) {
         super("Router", x, y);
     }
+
+    Router(int id, double x, double y) {
+        super("Router", id, x, y);
+    }
     // Router specific properties if needed
-}
\ No newline at end of file
+
+    public ForwardingTable getForwardingTable() {
+        return forwardingTable;
+    }
+
+    // Route a prefix (e.g. 10.1.0.0/16) via a directly connected neighbour
+    public void addRoute(int prefix, int prefixLength, NetworkDevice nextHop) {
+        if (network == null || !network.areConnected(this, nextHop)) {
+            throw new IllegalArgumentException(nextHop + " is not a neighbour of " + this);
+        }
+        forwardingTable.addRoute(prefix, prefixLength, nextHop.index);
+    }
+
+    public boolean removeRoute(int prefix, int prefixLength) {
+        return forwardingTable.removeRoute(prefix, prefixLength);
+    }
+
+    // Neighbour the longest matching route points at, or null if there is no usable route
+    public NetworkDevice nextHop(int address) {
+        int hop = forwardingTable.lookup(address);
+        if (hop == ForwardingTable.NO_ROUTE || network == null) return null;
+        NetworkDevice device = network.getDeviceByIndex(hop);
+        return device != null && network.areConnected(this, device) ? device : null;
+    }
+
+    @Override
+    protected void receiveFrame(Network network, Packet packet, NetworkDevice from) {
+        if (packet.isLinkState() && packet.destinationMac() == getMacAddress()) {
+            LinkStateRouter instance = linkState;
+            if (instance != null) {
+                instance.receive(packet, from);
+            } else {
+                packet.release();
+            }
+            return;
+        }
+        if (!packet.isIpv4() || packet.isBroadcast()) {
+            // Routers bound the broadcast domain
+            if (packet.isChat()) {
+                if (Log.DEBUG) Log.debug("chat.stopped", "device", this);
+            }
+            packet.release();
+            return;
+        }
+        if (packet.destinationMac() != getMacAddress()) {
+            packet.release(); // Not for us (e.g. flooded by a switch)
+            return;
+        }
+        if (packet.destinationIp() == 0) {
+            super.receiveFrame(network, packet, from); // Addressed to the router itself
+            return;
+        }
+        forward(network, packet);
+    }
+
+    // Hop-by-hop forwarding of routed traffic; packets out of TTL are dropped
+    private void forward(Network network, Packet packet) {
+        int ttl = packet.ttl();
+        if (ttl <= 1) {
+            network.getMetrics().frameDropped(this);
+            if (Log.DEBUG) Log.debug("frame.dropped", "device", this, "packet", packet, "reason", "ttl");
+            packet.release();
+            return;
+        }
+        Packet routed = packet.exclusive();
+        routed.setTtl(ttl - 1);
+        route(network, routed);
+    }
+
+    // Send a packet on towards its destination address: straight to the host if it is in one of this
+    // router's broadcast domains (a connected route), otherwise to the router the longest matching
+    // route points at. Anything else has no route and is dropped.
+    void route(Network network, Packet packet) {
+        int destinationIp = packet.destinationIp();
+        // Address resolution is done against the simulator's address index rather than with ARP
+        PC host = network.findPcByAddress(destinationIp);
+        int port = host == null ? -1 : network.domains().sharedPort(network.getGraph(), index, host.index);
+        NetworkDevice next;
+        long destinationMac;
+        if (port >= 0) {
+            next = network.getConnectionByEdge(port).getOtherDevice(this);
+            destinationMac = host.getMacAddress();
+        } else {
+            next = nextHop(destinationIp);
+            if (!(next instanceof Router)) {
+                network.getMetrics().frameDropped(this);
+                if (Log.DEBUG) Log.debug("frame.dropped", "device", this, "packet", packet, "reason", "no-route", "destination", Ipv4.format(destinationIp));
+                packet.release();
+                return;
+            }
+            destinationMac = next.getMacAddress();
+        }
+        Packet routed = packet.exclusive();
+        routed.setSourceMac(getMacAddress());
+        routed.setDestinationMac(destinationMac);
+        network.transmit(this, next, routed);
+    }
+}
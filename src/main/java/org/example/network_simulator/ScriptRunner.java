@@ -0,0 +1,171 @@
+package org.example.network_simulator;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+// Command-line entry point that runs a script of terminal input against a topology, without
+// JavaFX: no toolkit, no FXML, no windows. Meant for regression scenarios in CI, where the
+// output is diffed against a known-good copy.
+//
+//   ScriptRunner [-o results.txt] [--seed N] <topology> [script]
+//
+// The topology is a .nstp file, a topology text file, or --generate shape[:parameters] (e.g.
+// --generate fat-tree:k=4, see TopologyGenerator.SHAPES). The script is read from the file, or
+// from stdin if it is left out or "-". One line per input, as typed at that PC's terminal:
+//
+//   # comment
+//   PC1 ipconfig
+//   PC1 ping PC2
+//   PC2 hello everyone      <- not a command, so a chat message
+//
+// Routers run link-state routing, as in the UI, and the first line waits for their routes. Each
+// line runs until the network is idle before the next starts, so a run is deterministic.
+// Output is the input echoed as "PC1> ping PC2", then one "PC1: ..." per line of output and
+// "PC2 chat: ..." per chat message received. Exit status: 0 if every line ran, 1 if some line
+// named an unknown PC, 2 on bad arguments or an unreadable topology or script.
+public class ScriptRunner implements SimulationListener {
+
+    private static final String USAGE = "Usage: ScriptRunner [-o output] [--seed N] <topology.nstp | topology.txt | --generate shape[:parameters]> [script | -]";
+
+    private final Writer out;
+
+    ScriptRunner(Writer out) {
+        this.out = out;
+    }
+
+    public static void main(String[] args) {
+        // Only results on stdout, unless the log level was chosen explicitly
+        if (System.getProperty("log.level") == null) System.setProperty("log.level", "warn");
+        System.exit(run(args));
+    }
+
+    static int run(String[] args) {
+        String output = null, topology = null, script = null, shape = null;
+        long seed = Network.DEFAULT_SEED;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-o":
+                        output = args[++i];
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(args[++i]);
+                        break;
+                    case "--generate":
+                        shape = args[++i];
+                        break;
+                    default:
+                        if (args[i].startsWith("-") && !args[i].equals("-")) {
+                            throw new IllegalArgumentException("Unknown option: " + args[i]);
+                        } else if (topology == null && shape == null) {
+                            topology = args[i];
+                        } else if (script == null) {
+                            script = args[i];
+                        } else {
+                            throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+                        }
+                }
+            }
+            if (topology == null && shape == null) throw new IllegalArgumentException("No topology given");
+        } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException e) {
+            System.err.println(e instanceof ArrayIndexOutOfBoundsException ? "Missing option value" : e.getMessage());
+            System.err.println(USAGE);
+            return 2;
+        }
+
+        Network network = new Network(seed);
+        try {
+            if (shape != null) {
+                int colon = shape.indexOf(':');
+                TopologyGenerator.generate(colon < 0 ? shape : shape.substring(0, colon),
+                        colon < 0 ? "" : shape.substring(colon + 1)).build(network);
+            } else if (topology.endsWith(".nstp")) {
+                TopologyFile.open(Path.of(topology)).loadInto(network);
+            } else {
+                TopologyText.importInto(network, Path.of(topology));
+            }
+        } catch (NoSuchFileException e) {
+            System.err.println("No such topology file: " + e.getFile());
+            return 2;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Could not load topology: " + e.getMessage());
+            return 2;
+        }
+
+        try (BufferedReader in = script == null || script.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Path.of(script), StandardCharsets.UTF_8);
+             Writer out = output == null
+                     ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                     : Files.newBufferedWriter(Path.of(output), StandardCharsets.UTF_8)) {
+            return new ScriptRunner(out).runScript(network, in);
+        } catch (NoSuchFileException e) {
+            System.err.println("No such script file: " + e.getFile());
+            return 2;
+        } catch (IOException e) {
+            System.err.println("Could not run script: " + e.getMessage());
+            return 2;
+        }
+    }
+
+    // Run every line of the script; 1 if any named an unknown PC, else 0. Link-state routing runs
+    // as it does in the UI, and has converged before the first line.
+    int runScript(Network network, BufferedReader script) throws IOException {
+        LinkStateRouting routing = network.getLinkStateRouting();
+        if (!routing.isRunning()) routing.start();
+        network.run();
+        network.addListener(this);
+        int status = 0, number = 0;
+        String line;
+        while ((line = script.readLine()) != null) {
+            number++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] parts = line.split("\\s+", 2);
+            NetworkDevice device = network.resolveDevice(parts[0]);
+            if (!(device instanceof PC) || parts.length < 2) {
+                System.err.println("Line " + number + ": " + (parts.length < 2 ? "nothing to run on " + parts[0]
+                        : "no PC named " + parts[0]));
+                status = 1;
+                continue;
+            }
+            synchronized (this) {
+                out.write(device + "> " + parts[1] + "\n");
+            }
+            network.executeInput((PC) device, parts[1]);
+            network.run();
+        }
+        network.removeListener(this);
+        return status;
+    }
+
+    // Listeners may be called from worker threads when the network runs partitioned
+    @Override
+    public synchronized void onOutput(PC pc, String text) {
+        try {
+            for (String line : text.split("\n", -1)) {
+                out.write(line.isEmpty() ? pc + ":\n" : pc + ": " + line + "\n");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void onChatMessage(PC pc, String message) {
+        try {
+            out.write(pc + " chat: " + message + "\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package org.example.network_simulator;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Terminal history: a ring of at most `capacity` lines, oldest evicted first.
+// Line text is stored as UTF-8 in byte chunks (doubling from 1 KB up to 64 KB) that are dropped as
+// soon as their last line is evicted, so a million short lines cost tens of MB instead of a String
+// each. The per-line arrays grow with the history too, so a terminal that has printed little (a
+// hidden console tab, say) costs a few KB rather than its full capacity.
+// Lines are only decoded when they are drawn, and search runs on the raw bytes.
+// Not thread-safe: owned by the FX thread.
+public class ScrollbackBuffer {
+
+    public static final int DEFAULT_CAPACITY = 10_000;
+    private static final int CHUNK_SIZE = 64 * 1024; // Largest chunk
+    private static final int FIRST_CHUNK_SIZE = 1024;
+    private static final int FIRST_LINES = 64;
+
+    private final int capacity;
+    // Per-line ring, indexed by (first + i) % lineChunk.length; grows up to capacity
+    private int[] lineChunk;  // Chunk id (not slot) holding the line
+    private int[] lineStart;
+    private int[] lineLength;
+    private int first = 0;
+    private int size = 0;
+    private long evicted = 0; // Lines dropped off the top, so absolute line = evicted + index
+
+    // Chunk ring: chunk id c lives in chunks[(c - firstChunkId + chunkHead) % chunks.length]
+    private byte[][] chunks = new byte[4][];
+    private int chunkHead = 0;
+    private int chunkCount = 0;
+    private int firstChunkId = 0;
+    private int fill = 0; // Bytes used in the newest chunk
+    private int nextChunkSize = FIRST_CHUNK_SIZE;
+    private long chunkBytes = 0;
+
+    public ScrollbackBuffer(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        this.capacity = capacity;
+        int lines = Math.min(capacity, FIRST_LINES);
+        this.lineChunk = new int[lines];
+        this.lineStart = new int[lines];
+        this.lineLength = new int[lines];
+    }
+
+    public ScrollbackBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    // Append text, one line per '\n'-separated part
+    public void append(String text) {
+        int from = 0;
+        while (true) {
+            int newline = text.indexOf('\n', from);
+            if (newline < 0) {
+                appendLine(text.substring(from));
+                return;
+            }
+            appendLine(text.substring(from, newline));
+            from = newline + 1;
+        }
+    }
+
+    private void appendLine(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, CHUNK_SIZE); // Absurdly long lines are cut at one chunk
+        if (chunkCount == 0 || fill + length > chunk(firstChunkId + chunkCount - 1).length) {
+            addChunk(length);
+        }
+        int newestId = firstChunkId + chunkCount - 1;
+        System.arraycopy(bytes, 0, chunk(newestId), fill, length);
+
+        if (size == capacity) {
+            evictOldest();
+        } else if (size == lineChunk.length) {
+            growLines();
+        }
+        int slot = (first + size) % lineChunk.length;
+        lineChunk[slot] = newestId;
+        lineStart[slot] = fill;
+        lineLength[slot] = length;
+        size++;
+        fill += length;
+    }
+
+    private void evictOldest() {
+        first = (first + 1) % lineChunk.length;
+        size--;
+        evicted++;
+        // Chunks fill in order, so once the new oldest line lives in a later chunk the old one is free
+        int nextChunk = size == 0 ? firstChunkId + chunkCount - 1 : lineChunk[first];
+        while (firstChunkId < nextChunk) {
+            chunkBytes -= chunks[chunkHead].length;
+            chunks[chunkHead] = null;
+            chunkHead = (chunkHead + 1) % chunks.length;
+            chunkCount--;
+            firstChunkId++;
+        }
+    }
+
+    // Unroll the ring into arrays twice the size (at most capacity)
+    private void growLines() {
+        int length = Math.min(capacity, lineChunk.length * 2);
+        int[] chunkIds = new int[length], starts = new int[length], lengths = new int[length];
+        for (int i = 0; i < size; i++) {
+            int slot = (first + i) % lineChunk.length;
+            chunkIds[i] = lineChunk[slot];
+            starts[i] = lineStart[slot];
+            lengths[i] = lineLength[slot];
+        }
+        lineChunk = chunkIds;
+        lineStart = starts;
+        lineLength = lengths;
+        first = 0;
+    }
+
+    // A new newest chunk with room for at least `needed` bytes
+    private void addChunk(int needed) {
+        if (chunkCount == chunks.length) {
+            byte[][] grown = new byte[chunks.length * 2][];
+            for (int i = 0; i < chunkCount; i++) {
+                grown[i] = chunks[(chunkHead + i) % chunks.length];
+            }
+            chunks = grown;
+            chunkHead = 0;
+        }
+        int size = Math.max(needed, nextChunkSize);
+        nextChunkSize = Math.min(CHUNK_SIZE, nextChunkSize * 2);
+        chunks[(chunkHead + chunkCount) % chunks.length] = new byte[size];
+        chunkCount++;
+        chunkBytes += size;
+        fill = 0;
+    }
+
+    private byte[] chunk(int id) {
+        return chunks[(chunkHead + id - firstChunkId) % chunks.length];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // Number of lines that have scrolled out of the history
+    public long getEvicted() {
+        return evicted;
+    }
+
+    // Line i, counting from the oldest retained line
+    public String get(int index) {
+        int slot = slot(index);
+        return new String(chunk(lineChunk[slot]), lineStart[slot], lineLength[slot], StandardCharsets.UTF_8);
+    }
+
+    // Bytes held by line text (excluding the per-line arrays)
+    public long getChunkBytes() {
+        return chunkBytes;
+    }
+
+    // Index of the nearest line containing the query, starting at `from` and moving forwards or
+    // backwards, or -1. Matches on UTF-8 bytes, so nothing is decoded; case-sensitive.
+    public int find(String query, int from, boolean forward) {
+        if (query.isEmpty() || size == 0) return -1;
+        byte[] needle = query.getBytes(StandardCharsets.UTF_8);
+        int step = forward ? 1 : -1;
+        for (int i = Math.max(0, Math.min(from, size - 1)); i >= 0 && i < size; i += step) {
+            int slot = slot(i);
+            if (contains(chunk(lineChunk[slot]), lineStart[slot], lineLength[slot], needle)) return i;
+        }
+        return -1;
+    }
+
+    public void clear() {
+        Arrays.fill(chunks, null);
+        chunkHead = 0;
+        chunkCount = 0;
+        chunkBytes = 0;
+        nextChunkSize = FIRST_CHUNK_SIZE;
+        fill = 0;
+        evicted += size;
+        first = 0;
+        size = 0;
+    }
+
+    private int slot(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Line " + index + " of " + size);
+        return (first + index) % lineChunk.length;
+    }
+
+    private static boolean contains(byte[] haystack, int start, int length, byte[] needle) {
+        int last = start + length - needle.length;
+        byte head = needle[0];
+        for (int i = start; i <= last; i++) {
+            if (haystack[i] != head) continue;
+            int j = 1;
+            while (j < needle.length && haystack[i + j] == needle[j]) j++;
+            if (j == needle.length) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,100 @@
+package org.example.network_simulator;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// Runs a Network on a background thread, so a long simulation (a traffic test, say) leaves the UI
+// responsive. Commands go to the simulation thread, which then runs the network in short slices of
+// simulated time until it is idle. The UI edits the topology under the same lock as the slices, so
+// an edit waits for at most one slice and then takes effect in the middle of the run. Whatever an
+// edit sets in motion (routers re-advertising their links, say) is then run like a command.
+final class SimulationDriver {
+
+    static final long SLICE = 10 * SimulationEngine.NANOS_PER_MILLI; // Simulated time per slice
+
+    private final Network network;
+    private final ExecutorService thread = Executors.newSingleThreadExecutor(runnable -> {
+        Thread t = new Thread(runnable, "simulation");
+        t.setDaemon(true);
+        return t;
+    });
+    // Fair, so a waiting UI edit goes before the next slice
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private boolean driving = false; // A slice is queued; only touched on the simulation thread
+
+    SimulationDriver(Network network) {
+        this.network = network;
+    }
+
+    // Run work on the simulation thread (e.g. start a command), then run the network until it is idle
+    void submit(Runnable work) {
+        thread.execute(() -> {
+            lock.lock();
+            try {
+                work.run();
+            } catch (RuntimeException e) {
+                Log.warn("simulation.task.failed", e);
+            } finally {
+                lock.unlock();
+            }
+            drive();
+        });
+    }
+
+    // Run the network until it is idle, unless that is under way already; on the simulation thread
+    private void drive() {
+        if (!driving) {
+            driving = true;
+            thread.execute(this::slice);
+        }
+    }
+
+    private void slice() {
+        boolean more;
+        lock.lock();
+        try {
+            more = network.runSlice(SLICE);
+        } catch (RuntimeException e) {
+            Log.warn("simulation.failed", e);
+            more = false;
+        } finally {
+            lock.unlock();
+        }
+        if (more) {
+            thread.execute(this::slice); // Behind anything submitted meanwhile
+        } else {
+            driving = false;
+        }
+    }
+
+    // Change the network from another thread, between two slices
+    void edit(Runnable change) {
+        lock();
+        try {
+            change.run();
+        } finally {
+            unlock();
+        }
+    }
+
+    <T> T editAndGet(Supplier<T> change) {
+        lock();
+        try {
+            return change.get();
+        } finally {
+            unlock();
+        }
+    }
+
+    // For edits that throw checked exceptions: lock(), then unlock() in a finally block
+    void lock() {
+        lock.lock();
+    }
+
+    void unlock() {
+        lock.unlock();
+        thread.execute(this::drive);
+    }
+}
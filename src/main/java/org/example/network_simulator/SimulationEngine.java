@@ -0,0 +1,154 @@
+package org.example.network_simulator;
+
+import java.util.Arrays;
+
+// Discrete-event scheduler with a virtual clock.
+// Nothing here touches JavaFX, so the model can run headless and as fast as the CPU allows.
+// The queue is a binary heap over parallel arrays, so scheduling an event does not allocate.
+public class SimulationEngine {
+
+    public static final long NANOS_PER_MILLI = 1_000_000L;
+    public static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    // Heap ordered by (time, key). Device-owned events carry a key derived from the owning device
+    // (see NetworkDevice.nextEventKey), so same-instant ties resolve identically however the
+    // devices are spread over engines. Unowned events get keys below every device key, in schedule order.
+    private long[] times = new long[64];
+    private long[] seqs = new long[64];
+    private SimulationEvent[] events = new SimulationEvent[64];
+    private int size = 0;
+
+    private long now = 0; // Simulated time in nanoseconds
+    private long sequence = Long.MIN_VALUE;
+    private long processedEvents = 0;
+    Histogram eventTimes; // Samples how long events take to run, or null
+
+    public long now() {
+        return now;
+    }
+
+    public long getProcessedEvents() {
+        return processedEvents;
+    }
+
+    public int getPendingEvents() {
+        return size;
+    }
+
+    public boolean isIdle() {
+        return size == 0;
+    }
+
+    // Time of the earliest pending event, or Long.MAX_VALUE if there is none
+    public long nextEventTime() {
+        return size == 0 ? Long.MAX_VALUE : times[0];
+    }
+
+    // Schedule an event relative to the current simulated time
+    public void schedule(long delayNanos, SimulationEvent event) {
+        scheduleAt(now + Math.max(0, delayNanos), event);
+    }
+
+    public void scheduleAt(long timeNanos, SimulationEvent event) {
+        scheduleAt(timeNanos, sequence++, event);
+    }
+
+    // Schedule with an explicit tie-break key for events at the same instant
+    public void scheduleAt(long timeNanos, long key, SimulationEvent event) {
+        if (timeNanos < now) {
+            throw new IllegalArgumentException("Cannot schedule in the past: " + timeNanos + " < " + now);
+        }
+        if (size == times.length) {
+            int capacity = size * 2;
+            times = Arrays.copyOf(times, capacity);
+            seqs = Arrays.copyOf(seqs, capacity);
+            events = Arrays.copyOf(events, capacity);
+        }
+        siftUp(size++, timeNanos, key, event);
+    }
+
+    // Fire the next event, advancing the clock. Returns false when nothing is left.
+    public boolean step() {
+        if (size == 0) {
+            return false;
+        }
+        long time = times[0];
+        SimulationEvent event = events[0];
+        int last = --size;
+        if (last > 0) {
+            siftDown(0, times[last], seqs[last], events[last]);
+        }
+        events[last] = null;
+        now = time;
+        processedEvents++;
+        // Timing every event would cost more than many events do; one in 64 is plenty
+        if (eventTimes != null && (processedEvents & 63) == 0) {
+            long start = System.nanoTime();
+            event.fire();
+            eventTimes.record(System.nanoTime() - start);
+        } else {
+            event.fire();
+        }
+        return true;
+    }
+
+    // Run until the queue drains
+    public void runUntilIdle() {
+        while (step()) {
+            // keep going
+        }
+    }
+
+    // Run every event scheduled up to and including the given time, then park the clock there
+    public void runUntil(long timeNanos) {
+        while (size > 0 && times[0] <= timeNanos) {
+            step();
+        }
+        if (timeNanos > now) {
+            now = timeNanos;
+        }
+    }
+
+    // --- Heap internals ---
+
+    private void siftUp(int pos, long time, long seq, SimulationEvent event) {
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (!before(time, seq, times[parent], seqs[parent])) break;
+            move(parent, pos);
+            pos = parent;
+        }
+        set(pos, time, seq, event);
+    }
+
+    private void siftDown(int pos, long time, long seq, SimulationEvent event) {
+        int half = size >>> 1;
+        while (pos < half) {
+            int child = 2 * pos + 1;
+            int right = child + 1;
+            if (right < size && before(times[right], seqs[right], times[child], seqs[child])) {
+                child = right;
+            }
+            if (!before(times[child], seqs[child], time, seq)) break;
+            move(child, pos);
+            pos = child;
+        }
+        set(pos, time, seq, event);
+    }
+
+    private void move(int from, int to) {
+        times[to] = times[from];
+        seqs[to] = seqs[from];
+        events[to] = events[from];
+    }
+
+    private void set(int pos, long time, long seq, SimulationEvent event) {
+        times[pos] = time;
+        seqs[pos] = seq;
+        events[pos] = event;
+    }
+
+    private static boolean before(long timeA, long seqA, long timeB, long seqB) {
+        return timeA < timeB || (timeA == timeB && seqA < seqB);
+    }
+}
@@ -0,0 +1,7 @@
+package org.example.network_simulator;
+
+// A unit of work that fires at a point in simulated time
+@FunctionalInterface
+public interface SimulationEvent {
+    void fire();
+}
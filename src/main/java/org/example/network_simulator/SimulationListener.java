@@ -0,0 +1,11 @@
+package org.example.network_simulator;
+
+// Results coming out of the simulation. The UI subscribes to these instead of computing them itself.
+public interface SimulationListener {
+
+    // A line of command output for the given PC's terminal
+    void onOutput(PC pc, String text);
+
+    // A chat message that arrived at the given PC
+    void onChatMessage(PC pc, String message);
+}
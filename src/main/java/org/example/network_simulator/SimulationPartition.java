@@ -0,0 +1,122 @@
+package org.example.network_simulator;
+
+import java.util.Arrays;
+
+// One slice of the network with its own clock, event queue and pools.
+// A sequential run is a single partition. In a parallel run each partition is driven by one
+// worker; deliveries to devices in other partitions are parked in an outbox and handed over
+// at the end of the window, copied into the receiver's pool so packets never cross threads.
+class SimulationPartition {
+
+    final int id;
+    final SimulationEngine engine = new SimulationEngine();
+    final PacketPool packetPool = new PacketPool();
+    private final Network network;
+
+    private Delivery[] freeDeliveries = new Delivery[64];
+    private int freeDeliveryCount = 0;
+    private Outbox[] outboxes = new Outbox[0]; // Indexed by destination partition
+
+    SimulationPartition(Network network, int id, int partitionCount) {
+        this.network = network;
+        this.id = id;
+        engine.eventTimes = network.getMetrics().getEventTimes();
+        if (partitionCount > 1) {
+            outboxes = new Outbox[partitionCount];
+            for (int i = 0; i < partitionCount; i++) {
+                if (i != id) outboxes[i] = new Outbox();
+            }
+        }
+    }
+
+    // Schedule a packet arrival; the caller's packet reference moves with it
+    void deliver(long time, long key, NetworkDevice from, NetworkDevice to, Packet packet) {
+        if (to.partition == id) {
+            engine.scheduleAt(time, key, delivery(from, to, packet));
+        } else {
+            outboxes[to.partition].add(time, key, from, to, packet);
+        }
+    }
+
+    // Pull everything other partitions addressed to this one during the last window
+    void importFrom(SimulationPartition source) {
+        Outbox box = source.outboxes[id];
+        for (int i = 0; i < box.size; i++) {
+            Packet copy = box.packets[i].copyTo(packetPool);
+            engine.scheduleAt(box.times[i], box.keys[i], delivery(box.from[i], box.to[i], copy));
+        }
+    }
+
+    // Drop this partition's references to packets that other partitions have now copied
+    void clearOutboxes() {
+        for (Outbox box : outboxes) {
+            if (box != null) box.clear();
+        }
+    }
+
+    private Delivery delivery(NetworkDevice from, NetworkDevice to, Packet packet) {
+        Delivery delivery = freeDeliveryCount > 0 ? freeDeliveries[--freeDeliveryCount] : new Delivery();
+        delivery.from = from;
+        delivery.to = to;
+        delivery.packet = packet;
+        return delivery;
+    }
+
+    // Pooled arrival event, recycled as soon as it fires so steady-state forwarding allocates nothing
+    private final class Delivery implements SimulationEvent {
+        NetworkDevice from;
+        NetworkDevice to;
+        Packet packet;
+
+        @Override
+        public void fire() {
+            NetworkDevice source = from, receiver = to;
+            Packet arriving = packet;
+            from = null;
+            to = null;
+            packet = null;
+            if (freeDeliveryCount == freeDeliveries.length) {
+                freeDeliveries = Arrays.copyOf(freeDeliveries, freeDeliveryCount * 2);
+            }
+            freeDeliveries[freeDeliveryCount++] = this;
+            network.arrive(source, receiver, arriving);
+        }
+    }
+
+    // Deliveries bound for one other partition, in parallel arrays
+    private static final class Outbox {
+        long[] times = new long[16];
+        long[] keys = new long[16];
+        NetworkDevice[] from = new NetworkDevice[16];
+        NetworkDevice[] to = new NetworkDevice[16];
+        Packet[] packets = new Packet[16];
+        int size = 0;
+
+        void add(long time, long key, NetworkDevice source, NetworkDevice receiver, Packet packet) {
+            if (size == times.length) {
+                int capacity = size * 2;
+                times = Arrays.copyOf(times, capacity);
+                keys = Arrays.copyOf(keys, capacity);
+                from = Arrays.copyOf(from, capacity);
+                to = Arrays.copyOf(to, capacity);
+                packets = Arrays.copyOf(packets, capacity);
+            }
+            times[size] = time;
+            keys[size] = key;
+            from[size] = source;
+            to[size] = receiver;
+            packets[size] = packet;
+            size++;
+        }
+
+        void clear() {
+            for (int i = 0; i < size; i++) {
+                packets[i].release();
+                packets[i] = null;
+                from[i] = null;
+                to[i] = null;
+            }
+            size = 0;
+        }
+    }
+}
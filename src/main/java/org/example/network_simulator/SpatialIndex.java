@@ -0,0 +1,150 @@
+package org.example.network_simulator;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+// Uniform grid over device positions for hit-testing and visible-region queries.
+// A device lives in the cell holding its top-left corner; each cell is an intrusive doubly
+// linked list through per-device arrays, so insert, move and remove are O(1) and allocation-free.
+// Cells are at least as large as a device, so a point query only has to look at 4 cells.
+public class SpatialIndex {
+
+    private static final int NONE = -1;
+
+    private final double cellSize;
+    private final double itemSize;
+    private final LongIntHashMap cellHead = new LongIntHashMap(1024, NONE); // Cell key -> first device index
+    private int[] next = new int[0];
+    private int[] prev = new int[0];
+    private long[] cellOf = new long[0];
+    private double[] xs = new double[0];
+    private double[] ys = new double[0];
+    private boolean[] present = new boolean[0];
+    private int size = 0;
+
+    // Minimum and maximum corner of everything inserted (not shrunk on removal)
+    private double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+    private double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+
+    public SpatialIndex(double itemSize, double cellSize) {
+        if (cellSize < itemSize) throw new IllegalArgumentException("Cells must be at least as large as items");
+        this.itemSize = itemSize;
+        this.cellSize = cellSize;
+    }
+
+    // Add or move the item with this index so its top-left corner is at (x, y)
+    public void put(int index, double x, double y) {
+        ensureCapacity(index + 1);
+        if (present[index]) {
+            unlink(index);
+        } else {
+            present[index] = true;
+            size++;
+        }
+        xs[index] = x;
+        ys[index] = y;
+        long cell = cellKey(x, y);
+        cellOf[index] = cell;
+        int head = cellHead.get(cell);
+        next[index] = head;
+        prev[index] = NONE;
+        if (head != NONE) prev[head] = index;
+        cellHead.put(cell, index);
+        minX = Math.min(minX, x);
+        minY = Math.min(minY, y);
+        maxX = Math.max(maxX, x + itemSize);
+        maxY = Math.max(maxY, y + itemSize);
+    }
+
+    public void remove(int index) {
+        if (index >= present.length || !present[index]) return;
+        unlink(index);
+        present[index] = false;
+        size--;
+    }
+
+    public void clear() {
+        cellHead.clear();
+        Arrays.fill(present, false);
+        size = 0;
+        minX = minY = Double.POSITIVE_INFINITY;
+        maxX = maxY = Double.NEGATIVE_INFINITY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // The item under the point; the highest index wins where items overlap (it is drawn last).
+    // Returns -1 if there is none.
+    public int hit(double x, double y) {
+        int best = NONE;
+        long cx0 = cellCoord(x - itemSize), cx1 = cellCoord(x);
+        long cy0 = cellCoord(y - itemSize), cy1 = cellCoord(y);
+        for (long cx = cx0; cx <= cx1; cx++) {
+            for (long cy = cy0; cy <= cy1; cy++) {
+                for (int i = cellHead.get(key(cx, cy)); i != NONE; i = next[i]) {
+                    if (i > best && x >= xs[i] && x < xs[i] + itemSize && y >= ys[i] && y < ys[i] + itemSize) {
+                        best = i;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    // Every item whose box overlaps the rectangle, in no particular order
+    public void query(double x0, double y0, double x1, double y1, IntConsumer action) {
+        long cx0 = cellCoord(Math.max(x0, minX) - itemSize), cx1 = cellCoord(Math.min(x1, maxX));
+        long cy0 = cellCoord(Math.max(y0, minY) - itemSize), cy1 = cellCoord(Math.min(y1, maxY));
+        for (long cx = cx0; cx <= cx1; cx++) {
+            for (long cy = cy0; cy <= cy1; cy++) {
+                for (int i = cellHead.get(key(cx, cy)); i != NONE; i = next[i]) {
+                    if (xs[i] + itemSize >= x0 && xs[i] <= x1 && ys[i] + itemSize >= y0 && ys[i] <= y1) {
+                        action.accept(i);
+                    }
+                }
+            }
+        }
+    }
+
+    public double getMinX() { return minX; }
+    public double getMinY() { return minY; }
+    public double getMaxX() { return maxX; }
+    public double getMaxY() { return maxY; }
+
+    private void unlink(int index) {
+        int before = prev[index], after = next[index];
+        if (after != NONE) prev[after] = before;
+        if (before != NONE) {
+            next[before] = after;
+        } else if (after != NONE) {
+            cellHead.put(cellOf[index], after);
+        } else {
+            cellHead.remove(cellOf[index]);
+        }
+    }
+
+    private long cellCoord(double v) {
+        return (long) Math.floor(v / cellSize);
+    }
+
+    private long cellKey(double x, double y) {
+        return key(cellCoord(x), cellCoord(y));
+    }
+
+    private static long key(long cx, long cy) {
+        return (cx << 32) ^ (cy & 0xffffffffL);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= present.length) return;
+        int grown = Math.max(capacity, present.length * 2 + 16);
+        next = Arrays.copyOf(next, grown);
+        prev = Arrays.copyOf(prev, grown);
+        cellOf = Arrays.copyOf(cellOf, grown);
+        xs = Arrays.copyOf(xs, grown);
+        ys = Arrays.copyOf(ys, grown);
+        present = Arrays.copyOf(present, grown);
+    }
+}
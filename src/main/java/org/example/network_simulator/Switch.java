@@ -1,8 +1,77 @@
 package org.example.network_simulator;
 
 public class Switch extends NetworkDevice {
+
+    private final MacTable macTable = new MacTable(); // Ports are neighbour device indexes
+    private BroadcastDomains learnedIn; // Topology the table was learned in
+
     public Switch(double x, double y) {
         super("Switch", x, y);
     }
+
+    Switch(int id, double x, double y) {
+        super("Switch", id, x, y);
+    }
     // Switch specific properties if needed
-}
\ No newline at end of file
+
+    public MacTable getMacTable() {
+        return macTable;
+    }
+
+    @Override
+    protected void receiveFrame(Network network, Packet packet, NetworkDevice from) {
+        long destinationMac = packet.destinationMac();
+        if (destinationMac == getMacAddress()) {
+            super.receiveFrame(network, packet, from);
+            return;
+        }
+        forward(network, packet, from);
+    }
+
+    // Switch a frame that came in from a neighbour, or that this switch sent itself (from is null)
+    void forward(Network network, Packet packet, NetworkDevice from) {
+        long destinationMac = packet.destinationMac();
+        long now = network.now(this);
+        BroadcastDomains domains = network.domains();
+        if (domains != learnedIn) {
+            macTable.clear(); // The topology changed, so learned ports may lead the wrong way now
+            learnedIn = domains;
+        }
+        if (from != null) macTable.learn(packet.sourceMac(), from.index, now);
+
+        // Known destination: forward out of the learned port if that link is still up
+        if (destinationMac != Packet.BROADCAST_MAC) {
+            int port = macTable.lookup(destinationMac, now);
+            if (port != MacTable.UNKNOWN) {
+                NetworkDevice next = network.getDeviceByIndex(port);
+                if (next != null && next != from && network.areConnected(this, next)) {
+                    network.transmit(this, next, packet);
+                    return;
+                }
+                macTable.forget(destinationMac); // Stale port
+            }
+        }
+        flood(network, packet, from, domains);
+    }
+
+    // Unknown or broadcast destination: send out of every forwarding port except the one it came in
+    // on (see BroadcastDomains). All copies share the one packet; each extra port takes its own reference.
+    private void flood(Network network, Packet packet, NetworkDevice from, BroadcastDomains domains) {
+        TopologyGraph graph = network.getGraph();
+        NetworkDevice pending = null; // Sent last so it can take over the caller's reference
+        for (int i = 0, d = graph.degree(index); i < d; i++) {
+            if (domains.blocked[graph.incidentEdge(index, i)]) continue;
+            NetworkDevice neighbour = network.getDeviceByIndex(graph.neighbour(index, i));
+            if (neighbour == from) continue;
+            if (pending != null) {
+                network.transmit(this, pending, packet.retain());
+            }
+            pending = neighbour;
+        }
+        if (pending != null) {
+            network.transmit(this, pending, packet);
+        } else {
+            packet.release();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.example.network_simulator;
+
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Scene;
+import javafx.scene.control.Tab;
+import javafx.scene.control.TabPane;
+import javafx.stage.Modality;
+import javafx.stage.Stage;
+import javafx.stage.Window;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+// The one window holding every open PC terminal, a tab each. Only the selected tab has any UI:
+// the terminal layout is loaded from FXML once and moved to whichever tab is selected, and the
+// tabs left behind hold nothing but their TerminalSession. So opening a terminal costs a tab and
+// a scrollback buffer rather than a Stage and a parsed layout, and switching between hundreds of
+// them is as quick as pointing the one TerminalView at another buffer.
+final class TerminalConsole {
+
+    private final NetworkController networkController;
+    private final Window owner;
+    private final Map<PC, TerminalSession> sessions; // Shared with the controller, which routes output by it
+    private final Map<PC, Tab> tabs = new HashMap<>();
+
+    // Created on first use
+    private Stage stage;
+    private TabPane tabPane;
+    private TerminalController terminal;
+
+    TerminalConsole(NetworkController networkController, Window owner, Map<PC, TerminalSession> sessions) {
+        this.networkController = networkController;
+        this.owner = owner;
+        this.sessions = sessions;
+    }
+
+    // Open the PC's terminal, or bring it to front if it is already open
+    void open(PC pc) {
+        if (stage == null && !createStage()) return;
+        Tab tab = tabs.get(pc);
+        if (tab == null) {
+            TerminalSession session = new TerminalSession(pc);
+            tab = new Tab(pc.toString());
+            tab.setUserData(session);
+            tab.setOnClosed(event -> forget(pc));
+            tabs.put(pc, tab);
+            sessions.put(pc, session);
+            tabPane.getTabs().add(tab);
+            Log.info("terminal.opened", "pc", pc);
+        } else {
+            Log.debug("terminal.focus", "pc", pc);
+        }
+        tabPane.getSelectionModel().select(tab);
+        stage.show();
+        stage.toFront();
+    }
+
+    // Close the PC's terminal, if it is open
+    void close(PC pc) {
+        Tab tab = tabs.get(pc);
+        if (tab != null) tabPane.getTabs().remove(tab); // Tab.onClosed only fires when the user closes it
+        forget(pc);
+    }
+
+    void closeAll() {
+        for (PC pc : tabs.keySet().toArray(new PC[0])) {
+            close(pc);
+        }
+    }
+
+    private void forget(PC pc) {
+        if (tabs.remove(pc) == null) return;
+        sessions.remove(pc);
+        Log.info("terminal.closed", "pc", pc);
+        if (tabs.isEmpty()) stage.hide();
+    }
+
+    private boolean createStage() {
+        try {
+            FXMLLoader loader = new FXMLLoader(getClass().getResource("TerminalView.fxml"));
+            loader.load();
+            terminal = loader.getController();
+            terminal.setNetworkController(networkController);
+        } catch (IOException e) {
+            Log.error("terminal.load.failed", e);
+            return false;
+        }
+
+        tabPane = new TabPane();
+        tabPane.setTabClosingPolicy(TabPane.TabClosingPolicy.ALL_TABS);
+        // Move the terminal layout to the newly selected tab
+        tabPane.getSelectionModel().selectedItemProperty().addListener((observable, previous, selected) -> {
+            if (previous != null) previous.setContent(null);
+            terminal.hide();
+            if (selected != null) {
+                terminal.show((TerminalSession) selected.getUserData());
+                selected.setContent(terminal.getRoot());
+                stage.setTitle("Terminals - " + selected.getText());
+            }
+        });
+
+        stage = new Stage();
+        stage.setTitle("Terminals");
+        stage.setScene(new Scene(tabPane, 600, 400));
+        stage.initModality(Modality.NONE); // Allow interaction with main window
+        stage.initOwner(owner);
+        stage.setOnCloseRequest(event -> closeAll()); // Closing the window closes every terminal
+        return true;
+    }
+}
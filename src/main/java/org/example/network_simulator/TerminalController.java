@@ -3,121 +3,81 @@ package org.example.network_simulator;
 import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
+import javafx.scene.Parent;
 import javafx.scene.control.Button;
-import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
 
+// The terminal layout (TerminalView.fxml). Not tied to one PC: the console moves a single one of
+// these between its tabs, showing whichever PC's TerminalSession is selected.
 public class TerminalController {
 
-    @FXML private TextArea outputArea;
+    @FXML private Parent root;
+    @FXML private TerminalView outputView;
     @FXML private TextField inputField;
+    @FXML private TextField searchField;
     @FXML private Button sendButton;
 
     private NetworkController networkController; // Reference to main controller
-    private PC pcDevice; // Reference to the PC this terminal belongs to
-
-    @FXML
-    public void initialize() {
-        // Initial prompt or message
-        outputArea.appendText("Terminal for [PC Name Placeholder]\nReady.\n");
-        // Ensure focus starts on the input field
-        Platform.runLater(() -> inputField.requestFocus());
-    }
+    private TerminalSession session; // Session on show, or null
 
     // Setters to be called by NetworkController after loading FXML
     public void setNetworkController(NetworkController controller) {
         this.networkController = controller;
     }
 
-    public void setPcDevice(PC pc) {
-        this.pcDevice = pc;
-        // Update the initial text or window title now that we have the PC info
-        outputArea.setText("Terminal for " + pc.toString() + "\nReady.\n");
-        // Optionally update window title here if you have access to the Stage
-        // ((Stage) outputArea.getScene().getWindow()).setTitle("Terminal - " + pc.toString());
+    // Show the session: its history, and whatever was left in the input field when it was hidden
+    void show(TerminalSession session) {
+        hide();
+        this.session = session;
+        session.shown(this);
+        outputView.setBuffer(session.buffer);
+        inputField.setText(session.draft);
+        inputField.end();
+        searchField.clear();
+        searchField.setStyle("");
+        // Ensure focus lands on the input field once the tab is on screen
+        Platform.runLater(() -> inputField.requestFocus());
+    }
 
+    // Let go of the session, keeping its unsent input
+    void hide() {
+        if (session == null) return;
+        session.draft = inputField.getText();
+        session.hidden();
+        session = null;
     }
 
+    @FXML
     void handleSendAction(ActionEvent event) {
         String inputText = inputField.getText().trim();
-        if (inputText.isEmpty() || networkController == null || pcDevice == null) {
+        if (inputText.isEmpty() || networkController == null || session == null) {
             inputField.requestFocus(); // Keep focus even if empty
             return;
         }
 
         // Display the command/message locally first
-        appendMessage("> " + inputText); // Use ">" or "$" as a prompt indicator
+        session.displayOutput("> " + inputText); // Use ">" or "$" as a prompt indicator
 
         inputField.clear();
 
-        // --- Command Parsing ---
-        String[] parts = inputText.split("\\s+", 2); // Split into command and the rest
-        String command = parts[0].toLowerCase(); // Case-insensitive command
-
-        boolean commandHandled = false;
-        if ("ipconfig".equals(command)) {
-            if (parts.length == 1) { // ipconfig takes no arguments
-                networkController.executeCommand(pcDevice, command, new String[]{});
-                commandHandled = true;
-            } else {
-                appendMessage("Error: 'ipconfig' does not take arguments.");
-                commandHandled = true; // Handled as an error
-            }
-        } else if ("ping".equals(command)) {
-            if (parts.length == 2 && !parts[1].trim().isEmpty()) { // ping needs a target
-                String[] args = {parts[1].trim()}; // Target is the argument
-                networkController.executeCommand(pcDevice, command, args);
-                commandHandled = true;
-            } else {
-                appendMessage("Error: 'ping' requires a target destination (e.g., ping PC2 or ping 192.168.1.101).");
-                commandHandled = true; // Handled as an error
-            }
-        }
-        // Add more 'else if' blocks here for future commands (e.g., traceroute)
-
-        // --- --- --- --- --- ---
-
-        // If it wasn't a recognized command, treat it as a chat message
-        if (!commandHandled) {
-            networkController.sendMessage(pcDevice, inputText);
-        }
+        // Commands and chat are told apart by the network, which answers through the terminal
+        networkController.executeInput(session.pc, inputText);
 
         inputField.requestFocus(); // Keep focus on input field
     }
 
-    // Method for NetworkController to call when this terminal receives a message
-    public void receiveMessage(String message) {
-        // Ensure UI updates happen on the JavaFX Application Thread
-        Platform.runLater(() -> displayOutput(message));
-    }
-
-    // Helper to append messages to the output area
-    public void displayOutput(String message) {
-        // Ensure UI updates happen on the JavaFX Application Thread
-        Platform.runLater(() -> {
-            outputArea.appendText(message + "\n");
-            // Auto-scroll to the bottom (optional but good for terminals)
-            outputArea.setScrollTop(Double.MAX_VALUE);
-        });
-    }
-
-    // Method specifically for receiving chat messages from other terminals
-    public void receiveChatMessage(String message) {
-        // Ensure UI updates happen on the JavaFX Application Thread
-        Platform.runLater(() -> {
-            outputArea.appendText(message + "\n");
-            // Auto-scroll to the bottom
-            outputArea.setScrollTop(Double.MAX_VALUE);
-        });
+    @FXML
+    void handleSearchAction(ActionEvent event) {
+        String query = searchField.getText();
+        boolean found = query.isEmpty() || outputView.find(query, false);
+        searchField.setStyle(found ? "" : "-fx-text-fill: red;"); // Nothing in the scrollback matches
     }
 
-    // Kept original appendMessage for compatibility if needed, but prefer displayOutput/receiveChatMessage
-    public void appendMessage(String message) {
-        displayOutput(message); // Route to displayOutput for consistency now
+    public Parent getRoot() {
+        return root;
     }
 
-    // Getter needed by NetworkController to get the stage/window
-    public TextArea getOutputArea() {
-        return outputArea;
+    public TerminalView getOutputView() {
+        return outputView;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,59 @@
+package org.example.network_simulator;
+
+import javafx.application.Platform;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// One PC's terminal, whether or not it is on screen: its history, the input typed but not sent,
+// and output on its way in from the simulation thread. The terminal UI is only borrowed while the
+// PC's console tab is selected (see TerminalConsole), so everything that must outlive it lives here.
+final class TerminalSession {
+
+    final PC pc;
+    final ScrollbackBuffer buffer;
+    String draft = ""; // Input field text while the session is hidden
+    private TerminalController shownIn; // Terminal showing this session, or null; FX thread only
+
+    // Output from any thread is queued here and flushed together once per FX pass, so a burst of
+    // lines costs a single runLater and redraw instead of one of each per line
+    private final ConcurrentLinkedQueue<String> pendingOutput = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    TerminalSession(PC pc) {
+        this.pc = pc;
+        // History length per terminal, e.g. -Dterminal.scrollback=100000
+        this.buffer = new ScrollbackBuffer(Integer.getInteger("terminal.scrollback", ScrollbackBuffer.DEFAULT_CAPACITY));
+        buffer.append("Terminal for " + pc + "\nReady.");
+    }
+
+    // Append to the history. Safe to call from any thread.
+    void displayOutput(String message) {
+        pendingOutput.add(message);
+        // Only the first line of a burst schedules a flush; the rest ride along with it
+        if (flushScheduled.compareAndSet(false, true)) {
+            Platform.runLater(this::flushOutput);
+        }
+    }
+
+    void shown(TerminalController terminal) {
+        shownIn = terminal;
+    }
+
+    void hidden() {
+        shownIn = null;
+    }
+
+    private void flushOutput() {
+        // Clear the flag first so lines queued while we drain schedule the next flush
+        flushScheduled.set(false);
+        String line;
+        while ((line = pendingOutput.poll()) != null) {
+            if (shownIn != null) {
+                shownIn.getOutputView().append(line); // Only updates the scrollback; the view redraws once in the next layout pass
+            } else {
+                buffer.append(line); // Hidden: nothing to draw
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package org.example.network_simulator;
+
+import javafx.geometry.Orientation;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.text.Font;
+import javafx.scene.text.Text;
+
+// Read-only terminal output that only draws the lines in view. History lives in a
+// ScrollbackBuffer, so cost depends on the window height rather than on how much has been printed.
+// Redraws happen in the layout pass, which means at most once per pulse.
+// Sticks to the bottom while the user is there; otherwise the view holds still as lines arrive.
+public final class TerminalView extends Region {
+
+    private static final Font FONT = Font.font("Monospaced", 12);
+    private static final double PADDING = 4;
+    private static final Color HIGHLIGHT = Color.rgb(255, 230, 120);
+
+    private ScrollbackBuffer buffer;
+    private final Canvas canvas = new Canvas();
+    private final ScrollBar scrollBar = new ScrollBar();
+    private final double lineHeight;
+    private int topLine = 0;          // Buffer index of the first visible line
+    private boolean followTail = true;
+    private int highlightLine = -1;   // Last search match, or -1
+    private long evictedAtLastAppend = 0;
+    private boolean dirty = true;
+    private boolean updatingScrollBar = false;
+
+    public TerminalView() {
+        // History length per terminal, e.g. -Dterminal.scrollback=100000
+        this(Integer.getInteger("terminal.scrollback", ScrollbackBuffer.DEFAULT_CAPACITY));
+    }
+
+    public TerminalView(int scrollbackLines) {
+        buffer = new ScrollbackBuffer(scrollbackLines);
+        Text probe = new Text("Xg");
+        probe.setFont(FONT);
+        lineHeight = Math.ceil(probe.getLayoutBounds().getHeight());
+
+        scrollBar.setOrientation(Orientation.VERTICAL);
+        scrollBar.valueProperty().addListener((obs, oldValue, newValue) -> {
+            if (updatingScrollBar) return;
+            topLine = (int) Math.round(newValue.doubleValue());
+            followTail = topLine >= maxTopLine();
+            requestRedraw();
+        });
+        getChildren().addAll(canvas, scrollBar);
+        setFocusTraversable(true);
+        setStyle("-fx-background-color: white; -fx-border-color: lightgrey;");
+
+        addEventHandler(ScrollEvent.SCROLL, event -> {
+            scrollBy((int) Math.round(-event.getDeltaY() / lineHeight));
+            event.consume();
+        });
+        addEventHandler(KeyEvent.KEY_PRESSED, event -> {
+            switch (event.getCode()) {
+                case PAGE_UP -> scrollBy(-visibleLines());
+                case PAGE_DOWN -> scrollBy(visibleLines());
+                case HOME -> scrollTo(0);
+                case END -> scrollTo(maxTopLine());
+                case UP -> scrollBy(-1);
+                case DOWN -> scrollBy(1);
+                default -> { return; }
+            }
+            event.consume();
+        });
+        setOnMouseClicked(event -> requestFocus());
+    }
+
+    // Append text; each '\n' starts a new line
+    public void append(String text) {
+        buffer.append(text);
+        long evicted = buffer.getEvicted();
+        int dropped = (int) Math.min(Integer.MAX_VALUE, evicted - evictedAtLastAppend);
+        evictedAtLastAppend = evicted;
+        if (highlightLine >= 0) highlightLine = highlightLine >= dropped ? highlightLine - dropped : -1;
+        // Keep the same lines in view when the user has scrolled up, even as old ones are evicted
+        topLine = followTail ? maxTopLine() : Math.max(0, topLine - dropped);
+        requestRedraw();
+    }
+
+    // Replace everything with this text
+    public void setText(String text) {
+        buffer.clear();
+        evictedAtLastAppend = buffer.getEvicted();
+        highlightLine = -1;
+        followTail = true;
+        append(text);
+    }
+
+    // Jump to the next line containing the query, searching towards older lines (or newer ones
+    // when forward is set) from the last match and wrapping around. Returns false if nothing matches.
+    public boolean find(String query, boolean forward) {
+        int wrapFrom = forward ? 0 : buffer.size() - 1;
+        int match = -1;
+        if (highlightLine >= 0) {
+            int from = highlightLine + (forward ? 1 : -1);
+            if (from >= 0 && from < buffer.size()) match = buffer.find(query, from, forward);
+        }
+        if (match < 0) match = buffer.find(query, wrapFrom, forward);
+        if (match < 0) return false;
+        highlightLine = match;
+        scrollTo(match - visibleLines() / 2);
+        return true;
+    }
+
+    public ScrollbackBuffer getBuffer() {
+        return buffer;
+    }
+
+    // Show another history (another console tab's, say), from its newest lines
+    public void setBuffer(ScrollbackBuffer buffer) {
+        this.buffer = buffer;
+        evictedAtLastAppend = buffer.getEvicted();
+        highlightLine = -1;
+        followTail = true;
+        topLine = maxTopLine();
+        requestRedraw();
+    }
+
+    private void scrollBy(int lines) {
+        scrollTo(topLine + lines);
+    }
+
+    private void scrollTo(int line) {
+        topLine = Math.max(0, Math.min(line, maxTopLine()));
+        followTail = topLine >= maxTopLine();
+        requestRedraw();
+    }
+
+    private int visibleLines() {
+        return Math.max(1, (int) ((canvas.getHeight() - 2 * PADDING) / lineHeight));
+    }
+
+    private int maxTopLine() {
+        return Math.max(0, buffer.size() - visibleLines());
+    }
+
+    private void requestRedraw() {
+        dirty = true;
+        requestLayout();
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double width = getWidth() - snappedLeftInset() - snappedRightInset();
+        double height = getHeight() - snappedTopInset() - snappedBottomInset();
+        double barWidth = scrollBar.prefWidth(-1);
+        double canvasWidth = Math.max(0, width - barWidth);
+        if (canvas.getWidth() != canvasWidth || canvas.getHeight() != height) {
+            canvas.setWidth(canvasWidth);
+            canvas.setHeight(height);
+            if (followTail) topLine = maxTopLine();
+            dirty = true;
+        }
+        canvas.relocate(snappedLeftInset(), snappedTopInset());
+        scrollBar.resizeRelocate(snappedLeftInset() + canvasWidth, snappedTopInset(), barWidth, height);
+        if (dirty) {
+            dirty = false;
+            updateScrollBar();
+            draw();
+        }
+    }
+
+    private void updateScrollBar() {
+        updatingScrollBar = true;
+        scrollBar.setMin(0);
+        scrollBar.setMax(maxTopLine());
+        scrollBar.setVisibleAmount(Math.min(visibleLines(), Math.max(1, maxTopLine())));
+        scrollBar.setBlockIncrement(visibleLines());
+        scrollBar.setValue(topLine);
+        updatingScrollBar = false;
+    }
+
+    private void draw() {
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+        gc.setFont(FONT);
+        gc.setTextBaseline(VPos.TOP);
+        int end = Math.min(buffer.size(), topLine + visibleLines() + 1);
+        double y = PADDING;
+        for (int i = topLine; i < end; i++, y += lineHeight) {
+            if (i == highlightLine) {
+                gc.setFill(HIGHLIGHT);
+                gc.fillRect(0, y, canvas.getWidth(), lineHeight);
+            }
+            gc.setFill(Color.BLACK);
+            gc.fillText(buffer.get(i), PADDING, y);
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package org.example.network_simulator;
+
+import javafx.scene.Cursor;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.image.Image;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+// Draws the whole topology onto one Canvas instead of a scene-graph node per device and link.
+// Links go out as a single batched path and devices as icon blits. Mouse events are resolved
+// with a SpatialIndex lookup rather than per-node handlers. Redraws are coalesced into the
+// layout pass, so a burst of changes costs one frame.
+// The view pans (drag the background) and zooms (wheel, around the cursor). Only devices and
+// links that intersect the viewport are drawn. Devices are drawn in one of three ways, by size on screen:
+// icons; then plain coloured squares once icons are too small to read; then, zoomed far out, a
+// density map of device counts per screen cell with links left out.
+public final class TopologyCanvas extends Region {
+
+    public static final double DEVICE_SIZE = 50; // Same footprint as the ImageView renderer
+    private static final double MIN_SCALE = 0.002, MAX_SCALE = 4;
+    private static final double ICON_MIN_PIXELS = 16;   // Below this, squares instead of icons
+    private static final double DENSITY_MAX_PIXELS = 4; // Below this, the density map
+    private static final int DENSITY_CELL = 8;          // Screen pixels per density cell
+
+    private final Network network;
+    private final Map<String, Image> icons; // By device type
+    private final Canvas canvas = new Canvas();
+    private final SpatialIndex index = new SpatialIndex(DEVICE_SIZE, 2 * DEVICE_SIZE);
+    private BiConsumer<NetworkDevice, MouseEvent> onDeviceClicked = (device, event) -> { };
+    private NetworkDevice selected;
+    private boolean dirty = true;
+
+    // View transform: screen = (world - offset) * scale
+    private double scale = 1, offsetX = 0, offsetY = 0;
+
+    // Device being dragged and the grab offset inside its icon (world units)
+    private NetworkDevice dragged;
+    private double grabX, grabY;
+    // Background drag pans the view
+    private boolean panning, panned;
+    private double panStartX, panStartY;
+
+    private int[] density = new int[0]; // Scratch for the density map
+    private int drawnDevices, drawnLinks;
+
+    public TopologyCanvas(Network network, Map<String, Image> icons) {
+        this.network = network;
+        this.icons = icons;
+        getChildren().add(canvas);
+        canvas.addEventHandler(MouseEvent.MOUSE_PRESSED, this::handlePressed);
+        canvas.addEventHandler(MouseEvent.MOUSE_DRAGGED, this::handleDragged);
+        canvas.addEventHandler(MouseEvent.MOUSE_RELEASED, this::handleReleased);
+        canvas.addEventHandler(MouseEvent.MOUSE_CLICKED, this::handleClicked);
+        canvas.addEventHandler(MouseEvent.MOUSE_MOVED, event ->
+                canvas.setCursor(deviceAt(event.getX(), event.getY()) != null ? Cursor.HAND : Cursor.DEFAULT));
+        canvas.addEventHandler(ScrollEvent.SCROLL, event -> {
+            zoomAt(event.getX(), event.getY(), Math.pow(1.1, event.getDeltaY() / 40));
+            event.consume();
+        });
+    }
+
+    // --- View ---
+
+    public double toWorldX(double screenX) { return offsetX + screenX / scale; }
+    public double toWorldY(double screenY) { return offsetY + screenY / scale; }
+    public double getScale() { return scale; }
+
+    // Zoom by a factor, keeping the world point under (screenX, screenY) in place
+    public void zoomAt(double screenX, double screenY, double factor) {
+        double worldX = toWorldX(screenX), worldY = toWorldY(screenY);
+        scale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale * factor));
+        offsetX = worldX - screenX / scale;
+        offsetY = worldY - screenY / scale;
+        requestRedraw();
+    }
+
+    // Frame every device
+    public void fitToContent() {
+        if (index.size() == 0 || getWidth() <= 0 || getHeight() <= 0) return;
+        double margin = DEVICE_SIZE;
+        double width = index.getMaxX() - index.getMinX() + 2 * margin;
+        double height = index.getMaxY() - index.getMinY() + 2 * margin;
+        scale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, Math.min(getWidth() / width, getHeight() / height)));
+        offsetX = index.getMinX() - margin;
+        offsetY = index.getMinY() - margin;
+        requestRedraw();
+    }
+
+    // Devices and links drawn in the last frame (after culling)
+    public int getDrawnDevices() { return drawnDevices; }
+    public int getDrawnLinks() { return drawnLinks; }
+
+    // Called for clicks that land on a device (any button, any click count)
+    public void setOnDeviceClicked(BiConsumer<NetworkDevice, MouseEvent> handler) {
+        this.onDeviceClicked = handler;
+    }
+
+    // Start drawing a device that has been added to the network
+    public void deviceAdded(NetworkDevice device) {
+        index.put(device.getIndex(), device.getXPosition(), device.getYPosition());
+        requestRedraw();
+    }
+
+    // Call before the device is removed from the network (its index is still valid)
+    public void deviceRemoved(NetworkDevice device) {
+        index.remove(device.getIndex());
+        if (device == selected) selected = null;
+        if (device == dragged) dragged = null;
+        requestRedraw();
+    }
+
+    // Outline this device (e.g. the first end of a connection being made), or null for none
+    public void setSelected(NetworkDevice device) {
+        selected = device;
+        requestRedraw();
+    }
+
+    // The device drawn at this screen point, topmost first, or null
+    public NetworkDevice deviceAt(double x, double y) {
+        int i = index.hit(toWorldX(x), toWorldY(y));
+        return i < 0 ? null : network.getDeviceByIndex(i);
+    }
+
+    public SpatialIndex getSpatialIndex() {
+        return index;
+    }
+
+    // Links or devices changed; redraw in the next layout pass
+    public void requestRedraw() {
+        dirty = true;
+        requestLayout();
+    }
+
+    private void handlePressed(MouseEvent event) {
+        if (event.getButton() != MouseButton.PRIMARY) return;
+        NetworkDevice device = deviceAt(event.getX(), event.getY());
+        if (device == null) {
+            panning = true;
+            panned = false;
+            panStartX = event.getX();
+            panStartY = event.getY();
+            return;
+        }
+        dragged = device;
+        grabX = toWorldX(event.getX()) - device.getXPosition();
+        grabY = toWorldY(event.getY()) - device.getYPosition();
+        canvas.setCursor(Cursor.MOVE);
+        event.consume();
+    }
+
+    private void handleDragged(MouseEvent event) {
+        if (panning) {
+            offsetX -= (event.getX() - panStartX) / scale;
+            offsetY -= (event.getY() - panStartY) / scale;
+            panStartX = event.getX();
+            panStartY = event.getY();
+            panned = true;
+            canvas.setCursor(Cursor.CLOSED_HAND);
+            requestRedraw();
+            event.consume();
+            return;
+        }
+        if (dragged == null) return;
+        // The world has no edges, but keep devices at non-negative coordinates like the ImageView renderer
+        double x = Math.max(0, toWorldX(event.getX()) - grabX);
+        double y = Math.max(0, toWorldY(event.getY()) - grabY);
+        network.moveDevice(dragged, x, y);
+        index.put(dragged.getIndex(), x, y);
+        requestRedraw();
+        event.consume();
+    }
+
+    private void handleReleased(MouseEvent event) {
+        // Releases over a device or ending a pan are ours; only plain background clicks reach the pane
+        if (dragged != null || panned || deviceAt(event.getX(), event.getY()) != null) {
+            event.consume();
+        }
+        if (panning) {
+            panning = false;
+            canvas.setCursor(Cursor.DEFAULT);
+        }
+        if (dragged != null) {
+            dragged = null;
+            canvas.setCursor(Cursor.HAND);
+        }
+    }
+
+    private void handleClicked(MouseEvent event) {
+        NetworkDevice device = deviceAt(event.getX(), event.getY());
+        if (device != null) {
+            onDeviceClicked.accept(device, event);
+            event.consume();
+        } else if (event.getButton() == MouseButton.PRIMARY && event.getClickCount() == 2) {
+            fitToContent(); // Double-click the background to see everything
+            event.consume();
+        }
+    }
+
+    @Override
+    protected void layoutChildren() {
+        double width = getWidth(), height = getHeight();
+        if (canvas.getWidth() != width || canvas.getHeight() != height) {
+            canvas.setWidth(width);
+            canvas.setHeight(height);
+            dirty = true;
+        }
+        if (dirty) {
+            dirty = false;
+            draw();
+        }
+    }
+
+    private void draw() {
+        GraphicsContext gc = canvas.getGraphicsContext2D();
+        double width = canvas.getWidth(), height = canvas.getHeight();
+        gc.clearRect(0, 0, width, height);
+        drawnDevices = 0;
+        drawnLinks = 0;
+        // Visible world rectangle
+        double x0 = offsetX, y0 = offsetY, x1 = toWorldX(width), y1 = toWorldY(height);
+        double size = DEVICE_SIZE * scale;
+
+        if (size < DENSITY_MAX_PIXELS) {
+            drawDensity(gc, width, height, x0, y0, x1, y1);
+        } else {
+            drawLinks(gc, x0, y0, x1, y1);
+            drawDevices(gc, x0, y0, x1, y1, size);
+        }
+
+        if (selected != null) {
+            gc.setStroke(Color.DODGERBLUE);
+            gc.setLineWidth(3);
+            gc.strokeRect(screenX(selected.getXPosition()) - 2, screenY(selected.getYPosition()) - 2, size + 4, size + 4);
+        }
+    }
+
+    // All visible links as one path: a single stroke call however many there are
+    private void drawLinks(GraphicsContext gc, double x0, double y0, double x1, double y1) {
+        double half = DEVICE_SIZE / 2;
+        gc.setStroke(Color.BLACK);
+        gc.setLineWidth(Math.max(0.5, Math.min(2, 2 * scale)));
+        gc.beginPath();
+        TopologyGraph graph = network.getGraph();
+        for (int e = 0; e < graph.edgeLimit(); e++) {
+            Connection connection = network.getConnectionByEdge(e);
+            if (connection == null) continue;
+            NetworkDevice a = connection.getDevice1(), b = connection.getDevice2();
+            double ax = a.getXPosition() + half, ay = a.getYPosition() + half;
+            double bx = b.getXPosition() + half, by = b.getYPosition() + half;
+            // Cull on the segment's bounding box; cheap, and exact enough for straight links
+            if (Math.max(ax, bx) < x0 || Math.min(ax, bx) > x1 || Math.max(ay, by) < y0 || Math.min(ay, by) > y1) continue;
+            gc.moveTo(screenX(ax), screenY(ay));
+            gc.lineTo(screenX(bx), screenY(by));
+            drawnLinks++;
+        }
+        gc.stroke();
+    }
+
+    private void drawDevices(GraphicsContext gc, double x0, double y0, double x1, double y1, double size) {
+        boolean icons = size >= ICON_MIN_PIXELS;
+        index.query(x0, y0, x1, y1, i -> {
+            NetworkDevice device = network.getDeviceByIndex(i);
+            double x = screenX(device.getXPosition()), y = screenY(device.getYPosition());
+            Image icon = icons ? this.icons.get(device.getType()) : null;
+            if (icon != null) {
+                gc.drawImage(icon, x, y, size, size);
+            } else {
+                gc.setFill(colorOf(device));
+                gc.fillRect(x, y, size, size);
+            }
+            drawnDevices++;
+        });
+    }
+
+    // Zoomed far out: shade each screen cell by how many devices it holds (log scale)
+    private void drawDensity(GraphicsContext gc, double width, double height,
+                             double x0, double y0, double x1, double y1) {
+        int columns = (int) Math.ceil(width / DENSITY_CELL), rows = (int) Math.ceil(height / DENSITY_CELL);
+        if (density.length < columns * rows) density = new int[columns * rows];
+        Arrays.fill(density, 0, columns * rows, 0);
+        double half = DEVICE_SIZE / 2;
+        index.query(x0, y0, x1, y1, i -> {
+            NetworkDevice device = network.getDeviceByIndex(i);
+            int column = (int) (screenX(device.getXPosition() + half) / DENSITY_CELL);
+            int row = (int) (screenY(device.getYPosition() + half) / DENSITY_CELL);
+            if (column >= 0 && column < columns && row >= 0 && row < rows) density[row * columns + column]++;
+            drawnDevices++;
+        });
+        int max = 1;
+        for (int c = 0; c < columns * rows; c++) max = Math.max(max, density[c]);
+        double logMax = Math.log1p(max);
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                int count = density[row * columns + column];
+                if (count == 0) continue;
+                gc.setFill(Color.DODGERBLUE.deriveColor(0, 1, 1, 0.2 + 0.8 * Math.log1p(count) / logMax));
+                gc.fillRect(column * DENSITY_CELL, row * DENSITY_CELL, DENSITY_CELL, DENSITY_CELL);
+            }
+        }
+    }
+
+    private double screenX(double worldX) { return (worldX - offsetX) * scale; }
+    private double screenY(double worldY) { return (worldY - offsetY) * scale; }
+
+    private static Color colorOf(NetworkDevice device) {
+        if (device instanceof PC) return Color.SEAGREEN;
+        if (device instanceof Switch) return Color.STEELBLUE;
+        if (device instanceof Router) return Color.DARKORANGE;
+        return Color.GRAY;
+    }
+}
@@ -0,0 +1,239 @@
+package org.example.network_simulator;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+// Saved topology in a versioned, columnar binary format, read through a memory-mapped file.
+// Opening only maps the file and checks the header; records are read straight from the mapping
+// when asked for, so even a multi-million-device file opens instantly and pages in on demand.
+//
+// Layout (little-endian):
+//   header   int magic "NSTP", int version, int deviceCount, int edgeCount,
+//            14 x long column offsets (types, ids, xs, ys, addresses, masks, edgeFrom, edgeTo,
+//            bandwidths, delays, jitters, lossRates, queueCapacities, disciplines)
+//   columns  byte type[n], int id[n], double x[n], double y[n], int address[n], int mask[n],
+//            int edgeFrom[m], int edgeTo[m]   (edge ends are record positions, 0..n-1),
+//            long bandwidth[m], long delay[m], long jitter[m], double lossRate[m], int queueCapacity[m],
+//            byte discipline[m]   (link settings, see Connection; discipline is a QueueDiscipline ordinal)
+// Each column starts on an 8-byte boundary. address and mask are 0 for non-PC devices.
+// Version 1 files have only the first 8 columns; their links load with the default settings.
+public class TopologyFile {
+
+    public static final int MAGIC = 0x5054534E; // "NSTP" read as a little-endian int
+    public static final int VERSION = 2;
+
+    public static final byte TYPE_PC = 0, TYPE_SWITCH = 1, TYPE_ROUTER = 2;
+
+    private static final long[] WIDTHS = {1, 4, 8, 8, 4, 4, 4, 4, 8, 8, 8, 8, 4, 1}; // Bytes per row, by column
+    private static final int TYPES = 0, IDS = 1, XS = 2, YS = 3, ADDRESSES = 4, MASKS = 5, EDGE_FROM = 6, EDGE_TO = 7,
+            BANDWIDTHS = 8, DELAYS = 9, JITTERS = 10, LOSS_RATES = 11, QUEUE_CAPACITIES = 12, DISCIPLINES = 13;
+    private static final int VERSION_1_COLUMNS = 8;
+
+    private final MappedByteBuffer map;
+    private final int version;
+    private final int deviceCount;
+    private final int edgeCount;
+    private final long[] columns;
+
+    private TopologyFile(MappedByteBuffer map) throws IOException {
+        this.map = map;
+        map.order(ByteOrder.LITTLE_ENDIAN);
+        if (map.capacity() < headerSize(VERSION_1_COLUMNS) || map.getInt(0) != MAGIC) {
+            throw new IOException("Not a topology file");
+        }
+        version = map.getInt(4);
+        if (version != 1 && version != VERSION) {
+            throw new IOException("Unsupported topology file version " + version);
+        }
+        columns = new long[version == 1 ? VERSION_1_COLUMNS : WIDTHS.length];
+        int headerSize = headerSize(columns.length);
+        if (map.capacity() < headerSize) throw new IOException("Corrupt topology file: header cut short");
+        deviceCount = map.getInt(8);
+        edgeCount = map.getInt(12);
+        for (int c = 0; c < columns.length; c++) {
+            columns[c] = map.getLong(16 + 8 * c);
+            long rows = c >= EDGE_FROM ? edgeCount : deviceCount;
+            if (columns[c] < headerSize || columns[c] + rows * WIDTHS[c] > map.capacity()) {
+                throw new IOException("Corrupt topology file: column " + c + " out of bounds");
+            }
+        }
+    }
+
+    // Map a saved topology; nothing but the header is read yet
+    public static TopologyFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("Topology file too large: " + path);
+            // The mapping stays valid after the channel is closed
+            return new TopologyFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    // Write every device and connection of the network
+    public static void save(Network network, Path path) throws IOException {
+        List<NetworkDevice> devices = network.getDevices();
+        TopologyGraph graph = network.getGraph();
+        int n = devices.size(), m = graph.edgeCount();
+        long[] offsets = new long[WIDTHS.length];
+        long end = headerSize(offsets.length);
+        for (int c = 0; c < offsets.length; c++) {
+            offsets[c] = end;
+            end = align(end + (c >= EDGE_FROM ? m : n) * WIDTHS[c]);
+        }
+        if (end > Integer.MAX_VALUE) throw new IOException("Topology too large for one file: " + n + " devices");
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, end);
+            out.order(ByteOrder.LITTLE_ENDIAN);
+            out.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, n).putInt(12, m);
+            for (int c = 0; c < offsets.length; c++) {
+                out.putLong(16 + 8 * c, offsets[c]);
+            }
+
+            int[] position = new int[graph.vertexLimit()]; // Device index -> record number
+            for (int i = 0; i < n; i++) {
+                NetworkDevice device = devices.get(i);
+                position[device.getIndex()] = i;
+                out.put((int) offsets[TYPES] + i, typeCode(device));
+                out.putInt((int) offsets[IDS] + 4 * i, device.getId());
+                out.putDouble((int) offsets[XS] + 8 * i, device.getXPosition());
+                out.putDouble((int) offsets[YS] + 8 * i, device.getYPosition());
+                int address = 0, mask = 0;
+                if (device instanceof PC) {
+                    PC pc = (PC) device;
+                    address = pc.getAddress();
+                    long parsedMask = Ipv4.parse(pc.getSubnetMask());
+                    mask = parsedMask == Ipv4.INVALID ? 0 : (int) parsedMask;
+                }
+                out.putInt((int) offsets[ADDRESSES] + 4 * i, address);
+                out.putInt((int) offsets[MASKS] + 4 * i, mask);
+            }
+            int row = 0;
+            for (int e = 0; e < graph.edgeLimit(); e++) {
+                Connection connection = network.getConnectionByEdge(e);
+                if (connection == null) continue;
+                out.putInt((int) offsets[EDGE_FROM] + 4 * row, position[connection.getDevice1().getIndex()]);
+                out.putInt((int) offsets[EDGE_TO] + 4 * row, position[connection.getDevice2().getIndex()]);
+                out.putLong((int) offsets[BANDWIDTHS] + 8 * row, connection.getBandwidth());
+                out.putLong((int) offsets[DELAYS] + 8 * row, connection.getDelay());
+                out.putLong((int) offsets[JITTERS] + 8 * row, connection.getJitter());
+                out.putDouble((int) offsets[LOSS_RATES] + 8 * row, connection.getLossRate());
+                out.putInt((int) offsets[QUEUE_CAPACITIES] + 4 * row, connection.getQueueCapacity());
+                out.put((int) offsets[DISCIPLINES] + row, (byte) connection.getDiscipline().ordinal());
+                row++;
+            }
+            out.force();
+        }
+    }
+
+    public int getVersion() { return version; }
+    public int getDeviceCount() { return deviceCount; }
+    public int getEdgeCount() { return edgeCount; }
+
+    // --- Column access (record i, straight from the mapping) ---
+
+    public byte typeCode(int i) { return map.get(index(TYPES, i, 1)); }
+    public int id(int i) { return map.getInt(index(IDS, i, 4)); }
+    public double x(int i) { return map.getDouble(index(XS, i, 8)); }
+    public double y(int i) { return map.getDouble(index(YS, i, 8)); }
+    public int address(int i) { return map.getInt(index(ADDRESSES, i, 4)); }
+    public int mask(int i) { return map.getInt(index(MASKS, i, 4)); }
+    public int edgeFrom(int e) { return map.getInt(index(EDGE_FROM, e, 4)); }
+    public int edgeTo(int e) { return map.getInt(index(EDGE_TO, e, 4)); }
+
+    // Link settings of edge e; version 1 files have none, so these give the defaults
+    public long bandwidth(int e) { return hasLinkSettings() ? map.getLong(index(BANDWIDTHS, e, 8)) : Connection.DEFAULT_BANDWIDTH; }
+    public long delay(int e) { return hasLinkSettings() ? map.getLong(index(DELAYS, e, 8)) : Connection.DEFAULT_DELAY; }
+    public long jitter(int e) { return hasLinkSettings() ? map.getLong(index(JITTERS, e, 8)) : 0; }
+    public double lossRate(int e) { return hasLinkSettings() ? map.getDouble(index(LOSS_RATES, e, 8)) : 0; }
+    public int queueCapacity(int e) { return hasLinkSettings() ? map.getInt(index(QUEUE_CAPACITIES, e, 4)) : Connection.DEFAULT_QUEUE_CAPACITY; }
+    public byte disciplineCode(int e) { return hasLinkSettings() ? map.get(index(DISCIPLINES, e, 1)) : 0; }
+
+    private boolean hasLinkSettings() {
+        return columns.length > VERSION_1_COLUMNS;
+    }
+
+    // Build the device for record i (not yet added to any network)
+    public NetworkDevice createDevice(int i) throws IOException {
+        NetworkDevice device = newDevice(typeCode(i), id(i), x(i), y(i));
+        if (device == null) {
+            throw new IOException("Corrupt topology file: unknown device type " + typeCode(i) + " in record " + i);
+        }
+        if (device instanceof PC) {
+            PC pc = (PC) device;
+            // 0 means "not a valid IPv4 address"; the id-based default reproduces those
+            if (address(i) != 0) pc.setIpAddress(Ipv4.format(address(i)));
+            pc.setSubnetMask(Ipv4.format(mask(i)));
+        }
+        return device;
+    }
+
+    // A device of the given type code with a fixed id, or null for an unknown code
+    static NetworkDevice newDevice(byte type, int id, double x, double y) {
+        switch (type) {
+            case TYPE_PC:
+                return new PC(id, x, y);
+            case TYPE_SWITCH:
+                return new Switch(id, x, y);
+            case TYPE_ROUTER:
+                return new Router(id, x, y);
+            default:
+                return null;
+        }
+    }
+
+    // Stream every record into the network (which should be empty). Returns the devices in record order.
+    public NetworkDevice[] loadInto(Network network) throws IOException {
+        NetworkDevice[] created = new NetworkDevice[deviceCount];
+        for (int i = 0; i < deviceCount; i++) {
+            created[i] = createDevice(i);
+            network.addDevice(created[i]);
+        }
+        for (int e = 0; e < edgeCount; e++) {
+            int from = edgeFrom(e), to = edgeTo(e);
+            if (from < 0 || from >= deviceCount || to < 0 || to >= deviceCount) {
+                throw new IOException("Corrupt topology file: edge " + e + " refers to a missing device");
+            }
+            Connection connection = network.connect(created[from], created[to]);
+            if (connection != null && hasLinkSettings()) {
+                byte discipline = disciplineCode(e);
+                if (discipline < 0 || discipline >= QueueDiscipline.values().length) {
+                    throw new IOException("Corrupt topology file: unknown queue discipline in edge " + e);
+                }
+                try {
+                    connection.configure(bandwidth(e), delay(e), jitter(e), lossRate(e), queueCapacity(e),
+                            QueueDiscipline.values()[discipline]);
+                } catch (IllegalArgumentException ex) {
+                    throw new IOException("Corrupt topology file: edge " + e + ": " + ex.getMessage());
+                }
+            }
+        }
+        return created;
+    }
+
+    static byte typeCode(NetworkDevice device) {
+        if (device instanceof PC) return TYPE_PC;
+        if (device instanceof Switch) return TYPE_SWITCH;
+        if (device instanceof Router) return TYPE_ROUTER;
+        throw new IllegalArgumentException("Cannot save device type " + device.getType());
+    }
+
+    private int index(int column, int row, int width) {
+        int rows = column >= EDGE_FROM ? edgeCount : deviceCount;
+        if (row < 0 || row >= rows) throw new IndexOutOfBoundsException("Record " + row + " of " + rows);
+        return (int) (columns[column] + (long) row * width);
+    }
+
+    private static int headerSize(int columnCount) {
+        return 16 + 8 * columnCount;
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+}
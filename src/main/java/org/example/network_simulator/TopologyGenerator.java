@@ -0,0 +1,389 @@
+package org.example.network_simulator;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+// Standard topology shapes generated straight into the model, for scale and regression tests.
+// Each generator returns a Blueprint (device types, positions and links in flat arrays).
+// Blueprint.build then adds the whole batch to a Network, constructing the devices in parallel.
+// Fabric nodes are Switches and end hosts are PCs. Hosts get consecutive addresses in
+// 10.0.0.0/8 so they can be pinged by IP. Random shapes are reproducible from their seed.
+// Blueprint.routed() builds the fabric from Routers instead, with a /24 of hosts behind each one.
+public class TopologyGenerator {
+
+    public static final double SPACING = 80; // World units between neighbouring switches
+    private static final double HOST_SPACING = 60;
+
+    // Shape name -> default parameters, in menu order
+    public static final Map<String, String> SHAPES = new LinkedHashMap<>();
+    static {
+        SHAPES.put("fat-tree", "k=4");
+        SHAPES.put("leaf-spine", "spines=4 leaves=8 hosts=4");
+        SHAPES.put("grid", "rows=4 columns=4 torus=false hosts=1");
+        SHAPES.put("erdos-renyi", "switches=50 degree=3 hosts=1 seed=1");
+        SHAPES.put("barabasi-albert", "switches=50 links=2 hosts=1 seed=1");
+        SHAPES.put("star", "switches=8 hosts=4");
+    }
+
+    // Generate a shape from "name=value" parameters, e.g. generate("fat-tree", "k=8").
+    // Parameters left out take their defaults from SHAPES.
+    public static Blueprint generate(String shape, String parameters) {
+        String defaults = SHAPES.get(shape);
+        if (defaults == null) throw new IllegalArgumentException("Unknown topology shape: " + shape);
+        Map<String, String> p = parseParameters(defaults);
+        p.putAll(parseParameters(parameters));
+        switch (shape) {
+            case "fat-tree":
+                return fatTree(intParameter(p, "k"));
+            case "leaf-spine":
+                return leafSpine(intParameter(p, "spines"), intParameter(p, "leaves"), intParameter(p, "hosts"));
+            case "grid":
+                return grid(intParameter(p, "rows"), intParameter(p, "columns"),
+                        Boolean.parseBoolean(p.get("torus")), intParameter(p, "hosts"));
+            case "erdos-renyi":
+                return erdosRenyi(intParameter(p, "switches"), doubleParameter(p, "degree"),
+                        intParameter(p, "hosts"), longParameter(p, "seed"));
+            case "barabasi-albert":
+                return barabasiAlbert(intParameter(p, "switches"), intParameter(p, "links"),
+                        intParameter(p, "hosts"), longParameter(p, "seed"));
+            default:
+                return starOfSwitches(intParameter(p, "switches"), intParameter(p, "hosts"));
+        }
+    }
+
+    static Map<String, String> parseParameters(String text) {
+        Map<String, String> parameters = new HashMap<>();
+        for (String token : text.trim().split("[\\s,]+")) {
+            if (token.isEmpty()) continue;
+            int eq = token.indexOf('=');
+            if (eq <= 0) throw new IllegalArgumentException("Expected name=value but got: " + token);
+            parameters.put(token.substring(0, eq).toLowerCase(), token.substring(eq + 1));
+        }
+        return parameters;
+    }
+
+    private static int intParameter(Map<String, String> p, String name) {
+        return (int) longParameter(p, name);
+    }
+
+    private static long longParameter(Map<String, String> p, String name) {
+        try {
+            return Long.parseLong(p.get(name));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parameter " + name + " must be a whole number: " + p.get(name));
+        }
+    }
+
+    private static double doubleParameter(Map<String, String> p, String name) {
+        try {
+            return Double.parseDouble(p.get(name));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parameter " + name + " must be a number: " + p.get(name));
+        }
+    }
+
+    // k-ary fat-tree (3-tier Clos), k even: (k/2)^2 core switches; k pods of k/2 aggregation and
+    // k/2 edge switches; k/2 hosts per edge switch (k^3/4 hosts)
+    public static Blueprint fatTree(int k) {
+        if (k < 2 || k % 2 != 0) throw new IllegalArgumentException("Fat-tree arity must be even and at least 2: " + k);
+        int half = k / 2;
+        Blueprint b = new Blueprint();
+        double podWidth = Math.max(k * SPACING, half * hostRowWidth(half));
+        double width = k * podWidth;
+        int[] core = new int[half * half];
+        for (int c = 0; c < core.length; c++) {
+            core[c] = b.add(Blueprint.SWITCH, centred(c, core.length, width), 0);
+        }
+        for (int pod = 0; pod < k; pod++) {
+            double podLeft = pod * podWidth;
+            int[] aggregation = new int[half];
+            for (int a = 0; a < half; a++) {
+                aggregation[a] = b.add(Blueprint.SWITCH, podLeft + centred(a, half, podWidth), 3 * SPACING);
+                for (int c = 0; c < half; c++) {
+                    b.link(aggregation[a], core[a * half + c]); // Aggregation switch a reaches core group a
+                }
+            }
+            for (int e = 0; e < half; e++) {
+                int edge = b.add(Blueprint.SWITCH, podLeft + centred(e, half, podWidth), 5 * SPACING);
+                for (int a = 0; a < half; a++) {
+                    b.link(edge, aggregation[a]);
+                }
+                b.addHosts(edge, half);
+            }
+        }
+        return b;
+    }
+
+    // Every leaf connects to every spine; hosts hang off the leaves
+    public static Blueprint leafSpine(int spines, int leaves, int hostsPerLeaf) {
+        requirePositive(spines, "spines");
+        requirePositive(leaves, "leaves");
+        Blueprint b = new Blueprint();
+        double leafWidth = Math.max(SPACING, hostRowWidth(hostsPerLeaf));
+        double width = leaves * leafWidth;
+        int[] spine = new int[spines];
+        for (int s = 0; s < spines; s++) {
+            spine[s] = b.add(Blueprint.SWITCH, centred(s, spines, width), 0);
+        }
+        for (int l = 0; l < leaves; l++) {
+            int leaf = b.add(Blueprint.SWITCH, centred(l, leaves, width), 4 * SPACING);
+            for (int s : spine) {
+                b.link(leaf, s);
+            }
+            b.addHosts(leaf, hostsPerLeaf);
+        }
+        return b;
+    }
+
+    // rows x columns mesh of switches, optionally wrapped into a torus
+    public static Blueprint grid(int rows, int columns, boolean torus, int hostsPerSwitch) {
+        requirePositive(rows, "rows");
+        requirePositive(columns, "columns");
+        Blueprint b = new Blueprint();
+        double cell = Math.max(SPACING, hostRowWidth(hostsPerSwitch));
+        double rowHeight = hostsPerSwitch > 0 ? 3 * SPACING : SPACING;
+        int first = b.deviceCount;
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                b.add(Blueprint.SWITCH, c * cell, r * rowHeight);
+            }
+        }
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                int here = first + r * columns + c;
+                if (c + 1 < columns) b.link(here, here + 1);
+                else if (torus && columns > 2) b.link(here, first + r * columns);
+                if (r + 1 < rows) b.link(here, here + columns);
+                else if (torus && rows > 2) b.link(here, first + c);
+            }
+        }
+        for (int s = 0; s < rows * columns; s++) {
+            b.addHosts(first + s, hostsPerSwitch);
+        }
+        return b;
+    }
+
+    // Erdos-Renyi G(n, p) over switches with p chosen for the given average degree.
+    // Uses geometric skipping, so the cost is O(n + links) rather than O(n^2).
+    public static Blueprint erdosRenyi(int switches, double averageDegree, int hostsPerSwitch, long seed) {
+        requirePositive(switches, "switches");
+        Blueprint b = new Blueprint();
+        int first = b.addSwitchGrid(switches, hostsPerSwitch);
+        double p = switches > 1 ? Math.min(1, averageDegree / (switches - 1)) : 0;
+        if (p > 0) {
+            SplittableRandom random = new SplittableRandom(seed);
+            double logQ = Math.log(1 - p); // -Infinity when p == 1: every pair is linked
+            long v = 1, w = -1;
+            while (v < switches) {
+                w += 1 + (p == 1 ? 0 : (long) Math.floor(Math.log(1 - random.nextDouble()) / logQ));
+                while (w >= v && v < switches) {
+                    w -= v;
+                    v++;
+                }
+                if (v < switches) b.link(first + (int) v, first + (int) w);
+            }
+        }
+        b.addHostsToSwitches(first, switches, hostsPerSwitch);
+        return b;
+    }
+
+    // Barabasi-Albert preferential attachment: starts from a clique of linksPerSwitch + 1 switches;
+    // every later switch links to linksPerSwitch distinct switches, chosen with probability
+    // proportional to their degree
+    public static Blueprint barabasiAlbert(int switches, int linksPerSwitch, int hostsPerSwitch, long seed) {
+        requirePositive(linksPerSwitch, "links per switch");
+        if (switches <= linksPerSwitch) {
+            throw new IllegalArgumentException("Need more switches than links per switch");
+        }
+        Blueprint b = new Blueprint();
+        int first = b.addSwitchGrid(switches, hostsPerSwitch);
+        int seedSize = linksPerSwitch + 1;
+        // Every link end, so a uniform pick is a degree-weighted pick of a switch
+        int[] ends = new int[2 * (seedSize * (seedSize - 1) / 2 + (switches - seedSize) * linksPerSwitch)];
+        int endCount = 0;
+        for (int i = 0; i < seedSize; i++) {
+            for (int j = 0; j < i; j++) {
+                b.link(first + i, first + j);
+                ends[endCount++] = i;
+                ends[endCount++] = j;
+            }
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] chosen = new int[linksPerSwitch];
+        for (int v = seedSize; v < switches; v++) {
+            int picked = 0;
+            while (picked < linksPerSwitch) {
+                int candidate = ends[random.nextInt(endCount)];
+                boolean duplicate = false;
+                for (int i = 0; i < picked; i++) {
+                    if (chosen[i] == candidate) duplicate = true;
+                }
+                if (!duplicate) chosen[picked++] = candidate;
+            }
+            for (int i = 0; i < linksPerSwitch; i++) {
+                b.link(first + v, first + chosen[i]);
+                ends[endCount++] = v;
+                ends[endCount++] = chosen[i];
+            }
+        }
+        b.addHostsToSwitches(first, switches, hostsPerSwitch);
+        return b;
+    }
+
+    // One central switch with `switches` switches around it, each with its own hosts
+    public static Blueprint starOfSwitches(int switches, int hostsPerSwitch) {
+        requirePositive(switches, "switches");
+        Blueprint b = new Blueprint();
+        double armWidth = Math.max(SPACING, hostRowWidth(hostsPerSwitch));
+        double width = switches * armWidth;
+        int hub = b.add(Blueprint.SWITCH, width / 2, 0);
+        for (int s = 0; s < switches; s++) {
+            int arm = b.add(Blueprint.SWITCH, centred(s, switches, width), 4 * SPACING);
+            b.link(hub, arm);
+            b.addHosts(arm, hostsPerSwitch);
+        }
+        return b;
+    }
+
+    // x of item i when count items share a span, centred in equal slots
+    private static double centred(int i, int count, double span) {
+        return (i + 0.5) * span / count;
+    }
+
+    private static double hostRowWidth(int hosts) {
+        return hosts * HOST_SPACING + SPACING;
+    }
+
+    private static void requirePositive(int value, String name) {
+        if (value < 1) throw new IllegalArgumentException("Number of " + name + " must be positive: " + value);
+    }
+
+    // A topology waiting to be built: parallel arrays of devices and links
+    public static class Blueprint {
+        static final byte PC = 0, SWITCH = 1;
+
+        private byte[] types = new byte[64];
+        private double[] xs = new double[64];
+        private double[] ys = new double[64];
+        private int deviceCount = 0;
+        private int[] from = new int[64];
+        private int[] to = new int[64];
+        private int linkCount = 0;
+        private boolean routed = false;
+
+        public int getDeviceCount() { return deviceCount; }
+        public int getLinkCount() { return linkCount; }
+
+        int add(byte type, double x, double y) {
+            if (deviceCount == types.length) {
+                int capacity = deviceCount * 2;
+                types = Arrays.copyOf(types, capacity);
+                xs = Arrays.copyOf(xs, capacity);
+                ys = Arrays.copyOf(ys, capacity);
+            }
+            types[deviceCount] = type;
+            xs[deviceCount] = x;
+            ys[deviceCount] = y;
+            return deviceCount++;
+        }
+
+        void link(int a, int b) {
+            if (linkCount == from.length) {
+                from = Arrays.copyOf(from, linkCount * 2);
+                to = Arrays.copyOf(to, linkCount * 2);
+            }
+            from[linkCount] = a;
+            to[linkCount] = b;
+            linkCount++;
+        }
+
+        // A row of hosts under the switch, each linked to it
+        void addHosts(int sw, int count) {
+            double left = xs[sw] - (count - 1) * HOST_SPACING / 2;
+            for (int h = 0; h < count; h++) {
+                link(sw, add(PC, left + h * HOST_SPACING, ys[sw] + 1.5 * SPACING));
+            }
+        }
+
+        void addHostsToSwitches(int first, int switches, int hostsPerSwitch) {
+            for (int s = 0; s < switches; s++) {
+                addHosts(first + s, hostsPerSwitch);
+            }
+        }
+
+        // Switches laid out on a square grid (for shapes with no natural layout); returns the first
+        int addSwitchGrid(int switches, int hostsPerSwitch) {
+            int columns = (int) Math.ceil(Math.sqrt(switches));
+            double cell = Math.max(2 * SPACING, hostRowWidth(hostsPerSwitch));
+            double rowHeight = hostsPerSwitch > 0 ? 3 * SPACING : 2 * SPACING;
+            int first = deviceCount;
+            for (int s = 0; s < switches; s++) {
+                add(SWITCH, (s % columns) * cell, (s / columns) * rowHeight);
+            }
+            return first;
+        }
+
+        // Build fabric nodes as Routers, each with its hosts in a /24 of its own (10.x.y.0/24 for the
+        // n-th fabric node, n = x * 256 + y), e.g. to run link-state routing on the shape
+        public Blueprint routed() {
+            routed = true;
+            return this;
+        }
+
+        // Add every device and link to the network (devices are constructed in parallel).
+        // Returns the devices in blueprint order.
+        public NetworkDevice[] build(Network network) {
+            int firstId = NetworkDevice.reserveIds(deviceCount);
+            int[] hostNumber = new int[deviceCount];
+            if (routed) {
+                numberBySubnet(hostNumber);
+            } else {
+                for (int i = 0, h = 0; i < deviceCount; i++) {
+                    if (types[i] == PC) hostNumber[i] = ++h;
+                }
+            }
+            NetworkDevice[] devices = new NetworkDevice[deviceCount];
+            IntStream.range(0, deviceCount).parallel().forEach(i -> {
+                if (types[i] == PC) {
+                    PC pc = new PC(firstId + i, xs[i], ys[i]);
+                    pc.setIpAddress(Ipv4.format(0x0A00_0000 | hostNumber[i]));
+                    pc.setSubnetMask(routed ? "255.255.255.0" : "255.0.0.0");
+                    devices[i] = pc;
+                } else if (routed) {
+                    devices[i] = new Router(firstId + i, xs[i], ys[i]);
+                } else {
+                    devices[i] = new Switch(firstId + i, xs[i], ys[i]);
+                }
+            });
+            // The model itself is single-threaded; insertion is a tight sequential pass
+            for (NetworkDevice device : devices) {
+                network.addDevice(device);
+            }
+            for (int l = 0; l < linkCount; l++) {
+                network.connect(devices[from[l]], devices[to[l]]);
+            }
+            return devices;
+        }
+
+        // Host numbers for routed builds: the fabric node's subnet in the upper bits, the host's place under it below
+        private void numberBySubnet(int[] hostNumber) {
+            int[] subnet = new int[deviceCount];
+            for (int i = 0, n = 0; i < deviceCount; i++) {
+                if (types[i] != PC) subnet[i] = n++;
+                if (n > 1 << 16) throw new IllegalArgumentException("A routed fabric has at most 65536 nodes");
+            }
+            int[] hosts = new int[deviceCount];
+            for (int l = 0; l < linkCount; l++) {
+                int host = types[from[l]] == PC ? from[l] : types[to[l]] == PC ? to[l] : -1;
+                if (host < 0 || hostNumber[host] != 0) continue;
+                int node = host == from[l] ? to[l] : from[l];
+                if (hosts[node] == 254) throw new IllegalArgumentException("A routed fabric node takes at most 254 hosts");
+                hostNumber[host] = (subnet[node] << 8) | ++hosts[node];
+            }
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package org.example.network_simulator;
+
+import java.util.Arrays;
+
+// Adjacency store keyed by dense vertex ids.
+// Each vertex keeps primitive int arrays of neighbours and edge ids, edges are indexed by a
+// packed (min, max) key for O(1) existence checks, and a compact CSR snapshot is rebuilt lazily
+// for whole-graph traversals. Vertex and edge ids are recycled so arrays stay dense.
+public class TopologyGraph {
+
+    private static final int[] NO_INTS = new int[0];
+
+    // Per-vertex adjacency
+    private int[][] neighbours = new int[16][];
+    private int[][] incidentEdges = new int[16][];
+    private int[] degree = new int[16];
+    private boolean[] live = new boolean[16];
+    private int vertexLimit = 0; // One past the highest vertex id ever handed out
+    private int vertexCount = 0;
+    private int[] freeVertices = new int[16];
+    private int freeVertexCount = 0;
+
+    // Per-edge endpoints
+    private int[] edgeFrom = new int[16];
+    private int[] edgeTo = new int[16];
+    private int edgeLimit = 0;
+    private int edgeCount = 0;
+    private int[] freeEdges = new int[16];
+    private int freeEdgeCount = 0;
+    private final LongIntHashMap edgeIndex = new LongIntHashMap(16, -1);
+
+    // Lazily rebuilt CSR snapshot
+    private int[] csrOffsets = new int[1];
+    private int[] csrTargets = NO_INTS;
+    private boolean csrDirty = false;
+    private long version = 0; // Bumped on every structural change
+
+    // --- Vertices ---
+
+    public int addVertex() {
+        int v;
+        if (freeVertexCount > 0) {
+            v = freeVertices[--freeVertexCount];
+        } else {
+            v = vertexLimit++;
+            if (v == live.length) growVertices(v + 1);
+        }
+        neighbours[v] = NO_INTS;
+        incidentEdges[v] = NO_INTS;
+        degree[v] = 0;
+        live[v] = true;
+        vertexCount++;
+        structureChanged();
+        return v;
+    }
+
+    // Removes a vertex and every edge touching it
+    public void removeVertex(int v) {
+        checkVertex(v);
+        while (degree[v] > 0) {
+            removeEdge(v, neighbours[v][degree[v] - 1]);
+        }
+        live[v] = false;
+        neighbours[v] = null;
+        incidentEdges[v] = null;
+        vertexCount--;
+        if (freeVertexCount == freeVertices.length) freeVertices = Arrays.copyOf(freeVertices, freeVertexCount * 2);
+        freeVertices[freeVertexCount++] = v;
+        structureChanged();
+    }
+
+    public boolean isVertex(int v) {
+        return v >= 0 && v < vertexLimit && live[v];
+    }
+
+    public int vertexCount() { return vertexCount; }
+
+    // Upper bound (exclusive) on vertex ids; size per-vertex arrays with this
+    public int vertexLimit() { return vertexLimit; }
+
+    // --- Edges ---
+
+    // Returns the new edge id, or -1 if the edge already exists
+    public int addEdge(int a, int b) {
+        checkVertex(a);
+        checkVertex(b);
+        if (a == b) throw new IllegalArgumentException("Self loops are not supported: " + a);
+        long key = key(a, b);
+        if (edgeIndex.containsKey(key)) return -1;
+
+        int e;
+        if (freeEdgeCount > 0) {
+            e = freeEdges[--freeEdgeCount];
+        } else {
+            e = edgeLimit++;
+            if (e == edgeFrom.length) {
+                int capacity = edgeFrom.length * 2;
+                edgeFrom = Arrays.copyOf(edgeFrom, capacity);
+                edgeTo = Arrays.copyOf(edgeTo, capacity);
+            }
+        }
+        edgeFrom[e] = a;
+        edgeTo[e] = b;
+        edgeIndex.put(key, e);
+        appendAdjacency(a, b, e);
+        appendAdjacency(b, a, e);
+        edgeCount++;
+        structureChanged();
+        return e;
+    }
+
+    // Returns the removed edge id, or -1 if there was no such edge
+    public int removeEdge(int a, int b) {
+        int e = edgeIndex.remove(key(a, b));
+        if (e < 0) return -1;
+        removeAdjacency(a, e);
+        removeAdjacency(b, e);
+        if (freeEdgeCount == freeEdges.length) freeEdges = Arrays.copyOf(freeEdges, freeEdgeCount * 2);
+        freeEdges[freeEdgeCount++] = e;
+        edgeCount--;
+        structureChanged();
+        return e;
+    }
+
+    public boolean hasEdge(int a, int b) {
+        return edgeIndex.containsKey(key(a, b));
+    }
+
+    public int edgeId(int a, int b) {
+        return edgeIndex.get(key(a, b));
+    }
+
+    public int edgeFrom(int e) { return edgeFrom[e]; }
+    public int edgeTo(int e) { return edgeTo[e]; }
+
+    public int otherEnd(int e, int v) {
+        return edgeFrom[e] == v ? edgeTo[e] : edgeFrom[e];
+    }
+
+    public int edgeCount() { return edgeCount; }
+
+    // Upper bound (exclusive) on edge ids; size per-edge arrays with this
+    public int edgeLimit() { return edgeLimit; }
+
+    // --- Neighbour access (per vertex, no allocation) ---
+
+    public int degree(int v) { return degree[v]; }
+    public int neighbour(int v, int i) { return neighbours[v][i]; }
+    public int incidentEdge(int v, int i) { return incidentEdges[v][i]; }
+
+    // --- CSR snapshot ---
+    // offsets has vertexLimit + 1 entries; neighbours of v are targets[offsets[v] .. offsets[v + 1])
+
+    public int[] csrOffsets() {
+        rebuildCsrIfDirty();
+        return csrOffsets;
+    }
+
+    public int[] csrTargets() {
+        rebuildCsrIfDirty();
+        return csrTargets;
+    }
+
+    // Changes whenever a vertex or edge is added or removed; lets callers cache derived data
+    public long version() {
+        return version;
+    }
+
+    private void rebuildCsrIfDirty() {
+        if (!csrDirty) return;
+        int[] offsets = new int[vertexLimit + 1];
+        int[] targets = new int[edgeCount * 2];
+        int pos = 0;
+        for (int v = 0; v < vertexLimit; v++) {
+            offsets[v] = pos;
+            if (live[v]) {
+                System.arraycopy(neighbours[v], 0, targets, pos, degree[v]);
+                pos += degree[v];
+            }
+        }
+        offsets[vertexLimit] = pos;
+        csrOffsets = offsets;
+        csrTargets = targets;
+        csrDirty = false;
+    }
+
+    // --- Internals ---
+
+    private void appendAdjacency(int v, int neighbour, int e) {
+        int d = degree[v];
+        if (d == neighbours[v].length) {
+            int capacity = Math.max(4, d * 2);
+            neighbours[v] = Arrays.copyOf(neighbours[v], capacity);
+            incidentEdges[v] = Arrays.copyOf(incidentEdges[v], capacity);
+        }
+        neighbours[v][d] = neighbour;
+        incidentEdges[v][d] = e;
+        degree[v] = d + 1;
+    }
+
+    // Swap-with-last removal; neighbour order is not significant
+    private void removeAdjacency(int v, int e) {
+        int[] edges = incidentEdges[v];
+        int last = degree[v] - 1;
+        for (int i = 0; i <= last; i++) {
+            if (edges[i] == e) {
+                edges[i] = edges[last];
+                neighbours[v][i] = neighbours[v][last];
+                degree[v] = last;
+                return;
+            }
+        }
+    }
+
+    private void growVertices(int minCapacity) {
+        int capacity = Math.max(minCapacity, live.length * 2);
+        neighbours = Arrays.copyOf(neighbours, capacity);
+        incidentEdges = Arrays.copyOf(incidentEdges, capacity);
+        degree = Arrays.copyOf(degree, capacity);
+        live = Arrays.copyOf(live, capacity);
+    }
+
+    private void checkVertex(int v) {
+        if (!isVertex(v)) throw new IllegalArgumentException("Unknown vertex: " + v);
+    }
+
+    private void structureChanged() {
+        csrDirty = true;
+        version++;
+    }
+
+    private static long key(int a, int b) {
+        int lo = Math.min(a, b), hi = Math.max(a, b);
+        return ((long) lo << 32) | (hi & 0xffffffffL);
+    }
+}
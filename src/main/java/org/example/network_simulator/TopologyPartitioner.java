@@ -0,0 +1,54 @@
+package org.example.network_simulator;
+
+import java.util.Arrays;
+
+// Splits a TopologyGraph into balanced partitions for parallel simulation.
+// Vertices are ordered by breadth-first search (component by component) and the order is cut
+// into equal runs, so each partition is a connected-ish region and few links cross partitions.
+final class TopologyPartitioner {
+
+    private TopologyPartitioner() {
+    }
+
+    // Partition number for every vertex id (-1 for unused ids)
+    static int[] partition(TopologyGraph graph, int partitions) {
+        int limit = graph.vertexLimit();
+        int[] assignment = new int[limit];
+        Arrays.fill(assignment, -1);
+        int[] order = new int[graph.vertexCount()];
+        boolean[] visited = new boolean[limit];
+        int head = 0, tail = 0;
+        for (int seed = 0; seed < limit; seed++) {
+            if (!graph.isVertex(seed) || visited[seed]) continue;
+            visited[seed] = true;
+            order[tail++] = seed;
+            while (head < tail) {
+                int v = order[head++];
+                for (int i = 0, d = graph.degree(v); i < d; i++) {
+                    int u = graph.neighbour(v, i);
+                    if (!visited[u]) {
+                        visited[u] = true;
+                        order[tail++] = u;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < tail; i++) {
+            assignment[order[i]] = (int) ((long) i * partitions / tail);
+        }
+        return assignment;
+    }
+
+    // Number of links whose endpoints ended up in different partitions
+    static int cutSize(TopologyGraph graph, int[] assignment) {
+        int cut = 0;
+        for (int v = 0; v < graph.vertexLimit(); v++) {
+            if (!graph.isVertex(v)) continue;
+            for (int i = 0, d = graph.degree(v); i < d; i++) {
+                int u = graph.neighbour(v, i);
+                if (u > v && assignment[u] != assignment[v]) cut++;
+            }
+        }
+        return cut;
+    }
+}
@@ -0,0 +1,105 @@
+package org.example.network_simulator;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Human-readable topology export/import, for diffs and hand edits. The binary TopologyFile is
+// the fast path; this one parses line by line and is meant for small topologies.
+//
+//   # Network Simulator topology 2
+//   device PC 3 120.0 80.0 192.168.1.103 255.255.255.0
+//   device Switch 4 200.0 80.0
+//   link 3 4
+//   link 4 5 bandwidth=100M delay=2ms jitter=0 loss=0.0 queue=64 discipline=red
+// Link settings (see Connection.configure) are only written for links that don't use the defaults.
+public class TopologyText {
+
+    private static final String HEADER = "# Network Simulator topology " + TopologyFile.VERSION;
+
+    public static void export(Network network, Path path) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write(HEADER);
+            out.newLine();
+            for (NetworkDevice device : network.getDevices()) {
+                out.write("device " + device.getType() + " " + device.getId() + " "
+                        + device.getXPosition() + " " + device.getYPosition());
+                if (device instanceof PC) {
+                    PC pc = (PC) device;
+                    out.write(" " + pc.getIpAddress() + " " + pc.getSubnetMask());
+                }
+                out.newLine();
+            }
+            for (Connection connection : network.getConnections()) {
+                out.write("link " + connection.getDevice1().getId() + " " + connection.getDevice2().getId());
+                if (!connection.hasDefaultSettings()) out.write(" " + connection.getSettings());
+                out.newLine();
+            }
+        }
+    }
+
+    // Add the devices and links in the file to the network (which should be empty)
+    public static void importInto(Network network, Path path) throws IOException {
+        Map<Integer, NetworkDevice> byId = new HashMap<>();
+        try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] parts = line.split("\\s+");
+                try {
+                    if (parts[0].equals("device") && parts.length >= 5) {
+                        NetworkDevice device = createDevice(parts);
+                        if (byId.putIfAbsent(device.getId(), device) != null) {
+                            throw new IOException("Duplicate device id " + device.getId());
+                        }
+                        network.addDevice(device);
+                    } else if (parts[0].equals("link") && parts.length >= 3) {
+                        NetworkDevice a = byId.get(Integer.parseInt(parts[1]));
+                        NetworkDevice b = byId.get(Integer.parseInt(parts[2]));
+                        if (a == null || b == null) throw new IOException("Link to an unknown device");
+                        Connection connection = network.connect(a, b);
+                        if (connection != null && parts.length > 3) {
+                            connection.configure(String.join(" ", Arrays.copyOfRange(parts, 3, parts.length)));
+                        }
+                    } else {
+                        throw new IOException("Unrecognised line");
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IOException(path + ":" + lineNumber + ": bad number in \"" + line + "\"");
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(path + ":" + lineNumber + ": " + e.getMessage() + " in \"" + line + "\"");
+                } catch (IOException e) {
+                    throw new IOException(path + ":" + lineNumber + ": " + e.getMessage() + " in \"" + line + "\"");
+                }
+            }
+        }
+    }
+
+    private static NetworkDevice createDevice(String[] parts) throws IOException {
+        int id = Integer.parseInt(parts[2]);
+        double x = Double.parseDouble(parts[3]);
+        double y = Double.parseDouble(parts[4]);
+        switch (parts[1]) {
+            case "PC":
+                PC pc = new PC(id, x, y);
+                if (parts.length >= 6) pc.setIpAddress(parts[5]);
+                if (parts.length >= 7) pc.setSubnetMask(parts[6]);
+                return pc;
+            case "Switch":
+                return new Switch(id, x, y);
+            case "Router":
+                return new Router(id, x, y);
+            default:
+                throw new IOException("Unknown device type " + parts[1]);
+        }
+    }
+}
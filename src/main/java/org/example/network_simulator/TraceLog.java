@@ -0,0 +1,271 @@
+package org.example.network_simulator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Append-only binary trace of a run: topology changes, commands and chat (the inputs) and
+// packet sends, receives and drops (what the simulation made of them).
+// Records go straight into memory-mapped segment files (trace-000000.seg, trace-000001.seg, ...)
+// in a directory; a new segment starts when one fills up. Appending reserves space with one
+// atomic add, so worker and actor threads can record at once without a lock.
+// Every ~64 KB a record is noted in a sparse (time, offset) index, written next to each
+// segment (trace-000000.idx) on close, which lets TraceReader seek to a time without scanning.
+//
+// Segment layout (little-endian): int magic "NTRC", int version, int segment number, int 0,
+// then records. Every record starts with a 16-byte header: int size (a multiple of 8), byte type,
+// byte flags, short 0, long simulated time. A size of 0 marks the end of the segment.
+// Bodies (offsets from the record start):
+//   TRACE_START      value@24 = seed
+//   DEVICE_ADDED     device@16, flags = TopologyFile type code, x@24, y@32 (doubles)
+//   DEVICE_REMOVED   device@16
+//   DEVICE_MOVED     device@16, x@24, y@32
+//   ADDRESS_CHANGED  device@16, address@20, mask@24 (as a long)
+//   LINK_ADDED       device@16, peer@20
+//   LINK_REMOVED     device@16, peer@20
+//   LINK_CONFIGURED  device@16, peer@20, bandwidth@24, delay@32, jitter@40 (longs), loss rate@48 (double),
+//                    queue capacity@56, flags = QueueDiscipline ordinal
+//   COMMAND, CHAT    device@16, text length@20, UTF-8 text@24
+//   PACKET_SENT      device@16 (from), peer@20 (to), trace id@24, length@32
+//   PACKET_RECEIVED  device@16 (to), peer@20 (from), trace id@24, length@32
+//   PACKET_DROPPED   device@16, peer@20, trace id@24, length@32
+// Devices are recorded by id. Records from parallel workers are only ordered within each worker.
+// Read a trace once it is closed; until then the tail of the last segment may be incomplete.
+public class TraceLog implements AutoCloseable {
+
+    public static final int MAGIC = 0x4352544E; // "NTRC" read as a little-endian int
+    public static final int VERSION = 1;
+    public static final long DEFAULT_SEGMENT_SIZE = 64L << 20;
+
+    public static final byte TRACE_START = 1, DEVICE_ADDED = 2, DEVICE_REMOVED = 3, DEVICE_MOVED = 4,
+            ADDRESS_CHANGED = 5, LINK_ADDED = 6, LINK_REMOVED = 7, COMMAND = 8, CHAT = 9,
+            PACKET_SENT = 10, PACKET_RECEIVED = 11, PACKET_DROPPED = 12, LINK_CONFIGURED = 13;
+
+    static final int SEGMENT_HEADER = 16;
+    static final int RECORD_HEADER = 16;
+    static final int INDEX_INTERVAL = 64 * 1024;
+    private static final int FIXED_RECORD = 40;
+    private static final int LINK_RECORD = 64;
+    private static final int MAX_TEXT = 0xffff;
+
+    private final Path directory;
+    private final long segmentSize;
+    private volatile Segment[] segments = new Segment[0]; // By segment number
+    private volatile Segment current;
+    private boolean closed = false;
+
+    public TraceLog(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public TraceLog(Path directory, long segmentSize) throws IOException {
+        if (segmentSize < 4096 || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment size out of range: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        roll(null);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    static Path segmentPath(Path directory, int number) {
+        return directory.resolve(String.format("trace-%06d.seg", number));
+    }
+
+    static Path indexPath(Path directory, int number) {
+        return directory.resolve(String.format("trace-%06d.idx", number));
+    }
+
+    // --- Recording ---
+
+    void start(long time, long seed) {
+        long ticket = reserve(FIXED_RECORD);
+        header(ticket, FIXED_RECORD, TRACE_START, 0, time).putLong((int) ticket + 24, seed);
+    }
+
+    void deviceAdded(long time, NetworkDevice device) {
+        long ticket = reserve(FIXED_RECORD);
+        header(ticket, FIXED_RECORD, DEVICE_ADDED, TopologyFile.typeCode(device), time)
+                .putInt((int) ticket + 16, device.getId())
+                .putDouble((int) ticket + 24, device.getXPosition())
+                .putDouble((int) ticket + 32, device.getYPosition());
+        if (device instanceof PC) addressChanged(time, (PC) device);
+    }
+
+    void deviceRemoved(long time, NetworkDevice device) {
+        long ticket = reserve(FIXED_RECORD);
+        header(ticket, FIXED_RECORD, DEVICE_REMOVED, 0, time).putInt((int) ticket + 16, device.getId());
+    }
+
+    void deviceMoved(long time, NetworkDevice device) {
+        long ticket = reserve(FIXED_RECORD);
+        header(ticket, FIXED_RECORD, DEVICE_MOVED, 0, time)
+                .putInt((int) ticket + 16, device.getId())
+                .putDouble((int) ticket + 24, device.getXPosition())
+                .putDouble((int) ticket + 32, device.getYPosition());
+    }
+
+    void addressChanged(long time, PC pc) {
+        long mask = Ipv4.parse(pc.getSubnetMask());
+        long ticket = reserve(FIXED_RECORD);
+        header(ticket, FIXED_RECORD, ADDRESS_CHANGED, 0, time)
+                .putInt((int) ticket + 16, pc.getId())
+                .putInt((int) ticket + 20, pc.getAddress())
+                .putLong((int) ticket + 24, mask);
+    }
+
+    void linkChanged(long time, boolean added, NetworkDevice a, NetworkDevice b) {
+        long ticket = reserve(FIXED_RECORD);
+        header(ticket, FIXED_RECORD, added ? LINK_ADDED : LINK_REMOVED, 0, time)
+                .putInt((int) ticket + 16, a.getId())
+                .putInt((int) ticket + 20, b.getId());
+    }
+
+    void linkConfigured(long time, Connection connection) {
+        long ticket = reserve(LINK_RECORD);
+        header(ticket, LINK_RECORD, LINK_CONFIGURED, connection.getDiscipline().ordinal(), time)
+                .putInt((int) ticket + 16, connection.getDevice1().getId())
+                .putInt((int) ticket + 20, connection.getDevice2().getId())
+                .putLong((int) ticket + 24, connection.getBandwidth())
+                .putLong((int) ticket + 32, connection.getDelay())
+                .putLong((int) ticket + 40, connection.getJitter())
+                .putDouble((int) ticket + 48, connection.getLossRate())
+                .putInt((int) ticket + 56, connection.getQueueCapacity());
+    }
+
+    void text(long time, byte type, PC pc, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, MAX_TEXT);
+        int size = align(24 + length);
+        long ticket = reserve(size);
+        header(ticket, size, type, 0, time)
+                .putInt((int) ticket + 16, pc.getId())
+                .putInt((int) ticket + 20, length)
+                .put((int) ticket + 24, bytes, 0, length);
+    }
+
+    void packet(long time, byte type, NetworkDevice device, NetworkDevice peer, Packet packet) {
+        long ticket = reserve(FIXED_RECORD);
+        header(ticket, FIXED_RECORD, type, 0, time)
+                .putInt((int) ticket + 16, device.getId())
+                .putInt((int) ticket + 20, peer == null ? 0 : peer.getId())
+                .putLong((int) ticket + 24, packet.traceId())
+                .putInt((int) ticket + 32, packet.length());
+    }
+
+    // Space for one record: segment number in the high half, offset in the low half
+    private long reserve(int size) {
+        while (true) {
+            Segment segment = current;
+            int at = segment.reserve(size);
+            if (at >= 0) return (long) segment.number << 32 | at;
+            roll(segment);
+        }
+    }
+
+    // Write the record header, noting the record in the index when it crosses an index boundary
+    private ByteBuffer header(long ticket, int size, byte type, int flags, long time) {
+        Segment segment = segments[(int) (ticket >>> 32)];
+        int at = (int) ticket;
+        ByteBuffer map = segment.map;
+        map.put(at + 4, type).put(at + 5, (byte) flags).putLong(at + 8, time);
+        map.putInt(at, size);
+        if ((at - 1) / INDEX_INTERVAL != (at + size - 1) / INDEX_INTERVAL) {
+            segment.index(time, at);
+        }
+        return map;
+    }
+
+    // Start the next segment once `full` has no room left (another thread may have done it already)
+    private synchronized void roll(Segment full) {
+        if (closed) throw new IllegalStateException("Trace is closed");
+        if (current != full) return;
+        int number = segments.length;
+        try (FileChannel channel = FileChannel.open(segmentPath(directory, number), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            map.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, number).putInt(12, 0);
+            Segment segment = new Segment(number, map);
+            Segment[] grown = Arrays.copyOf(segments, number + 1);
+            grown[number] = segment;
+            segments = grown;
+            current = segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot start trace segment " + number + " in " + directory, e);
+        }
+    }
+
+    // Flush every segment and write the indexes. Recording must have stopped.
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        for (Segment segment : segments) {
+            segment.map.force();
+            segment.writeIndex(indexPath(directory, segment.number));
+        }
+    }
+
+    private static int align(int size) {
+        return (size + 7) & ~7;
+    }
+
+    private final class Segment {
+        final int number;
+        final MappedByteBuffer map;
+        final AtomicLong end = new AtomicLong(SEGMENT_HEADER);
+        private long[] indexTimes = new long[64];
+        private int[] indexOffsets = new int[64];
+        private int indexCount = 0;
+
+        Segment(int number, MappedByteBuffer map) {
+            this.number = number;
+            this.map = map;
+        }
+
+        // Offset of the reserved space, or -1 if it doesn't fit (the segment is then full for good)
+        int reserve(int size) {
+            long at = end.getAndAdd(size);
+            return at + size <= segmentSize ? (int) at : -1;
+        }
+
+        synchronized void index(long time, int offset) {
+            if (indexCount == indexTimes.length) {
+                indexTimes = Arrays.copyOf(indexTimes, indexCount * 2);
+                indexOffsets = Arrays.copyOf(indexOffsets, indexCount * 2);
+            }
+            indexTimes[indexCount] = time;
+            indexOffsets[indexCount] = offset;
+            indexCount++;
+        }
+
+        // Pairs of (long time, int offset), by offset; parallel writers may have added them out of order
+        synchronized void writeIndex(Path path) throws IOException {
+            long[] entries = new long[indexCount];
+            for (int i = 0; i < indexCount; i++) {
+                entries[i] = (long) indexOffsets[i] << 32 | i;
+            }
+            Arrays.sort(entries);
+            ByteBuffer out = ByteBuffer.allocate(12 * indexCount).order(ByteOrder.LITTLE_ENDIAN);
+            for (long entry : entries) {
+                int i = (int) entry;
+                out.putLong(indexTimes[i]).putInt(indexOffsets[i]);
+            }
+            Files.write(path, out.array());
+        }
+    }
+}
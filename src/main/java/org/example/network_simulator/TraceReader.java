@@ -0,0 +1,208 @@
+package org.example.network_simulator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+// Reads a trace written by TraceLog. Segments are memory-mapped, so opening is cheap and
+// records are read in place. A Cursor walks the records in file order; seek() jumps to a
+// simulated time using the sparse index (rebuilt by a scan for segments that have none).
+//
+//     TraceReader.Cursor cursor = TraceReader.open(dir).cursor();
+//     cursor.seek(5 * SimulationEngine.NANOS_PER_SECOND);
+//     while (cursor.next()) { ... cursor.type(), cursor.time(), cursor.device() ... }
+public class TraceReader {
+
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final List<long[]> indexTimes = new ArrayList<>();
+    private final List<int[]> indexOffsets = new ArrayList<>();
+
+    private TraceReader() {
+    }
+
+    public static TraceReader open(Path directory) throws IOException {
+        TraceReader reader = new TraceReader();
+        for (int number = 0; Files.exists(TraceLog.segmentPath(directory, number)); number++) {
+            reader.addSegment(directory, number);
+        }
+        if (reader.segments.isEmpty()) throw new IOException("No trace segments in " + directory);
+        return reader;
+    }
+
+    private void addSegment(Path directory, int number) throws IOException {
+        MappedByteBuffer map;
+        try (FileChannel channel = FileChannel.open(TraceLog.segmentPath(directory, number), StandardOpenOption.READ)) {
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        map.order(ByteOrder.LITTLE_ENDIAN);
+        if (map.capacity() < TraceLog.SEGMENT_HEADER || map.getInt(0) != TraceLog.MAGIC) {
+            throw new IOException("Not a trace segment: " + TraceLog.segmentPath(directory, number));
+        }
+        if (map.getInt(4) != TraceLog.VERSION) {
+            throw new IOException("Unsupported trace version " + map.getInt(4));
+        }
+        segments.add(map);
+
+        Path indexPath = TraceLog.indexPath(directory, number);
+        long[] times;
+        int[] offsets;
+        if (Files.exists(indexPath)) {
+            ByteBuffer index = ByteBuffer.wrap(Files.readAllBytes(indexPath)).order(ByteOrder.LITTLE_ENDIAN);
+            int count = index.capacity() / 12;
+            times = new long[count];
+            offsets = new int[count];
+            for (int i = 0; i < count; i++) {
+                times[i] = index.getLong();
+                offsets[i] = index.getInt();
+            }
+        } else {
+            // Not closed cleanly: index every record that starts a new block, as the writer would have
+            List<long[]> entries = new ArrayList<>();
+            for (int at = TraceLog.SEGMENT_HEADER; at + TraceLog.RECORD_HEADER <= map.capacity(); ) {
+                int size = map.getInt(at);
+                if (size <= 0 || at + size > map.capacity()) break;
+                if ((at - 1) / TraceLog.INDEX_INTERVAL != (at + size - 1) / TraceLog.INDEX_INTERVAL) {
+                    entries.add(new long[]{map.getLong(at + 8), at});
+                }
+                at += size;
+            }
+            times = new long[entries.size()];
+            offsets = new int[entries.size()];
+            for (int i = 0; i < entries.size(); i++) {
+                times[i] = entries.get(i)[0];
+                offsets[i] = (int) entries.get(i)[1];
+            }
+        }
+        indexTimes.add(times);
+        indexOffsets.add(offsets);
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    // The segment's sparse index, as read from its file or rebuilt
+    long[] indexTimes(int segment) { return indexTimes.get(segment); }
+    int[] indexOffsets(int segment) { return indexOffsets.get(segment); }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    // Position in the trace plus accessors for the current record (valid after next() returns true)
+    public class Cursor {
+        private int segment = 0;
+        private int nextAt = TraceLog.SEGMENT_HEADER;
+        private MappedByteBuffer map = segments.get(0);
+        private int at = -1;
+
+        public boolean next() {
+            while (true) {
+                if (nextAt + TraceLog.RECORD_HEADER <= map.capacity()) {
+                    int size = map.getInt(nextAt);
+                    if (size >= TraceLog.RECORD_HEADER && nextAt + size <= map.capacity()) {
+                        at = nextAt;
+                        nextAt += size;
+                        return true;
+                    }
+                }
+                if (segment + 1 >= segments.size()) {
+                    at = -1;
+                    return false;
+                }
+                segment++;
+                map = segments.get(segment);
+                nextAt = TraceLog.SEGMENT_HEADER;
+            }
+        }
+
+        // Position so that next() returns the first record at or after the time. Records from
+        // parallel runs are only roughly in time order, so this may land slightly early.
+        public void seek(long target) {
+            // Start from the last index entry before the time, if any
+            segment = 0;
+            nextAt = TraceLog.SEGMENT_HEADER;
+            search:
+            for (int s = segments.size() - 1; s >= 0; s--) {
+                long[] times = indexTimes.get(s);
+                for (int i = times.length - 1; i >= 0; i--) {
+                    if (times[i] < target) {
+                        segment = s;
+                        nextAt = indexOffsets.get(s)[i];
+                        break search;
+                    }
+                }
+            }
+            map = segments.get(segment);
+            // Then walk forward over the few records still before it
+            while (true) {
+                int savedSegment = segment, savedAt = nextAt;
+                if (!next()) break;
+                if (time() >= target) {
+                    segment = savedSegment;
+                    map = segments.get(segment);
+                    nextAt = savedAt;
+                    break;
+                }
+            }
+            at = -1;
+        }
+
+        public byte type() { return map.get(at + 4); }
+        public int flags() { return map.get(at + 5); }
+        public long time() { return map.getLong(at + 8); }
+        public int device() { return map.getInt(at + 16); }
+        public int peer() { return map.getInt(at + 20); }
+        public long seed() { return map.getLong(at + 24); }
+        public double x() { return map.getDouble(at + 24); }
+        public double y() { return map.getDouble(at + 32); }
+        public int address() { return map.getInt(at + 20); }
+        public long mask() { return map.getLong(at + 24); }
+        public long traceId() { return map.getLong(at + 24); }
+        public int length() { return map.getInt(at + 32); }
+        public long bandwidth() { return map.getLong(at + 24); }
+        public long delay() { return map.getLong(at + 32); }
+        public long jitter() { return map.getLong(at + 40); }
+        public double lossRate() { return map.getDouble(at + 48); }
+        public int queueCapacity() { return map.getInt(at + 56); }
+        public QueueDiscipline discipline() { return QueueDiscipline.values()[flags()]; }
+
+        public String text() {
+            byte[] bytes = new byte[map.getInt(at + 20)];
+            map.get(at + 24, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String toString() {
+            if (at < 0) return "(no record)";
+            String time = "t=" + time();
+            switch (type()) {
+                case TraceLog.TRACE_START: return time + " start seed=" + seed();
+                case TraceLog.DEVICE_ADDED: return time + " add device=" + device() + " type=" + flags() + " x=" + x() + " y=" + y();
+                case TraceLog.DEVICE_REMOVED: return time + " remove device=" + device();
+                case TraceLog.DEVICE_MOVED: return time + " move device=" + device() + " x=" + x() + " y=" + y();
+                case TraceLog.ADDRESS_CHANGED: return time + " address device=" + device() + " ip=" + Ipv4.format(address()) + " mask=" + mask();
+                case TraceLog.LINK_ADDED: return time + " connect " + device() + " " + peer();
+                case TraceLog.LINK_REMOVED: return time + " disconnect " + device() + " " + peer();
+                case TraceLog.LINK_CONFIGURED: return time + " configure " + device() + " " + peer()
+                        + " bandwidth=" + bandwidth() + " delay=" + delay() + " jitter=" + jitter()
+                        + " loss=" + lossRate() + " queue=" + queueCapacity() + " discipline=" + discipline().getLabel();
+                case TraceLog.COMMAND: return time + " command device=" + device() + " " + text().replace('\0', ' ');
+                case TraceLog.CHAT: return time + " chat device=" + device() + " " + text();
+                case TraceLog.PACKET_SENT: return time + " sent " + device() + "->" + peer() + " packet=" + traceId() + " bytes=" + length();
+                case TraceLog.PACKET_RECEIVED: return time + " received " + peer() + "->" + device() + " packet=" + traceId() + " bytes=" + length();
+                case TraceLog.PACKET_DROPPED: return time + " dropped device=" + device() + " packet=" + traceId();
+                default: return time + " type=" + type();
+            }
+        }
+    }
+}
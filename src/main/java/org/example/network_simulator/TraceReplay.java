@@ -0,0 +1,128 @@
+package org.example.network_simulator;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+// Deterministic replay of a traced run. Only the inputs are replayed: topology and link changes,
+// commands and chat messages, each at its recorded simulated time. The engine regenerates the
+// packets from them, so with the same seed the replayed run matches the original event for event.
+// Nothing waits on the wall clock, so a replay runs as fast as the simulation itself.
+// Runs recorded in actor mode were driven by real time and only replay approximately.
+public class TraceReplay {
+
+    private static final char ARGUMENT_SEPARATOR = '\0';
+
+    // Replay the whole trace into a new network
+    public static Network replay(TraceReader reader) throws IOException {
+        return replay(reader, Long.MAX_VALUE);
+    }
+
+    // Replay into a new network with the trace's seed, stopping the clock at the given time
+    public static Network replay(TraceReader reader, long untilNanos) throws IOException {
+        TraceReader.Cursor cursor = reader.cursor();
+        long seed = Network.DEFAULT_SEED;
+        if (cursor.next() && cursor.type() == TraceLog.TRACE_START) {
+            seed = cursor.seed();
+        }
+        Network network = new Network(seed);
+        replayInto(network, reader, untilNanos);
+        return network;
+    }
+
+    // Replay into an empty network. The result only matches the original if the network
+    // has the seed the trace was recorded with (see Network.getSeed).
+    public static void replayInto(Network network, TraceReader reader, long untilNanos) throws IOException {
+        NetworkDevice[] byId = new NetworkDevice[1024];
+        TraceReader.Cursor cursor = reader.cursor();
+        while (cursor.next()) {
+            byte type = cursor.type();
+            if (type == TraceLog.PACKET_SENT || type == TraceLog.PACKET_RECEIVED || type == TraceLog.PACKET_DROPPED
+                    || type == TraceLog.TRACE_START) {
+                continue; // Outputs; the replay produces its own
+            }
+            long time = cursor.time();
+            if (time > untilNanos) break;
+            // Everything the original run did before this input has happened by now
+            network.runUntil(time);
+            switch (type) {
+                case TraceLog.DEVICE_ADDED: {
+                    NetworkDevice device = TopologyFile.newDevice((byte) cursor.flags(), cursor.device(), cursor.x(), cursor.y());
+                    if (device == null) throw new IOException("Corrupt trace: unknown device type " + cursor.flags());
+                    if (device.getId() >= byId.length) {
+                        byId = Arrays.copyOf(byId, Math.max(device.getId() + 1, byId.length * 2));
+                    }
+                    byId[device.getId()] = device;
+                    network.addDevice(device);
+                    break;
+                }
+                case TraceLog.DEVICE_REMOVED:
+                    network.removeDevice(device(byId, cursor.device()));
+                    break;
+                case TraceLog.DEVICE_MOVED:
+                    network.moveDevice(device(byId, cursor.device()), cursor.x(), cursor.y());
+                    break;
+                case TraceLog.ADDRESS_CHANGED: {
+                    PC pc = pc(byId, cursor.device());
+                    // 0 means "not a valid IPv4 address"; the id-based default reproduces those
+                    if (cursor.address() != 0) pc.setIpAddress(Ipv4.format(cursor.address()));
+                    if (cursor.mask() != Ipv4.INVALID) pc.setSubnetMask(Ipv4.format((int) cursor.mask()));
+                    break;
+                }
+                case TraceLog.LINK_ADDED:
+                    network.connect(device(byId, cursor.device()), device(byId, cursor.peer()));
+                    break;
+                case TraceLog.LINK_REMOVED: {
+                    Connection connection = network.getConnection(device(byId, cursor.device()), device(byId, cursor.peer()));
+                    if (connection != null) network.disconnect(connection);
+                    break;
+                }
+                case TraceLog.LINK_CONFIGURED: {
+                    Connection connection = network.getConnection(device(byId, cursor.device()), device(byId, cursor.peer()));
+                    if (connection == null) throw new IOException("Corrupt trace: no link " + cursor.device() + "-" + cursor.peer());
+                    if (cursor.flags() >= QueueDiscipline.values().length) {
+                        throw new IOException("Corrupt trace: unknown queue discipline " + cursor.flags());
+                    }
+                    connection.configure(cursor.bandwidth(), cursor.delay(), cursor.jitter(), cursor.lossRate(),
+                            cursor.queueCapacity(), cursor.discipline());
+                    break;
+                }
+                case TraceLog.COMMAND: {
+                    String[] parts = cursor.text().split(String.valueOf(ARGUMENT_SEPARATOR), -1);
+                    network.executeCommand(pc(byId, cursor.device()), parts[0], Arrays.copyOfRange(parts, 1, parts.length));
+                    break;
+                }
+                case TraceLog.CHAT:
+                    network.sendMessage(pc(byId, cursor.device()), cursor.text());
+                    break;
+                default:
+                    throw new IOException("Corrupt trace: unknown record type " + type);
+            }
+        }
+        if (untilNanos == Long.MAX_VALUE) {
+            network.run();
+        } else {
+            network.runUntil(untilNanos);
+        }
+    }
+
+    // How commands are stored in the trace: the command and its arguments, kept apart exactly
+    static String joinCommand(String command, String[] args) {
+        StringBuilder text = new StringBuilder(command);
+        for (String arg : args) {
+            text.append(ARGUMENT_SEPARATOR).append(arg);
+        }
+        return text.toString();
+    }
+
+    private static NetworkDevice device(NetworkDevice[] byId, int id) throws IOException {
+        NetworkDevice device = id >= 0 && id < byId.length ? byId[id] : null;
+        if (device == null) throw new IOException("Corrupt trace: no device with id " + id);
+        return device;
+    }
+
+    private static PC pc(NetworkDevice[] byId, int id) throws IOException {
+        NetworkDevice device = device(byId, id);
+        if (!(device instanceof PC)) throw new IOException("Corrupt trace: device " + id + " is not a PC");
+        return (PC) device;
+    }
+}
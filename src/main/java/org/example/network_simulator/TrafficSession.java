@@ -0,0 +1,708 @@
+package org.example.network_simulator;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+// One run of the "iperf" command: a sustained flow from one PC to another for a set time, split over
+// parallel streams, with a report every interval. Everything runs as events on the two PCs, so a
+// test takes no wall time beyond the events it generates and runs the same way in every mode.
+//
+// UDP mode sends datagrams at a fixed rate; the receiver counts what arrives (loss from sequence
+// gaps, RFC 3550 interarrival jitter) and answers a marker sent at the end of each interval with
+// its counters. TCP mode is a window-based flow: slow start (left early when the RTT climbs),
+// additive increase, halving once three segments have arrived past a hole, and collapsing to one
+// segment on a timeout. The receiver holds segments past a hole and every ack names the segment
+// that prompted it, as SACK would, so only the holes are resent. It reports goodput from the acks,
+// retransmissions as its loss, and the smoothed RTT and its variation (RTTvar) where UDP has jitter.
+//
+//     iperf PC2 -u -b 50M -t 10 -P 4 -i 1
+class TrafficSession {
+
+    static final String USAGE = "Usage: iperf <target> [-u] [-b rate] [-t seconds] [-P streams] [-i seconds] [-l bytes]";
+
+    // Segment kinds. Control segments (MARK, LAST_MARK, FIN) carry the stream count in their stream field.
+    static final int UDP_DATA = 0, TCP_DATA = 1, ACK = 2, MARK = 3, LAST_MARK = 4, REPORT = 5, FIN = 6;
+
+    static final int MAX_STREAMS = 100; // A report carries three ints per stream and must fit one frame
+    static final long DEFAULT_UDP_RATE = 1_000_000; // Same as iperf
+    static final long DEFAULT_DURATION = 10 * SimulationEngine.NANOS_PER_SECOND;
+    static final long DEFAULT_INTERVAL = SimulationEngine.NANOS_PER_SECOND;
+    // The last UDP marker is resent until the final report comes back, as iperf resends its final datagram
+    static final long FINAL_RETRY_INTERVAL = 250 * SimulationEngine.NANOS_PER_MILLI;
+    static final int FINAL_RETRIES = 10;
+
+    // TCP
+    static final int INITIAL_WINDOW = 10; // Segments (RFC 6928)
+    static final int MAX_WINDOW = 4096; // Segments, about what a 6 MB socket buffer holds; a power of two
+    static final long INITIAL_RTO = SimulationEngine.NANOS_PER_SECOND;
+    static final long MIN_RTO = 200 * SimulationEngine.NANOS_PER_MILLI; // As Linux
+    static final long MAX_RTO = 60 * SimulationEngine.NANOS_PER_SECOND;
+    static final int DUPLICATE_THRESHOLD = 3; // Segments arriving past a hole before it counts as lost
+    static final int HYSTART_SAMPLES = 8; // Delayed acks in a row that end slow start
+    static final int HYSTART_LOW_WINDOW = 16;
+    static final long HYSTART_MIN_DELAY = 4 * SimulationEngine.NANOS_PER_MILLI;
+    static final long HYSTART_MAX_DELAY = 16 * SimulationEngine.NANOS_PER_MILLI;
+    // What the sender knows of each segment in flight
+    private static final byte OUTSTANDING = 0, SACKED = 1, LOST = 2, RESENT = 3;
+
+    private final Network network;
+    private final int identifier;
+    private final PC source;
+    private final PC target;
+    private final boolean udp;
+    private final long rate; // Bits per second over all streams; 0 means as fast as TCP can go
+    private final long duration;
+    private final long interval;
+    private final int length; // Payload bytes per segment
+    private final Stream[] streams;
+
+    private long startedAt;
+    private int intervalNumber = 0; // Intervals ended so far
+    private boolean sending = false;
+    private boolean finished = false;
+    // UDP: the receiver's cumulative counters as of the last report printed
+    private int reportedInterval = 0;
+    private long reportedUpTo = 0;
+    private long reportedAt; // When the last datagram counted in that report arrived, or the start
+    private int finalRetries = 0;
+
+    private TrafficSession(Network network, int identifier, PC source, PC target, boolean udp, long rate,
+                           long duration, long interval, int streamCount, int length) {
+        this.network = network;
+        this.identifier = identifier;
+        this.source = source;
+        this.target = target;
+        this.udp = udp;
+        this.rate = rate;
+        this.duration = duration;
+        this.interval = Math.min(interval, duration);
+        this.length = length;
+        this.streams = new Stream[streamCount];
+        for (int i = 0; i < streamCount; i++) {
+            streams[i] = new Stream(i);
+        }
+    }
+
+    // Parse the command's arguments; IllegalArgumentException says what is wrong with them
+    static TrafficSession parse(Network network, PC source, String[] args) {
+        String targetName = null;
+        boolean udp = false;
+        long rate = -1;
+        long duration = DEFAULT_DURATION;
+        long interval = DEFAULT_INTERVAL;
+        int streamCount = 1;
+        int length = Packet.MAX_TRAFFIC_PAYLOAD;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.isEmpty()) continue;
+            if (arg.equals("-u")) {
+                udp = true;
+                continue;
+            }
+            if (!arg.startsWith("-")) {
+                if (targetName != null) throw new IllegalArgumentException("Unexpected argument '" + arg + "'");
+                targetName = arg;
+                continue;
+            }
+            if (i + 1 == args.length) throw new IllegalArgumentException("Option " + arg + " needs a value");
+            String value = args[++i];
+            try {
+                switch (arg) {
+                    case "-b": rate = Connection.parseBandwidth(value); break;
+                    case "-t": duration = parseSeconds(value); break;
+                    case "-i": interval = parseSeconds(value); break;
+                    case "-P": streamCount = Integer.parseInt(value); break;
+                    case "-l": length = Integer.parseInt(value); break;
+                    default: throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Bad value for " + arg + ": " + value);
+            }
+        }
+        if (targetName == null) throw new IllegalArgumentException("Name the PC to send to");
+        if (duration <= 0 || interval <= 0) throw new IllegalArgumentException("Times must be positive");
+        if (streamCount < 1 || streamCount > MAX_STREAMS) {
+            throw new IllegalArgumentException("Streams must be between 1 and " + MAX_STREAMS);
+        }
+        if (length < 1 || length > Packet.MAX_TRAFFIC_PAYLOAD) {
+            throw new IllegalArgumentException("Length must be between 1 and " + Packet.MAX_TRAFFIC_PAYLOAD + " bytes");
+        }
+        if (rate == 0 && udp) throw new IllegalArgumentException("A UDP test needs a rate");
+        if (rate < 0) rate = udp ? DEFAULT_UDP_RATE : 0;
+        NetworkDevice device = network.resolveDevice(targetName);
+        if (!(device instanceof PC)) throw new IllegalArgumentException("No PC named " + targetName);
+        if (device == source) throw new IllegalArgumentException("Cannot test against this PC itself");
+        int identifier = source.nextTrafficIdentifier++ & 0xffff;
+        return new TrafficSession(network, identifier, source, (PC) device, udp, rate, duration, interval,
+                streamCount, length);
+    }
+
+    // Plain numbers are seconds, as in iperf; "500ms" and the like also work
+    private static long parseSeconds(String text) {
+        if (Character.isLetter(text.charAt(text.length() - 1))) return Connection.parseDuration(text);
+        return Math.round(Double.parseDouble(text) * SimulationEngine.NANOS_PER_SECOND);
+    }
+
+    int getIdentifier() { return identifier; }
+    PC getSource() { return source; }
+
+    void start() {
+        network.output(source, "\nConnecting to " + target + " [" + target.getIpAddress() + "], "
+                + streams.length + (streams.length == 1 ? " stream" : " streams") + ", "
+                + (udp ? "UDP at " + formatBitrate(rate) : rate > 0 ? "TCP up to " + formatBitrate(rate) : "TCP")
+                + " for " + formatSeconds(duration) + " sec");
+        if (!network.isReachable(source, target)) {
+            network.output(source, "iperf: unable to connect to " + target + ": no path");
+            network.trafficFinished(this);
+            return;
+        }
+        network.output(source, udp
+                ? "[ ID] Interval           Transfer     Bitrate          Jitter     Lost/Total"
+                : "[ ID] Interval           Transfer     Bitrate          Retr   Cwnd        RTT        RTTvar");
+        startedAt = network.now(source);
+        reportedAt = startedAt;
+        sending = true;
+        for (Stream stream : streams) {
+            stream.start();
+        }
+        network.scheduleAt(source, startedAt + interval, this::endInterval);
+    }
+
+    private void endInterval() {
+        if (finished) return;
+        intervalNumber++;
+        long now = network.now(source);
+        boolean last = now - startedAt >= duration;
+        if (last) sending = false;
+        if (udp) {
+            // Ask the receiver for its counters; the marker follows this interval's datagrams down the path
+            sendControl(last ? LAST_MARK : MARK, intervalNumber);
+            if (last) network.schedule(source, FINAL_RETRY_INTERVAL, this::retryLastMark);
+        } else {
+            printTcpInterval(now);
+            if (last) {
+                printTcpSummary(now);
+                sendControl(FIN, intervalNumber);
+                finish();
+            }
+        }
+        if (!last) network.scheduleAt(source, Math.min(now + interval, startedAt + duration), this::endInterval);
+    }
+
+    private void sendControl(int kind, int sequence) {
+        Packet packet = network.packetPoolFor(source).acquire().writeTraffic(source.getMacAddress(),
+                target.getMacAddress(), source.getAddress(), target.getAddress(), identifier, streams.length, kind, sequence,
+                network.now(source), 0);
+        network.send(source, target, packet);
+    }
+
+    // An ack or report for this session arrived at the source
+    void onPacket(Packet packet) {
+        if (finished) return;
+        if (packet.trafficKind() == ACK) {
+            int stream = packet.trafficStream();
+            if (stream < streams.length) {
+                streams[stream].onAck(packet.trafficSequence(), packet.trafficInt(0), packet.trafficTime());
+            }
+        } else if (packet.trafficKind() == REPORT) {
+            onReport(packet);
+        }
+    }
+
+    // --- UDP reports ---
+
+    private void onReport(Packet report) {
+        int number = report.trafficSequence();
+        if (number <= reportedInterval) return; // Overtaken by a later one
+        boolean last = number == intervalNumber && !sending;
+        long from = reportedUpTo;
+        long to = Math.min((long) number * interval, duration);
+        // The rate is over the time the datagrams took to arrive, which queues can stretch past the
+        // interval's end
+        long arrivedAt = Math.max(reportedAt, report.trafficTime());
+        long span = Math.max(1, arrivedAt - reportedAt);
+        long totalReceived = 0, totalLost = 0, jitterSum = 0;
+        for (Stream stream : streams) {
+            int i = stream.index;
+            int received = report.trafficInt(3 * i);
+            int lost = report.trafficInt(3 * i + 1);
+            long jitter = report.trafficInt(3 * i + 2);
+            long newReceived = received - stream.reportedReceived;
+            // A late datagram can fill a gap already counted; the loss is not counted again when it reopens
+            long newLost = Math.max(0, lost - stream.reportedLost);
+            stream.reportedReceived = received;
+            stream.reportedLost = Math.max(stream.reportedLost, lost);
+            stream.jitter = jitter;
+            totalReceived += newReceived;
+            totalLost += newLost;
+            jitterSum += jitter;
+            printUdpLine(label(i), from, to, newReceived * length, span, jitter, newLost, newReceived + newLost);
+        }
+        if (streams.length > 1) {
+            printUdpLine("SUM", from, to, totalReceived * length, span, jitterSum / streams.length,
+                    totalLost, totalReceived + totalLost);
+        }
+        reportedInterval = number;
+        reportedUpTo = to;
+        reportedAt = arrivedAt;
+        if (last) {
+            printUdpSummary();
+            finish();
+        }
+    }
+
+    private void retryLastMark() {
+        if (finished) return;
+        if (++finalRetries < FINAL_RETRIES) {
+            sendControl(LAST_MARK, intervalNumber);
+            network.schedule(source, FINAL_RETRY_INTERVAL, this::retryLastMark);
+            return;
+        }
+        network.output(source, "iperf: no final report from " + target + " (lost on the way)");
+        printUdpSummary();
+        finish();
+    }
+
+    // Whole-test totals from the receiver's counters as last reported, so they add up to the intervals
+    private void printUdpSummary() {
+        network.output(source, "- - - - - - - - - - - - - - - - - - - - - - - - -");
+        long span = reportedAt > startedAt ? reportedAt - startedAt : duration;
+        long totalReceived = 0, totalLost = 0, jitterSum = 0;
+        for (Stream stream : streams) {
+            long received = stream.reportedReceived, lost = stream.reportedLost;
+            printUdpLine(label(stream.index), 0, duration, received * length, span, stream.jitter, lost,
+                    received + lost);
+            totalReceived += received;
+            totalLost += lost;
+            jitterSum += stream.jitter;
+        }
+        if (streams.length > 1) {
+            printUdpLine("SUM", 0, duration, totalReceived * length, span, jitterSum / streams.length,
+                    totalLost, totalReceived + totalLost);
+        }
+    }
+
+    private void printUdpLine(String id, long from, long to, long bytes, long span, long jitter, long lost, long total) {
+        network.output(source, String.format(Locale.ROOT, "[%3s] %6s-%-6s sec  %-11s  %-15s  %-9s  %s%s",
+                id, formatSeconds(from), formatSeconds(to), formatBytes(bytes), formatBitrate(bytes * 8, span),
+                formatMillis(jitter), lost + "/" + total, total == 0 ? "" : " (" + percent(lost, total) + ")"));
+    }
+
+    // --- TCP reports ---
+
+    private void printTcpInterval(long now) {
+        long from = Math.min((long) (intervalNumber - 1) * interval, duration);
+        long to = Math.min(now - startedAt, duration);
+        long span = Math.max(1, to - from);
+        long totalBytes = 0, totalRetransmits = 0;
+        for (Stream stream : streams) {
+            long bytes = (stream.acked - stream.reportedAcked) * (long) length;
+            long retransmits = stream.retransmits - stream.reportedRetransmits;
+            stream.reportedAcked = stream.acked;
+            stream.reportedRetransmits = stream.retransmits;
+            totalBytes += bytes;
+            totalRetransmits += retransmits;
+            printTcpLine(label(stream.index), from, to, bytes, span, retransmits, stream);
+        }
+        if (streams.length > 1) printTcpLine("SUM", from, to, totalBytes, span, totalRetransmits, null);
+    }
+
+    private void printTcpSummary(long now) {
+        network.output(source, "- - - - - - - - - - - - - - - - - - - - - - - - -");
+        long span = now - startedAt;
+        long totalBytes = 0, totalRetransmits = 0;
+        for (Stream stream : streams) {
+            long bytes = stream.acked * (long) length;
+            totalBytes += bytes;
+            totalRetransmits += stream.retransmits;
+            printTcpLine(label(stream.index), 0, span, bytes, span, stream.retransmits, null);
+        }
+        if (streams.length > 1) printTcpLine("SUM", 0, span, totalBytes, span, totalRetransmits, null);
+    }
+
+    // The window, RTT and RTTvar columns only for single streams during the test
+    private void printTcpLine(String id, long from, long to, long bytes, long span, long retransmits, Stream stream) {
+        String line = String.format(Locale.ROOT, "[%3s] %6s-%-6s sec  %-11s  %-15s  %-5d", id, formatSeconds(from),
+                formatSeconds(to), formatBytes(bytes), formatBitrate(bytes * 8, span), retransmits);
+        if (stream != null) {
+            line += String.format(Locale.ROOT, "  %-10s  %-9s  %s", formatBytes((long) stream.cwnd * length),
+                    formatMillis(stream.srtt), formatMillis(stream.rttvar));
+        }
+        network.output(source, line);
+    }
+
+    private void finish() {
+        if (udp) sendControl(FIN, intervalNumber); // The receiver kept its counters for resent last markers
+        finished = true;
+        sending = false;
+        network.trafficFinished(this);
+    }
+
+    // --- Formatting (iperf's units: binary bytes, decimal bits) ---
+
+    private static String label(int stream) {
+        return Integer.toString(stream + 1);
+    }
+
+    private static String formatSeconds(long nanos) {
+        return String.format(Locale.ROOT, "%.2f", (double) nanos / SimulationEngine.NANOS_PER_SECOND);
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f ms", (double) nanos / SimulationEngine.NANOS_PER_MILLI);
+    }
+
+    static String formatBytes(long bytes) {
+        if (bytes >= 1L << 30) return String.format(Locale.ROOT, "%.2f GBytes", bytes / (double) (1L << 30));
+        if (bytes >= 1L << 20) return String.format(Locale.ROOT, "%.2f MBytes", bytes / (double) (1L << 20));
+        return String.format(Locale.ROOT, "%.1f KBytes", bytes / 1024.0);
+    }
+
+    static String formatBitrate(long bits, long nanos) {
+        return formatBitrate(Math.round(bits * (double) SimulationEngine.NANOS_PER_SECOND / nanos));
+    }
+
+    static String formatBitrate(long bitsPerSecond) {
+        if (bitsPerSecond >= 1_000_000_000) return String.format(Locale.ROOT, "%.2f Gbits/sec", bitsPerSecond / 1e9);
+        if (bitsPerSecond >= 1_000_000) return String.format(Locale.ROOT, "%.2f Mbits/sec", bitsPerSecond / 1e6);
+        return String.format(Locale.ROOT, "%.1f Kbits/sec", bitsPerSecond / 1e3);
+    }
+
+    private static String percent(long part, long whole) {
+        return String.format(Locale.ROOT, "%.2g%%", part * 100.0 / whole);
+    }
+
+    // One stream of the test; its own event for pacing and its own sequence numbers
+    private final class Stream implements SimulationEvent {
+        final int index;
+        int sent = 0; // Segments sent, resends included
+        // UDP: receiver counters from the last report
+        int reportedReceived = 0, reportedLost = 0;
+        long jitter = 0;
+        // TCP, in segments
+        int highestSent = 0, acked = 0; // The next new segment; every one below acked has arrived
+        double cwnd = INITIAL_WINDOW;
+        double ssthresh = MAX_WINDOW;
+        boolean fastRecovery = false; // The window holds until everything sent before the loss is acked
+        int recover = 0; // Losses among segments sent before this belong to the loss already handled
+        // The scoreboard: what became of each segment from acked to highestSent, a ring by sequence
+        final byte[] scoreboard = new byte[MAX_WINDOW];
+        int sackedCount = 0, lostCount = 0;
+        int highestSacked = 0; // One past the highest segment the receiver holds
+        int lossScan = 0; // Segments below this have been checked for loss
+        int resendScan = 0; // Lost segments below this have been resent
+        // Slow start's exit on rising delay: the lowest RTT seen, and how many samples in a row were well above it
+        long minRtt = Long.MAX_VALUE;
+        int delayedSamples = 0;
+        long srtt = 0, rttvar = 0, rto = INITIAL_RTO;
+        long rtoDeadline = 0;
+        long timerAt = Long.MAX_VALUE; // When the pending timer event fires, MAX_VALUE with none pending
+        int timerGeneration = 0; // Bumped for each timer event booked; older ones fire as no-ops
+        long nextSendAt; // Pacing
+        boolean wakeupScheduled = false;
+        int retransmits = 0;
+        int reportedAcked = 0, reportedRetransmits = 0;
+        private final double gap; // Nanoseconds between segments at this stream's share of the rate
+
+        Stream(int index) {
+            this.index = index;
+            long share = rate / streams.length;
+            this.gap = rate == 0 ? 0 : Math.max(1, (double) length * 8 * SimulationEngine.NANOS_PER_SECOND / Math.max(1, share));
+        }
+
+        void start() {
+            // Stagger the streams across one gap so they don't send in lockstep
+            nextSendAt = startedAt + (long) (gap * index / streams.length);
+            if (udp) {
+                wakeupScheduled = true;
+                network.scheduleAt(source, nextSendAt, this);
+            } else {
+                trySend();
+            }
+        }
+
+        // The pacing wakeup
+        @Override
+        public void fire() {
+            wakeupScheduled = false;
+            if (!sending) return;
+            if (udp) {
+                send(UDP_DATA, sent);
+                nextSendAt = startedAt + (long) (gap * (sent + (double) index / streams.length));
+                if (nextSendAt - startedAt < duration) {
+                    wakeupScheduled = true;
+                    network.scheduleAt(source, nextSendAt, this);
+                }
+            } else {
+                trySend();
+            }
+        }
+
+        private void send(int kind, int sequence) {
+            sent++;
+            long now = network.now(source);
+            Packet packet = network.packetPoolFor(source).acquire().writeTraffic(source.getMacAddress(),
+                    target.getMacAddress(), source.getAddress(), target.getAddress(), identifier, index, kind,
+                    sequence, now, length);
+            network.send(source, target, packet);
+        }
+
+        // --- TCP ---
+
+        // Segments in the network: sent, and neither acked, sacked nor given up as lost (RFC 6675's pipe)
+        private int pipe() {
+            return highestSent - acked - sackedCount - lostCount;
+        }
+
+        private void trySend() {
+            while (sending && pipe() < (int) cwnd) {
+                boolean resend = lostCount > 0;
+                if (!resend && highestSent - acked >= MAX_WINDOW) return; // The receiver's buffer is full
+                if (gap > 0) {
+                    long now = network.now(source);
+                    if (nextSendAt > now) {
+                        if (!wakeupScheduled) {
+                            wakeupScheduled = true;
+                            network.scheduleAt(source, nextSendAt, this);
+                        }
+                        return;
+                    }
+                    nextSendAt = Math.max(nextSendAt, now - (long) gap) + (long) gap;
+                }
+                int sequence;
+                if (resend) {
+                    // Only the holes go again, lowest first
+                    while (scoreboard[resendScan & (MAX_WINDOW - 1)] != LOST) resendScan++;
+                    sequence = resendScan++;
+                    scoreboard[sequence & (MAX_WINDOW - 1)] = RESENT;
+                    lostCount--;
+                    retransmits++;
+                } else {
+                    if (acked == highestSent) rtoDeadline = network.now(source) + rto; // First one outstanding
+                    sequence = highestSent++;
+                    scoreboard[sequence & (MAX_WINDOW - 1)] = OUTSTANDING;
+                }
+                send(TCP_DATA, sequence);
+                armTimer();
+            }
+        }
+
+        // Acks mostly move the deadline later, and the pending event then just books another when it
+        // fires early. A deadline earlier than the pending event (the RTO shrank) needs an event of its own.
+        private void armTimer() {
+            if (rtoDeadline >= timerAt) return;
+            timerAt = rtoDeadline;
+            int generation = ++timerGeneration;
+            network.scheduleAt(source, rtoDeadline, () -> onTimer(generation));
+        }
+
+        // The receiver's next in-order segment, and the segment whose arrival prompted the ack
+        void onAck(int expected, int sacked, long echoedTime) {
+            long now = network.now(source);
+            sampleRtt(now - echoedTime);
+            boolean windowFull = 2 * pipe() >= cwnd; // Only a window in use grows
+            int delivered = 0;
+            if (expected > acked) {
+                for (int sequence = acked; sequence < expected; sequence++) {
+                    byte state = scoreboard[sequence & (MAX_WINDOW - 1)];
+                    if (state == SACKED) {
+                        sackedCount--;
+                    } else {
+                        delivered++;
+                        if (state == LOST) lostCount--;
+                    }
+                }
+                acked = expected;
+                highestSacked = Math.max(highestSacked, acked);
+                lossScan = Math.max(lossScan, acked);
+                resendScan = Math.max(resendScan, acked);
+                if (fastRecovery && acked >= recover) fastRecovery = false;
+                rtoDeadline = now + rto;
+            }
+            if (sacked >= acked && sacked < highestSent) {
+                byte state = scoreboard[sacked & (MAX_WINDOW - 1)];
+                if (state != SACKED) {
+                    if (state == LOST) lostCount--;
+                    scoreboard[sacked & (MAX_WINDOW - 1)] = SACKED;
+                    sackedCount++;
+                    delivered++;
+                    highestSacked = Math.max(highestSacked, sacked + 1);
+                }
+            }
+            // A segment with DUPLICATE_THRESHOLD segments after it at the receiver is lost
+            boolean newLoss = false;
+            for (; lossScan < highestSacked - DUPLICATE_THRESHOLD; lossScan++) {
+                if (scoreboard[lossScan & (MAX_WINDOW - 1)] == OUTSTANDING) {
+                    scoreboard[lossScan & (MAX_WINDOW - 1)] = LOST;
+                    lostCount++;
+                    newLoss = true;
+                }
+            }
+            if (newLoss && acked >= recover) {
+                // Fast retransmit: halve the window, then resend the holes as the window allows
+                ssthresh = Math.max(2, cwnd / 2);
+                cwnd = ssthresh;
+                fastRecovery = true;
+                recover = highestSent;
+            } else if (!fastRecovery && windowFull && delivered > 0) {
+                // Slow start, then congestion avoidance
+                cwnd = Math.min(MAX_WINDOW, cwnd < ssthresh ? cwnd + delivered : cwnd + (double) delivered / cwnd);
+            }
+            trySend();
+        }
+
+        // RFC 6298 smoothing, with Linux's lower bound on the timeout
+        private void sampleRtt(long rtt) {
+            if (rtt < 0) return;
+            if (srtt == 0) {
+                srtt = rtt;
+                rttvar = rtt / 2;
+            } else {
+                rttvar += (Math.abs(srtt - rtt) - rttvar) / 4;
+                srtt += (rtt - srtt) / 8;
+            }
+            rto = Math.min(MAX_RTO, Math.max(MIN_RTO, srtt + 4 * rttvar));
+            leaveSlowStartOnDelay(rtt);
+        }
+
+        // HyStart's delay test, much as in Linux: once acks keep coming back later than the lowest RTT by
+        // an eighth of it (4 to 16 ms), a queue is building and the window is enough. Without it slow
+        // start runs on until the queue overflows and drops much of a window at once.
+        private void leaveSlowStartOnDelay(long rtt) {
+            minRtt = Math.min(minRtt, rtt);
+            if (cwnd >= ssthresh || fastRecovery) return;
+            long threshold = Math.min(HYSTART_MAX_DELAY, Math.max(HYSTART_MIN_DELAY, minRtt / 8));
+            if (rtt < minRtt + threshold) {
+                delayedSamples = 0;
+            } else if (++delayedSamples == HYSTART_SAMPLES && cwnd >= HYSTART_LOW_WINDOW) {
+                ssthresh = cwnd;
+            }
+        }
+
+        private void onTimer(int generation) {
+            if (generation != timerGeneration) return; // Replaced by an earlier one
+            timerAt = Long.MAX_VALUE;
+            if (!sending || acked == highestSent) return; // Nothing outstanding
+            long now = network.now(source);
+            if (now < rtoDeadline) {
+                armTimer();
+                return;
+            }
+            // Timeout: everything the receiver doesn't hold is lost, and sending starts over from one segment
+            ssthresh = Math.max(2, cwnd / 2);
+            cwnd = 1;
+            rto = Math.min(MAX_RTO, rto * 2);
+            rtoDeadline = now + rto;
+            fastRecovery = false;
+            recover = highestSent;
+            lostCount = 0;
+            for (int sequence = acked; sequence < highestSent; sequence++) {
+                int slot = sequence & (MAX_WINDOW - 1);
+                if (scoreboard[slot] != SACKED) {
+                    scoreboard[slot] = LOST;
+                    lostCount++;
+                }
+            }
+            lossScan = highestSent;
+            resendScan = acked;
+            trySend();
+        }
+    }
+
+    // The receiving end of one session, kept by the target PC until the sender's FIN
+    static final class Receiver {
+        private final NetworkDevice sender;
+        private int[] expected = new int[1]; // TCP: next in-order segment by stream
+        private boolean[][] buffered = new boolean[1][]; // TCP: segments held past a hole, a ring by sequence
+        private int[] received = new int[1]; // UDP, by stream
+        private int[] highest = new int[1];
+        private double[] jitter = new double[1];
+        private long[] lastTransit = new long[1];
+        private long lastArrival = 0; // UDP, any stream
+        private int streamCount = 0;
+
+        Receiver(NetworkDevice sender) {
+            this.sender = sender;
+        }
+
+        // Handle a segment addressed to pc; takes over the packet. Returns false once the session is over.
+        boolean onPacket(Network network, PC pc, Packet packet) {
+            int kind = packet.trafficKind();
+            int stream = packet.trafficStream();
+            if (kind == UDP_DATA || kind == TCP_DATA) {
+                if (stream >= streamCount) grow(stream + 1);
+                int sequence = packet.trafficSequence();
+                if (kind == UDP_DATA) {
+                    long transit = network.now(pc) - packet.trafficTime();
+                    if (received[stream]++ > 0) {
+                        jitter[stream] += (Math.abs(transit - lastTransit[stream]) - jitter[stream]) / 16;
+                    }
+                    lastTransit[stream] = transit;
+                    lastArrival = network.now(pc);
+                    highest[stream] = Math.max(highest[stream], sequence + 1);
+                    packet.release();
+                    return true;
+                }
+                accept(stream, sequence);
+                // Acked one for one, naming the segment that arrived as a SACK block would
+                Packet ack = reply(null, pc, packet, ACK, stream, expected[stream], packet.trafficTime(), 4);
+                ack.setTrafficInt(0, sequence);
+                network.send(pc, sender, ack);
+                return true;
+            }
+            if (kind == MARK || kind == LAST_MARK) {
+                // A UDP test: answer with every stream's counters
+                if (stream > streamCount) grow(stream);
+                // The report carries when the last datagram arrived, for the sender's interval length
+                Packet report = reply(null, pc, packet, REPORT, 0, packet.trafficSequence(), lastArrival,
+                            12 * streamCount);
+                for (int i = 0; i < streamCount; i++) {
+                    report.setTrafficInt(3 * i, received[i]);
+                    report.setTrafficInt(3 * i + 1, highest[i] - received[i]);
+                    report.setTrafficInt(3 * i + 2, (int) Math.min(Integer.MAX_VALUE, Math.round(jitter[i])));
+                }
+                network.send(pc, sender, report);
+                return true;
+            }
+            packet.release();
+            return kind != FIN;
+        }
+
+        // An in-order segment moves past any held after it; one past a hole is held until the hole fills
+        private void accept(int stream, int sequence) {
+            int next = expected[stream];
+            boolean[] held = buffered[stream];
+            if (sequence == next) {
+                next++;
+                while (held != null && held[next & (MAX_WINDOW - 1)]) {
+                    held[next++ & (MAX_WINDOW - 1)] = false;
+                }
+                expected[stream] = next;
+            } else if (sequence > next && sequence - next < MAX_WINDOW) {
+                if (held == null) held = buffered[stream] = new boolean[MAX_WINDOW];
+                held[sequence & (MAX_WINDOW - 1)] = true;
+            }
+        }
+
+        // Turn the arriving segment into the answer in place, and send it unless network is null
+        private Packet reply(Network network, PC pc, Packet packet, int kind, int stream, int sequence, long time,
+                             int payload) {
+            Packet answer = packet.exclusive();
+            answer.writeTraffic(pc.getMacAddress(), sender.getMacAddress(), pc.getAddress(), answer.sourceIp(),
+                    answer.trafficSession(), stream, kind, sequence, time, payload);
+            if (network != null) network.send(pc, sender, answer);
+            return answer;
+        }
+
+        private void grow(int count) {
+            int capacity = Math.max(count, expected.length);
+            expected = Arrays.copyOf(expected, capacity);
+            buffered = Arrays.copyOf(buffered, capacity);
+            received = Arrays.copyOf(received, capacity);
+            highest = Arrays.copyOf(highest, capacity);
+            jitter = Arrays.copyOf(jitter, capacity);
+            lastTransit = Arrays.copyOf(lastTransit, capacity);
+            streamCount = count;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package org.example.network_simulator;
+
+import java.util.Arrays;
+
+// The transmit side of one direction of a link: a bounded queue in front of a transmitter that
+// sends one frame at a time at the link's bandwidth. A frame arriving at an idle link goes out at
+// once; otherwise it waits its turn, or is dropped according to the link's queue discipline.
+// A frame leaves after its serialization time and arrives one propagation delay (plus jitter)
+// later, unless the link loses it. Only the sending device's thread touches a queue, and every
+// random draw comes from that device's stream, so runs stay reproducible.
+// The queue is its own drain event: while frames wait, one event is pending for when the transmitter frees up.
+final class TransmitQueue implements SimulationEvent {
+
+    // RED's moving-average weight and top drop probability (the values suggested by Floyd and Jacobson)
+    private static final double RED_WEIGHT = 0.002;
+    private static final double RED_MAX_PROBABILITY = 0.1;
+
+    private final Network network;
+    private final Connection connection;
+    private final NetworkDevice from;
+    private final NetworkDevice to;
+
+    private final Ring ordinary = new Ring();
+    private Ring priority; // Only used by the PRIORITY discipline
+    private long busyUntil = 0; // When the frame being sent has left
+    private boolean drainScheduled = false;
+    private double averageDepth = 0; // For RED
+    private volatile int maxDepth = 0;
+
+    TransmitQueue(Network network, Connection connection, NetworkDevice from) {
+        this.network = network;
+        this.connection = connection;
+        this.from = from;
+        this.to = connection.getOtherDevice(from);
+    }
+
+    // Frames waiting to be sent (not counting the one on the wire)
+    int depth() {
+        return ordinary.size + (priority == null ? 0 : priority.size);
+    }
+
+    int getMaxDepth() {
+        return maxDepth;
+    }
+
+    // Queue a frame for sending. The caller's packet reference moves into the queue.
+    void offer(Packet packet) {
+        long now = network.now(from);
+        int depth = depth();
+        QueueDiscipline discipline = connection.getDiscipline();
+        if (discipline == QueueDiscipline.RED) {
+            averageDepth += RED_WEIGHT * (depth - averageDepth);
+            if (earlyDrop()) {
+                network.drop(from, to, packet, connection.edgeId);
+                return;
+            }
+        }
+        if (depth == 0 && busyUntil <= now) {
+            send(packet, now);
+            return;
+        }
+        boolean urgent = discipline == QueueDiscipline.PRIORITY && packet.isPriority();
+        if (depth >= connection.getQueueCapacity()) {
+            if (!urgent || ordinary.size == 0) {
+                network.drop(from, to, packet, connection.edgeId);
+                return;
+            }
+            // Push out the newest ordinary frame to make room
+            network.drop(from, to, ordinary.removeLast(), connection.edgeId);
+            depth--;
+        }
+        if (urgent) {
+            if (priority == null) priority = new Ring();
+            priority.add(packet);
+        } else {
+            ordinary.add(packet);
+        }
+        if (depth + 1 > maxDepth) maxDepth = depth + 1;
+        if (!drainScheduled) {
+            drainScheduled = true;
+            network.scheduleAt(from, busyUntil, this);
+        }
+    }
+
+    // The transmitter is free: send the next frame, and come back when that one has left
+    @Override
+    public void fire() {
+        drainScheduled = false;
+        Ring ring = priority != null && priority.size > 0 ? priority : ordinary;
+        if (ring.size == 0) return; // Flushed since
+        send(ring.poll(), network.now(from));
+        if (depth() > 0) {
+            drainScheduled = true;
+            network.scheduleAt(from, busyUntil, this);
+        }
+    }
+
+    private void send(Packet packet, long now) {
+        busyUntil = Math.max(now, busyUntil) + connection.serializationTime(packet.length());
+        double lossRate = connection.getLossRate();
+        if (lossRate > 0 && from.nextRandom() < lossRate) {
+            network.drop(from, to, packet, connection.edgeId); // Used the link, never arrived
+            return;
+        }
+        long arrival = busyUntil + connection.getDelay();
+        long jitter = connection.getJitter();
+        if (jitter > 0) arrival += (long) (from.nextRandom() * jitter);
+        network.launch(from, to, packet, connection.edgeId, arrival);
+    }
+
+    private boolean earlyDrop() {
+        double low = connection.getQueueCapacity() / 4.0, high = 3 * low;
+        if (averageDepth < low) return false;
+        if (averageDepth >= high) return true;
+        return from.nextRandom() < RED_MAX_PROBABILITY * (averageDepth - low) / (high - low);
+    }
+
+    // Drop every waiting frame and forget the link's state (the link went down or the clock changed)
+    void flush() {
+        ordinary.clear();
+        if (priority != null) priority.clear();
+        busyUntil = 0;
+        drainScheduled = false; // Any pending drain event has been discarded or finds nothing to send
+        averageDepth = 0;
+    }
+
+    // Growable ring of waiting frames
+    private static final class Ring {
+        Packet[] packets = new Packet[8];
+        int head = 0;
+        int size = 0;
+
+        void add(Packet packet) {
+            if (size == packets.length) {
+                packets = unwrap(packets, size * 2);
+                head = 0;
+            }
+            packets[(head + size++) & (packets.length - 1)] = packet;
+        }
+
+        Packet poll() {
+            Packet packet = packets[head];
+            packets[head] = null;
+            head = (head + 1) & (packets.length - 1);
+            size--;
+            return packet;
+        }
+
+        Packet removeLast() {
+            int at = (head + --size) & (packets.length - 1);
+            Packet packet = packets[at];
+            packets[at] = null;
+            return packet;
+        }
+
+        void clear() {
+            while (size > 0) {
+                poll().release();
+            }
+            head = 0;
+        }
+
+        // Copy into a larger array with the oldest frame first
+        private Packet[] unwrap(Packet[] ring, int capacity) {
+            Packet[] grown = Arrays.copyOf(ring, capacity);
+            System.arraycopy(ring, head, grown, 0, ring.length - head);
+            System.arraycopy(ring, 0, grown, ring.length - head, head);
+            return grown;
+        }
+    }
+}
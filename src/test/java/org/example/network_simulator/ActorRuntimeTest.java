@@ -0,0 +1,136 @@
+package org.example.network_simulator;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Frames posted to a slow actor from several virtual threads: mailboxes stay bounded, senders wait
+// for room and then drop, and each sender's frames are handled in the order it posted them
+class ActorRuntimeTest {
+
+    // Takes its time over every frame and records the senders' streams and sequences
+    private static final class Slow extends NetworkDevice {
+        final long workNanos;
+        final List<long[]> received = new ArrayList<>(); // Only touched by the actor's thread until it stops
+
+        Slow(long workNanos) {
+            super("Slow", 0, 0);
+            this.workNanos = workNanos;
+        }
+
+        @Override
+        protected void receiveFrame(Network network, Packet packet, NetworkDevice from) {
+            LockSupport.parkNanos(workNanos);
+            received.add(new long[]{packet.trafficStream(), packet.trafficSequence()});
+            packet.release();
+        }
+    }
+
+    private final Network network = new Network(5);
+    private ActorRuntime runtime;
+
+    @AfterEach
+    void stop() {
+        network.stopActors();
+    }
+
+    private Packet frame(NetworkDevice from, NetworkDevice to, int stream, int sequence) {
+        return network.packetPoolFor(from).acquire().writeTraffic(from.getMacAddress(), to.getMacAddress(),
+                0, 0, 1, stream, 0, sequence, 0, 100);
+    }
+
+    // Wait until every frame posted has been handled or dropped
+    private void settle() throws InterruptedException {
+        long deadline = System.nanoTime() + 10 * SimulationEngine.NANOS_PER_SECOND;
+        while (runtime.getFramesProcessed() + runtime.getDroppedFrames() < runtime.getFramesPosted()) {
+            assertTrue(System.nanoTime() < deadline, "frames still pending");
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void sendersWaitForRoomAndKeepTheirOrder() throws InterruptedException {
+        Slow sink = new Slow(100_000);
+        Slow[] senders = new Slow[4];
+        network.addDevice(sink);
+        for (int s = 0; s < senders.length; s++) {
+            senders[s] = new Slow(0);
+            network.addDevice(senders[s]);
+            network.connect(senders[s], sink);
+        }
+        runtime = network.startActors(4);
+        Thread[] threads = new Thread[senders.length];
+        for (int s = 0; s < senders.length; s++) {
+            int stream = s;
+            threads[s] = Thread.ofVirtual().start(() -> {
+                for (int i = 0; i < 300; i++) {
+                    runtime.post(senders[stream], sink, frame(senders[stream], sink, stream, i), 0);
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        settle();
+
+        assertEquals(4 * 300, runtime.getFramesPosted());
+        assertTrue(runtime.getFullMailboxWaits() > 0, "no sender ever found the mailbox full");
+        assertTrue(runtime.getBlockedNanos() > 0);
+        assertTrue(runtime.getMaxMailboxDepth() <= 4, "depth " + runtime.getMaxMailboxDepth());
+        network.stopActors();
+
+        int[] last = {-1, -1, -1, -1};
+        for (long[] frame : sink.received) {
+            int stream = (int) frame[0], sequence = (int) frame[1];
+            assertTrue(sequence > last[stream], "stream " + stream + ": " + sequence + " after " + last[stream]);
+            last[stream] = sequence;
+        }
+        assertEquals(runtime.getFramesProcessed(), sink.received.size());
+        assertEquals(runtime.getFramesPosted(), sink.received.size() + runtime.getDroppedFrames());
+        assertEquals(0, runtime.packetPool.getInUse());
+    }
+
+    @Test
+    void fullMailboxDropsAfterTheSendTimeout() throws InterruptedException {
+        // Busy for 20 send timeouts with each frame
+        Slow sink = new Slow(20 * ActorRuntime.DEFAULT_SEND_TIMEOUT);
+        Slow source = new Slow(0);
+        network.addDevice(sink);
+        network.addDevice(source);
+        network.connect(source, sink);
+        runtime = network.startActors(2);
+
+        runtime.post(source, sink, frame(source, sink, 0, 0), 0);
+        long deadline = System.nanoTime() + 5 * SimulationEngine.NANOS_PER_SECOND;
+        while (runtime.getMailboxDepth(sink) > 0) {
+            assertTrue(System.nanoTime() < deadline, "the actor never took the first frame");
+            Thread.sleep(1);
+        }
+        // Two fill the mailbox while the first is being handled, the next three wait and are dropped
+        long start = System.nanoTime();
+        for (int i = 1; i <= 5; i++) {
+            runtime.post(source, sink, frame(source, sink, 0, i), 0);
+        }
+        long waited = System.nanoTime() - start;
+        assertEquals(2, runtime.getMailboxDepth(sink));
+        assertEquals(3, runtime.getFullMailboxWaits());
+        assertEquals(3, runtime.getDroppedFrames());
+        assertTrue(waited >= 3 * ActorRuntime.DEFAULT_SEND_TIMEOUT, "senders waited " + waited + " ns");
+        assertTrue(runtime.getBlockedNanos() >= 3 * ActorRuntime.DEFAULT_SEND_TIMEOUT);
+        assertEquals(3, network.getMetrics().deviceCounters(sink.toString()).get("drops"));
+
+        settle();
+        network.stopActors();
+        List<Integer> sequences = new ArrayList<>();
+        for (long[] frame : sink.received) {
+            sequences.add((int) frame[1]);
+        }
+        assertEquals(List.of(0, 1, 2), sequences);
+        assertEquals(0, runtime.packetPool.getInUse());
+    }
+}
@@ -0,0 +1,83 @@
+package org.example.network_simulator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The union-find index, with its incremental adds and lazy rebuilds, against a breadth-first search
+class ConnectivityIndexTest {
+
+    @Test
+    void matchesBreadthFirstSearch() {
+        Random random = new Random(11);
+        TopologyGraph graph = new TopologyGraph();
+        ConnectivityIndex index = new ConnectivityIndex(graph);
+        List<Integer> vertices = new ArrayList<>();
+        for (int step = 0; step < 3000; step++) {
+            int change = random.nextInt(10);
+            if (change < 2 || vertices.size() < 2) {
+                int v = graph.addVertex();
+                index.vertexAdded(v);
+                vertices.add(v);
+            } else if (change < 6) {
+                int a = vertices.get(random.nextInt(vertices.size())), b = vertices.get(random.nextInt(vertices.size()));
+                if (a != b && graph.addEdge(a, b) >= 0) index.edgeAdded(a, b);
+            } else if (change < 9) {
+                int a = vertices.get(random.nextInt(vertices.size()));
+                if (graph.degree(a) == 0) continue;
+                int b = graph.neighbour(a, random.nextInt(graph.degree(a)));
+                graph.removeEdge(a, b);
+                index.edgeRemoved(a, b);
+            } else {
+                int v = vertices.remove(random.nextInt(vertices.size()));
+                graph.removeVertex(v);
+                index.vertexRemoved(v);
+            }
+            if (step % 50 == 0) check(graph, index, vertices, random);
+        }
+        check(graph, index, vertices, random);
+    }
+
+    private static void check(TopologyGraph graph, ConnectivityIndex index, List<Integer> vertices, Random random) {
+        for (int i = 0; i < 20; i++) {
+            int a = vertices.get(random.nextInt(vertices.size()));
+            int[] component = bfs(graph, a);
+            for (int b : vertices) {
+                assertEquals(component[b] == a + 1, index.connected(a, b), a + " - " + b);
+            }
+            assertEquals(count(component, a + 1), index.componentSize(a), "size of " + a);
+        }
+    }
+
+    // Marks every vertex reachable from start with start + 1
+    private static int[] bfs(TopologyGraph graph, int start) {
+        int[] mark = new int[graph.vertexLimit()];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        mark[start] = start + 1;
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            int v = queue.poll();
+            for (int i = 0; i < graph.degree(v); i++) {
+                int u = graph.neighbour(v, i);
+                if (mark[u] == 0) {
+                    mark[u] = start + 1;
+                    queue.add(u);
+                }
+            }
+        }
+        return mark;
+    }
+
+    private static int count(int[] values, int value) {
+        int n = 0;
+        for (int v : values) {
+            if (v == value) n++;
+        }
+        return n;
+    }
+}
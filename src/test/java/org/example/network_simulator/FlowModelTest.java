@@ -0,0 +1,181 @@
+package org.example.network_simulator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The incremental max-min rates against water-filling every active flow from scratch
+class FlowModelTest {
+
+    private record Flow(PC source, PC target, long bytes, long start) {}
+
+    private Network network;
+    private final List<PC> pcs = new ArrayList<>();
+    private final List<Flow> flows = new ArrayList<>();
+    private final Map<Flow, int[]> routes = new HashMap<>();
+
+    // A k=4 fat tree with links of 100 Mbit/s to 1 Gbit/s and flows starting every millisecond
+    private void build(long seed, int count) {
+        network = new Network();
+        pcs.clear();
+        flows.clear();
+        routes.clear();
+        for (NetworkDevice device : TopologyGenerator.fatTree(4).build(network)) {
+            if (device instanceof PC pc) pcs.add(pc);
+        }
+        Random random = new Random(seed);
+        for (Connection connection : network.getConnections()) {
+            connection.setBandwidth((1 + random.nextInt(10)) * 100_000_000L);
+        }
+        for (int i = 0; i < count; i++) {
+            PC source = pcs.get(random.nextInt(pcs.size())), target;
+            do {
+                target = pcs.get(random.nextInt(pcs.size()));
+            } while (target == source);
+            flows.add(new Flow(source, target, 1 + random.nextInt(5_000_000), i * 1_000_000L + random.nextInt(3) * 1000));
+        }
+    }
+
+    @Test
+    void completionTimesMatchFromScratch() {
+        for (long seed = 1; seed <= 3; seed++) {
+            build(seed, 400);
+            FlowModel model = network.getFlowModel();
+            Map<Flow, Long> ended = new HashMap<>();
+            model.setListener((source, target, bytes, start, end, completed) -> {
+                assertTrue(completed);
+                ended.put(new Flow((PC) source, (PC) target, bytes, start), end);
+            });
+            for (Flow flow : flows) {
+                model.addFlow(flow.source, flow.target, flow.bytes, flow.start);
+            }
+            model.run();
+
+            Map<Flow, Double> expected = fromScratch();
+            assertEquals(flows.size(), ended.size());
+            for (Flow flow : flows) {
+                double duration = expected.get(flow) - flow.start;
+                assertEquals(expected.get(flow), ended.get(flow), 1e-6 * duration + 1, flow.toString());
+            }
+        }
+    }
+
+    @Test
+    void linkLoadsMatchFromScratch() {
+        build(4, 300);
+        FlowModel model = network.getFlowModel();
+        Set<Flow> ended = new HashSet<>();
+        model.setListener((source, target, bytes, start, end, completed) ->
+                ended.add(new Flow((PC) source, (PC) target, bytes, start)));
+        for (Flow flow : flows) {
+            model.addFlow(flow.source, flow.target, flow.bytes, flow.start);
+        }
+        TopologyGraph graph = network.getGraph();
+        for (long time = 10_000_000L; time < 300_000_000L; time += 37_000_000L) {
+            model.runUntil(time);
+            List<Flow> active = new ArrayList<>();
+            for (Flow flow : flows) {
+                if (flow.start <= time && !ended.contains(flow)) active.add(flow);
+            }
+            Map<Integer, Double> load = new HashMap<>();
+            Map<Flow, Double> rates = waterFill(active);
+            for (Flow flow : active) {
+                for (int link : route(flow)) load.merge(link, rates.get(flow), Double::sum);
+            }
+            for (int e = 0; e < graph.edgeLimit(); e++) {
+                Connection connection = network.getConnectionByEdge(e);
+                if (connection == null) continue;
+                for (int direction = 0; direction < 2; direction++) {
+                    NetworkDevice from = network.getDeviceByIndex(direction == 0 ? graph.edgeFrom(e) : graph.edgeTo(e));
+                    double want = load.getOrDefault(2 * e + direction, 0.0);
+                    assertEquals(want, model.getLinkLoad(connection, from), 1e-6 * want + 1e-3, "t=" + time + " " + connection);
+                }
+            }
+        }
+    }
+
+    // Completion times found by water-filling every active flow again at every start and end
+    private Map<Flow, Double> fromScratch() {
+        List<Flow> pending = new ArrayList<>(flows);
+        pending.sort((a, b) -> Long.compare(a.start, b.start));
+        Map<Flow, Double> left = new HashMap<>(); // Bytes still to go
+        Map<Flow, Double> done = new HashMap<>();
+        double now = 0;
+        int next = 0;
+        while (next < pending.size() || !left.isEmpty()) {
+            Map<Flow, Double> rates = waterFill(left.keySet());
+            double arrival = next < pending.size() ? pending.get(next).start : Double.MAX_VALUE;
+            double finish = Double.MAX_VALUE;
+            for (Map.Entry<Flow, Double> entry : left.entrySet()) {
+                finish = Math.min(finish, now + entry.getValue() * 8e9 / rates.get(entry.getKey()));
+            }
+            double until = Math.min(arrival, finish);
+            for (Map.Entry<Flow, Double> entry : left.entrySet()) {
+                entry.setValue(entry.getValue() - rates.get(entry.getKey()) * (until - now) / 8e9);
+            }
+            now = until;
+            double at = now;
+            left.entrySet().removeIf(entry -> {
+                if (entry.getValue() > 1e-3) return false;
+                done.put(entry.getKey(), at);
+                return true;
+            });
+            if (arrival <= finish) {
+                Flow flow = pending.get(next++);
+                left.put(flow, (double) flow.bytes);
+            }
+        }
+        return done;
+    }
+
+    // Max-min fair rates in bits per second: repeatedly fill the link with the smallest fair share
+    private Map<Flow, Double> waterFill(Collection<Flow> active) {
+        Map<Flow, Double> rates = new HashMap<>();
+        Map<Integer, Double> remaining = new HashMap<>();
+        Set<Flow> unfixed = new HashSet<>(active);
+        while (!unfixed.isEmpty()) {
+            Map<Integer, Integer> crossing = new HashMap<>();
+            for (Flow flow : unfixed) {
+                for (int link : route(flow)) crossing.merge(link, 1, Integer::sum);
+            }
+            int bottleneck = -1;
+            double share = Double.MAX_VALUE;
+            for (Map.Entry<Integer, Integer> entry : crossing.entrySet()) {
+                double capacity = remaining.computeIfAbsent(entry.getKey(),
+                        link -> (double) network.getConnectionByEdge(link >> 1).getBandwidth());
+                if (capacity / entry.getValue() < share) {
+                    share = capacity / entry.getValue();
+                    bottleneck = entry.getKey();
+                }
+            }
+            List<Flow> fixed = new ArrayList<>();
+            for (Flow flow : unfixed) {
+                for (int link : route(flow)) {
+                    if (link == bottleneck) {
+                        fixed.add(flow);
+                        break;
+                    }
+                }
+            }
+            for (Flow flow : fixed) {
+                rates.put(flow, share);
+                unfixed.remove(flow);
+                for (int link : route(flow)) remaining.merge(link, -share, Double::sum);
+            }
+        }
+        return rates;
+    }
+
+    private int[] route(Flow flow) {
+        return routes.computeIfAbsent(flow, f -> network.route(f.source, f.target));
+    }
+}
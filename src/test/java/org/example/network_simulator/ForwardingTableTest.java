@@ -0,0 +1,80 @@
+package org.example.network_simulator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The trie against a naive longest-prefix match over a map of the same routes
+class ForwardingTableTest {
+
+    // Scan every route for the longest one covering the address
+    private static int naiveLookup(Map<Long, Integer> routes, int address) {
+        int best = ForwardingTable.NO_ROUTE, bestLength = -1;
+        for (Map.Entry<Long, Integer> route : routes.entrySet()) {
+            int length = (int) (route.getKey() >>> 32);
+            int prefix = (int) (long) route.getKey();
+            if ((address & Ipv4.mask(length)) == prefix && length > bestLength) {
+                bestLength = length;
+                best = route.getValue();
+            }
+        }
+        return best;
+    }
+
+    private static long key(int prefix, int length) {
+        return ((long) length << 32) | (prefix & 0xffffffffL);
+    }
+
+    @Test
+    void matchesNaiveLookupThroughAddsAndRemovals() {
+        Random random = new Random(3);
+        for (int round = 0; round < 10; round++) {
+            ForwardingTable table = new ForwardingTable();
+            Map<Long, Integer> routes = new HashMap<>();
+            List<Long> keys = new ArrayList<>();
+            int base = random.nextInt(); // Keep most prefixes near each other so they nest
+            for (int i = 0; i < 2000; i++) {
+                if (random.nextInt(3) == 0 && !keys.isEmpty()) {
+                    long removed = keys.remove(random.nextInt(keys.size()));
+                    assertTrue(table.removeRoute((int) removed, (int) (removed >>> 32)));
+                    routes.remove(removed);
+                } else {
+                    int length = random.nextInt(33);
+                    int prefix = (base ^ (random.nextInt() & (random.nextBoolean() ? 0xffff : -1))) & Ipv4.mask(length);
+                    int hop = random.nextInt(100);
+                    table.addRoute(prefix, length, hop);
+                    if (routes.put(key(prefix, length), hop) == null) keys.add(key(prefix, length));
+                }
+            }
+            assertEquals(routes.size(), table.size());
+            for (int i = 0; i < 5000; i++) {
+                int address = random.nextBoolean() ? random.nextInt() : base ^ (random.nextInt() & 0xffff);
+                assertEquals(naiveLookup(routes, address), table.lookup(address), Ipv4.format(address));
+            }
+        }
+    }
+
+    @Test
+    void removalFallsBackToCoveringRoute() {
+        ForwardingTable table = new ForwardingTable();
+        int net = (int) Ipv4.parse("10.1.0.0");
+        table.addRoute(0, 0, 1);
+        table.addRoute(net, 16, 2);
+        table.addRoute((int) Ipv4.parse("10.1.2.0"), 23, 3); // Expands into two /24 slots
+        int address = (int) Ipv4.parse("10.1.3.7");
+        assertEquals(3, table.lookup(address));
+        assertTrue(table.removeRoute((int) Ipv4.parse("10.1.2.0"), 23));
+        assertEquals(2, table.lookup(address));
+        assertTrue(table.removeRoute(net, 16));
+        assertEquals(1, table.lookup(address));
+        assertFalse(table.removeRoute(net, 16));
+        assertTrue(table.removeRoute(0, 0));
+        assertEquals(ForwardingTable.NO_ROUTE, table.lookup(address));
+    }
+}
@@ -0,0 +1,74 @@
+package org.example.network_simulator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Bucket bounds and percentiles against the exact values of a sorted copy
+class HistogramTest {
+
+    @Test
+    void bucketsAreContiguousAndWithinAnEighth() {
+        Random random = new Random(3);
+        for (int n = 0; n < 100_000; n++) {
+            long value = n < 64 ? n : (random.nextLong() >>> 1) >>> random.nextInt(63);
+            int bucket = Histogram.bucket(value);
+            assertTrue(bucket >= 0 && bucket < Histogram.BUCKETS, "value " + value);
+            assertTrue(value <= Histogram.upperBound(bucket), "value " + value);
+            if (bucket > 0) assertTrue(value > Histogram.upperBound(bucket - 1), "value " + value);
+            assertTrue(Histogram.upperBound(bucket) - value <= value / 8, "value " + value);
+        }
+        assertEquals(Histogram.BUCKETS - 1, Histogram.bucket(Long.MAX_VALUE));
+        assertEquals(Long.MAX_VALUE, Histogram.upperBound(Histogram.BUCKETS - 1));
+    }
+
+    @Test
+    void percentilesMatchSortedValues() {
+        Random random = new Random(5);
+        Histogram histogram = new Histogram();
+        long[] values = new long[50_000];
+        long sum = 0;
+        for (int i = 0; i < values.length; i++) {
+            // Spread over several orders of magnitude, like RTTs from a LAN to a slow WAN
+            values[i] = (long) Math.exp(random.nextDouble() * 20);
+            histogram.record(values[i]);
+            sum += values[i];
+        }
+        Arrays.sort(values);
+        assertEquals(values.length, histogram.getCount());
+        assertEquals(values[values.length - 1], histogram.getMax());
+        assertEquals(sum / values.length, histogram.getMean());
+        for (double fraction : new double[]{0.001, 0.1, 0.5, 0.9, 0.99, 0.999, 1}) {
+            long exact = values[(int) Math.ceil(fraction * values.length) - 1];
+            long reported = histogram.getPercentile(fraction);
+            assertTrue(reported >= exact && reported <= exact + exact / 8, fraction + ": " + reported + " for " + exact);
+        }
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentile(0.5));
+    }
+
+    @Test
+    void concurrentRecordsAllCount() throws InterruptedException {
+        Histogram histogram = new Histogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int offset = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    histogram.record(i * 4L + offset);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(400_000, histogram.getCount());
+        assertEquals(399_999, histogram.getMax());
+        assertEquals(399_999 / 2, histogram.getMean());
+    }
+}
@@ -0,0 +1,205 @@
+package org.example.network_simulator;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Routers forward by the routes link-state routing installs: pings get through once SPF has run
+// and stop when a partition takes the route away. Incremental SPF must end up where a full
+// Dijkstra over the same links would.
+class LinkStateRoutingTest {
+
+    private final Map<PC, StringBuilder> output = new HashMap<>();
+    private Network network;
+    private PC left, right;
+    private Router r1, r2, r3;
+
+    // left - r1 - r2 - r3 - right over fast links, with a slow shortcut from r1 to r3
+    @BeforeEach
+    void build() {
+        network = new Network();
+        network.addListener(new SimulationListener() {
+            @Override
+            public void onOutput(PC pc, String text) {
+                output.computeIfAbsent(pc, key -> new StringBuilder()).append(text).append('\n');
+            }
+
+            @Override
+            public void onChatMessage(PC pc, String message) {
+            }
+        });
+        left = add(new PC(0, 0));
+        right = add(new PC(0, 0));
+        left.setIpAddress("10.0.1.5");
+        right.setIpAddress("10.0.2.5");
+        r1 = add(new Router(0, 0));
+        r2 = add(new Router(0, 0));
+        r3 = add(new Router(0, 0));
+        network.connect(left, r1);
+        network.connect(r1, r2).setBandwidth(10_000_000_000L);
+        network.connect(r2, r3).setBandwidth(10_000_000_000L);
+        network.connect(r1, r3).setBandwidth(100_000_000L);
+        network.connect(r3, right);
+    }
+
+    private <T extends NetworkDevice> T add(T device) {
+        network.addDevice(device);
+        return device;
+    }
+
+    // Replies to four pings from left to right
+    private int ping() {
+        network.executeCommand(left, "ping", new String[]{right.getIpAddress()});
+        network.run();
+        String text = output.remove(left).toString();
+        return text.split("Reply from", -1).length - 1;
+    }
+
+    private long framesIn(NetworkDevice device) {
+        return network.getMetrics().deviceCounters(device.toString()).get("framesIn");
+    }
+
+    @Test
+    void pingsTakeTheShortestPath() {
+        network.getLinkStateRouting().start();
+        network.run();
+        long before = framesIn(r2);
+        assertEquals(4, ping());
+        assertEquals(8, framesIn(r2) - before); // Requests and replies both go the fast way round
+
+        // Slow down the middle so the shortcut wins
+        network.getConnection(r1, r2).setBandwidth(10_000_000L);
+        network.run();
+        before = framesIn(r2);
+        assertEquals(4, ping());
+        assertEquals(0, framesIn(r2) - before);
+    }
+
+    @Test
+    void pingsFailUntilSpfRuns() {
+        LinkStateRouting routing = network.getLinkStateRouting();
+        routing.setSpfDelay(60 * SimulationEngine.NANOS_PER_SECOND); // Longer than the pings take
+        routing.start();
+        assertEquals(0, ping());
+        assertNotNull(r1.nextHop(right.getAddress())); // Installed by the time the run finished
+        assertEquals(4, ping());
+    }
+
+    @Test
+    void pingsFailWhenAPartitionLeavesNoRoute() {
+        network.getLinkStateRouting().start();
+        network.run();
+        assertEquals(4, ping());
+        Connection shortcut = network.getConnection(r1, r3);
+        network.disconnect(shortcut);
+        network.disconnect(network.getConnection(r1, r2));
+        network.run();
+        assertNull(r1.nextHop(right.getAddress()));
+        assertEquals(0, ping());
+        network.connect(r1, r3).setBandwidth(shortcut.getBandwidth());
+        network.run();
+        assertEquals(4, ping());
+    }
+
+    @Test
+    void incrementalSpfMatchesFullDijkstra() {
+        for (boolean incremental : new boolean[]{true, false}) {
+            Network net = new Network();
+            TopologyGenerator.erdosRenyi(40, 3, 1, 5).routed().build(net);
+            Random random = new Random(3);
+            long[] bandwidths = {100_000_000L, 1_000_000_000L, 10_000_000_000L, 40_000_000_000L};
+            for (Connection c : routerLinks(net)) {
+                c.setBandwidth(bandwidths[random.nextInt(bandwidths.length)]);
+            }
+            LinkStateRouting routing = net.getLinkStateRouting();
+            routing.setIncremental(incremental);
+            routing.start();
+            net.run();
+            checkRoutes(net, "initial");
+
+            // Links going down, coming back and changing speed, one change per run
+            List<Connection> removed = new ArrayList<>();
+            for (int step = 0; step < 30; step++) {
+                int change = random.nextInt(4);
+                List<Connection> links = routerLinks(net);
+                if (change < 2 || removed.isEmpty()) {
+                    Connection c = links.get(random.nextInt(links.size()));
+                    net.disconnect(c);
+                    removed.add(c);
+                } else if (change == 2) {
+                    Connection c = removed.remove(random.nextInt(removed.size()));
+                    net.connect(c.getDevice1(), c.getDevice2()).setBandwidth(c.getBandwidth());
+                } else {
+                    links.get(random.nextInt(links.size())).setBandwidth(bandwidths[random.nextInt(bandwidths.length)]);
+                }
+                net.run();
+                checkRoutes(net, (incremental ? "incremental" : "full") + " step " + step);
+            }
+        }
+    }
+
+    private static List<Connection> routerLinks(Network net) {
+        List<Connection> links = new ArrayList<>();
+        for (Connection c : net.getConnections()) {
+            if (c.getDevice1() instanceof Router && c.getDevice2() instanceof Router) links.add(c);
+        }
+        return links;
+    }
+
+    // Follow every router's next hops to every PC and compare the cost with Dijkstra's
+    private static void checkRoutes(Network net, String when) {
+        List<Router> routers = new ArrayList<>();
+        for (NetworkDevice device : net.getDevices()) {
+            if (device instanceof Router router) routers.add(router);
+        }
+        for (Router from : routers) {
+            Map<Router, Integer> distance = dijkstra(net, from);
+            for (NetworkDevice device : net.getDevices()) {
+                if (!(device instanceof PC pc)) continue;
+                Router home = (Router) net.getConnections(pc).get(0).getOtherDevice(pc);
+                Integer expected = distance.get(home);
+                String what = when + ": " + from + " -> " + pc;
+                if (expected == null) {
+                    assertNull(from.nextHop(pc.getAddress()), what);
+                    continue;
+                }
+                int cost = 0;
+                NetworkDevice at = from;
+                for (int hops = 0; at instanceof Router router && hops <= routers.size(); hops++) {
+                    NetworkDevice next = router.nextHop(pc.getAddress());
+                    assertNotNull(next, what);
+                    if (next instanceof Router) cost += LinkStateRouting.cost(net.getConnection(at, next));
+                    at = next;
+                }
+                assertSame(pc, at, what);
+                assertEquals(expected, cost, what);
+            }
+        }
+    }
+
+    private static Map<Router, Integer> dijkstra(Network net, Router source) {
+        Map<Router, Integer> distance = new HashMap<>();
+        PriorityQueue<Map.Entry<Router, Integer>> queue = new PriorityQueue<>(Map.Entry.comparingByValue());
+        queue.add(Map.entry(source, 0));
+        while (!queue.isEmpty()) {
+            Map.Entry<Router, Integer> entry = queue.poll();
+            Router at = entry.getKey();
+            if (distance.containsKey(at)) continue;
+            distance.put(at, entry.getValue());
+            for (Connection c : net.getConnections(at)) {
+                if (c.getOtherDevice(at) instanceof Router next && !distance.containsKey(next)) {
+                    queue.add(Map.entry(next, entry.getValue() + LinkStateRouting.cost(c)));
+                }
+            }
+        }
+        return distance;
+    }
+}
@@ -0,0 +1,64 @@
+package org.example.network_simulator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The open-addressing table against a HashMap of (port, last seen) per address
+class MacTableTest {
+
+    private static final long MILLI = SimulationEngine.NANOS_PER_MILLI;
+
+    @Test
+    void matchesHashMapThroughLearnForgetAndGrowth() {
+        Random random = new Random(11);
+        MacTable table = new MacTable(8, Long.MAX_VALUE); // Starts small so it rehashes along the way
+        Map<Long, Integer> reference = new HashMap<>();
+        for (int i = 0; i < 200_000; i++) {
+            long mac = 0x0200_0000_0000L | random.nextInt(3000);
+            switch (random.nextInt(4)) {
+                case 0, 1 -> {
+                    int port = random.nextInt(48);
+                    table.learn(mac, port, i * MILLI);
+                    reference.put(mac, port);
+                }
+                case 2 -> {
+                    table.forget(mac); // Backward-shift deletion must keep every other entry findable
+                    reference.remove(mac);
+                }
+                default -> assertEquals(reference.getOrDefault(mac, MacTable.UNKNOWN), table.lookup(mac, i * MILLI));
+            }
+        }
+        assertEquals(reference.size(), table.size());
+        for (Map.Entry<Long, Integer> entry : reference.entrySet()) {
+            assertEquals(entry.getValue(), table.lookup(entry.getKey(), 0));
+        }
+    }
+
+    @Test
+    void agedEntriesDisappear() {
+        Random random = new Random(5);
+        long aging = 50 * MILLI;
+        MacTable table = new MacTable(64, aging);
+        Map<Long, long[]> reference = new HashMap<>(); // mac -> {port, last seen}
+        long now = 0;
+        for (int i = 0; i < 100_000; i++) {
+            now += random.nextInt(3) * MILLI;
+            long mac = 0x0200_0000_0000L | random.nextInt(500);
+            if (random.nextBoolean()) {
+                int port = random.nextInt(8);
+                table.learn(mac, port, now); // Also sweeps a few expired slots
+                reference.put(mac, new long[]{port, now});
+            } else {
+                long[] seen = reference.get(mac);
+                int expected = seen == null || now - seen[1] > aging ? MacTable.UNKNOWN : (int) seen[0];
+                if (expected == MacTable.UNKNOWN) reference.remove(mac);
+                assertEquals(expected, table.lookup(mac, now));
+            }
+        }
+    }
+}
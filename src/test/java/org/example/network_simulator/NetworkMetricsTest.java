@@ -0,0 +1,61 @@
+package org.example.network_simulator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Drops counted against the link direction they happened on, and totals that survive removals
+class NetworkMetricsTest {
+
+    private final Network network = new Network(1);
+    private final PC source = new PC(0, 0), target = new PC(0, 0);
+    private final Switch sw = new Switch(0, 0);
+
+    NetworkMetricsTest() {
+        network.addDevice(source);
+        network.addDevice(target);
+        network.addDevice(sw);
+        network.connect(source, sw);
+        network.connect(sw, target);
+    }
+
+    @Test
+    void dropsAreCountedPerLinkDirection() {
+        Connection out = network.getConnection(source, sw), in = network.getConnection(sw, target);
+        in.configure("loss=5%");
+        // Twice what the first link carries overflows its queue; the second loses some of the rest
+        network.executeCommand(source, "iperf", new String[]{target.toString(), "-u", "-b", "2G", "-t", "0.5"});
+        network.run();
+        NetworkMetrics metrics = network.getMetrics();
+        long overflow = metrics.getLinkDrops(out, source), lost = metrics.getLinkDrops(in, sw);
+        assertTrue(overflow > 10_000, "overflow " + overflow);
+        assertTrue(lost > 1000, "lost " + lost);
+        assertEquals(0, metrics.getLinkDrops(out, sw));
+        assertEquals(overflow, metrics.deviceCounters(source.toString()).get("drops"));
+        assertEquals(lost, metrics.deviceCounters(sw.toString()).get("drops"));
+        Map<String, Long> link = metrics.linkCounters(sw.toString(), target.toString());
+        assertEquals(lost, link.get("drops"));
+        assertEquals(metrics.getDroppedFrames(), overflow + lost);
+    }
+
+    @Test
+    void totalsKeepRemovedDevices() {
+        for (int i = 0; i < 3; i++) {
+            network.executeCommand(source, "ping", new String[]{target.toString()});
+            network.run();
+        }
+        NetworkMetrics metrics = network.getMetrics();
+        long sent = metrics.getFramesSent(), received = metrics.getFramesReceived();
+        assertTrue(sent > 0);
+        int index = target.getIndex();
+        network.removeDevice(target);
+        PC replacement = new PC(0, 0);
+        network.addDevice(replacement);
+        assertEquals(index, replacement.getIndex()); // The removed device's slot, counted from zero again
+        assertEquals(sent, metrics.getFramesSent());
+        assertEquals(received, metrics.getFramesReceived());
+        assertEquals(0, metrics.deviceCounters(replacement.toString()).get("framesIn"));
+    }
+}
@@ -0,0 +1,42 @@
+package org.example.network_simulator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PCTest {
+
+    @Test
+    void defaultAddressesStayValidPastOneOctet() {
+        assertEquals("192.168.1.101", PC.defaultAddress(1));
+        assertEquals("192.168.1.254", PC.defaultAddress(154));
+        assertEquals("192.168.2.1", PC.defaultAddress(155));
+        assertEquals("192.169.0.1", PC.defaultAddress(255 * 254 - 99));
+        Set<Long> seen = new HashSet<>();
+        for (int id = 1; id <= 200_000; id++) {
+            long address = Ipv4.parse(PC.defaultAddress(id));
+            assertNotEquals(Ipv4.INVALID, address, "PC" + id);
+            long host = address & 0xff;
+            assertTrue(host != 0 && host != 255, "PC" + id);
+            assertTrue(seen.add(address), "PC" + id);
+        }
+    }
+
+    @Test
+    void unparsableAddressIsNotIndexed() {
+        Network network = new Network();
+        PC a = new PC(0, 0), b = new PC(0, 0);
+        network.addDevice(a);
+        network.addDevice(b);
+        a.setIpAddress("not an address");
+        b.setIpAddress("0.0.0.0");
+        assertEquals(0, a.getAddress());
+        assertNull(network.findPcByAddress(0));
+        assertNull(network.resolveDevice("0.0.0.0"));
+        b.setIpAddress("10.0.0.1");
+        assertSame(b, network.findPcByAddress(b.getAddress()));
+    }
+}
@@ -0,0 +1,86 @@
+package org.example.network_simulator;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The same script over the same topology gives the same output with 1, 2 and 4 partitions
+class ParallelRunnerTest {
+
+    // Pings within and across subnets, a chat to everyone and iperf over lossy, jittery links
+    private static final String SCRIPT = """
+            PC1000 ping PC1008
+            PC1000 ping PC1108
+            PC1104 ping 10.0.3.7
+            PC1203 hello everyone
+            PC1001 iperf PC1205 -t 0.5 -P 2
+            PC1102 iperf PC1006 -u -b 20M -t 0.5 -i 0.1
+            PC1207 ping PC1003
+            """;
+
+    // Three subnets of three switches in a loop with three PCs on each, their routers in a triangle
+    private static Network build(int partitions) {
+        Network network = new Network(11);
+        Router[] routers = new Router[3];
+        for (int s = 0; s < 3; s++) {
+            routers[s] = new Router(1090 + s, 0, 0);
+            network.addDevice(routers[s]);
+            Switch[] switches = new Switch[3];
+            for (int w = 0; w < 3; w++) {
+                switches[w] = new Switch(1050 + 10 * s + w, 0, 0);
+                network.addDevice(switches[w]);
+                for (int p = 0; p < 3; p++) {
+                    PC pc = new PC(1000 + 100 * s + 3 * w + p, 0, 0);
+                    network.addDevice(pc);
+                    pc.setIpAddress("10.0." + (s + 1) + "." + (3 * w + p + 1));
+                    pc.setSubnetMask("255.255.255.0");
+                    network.connect(pc, switches[w]);
+                }
+            }
+            for (int w = 0; w < 3; w++) {
+                network.connect(switches[w], switches[(w + 1) % 3]);
+            }
+            network.connect(routers[s], switches[0]);
+        }
+        for (int s = 0; s < 3; s++) {
+            network.connect(routers[s], routers[(s + 1) % 3]).configure("bandwidth=50M delay=1ms jitter=0.5ms loss=0.5%");
+        }
+        network.partition(partitions);
+        return network;
+    }
+
+    // Each PC's lines in the order they came. Lines of different PCs may interleave differently
+    // between runs, as PCs on different partitions print from different threads.
+    private static Map<String, List<String>> run(int partitions) throws IOException {
+        Network network = build(partitions);
+        StringWriter out = new StringWriter();
+        assertEquals(0, new ScriptRunner(out).runScript(network, new BufferedReader(new StringReader(SCRIPT))));
+        Map<String, List<String>> byPc = new TreeMap<>();
+        for (String line : out.toString().split("\n")) {
+            String pc = line.split("[^A-Za-z0-9]", 2)[0]; // "PC1> ping", "PC1: Reply" or "PC1 chat: hello"
+            byPc.computeIfAbsent(pc, key -> new ArrayList<>()).add(line);
+        }
+        return byPc;
+    }
+
+    @Test
+    void partitionsDoNotChangeTheOutput() throws IOException {
+        Map<String, List<String>> sequential = run(1);
+        String all = sequential.toString();
+        assertTrue(all.contains("Reply from 10.0.2.9"), all);
+        assertTrue(all.contains("hello everyone"), all);
+        assertTrue(all.contains("Mbits/sec"), all);
+        for (int partitions : new int[]{2, 4}) {
+            assertEquals(sequential, run(partitions), partitions + " partitions");
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package org.example.network_simulator;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// End-to-end traffic goes hop by hop: every router on the way looks the destination up in its own table
+class RouterForwardingTest {
+
+    private final Map<PC, StringBuilder> output = new HashMap<>();
+    private Network network;
+    private PC left, right;
+    private Router leftRouter, rightRouter;
+
+    // left - switch - leftRouter - rightRouter - switch - right, one /24 on each side
+    @BeforeEach
+    void build() {
+        network = new Network();
+        network.addListener(new SimulationListener() {
+            @Override
+            public void onOutput(PC pc, String text) {
+                output.computeIfAbsent(pc, key -> new StringBuilder()).append(text).append('\n');
+            }
+
+            @Override
+            public void onChatMessage(PC pc, String message) {
+            }
+        });
+        left = add(new PC(0, 0));
+        right = add(new PC(0, 0));
+        left.setIpAddress("10.0.1.5");
+        right.setIpAddress("10.0.2.5");
+        Switch leftSwitch = add(new Switch(0, 0));
+        Switch rightSwitch = add(new Switch(0, 0));
+        leftRouter = add(new Router(0, 0));
+        rightRouter = add(new Router(0, 0));
+        network.connect(left, leftSwitch);
+        network.connect(leftSwitch, leftRouter);
+        network.connect(leftRouter, rightRouter);
+        network.connect(rightRouter, rightSwitch);
+        network.connect(rightSwitch, right);
+    }
+
+    private <T extends NetworkDevice> T add(T device) {
+        network.addDevice(device);
+        return device;
+    }
+
+    // Replies to four pings from left to right
+    private int ping() {
+        network.executeCommand(left, "ping", new String[]{right.getIpAddress()});
+        network.run();
+        String text = output.remove(left).toString();
+        return text.split("Reply from", -1).length - 1;
+    }
+
+    @Test
+    void dropsWithoutRoutes() {
+        assertEquals(0, ping());
+        assertTrue(network.getMetrics().deviceCounters(leftRouter.toString()).get("drops") > 0);
+    }
+
+    @Test
+    void followsStaticRoutes() {
+        leftRouter.addRoute((int) Ipv4.parse("10.0.2.0"), 24, rightRouter);
+        assertEquals(0, ping()); // Requests get through, replies have no way back
+        rightRouter.addRoute((int) Ipv4.parse("10.0.1.0"), 24, leftRouter);
+        assertEquals(4, ping());
+        leftRouter.removeRoute((int) Ipv4.parse("10.0.2.0"), 24);
+        assertEquals(0, ping());
+    }
+
+    @Test
+    void longestPrefixWins() {
+        // A default route at the left segment, which right isn't on, and a more specific one to the right
+        NetworkDevice leftSwitch = network.getConnections(left).get(0).getOtherDevice(left);
+        leftRouter.addRoute(0, 0, leftSwitch);
+        leftRouter.addRoute((int) Ipv4.parse("10.0.2.0"), 24, rightRouter);
+        rightRouter.addRoute((int) Ipv4.parse("10.0.0.0"), 16, leftRouter);
+        assertEquals(4, ping());
+        leftRouter.removeRoute((int) Ipv4.parse("10.0.2.0"), 24);
+        assertEquals(0, ping());
+    }
+
+    @Test
+    void switchesLearnRoutedTraffic() {
+        leftRouter.addRoute((int) Ipv4.parse("10.0.2.0"), 24, rightRouter);
+        rightRouter.addRoute((int) Ipv4.parse("10.0.1.0"), 24, leftRouter);
+        assertEquals(4, ping());
+        Switch leftSwitch = (Switch) network.getConnections(left).get(0).getOtherDevice(left);
+        MacTable table = leftSwitch.getMacTable();
+        long now = network.now(leftSwitch);
+        assertEquals(left.index, table.lookup(left.getMacAddress(), now));
+        assertEquals(leftRouter.index, table.lookup(leftRouter.getMacAddress(), now));
+    }
+}
@@ -0,0 +1,74 @@
+package org.example.network_simulator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The headless runner against topology and script files, as run from CI
+class ScriptRunnerTest {
+
+    @TempDir
+    Path directory;
+
+    private String run(String topology, String script) throws IOException {
+        Path topologyFile = directory.resolve("topology.txt");
+        Path scriptFile = directory.resolve("script.txt");
+        Path output = directory.resolve("output.txt");
+        Files.writeString(topologyFile, topology);
+        Files.writeString(scriptFile, script);
+        assertEquals(0, ScriptRunner.run(new String[]{"-o", output.toString(), topologyFile.toString(), scriptFile.toString()}));
+        return Files.readString(output);
+    }
+
+    private static int replies(String output) {
+        return output.split("Reply from", -1).length - 1;
+    }
+
+    @Test
+    void pingsAcrossASwitch() throws IOException {
+        String output = run("""
+                device PC 801 0 0 192.168.1.11 255.255.255.0
+                device Switch 802 0 0
+                device PC 803 0 0 192.168.1.12 255.255.255.0
+                link 801 802
+                link 802 803
+                """, "PC801 ping PC803\n");
+        assertTrue(output.startsWith("PC801> ping PC803\n"), output);
+        assertEquals(4, replies(output), output);
+    }
+
+    // PC - Router - Router - PC: the routers need link-state routing to know the far subnet
+    @Test
+    void pingsAcrossRouters() throws IOException {
+        String output = run("""
+                device PC 811 0 0 10.0.1.5 255.255.255.0
+                device Router 812 0 0
+                device Router 813 0 0
+                device PC 814 0 0 10.0.2.5 255.255.255.0
+                link 811 812
+                link 812 813
+                link 813 814
+                """, """
+                # both ways
+                PC811 ping 10.0.2.5
+                PC814 ping PC811
+                """);
+        assertEquals(8, replies(output), output);
+        assertFalse(output.contains("timed out"), output);
+    }
+
+    @Test
+    void unknownPcFailsTheRun() throws IOException {
+        Path topologyFile = directory.resolve("topology.txt");
+        Path scriptFile = directory.resolve("script.txt");
+        Files.writeString(topologyFile, "device PC 821 0 0 192.168.1.11 255.255.255.0\n");
+        Files.writeString(scriptFile, "PC999 ipconfig\n");
+        assertEquals(1, ScriptRunner.run(new String[]{"-o", directory.resolve("out.txt").toString(),
+                topologyFile.toString(), scriptFile.toString()}));
+    }
+}
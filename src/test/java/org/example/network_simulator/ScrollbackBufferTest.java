@@ -0,0 +1,105 @@
+package org.example.network_simulator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Appends, evictions and clears against a plain deque of the same lines
+class ScrollbackBufferTest {
+
+    private static final int LONGEST_LINE = 64 * 1024; // Longer lines are cut there
+    private static final String[] WORDS = {"ping", "Reply from", "timed out", "héllo", "→", "日本", ""};
+
+    @Test
+    void matchesReferenceDeque() {
+        Random random = new Random(1);
+        // 64 is where the line arrays stop growing from their first size
+        for (int capacity : new int[]{1, 3, 64, 65, 100, 1000}) {
+            ScrollbackBuffer buffer = new ScrollbackBuffer(capacity);
+            ArrayDeque<String> reference = new ArrayDeque<>();
+            long evicted = 0;
+            for (int step = 0; step < 20_000; step++) {
+                if (random.nextInt(500) == 0) {
+                    evicted += reference.size();
+                    reference.clear();
+                    buffer.clear();
+                    continue;
+                }
+                String text = text(random);
+                buffer.append(text);
+                for (String line : text.split("\n", -1)) {
+                    reference.add(line.length() > LONGEST_LINE ? line.substring(0, LONGEST_LINE) : line);
+                    if (reference.size() > capacity) {
+                        reference.poll();
+                        evicted++;
+                    }
+                }
+                String where = "capacity " + capacity + " step " + step;
+                assertEquals(reference.size(), buffer.size(), where);
+                assertEquals(evicted, buffer.getEvicted(), where);
+                if (step % 97 == 0) {
+                    List<String> lines = new ArrayList<>(reference);
+                    for (int i = 0; i < lines.size(); i++) {
+                        assertEquals(lines.get(i), buffer.get(i), where + " line " + i);
+                    }
+                    checkFind(buffer, lines, random, where);
+                }
+            }
+            assertThrows(IndexOutOfBoundsException.class, () -> buffer.get(buffer.size()));
+            assertThrows(IndexOutOfBoundsException.class, () -> buffer.get(-1));
+        }
+    }
+
+    @Test
+    void evictedChunksAreFreed() {
+        ScrollbackBuffer buffer = new ScrollbackBuffer(100);
+        String line = "x".repeat(999);
+        for (int i = 0; i < 100_000; i++) {
+            buffer.append(line);
+        }
+        // The text of 100 lines, plus at most two partly used chunks of 64 KB
+        assertTrue(buffer.getChunkBytes() <= 100 * 999 + 2 * LONGEST_LINE, "" + buffer.getChunkBytes());
+        assertEquals(100, buffer.size());
+        assertEquals(100_000 - 100, buffer.getEvicted());
+    }
+
+    // One to three lines of words, now and then a very long one
+    private static String text(Random random) {
+        StringBuilder text = new StringBuilder();
+        for (int line = 1 + random.nextInt(3); line > 0; line--) {
+            if (random.nextInt(200) == 0) {
+                text.append("y".repeat(random.nextInt(2 * LONGEST_LINE)));
+            } else {
+                for (int words = random.nextInt(6); words > 0; words--) {
+                    text.append(WORDS[random.nextInt(WORDS.length)]).append(' ').append(random.nextInt(1000));
+                }
+            }
+            if (line > 1) text.append('\n');
+        }
+        return text.toString();
+    }
+
+    // find from random starting lines, both ways, against a scan of the reference lines
+    private static void checkFind(ScrollbackBuffer buffer, List<String> lines, Random random, String where) {
+        for (int n = 0; n < 20; n++) {
+            String query = n == 0 ? "no such text" : WORDS[random.nextInt(WORDS.length - 1)] + (n % 2 == 0 ? " " + random.nextInt(10) : "");
+            int from = lines.isEmpty() ? 0 : random.nextInt(lines.size() + 2) - 1;
+            for (boolean forward : new boolean[]{true, false}) {
+                int expected = -1;
+                int start = Math.max(0, Math.min(from, lines.size() - 1));
+                for (int i = start; i >= 0 && i < lines.size(); i += forward ? 1 : -1) {
+                    if (lines.get(i).contains(query)) {
+                        expected = i;
+                        break;
+                    }
+                }
+                assertEquals(expected, buffer.find(query, from, forward), where + " find '" + query + "' from " + from);
+            }
+        }
+    }
+}
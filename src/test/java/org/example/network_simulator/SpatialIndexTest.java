@@ -0,0 +1,103 @@
+package org.example.network_simulator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Hit-testing and range queries against a scan of every item, while items are added, moved and removed
+class SpatialIndexTest {
+
+    private static final double ITEM = 50;
+    private static final int ITEMS = 3000;
+
+    private final double[] xs = new double[ITEMS], ys = new double[ITEMS];
+    private final boolean[] present = new boolean[ITEMS];
+
+    @Test
+    void matchesBruteForce() {
+        Random random = new Random(7);
+        // Cells as large as an item, and larger
+        for (double cell : new double[]{ITEM, 100, 333}) {
+            SpatialIndex index = new SpatialIndex(ITEM, cell);
+            Arrays.fill(present, false);
+            int size = 0;
+            for (int step = 0; step < 20_000; step++) {
+                int i = random.nextInt(ITEMS);
+                if (random.nextInt(4) == 0) {
+                    if (present[i]) size--;
+                    index.remove(i);
+                    present[i] = false;
+                } else {
+                    if (!present[i]) size++;
+                    // Negative coordinates, and now and then exactly on a cell boundary
+                    xs[i] = random.nextInt(3) == 0 ? cell * (random.nextInt(60) - 20) : random.nextDouble() * 4000 - 1000;
+                    ys[i] = random.nextInt(3) == 0 ? cell * (random.nextInt(60) - 20) : random.nextDouble() * 4000 - 1000;
+                    index.put(i, xs[i], ys[i]);
+                    present[i] = true;
+                }
+                assertEquals(size, index.size());
+                if (step % 50 == 0) check(index, random, "cell " + cell + " step " + step);
+            }
+            index.clear();
+            Arrays.fill(present, false);
+            assertEquals(0, index.size());
+            check(index, random, "cell " + cell + " cleared");
+            for (int i = 0; i < ITEMS; i += 3) {
+                xs[i] = random.nextDouble() * 4000 - 1000;
+                ys[i] = random.nextDouble() * 4000 - 1000;
+                index.put(i, xs[i], ys[i]);
+                present[i] = true;
+            }
+            check(index, random, "cell " + cell + " refilled");
+        }
+    }
+
+    private void check(SpatialIndex index, Random random, String where) {
+        for (int n = 0; n < 20; n++) {
+            double x, y;
+            if (n % 4 == 0 && index.size() > 0) {
+                // On an item's edges: the left and top edges are in it, the right and bottom aren't
+                int i = random.nextInt(ITEMS);
+                x = xs[i] + (n % 8 == 0 ? 0 : ITEM);
+                y = ys[i] + (n % 8 == 0 ? ITEM / 2 : 0);
+            } else {
+                x = random.nextDouble() * 4200 - 1100;
+                y = random.nextDouble() * 4200 - 1100;
+            }
+            assertEquals(bruteHit(x, y), index.hit(x, y), where + " hit at " + x + "," + y);
+        }
+        for (int n = 0; n < 5; n++) {
+            double x0 = random.nextDouble() * 4200 - 1100, y0 = random.nextDouble() * 4200 - 1100;
+            double x1 = x0 + random.nextDouble() * (n == 0 ? 5000 : 600), y1 = y0 + random.nextDouble() * (n == 0 ? 5000 : 600);
+            List<Integer> found = new ArrayList<>();
+            index.query(x0, y0, x1, y1, found::add);
+            Set<Integer> unique = new HashSet<>(found);
+            assertEquals(found.size(), unique.size(), where + " query reports an item twice");
+            assertEquals(bruteQuery(x0, y0, x1, y1), unique, where + " query " + x0 + "," + y0 + " to " + x1 + "," + y1);
+        }
+    }
+
+    // The highest index whose box holds the point
+    private int bruteHit(double x, double y) {
+        int best = -1;
+        for (int i = 0; i < ITEMS; i++) {
+            if (present[i] && x >= xs[i] && x < xs[i] + ITEM && y >= ys[i] && y < ys[i] + ITEM) best = i;
+        }
+        return best;
+    }
+
+    private Set<Integer> bruteQuery(double x0, double y0, double x1, double y1) {
+        Set<Integer> items = new HashSet<>();
+        for (int i = 0; i < ITEMS; i++) {
+            if (present[i] && xs[i] + ITEM >= x0 && xs[i] <= x1 && ys[i] + ITEM >= y0 && ys[i] <= y1) items.add(i);
+        }
+        return items;
+    }
+}
@@ -0,0 +1,146 @@
+package org.example.network_simulator;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Unicast frames go through every switch's receiveFrame: it learns, forwards by its table and
+// floods only over the spanning tree, so loops in the cabling don't make frames circle
+class SwitchingTest {
+
+    private final Map<PC, StringBuilder> output = new HashMap<>();
+    private final Map<PC, Integer> chats = new HashMap<>();
+    private Network network;
+    private final List<Switch> switches = new ArrayList<>();
+    private final List<PC> pcs = new ArrayList<>();
+
+    // A ring of four switches with a chord across it, two PCs on each
+    @BeforeEach
+    void build() {
+        network = new Network();
+        network.addListener(new SimulationListener() {
+            @Override
+            public void onOutput(PC pc, String text) {
+                output.computeIfAbsent(pc, key -> new StringBuilder()).append(text).append('\n');
+            }
+
+            @Override
+            public synchronized void onChatMessage(PC pc, String message) {
+                chats.merge(pc, 1, Integer::sum);
+            }
+        });
+        for (int i = 0; i < 4; i++) {
+            Switch sw = new Switch(0, 0);
+            network.addDevice(sw);
+            switches.add(sw);
+            for (int j = 0; j < 2; j++) {
+                PC pc = new PC(0, 0);
+                network.addDevice(pc);
+                network.connect(pc, sw);
+                pcs.add(pc);
+            }
+        }
+        for (int i = 0; i < 4; i++) {
+            network.connect(switches.get(i), switches.get((i + 1) % 4));
+        }
+        network.connect(switches.get(0), switches.get(2));
+    }
+
+    private int ping(PC from, PC to) {
+        network.executeCommand(from, "ping", new String[]{to.toString()});
+        network.run();
+        return output.remove(from).toString().split("Reply from", -1).length - 1;
+    }
+
+    @Test
+    void everyPairReachesEveryOtherThroughTheLoops() {
+        for (PC from : pcs) {
+            for (PC to : pcs) {
+                if (from != to) assertEquals(4, ping(from, to), from + " -> " + to);
+            }
+        }
+        // Everyone has talked to everyone, so every switch knows every PC
+        for (Switch sw : switches) {
+            assertEquals(pcs.size(), sw.getMacTable().size(), sw.toString());
+        }
+    }
+
+    @Test
+    void learnedPortsFollowTheFlowRoute() {
+        PC from = pcs.get(1), to = pcs.get(6);
+        assertEquals(4, ping(from, to));
+        // Walk the switches' tables from the sender and compare with the route flows are given
+        TopologyGraph graph = network.getGraph();
+        List<Integer> walked = new ArrayList<>();
+        NetworkDevice at = from;
+        NetworkDevice next = network.getConnections(from).get(0).getOtherDevice(from);
+        while (true) {
+            int e = graph.edgeId(at.index, next.index);
+            walked.add(2 * e + (graph.edgeFrom(e) == at.index ? 0 : 1));
+            if (next == to) break;
+            Switch sw = (Switch) next;
+            int port = sw.getMacTable().lookup(to.getMacAddress(), network.now(sw));
+            assertNotEquals(MacTable.UNKNOWN, port);
+            at = sw;
+            next = network.getDeviceByIndex(port);
+            assertTrue(walked.size() < switches.size() + 2, "forwarding loop");
+        }
+        int[] route = network.route(from, to);
+        assertEquals(walked, Arrays.stream(route).boxed().toList());
+    }
+
+    @Test
+    void broadcastsReachEveryPcOnce() {
+        // A cable straight between two PCs gives the second one another way to receive the first's chat
+        network.connect(pcs.get(0), pcs.get(5));
+        for (int parts : new int[]{1, 3}) {
+            chats.clear();
+            network.partition(parts);
+            network.sendMessage(pcs.get(0), "hello");
+            network.run();
+            for (PC pc : pcs) {
+                assertEquals(pc == pcs.get(0) ? null : 1, chats.get(pc), pc + " with " + parts + " partitions");
+            }
+        }
+    }
+
+    @Test
+    void concurrentBroadcastsReachEveryPcOnce() {
+        // Two floods over the looped switches at once, the first also down a cable straight to PC5 and
+        // slow to its switch: PC5 gets the first flood, then the second, then the first's copy through
+        // the switches
+        network.connect(pcs.get(0), pcs.get(5));
+        network.getConnection(pcs.get(0), switches.get(0)).configure("delay=5ms");
+        for (int parts : new int[]{1, 3}) {
+            chats.clear();
+            network.partition(parts);
+            network.sendMessage(pcs.get(0), "hello");
+            network.sendMessage(pcs.get(1), "hello too");
+            network.run();
+            for (PC pc : pcs) {
+                int expected = pc == pcs.get(0) || pc == pcs.get(1) ? 1 : 2;
+                assertEquals(expected, chats.get(pc), pc + " with " + parts + " partitions");
+            }
+        }
+    }
+
+    @Test
+    void topologyChangeFlushesLearnedPorts() {
+        PC from = pcs.get(0), to = pcs.get(4);
+        assertEquals(4, ping(from, to));
+        // Cut the link the pings took between the two switches; the tree re-forms around it
+        Switch a = switches.get(0), b = switches.get(2);
+        network.disconnect(network.getConnection(a, b));
+        assertEquals(4, ping(from, to));
+        network.disconnect(network.getConnection(a, switches.get(1)));
+        network.disconnect(network.getConnection(a, switches.get(3)));
+        assertEquals(0, ping(from, to));
+    }
+}
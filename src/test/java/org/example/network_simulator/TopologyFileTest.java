@@ -0,0 +1,92 @@
+package org.example.network_simulator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Saving to the columnar format and loading back gives the same devices, addresses and links
+class TopologyFileTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripKeepsEverything() throws IOException {
+        Network original = new Network();
+        TopologyGenerator.barabasiAlbert(200, 2, 3, 7).build(original);
+        Router router = new Router(12.5, -3);
+        original.addDevice(router);
+        original.connect(router, original.getDevices().get(0));
+        Random random = new Random(5);
+        for (NetworkDevice device : original.getDevices()) {
+            if (device instanceof PC pc && random.nextInt(4) == 0) {
+                pc.setIpAddress("10." + random.nextInt(256) + "." + random.nextInt(256) + ".7");
+                pc.setSubnetMask("255.255.0.0");
+            }
+        }
+        for (Connection connection : original.getConnections()) {
+            if (random.nextInt(3) == 0) connection.configure("bandwidth=100M delay=2ms jitter=0.5ms loss=1% queue=32 discipline=red");
+        }
+        Path file = directory.resolve("topology.nstp");
+        TopologyFile.save(original, file);
+
+        Network loaded = new Network();
+        TopologyFile topology = TopologyFile.open(file);
+        assertEquals(TopologyFile.VERSION, topology.getVersion());
+        assertEquals(original.getDevices().size(), topology.getDeviceCount());
+        assertEquals(original.getConnections().size(), topology.getEdgeCount());
+        topology.loadInto(loaded);
+
+        assertEquals(original.getDevices().size(), loaded.getDevices().size());
+        for (NetworkDevice device : original.getDevices()) {
+            NetworkDevice copy = loaded.resolveDevice(device.toString());
+            assertNotNull(copy, device.toString());
+            assertEquals(device.getType(), copy.getType());
+            assertEquals(device.getXPosition(), copy.getXPosition());
+            assertEquals(device.getYPosition(), copy.getYPosition());
+            if (device instanceof PC pc) {
+                assertEquals(pc.getIpAddress(), ((PC) copy).getIpAddress());
+                assertEquals(pc.getSubnetMask(), ((PC) copy).getSubnetMask());
+            }
+        }
+        List<Connection> connections = loaded.getConnections();
+        assertEquals(original.getConnections().size(), connections.size());
+        for (Connection connection : original.getConnections()) {
+            Connection copy = loaded.getConnection(loaded.resolveDevice(connection.getDevice1().toString()),
+                    loaded.resolveDevice(connection.getDevice2().toString()));
+            assertNotNull(copy, connection.getDevice1() + "-" + connection.getDevice2());
+            assertEquals(connection.getSettings(), copy.getSettings());
+        }
+
+        // Saving the loaded copy gives the same file
+        Path again = directory.resolve("again.nstp");
+        TopologyFile.save(loaded, again);
+        assertArrayEquals(Files.readAllBytes(file), Files.readAllBytes(again));
+    }
+
+    @Test
+    void rejectsDamagedFiles() throws IOException {
+        Network network = new Network();
+        TopologyGenerator.starOfSwitches(4, 2).build(network);
+        Path file = directory.resolve("topology.nstp");
+        TopologyFile.save(network, file);
+        byte[] bytes = Files.readAllBytes(file);
+
+        Path cut = directory.resolve("cut.nstp");
+        Files.write(cut, Arrays.copyOf(bytes, bytes.length / 2));
+        assertThrows(IOException.class, () -> TopologyFile.open(cut).loadInto(new Network()));
+
+        Path wrong = directory.resolve("wrong.nstp");
+        bytes[0] ^= 1;
+        Files.write(wrong, bytes);
+        assertThrows(IOException.class, () -> TopologyFile.open(wrong));
+    }
+}
@@ -0,0 +1,98 @@
+package org.example.network_simulator;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Seeking through the sparse index lands where a scan from the start would, with the index files
+// the writer left and with indexes rebuilt by the reader when they are missing
+class TraceReaderTest {
+
+    private static final int RECORDS = 40_000;
+
+    @TempDir
+    Path directory;
+
+    private final long[] times = new long[RECORDS]; // Record i is a move of the PC to x = i
+
+    // Several segments' worth of records, some sharing a time
+    @BeforeEach
+    void write() throws IOException {
+        Random random = new Random(13);
+        PC pc = new PC(0, 0);
+        try (TraceLog log = new TraceLog(directory, 256 * 1024)) {
+            long time = 0;
+            for (int i = 0; i < RECORDS; i++) {
+                time += random.nextInt(3) * 1000;
+                times[i] = time;
+                pc.setXPosition(i);
+                log.deviceMoved(time, pc);
+            }
+        }
+    }
+
+    @Test
+    void readsEveryRecordInOrder() throws IOException {
+        TraceReader reader = TraceReader.open(directory);
+        assertTrue(reader.getSegmentCount() > 1);
+        TraceReader.Cursor cursor = reader.cursor();
+        for (int i = 0; i < RECORDS; i++) {
+            assertTrue(cursor.next());
+            assertEquals(TraceLog.DEVICE_MOVED, cursor.type());
+            assertEquals(i, (int) cursor.x());
+            assertEquals(times[i], cursor.time());
+        }
+        assertFalse(cursor.next());
+    }
+
+    @Test
+    void seekMatchesScan() throws IOException {
+        checkSeeks(TraceReader.open(directory));
+    }
+
+    @Test
+    void seekMatchesScanWithRebuiltIndex() throws IOException {
+        TraceReader written = TraceReader.open(directory);
+        for (int number = 0; Files.exists(TraceLog.indexPath(directory, number)); number++) {
+            Files.delete(TraceLog.indexPath(directory, number));
+        }
+        TraceReader rebuilt = TraceReader.open(directory);
+        // The scan indexes the same records the writer did
+        assertTrue(written.indexTimes(0).length > 1);
+        for (int s = 0; s < written.getSegmentCount(); s++) {
+            assertArrayEquals(written.indexTimes(s), rebuilt.indexTimes(s), "segment " + s);
+            assertArrayEquals(written.indexOffsets(s), rebuilt.indexOffsets(s), "segment " + s);
+        }
+        checkSeeks(rebuilt);
+    }
+
+    private void checkSeeks(TraceReader reader) {
+        Random random = new Random(17);
+        TraceReader.Cursor cursor = reader.cursor();
+        long last = times[RECORDS - 1];
+        for (int n = 0; n < 2000; n++) {
+            long target = n < 3 ? new long[]{0, last, last + 1}[n] : random.nextLong(last + 2000);
+            cursor.seek(target);
+            int expected = firstAtOrAfter(target);
+            if (expected == RECORDS) {
+                assertFalse(cursor.next(), "seek to " + target);
+            } else {
+                assertTrue(cursor.next(), "seek to " + target);
+                assertEquals(expected, (int) cursor.x(), "seek to " + target);
+            }
+        }
+    }
+
+    private int firstAtOrAfter(long target) {
+        int i = 0;
+        while (i < RECORDS && times[i] < target) i++;
+        return i;
+    }
+}
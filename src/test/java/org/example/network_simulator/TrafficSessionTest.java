@@ -0,0 +1,132 @@
+package org.example.network_simulator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// iperf between two PCs on one switch with gigabit links, checked against what the links can carry
+class TrafficSessionTest {
+
+    private static final Pattern BITRATE = Pattern.compile("([0-9.]+) ([KMG])bits/sec");
+    private static final Pattern LOST = Pattern.compile("(\\d+)/(\\d+) \\(");
+
+    private Network network;
+    private PC source, target;
+    private final List<String> output = new ArrayList<>();
+
+    // Settings (as Connection.configure takes them) apply to the link into the target
+    private List<String> iperf(String settings, String args) {
+        network = new Network(1);
+        source = new PC(0, 0);
+        target = new PC(0, 0);
+        Switch sw = new Switch(0, 0);
+        network.addDevice(source);
+        network.addDevice(target);
+        network.addDevice(sw);
+        network.connect(source, sw);
+        network.connect(sw, target);
+        if (settings != null) network.getConnection(sw, target).configure(settings);
+        network.addListener(new SimulationListener() {
+            @Override
+            public void onOutput(PC pc, String text) {
+                output.add(text.strip());
+            }
+
+            @Override
+            public void onChatMessage(PC pc, String message) {
+            }
+        });
+        network.executeCommand(source, "iperf", (target + " " + args).split(" "));
+        network.run();
+        return output;
+    }
+
+    // Lines for one stream (or SUM), in order: the intervals, then the summary
+    private static List<String> lines(List<String> output, String id) {
+        List<String> lines = new ArrayList<>();
+        for (String line : output) {
+            if (line.startsWith("[" + id + "]")) lines.add(line);
+        }
+        return lines;
+    }
+
+    private static double bitrate(String line) {
+        Matcher matcher = BITRATE.matcher(line);
+        assertTrue(matcher.find(), line);
+        double scale = switch (matcher.group(2)) {
+            case "K" -> 1e3;
+            case "M" -> 1e6;
+            default -> 1e9;
+        };
+        return Double.parseDouble(matcher.group(1)) * scale;
+    }
+
+    private static long retransmits(String line) {
+        String[] fields = line.substring(line.indexOf("/sec") + 4).trim().split(" +");
+        return Long.parseLong(fields[0]);
+    }
+
+    @Test
+    void singleStreamFillsAnIdleLink() {
+        List<String> lines = lines(iperf(null, "-t 2 -i 0.25"), "  1");
+        assertEquals(9, lines.size(), String.join("\n", output));
+        for (String line : lines) {
+            assertTrue(bitrate(line) > 0, line); // No interval stalls waiting for a timeout
+        }
+        String summary = lines.get(8);
+        assertTrue(bitrate(summary) > 0.9e9, summary);
+        // Slow start stops before the queue overflows
+        assertTrue(retransmits(summary) < 100, summary);
+    }
+
+    @Test
+    void parallelStreamsShareTheLink() {
+        List<String> sum = lines(iperf(null, "-t 2 -i 0.25 -P 2"), "SUM");
+        assertEquals(9, sum.size(), String.join("\n", output));
+        assertTrue(bitrate(sum.get(8)) > 0.9e9, sum.get(8));
+        for (String line : lines(output, "  1").subList(4, 8)) {
+            assertTrue(bitrate(line) > 0.3e9, line);
+        }
+    }
+
+    @Test
+    void onlyLostSegmentsAreResent() {
+        List<String> lines = lines(iperf("loss=1%", "-t 2"), "  1");
+        String summary = lines.get(lines.size() - 1);
+        long segments = Math.round(bitrate(summary) * 2 / 8 / Packet.MAX_TRAFFIC_PAYLOAD);
+        long retransmits = retransmits(summary);
+        // About one resend per segment dropped, not a window's worth
+        assertTrue(retransmits > segments / 200 && retransmits < segments / 40, segments + " segments: " + summary);
+    }
+
+    @Test
+    void overdrivenUdpReportsWhatArrived() {
+        List<String> lines = lines(iperf(null, "-u -b 2G -t 2 -i 0.25 -P 2"), "SUM");
+        long lost = 0, total = 0;
+        for (String line : lines) {
+            assertTrue(bitrate(line) <= 1e9, line); // Never more than the link carries
+            Matcher matcher = LOST.matcher(line);
+            assertTrue(matcher.find(), line);
+            if (line == lines.get(lines.size() - 1)) {
+                // The summary's counts are the intervals' added up
+                assertEquals(lost + "/" + total, matcher.group(1) + "/" + matcher.group(2), String.join("\n", output));
+            } else {
+                lost += Long.parseLong(matcher.group(1));
+                total += Long.parseLong(matcher.group(2));
+            }
+        }
+        assertTrue(lost > total / 3, lines.toString());
+        assertTrue(output.get(1).endsWith("Lost/Total"), output.get(1));
+    }
+
+    @Test
+    void tcpReportsRttVariationAsSuch() {
+        List<String> output = iperf(null, "-t 1");
+        assertTrue(output.get(1).endsWith("RTT        RTTvar"), output.get(1));
+    }
+}
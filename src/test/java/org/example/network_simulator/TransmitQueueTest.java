@@ -0,0 +1,202 @@
+package org.example.network_simulator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// One direction of a link fed a burst of frames at time 0: when each arrives, which are dropped and in what order the rest go
+class TransmitQueueTest {
+
+    private static final int PAYLOAD = 1000;
+    private static final int FRAME = 14 + 20 + 16 + PAYLOAD; // Ethernet, IPv4 and traffic headers
+
+    // Records what reaches it and when
+    private static final class Sink extends NetworkDevice {
+        final List<Integer> sequences = new ArrayList<>();
+        final List<Long> times = new ArrayList<>();
+
+        Sink() {
+            super("Sink", 0, 0);
+        }
+
+        @Override
+        protected void receiveFrame(Network network, Packet packet, NetworkDevice from) {
+            sequences.add(packet.trafficSequence());
+            times.add(network.now(this));
+            packet.release();
+        }
+    }
+
+    private final Network network = new Network(3);
+    private final Sink source = new Sink(), target = new Sink();
+    private Connection connection;
+    private TransmitQueue queue;
+
+    private void link(String settings) {
+        network.addDevice(source);
+        network.addDevice(target);
+        connection = network.connect(source, target);
+        connection.configure(settings);
+        queue = connection.queueFrom(source);
+    }
+
+    private void offer(int sequence, boolean priority) {
+        Packet packet = network.packetPoolFor(source).acquire().writeTraffic(source.getMacAddress(),
+                target.getMacAddress(), 0, 0, 1, 0, 0, sequence, 0, PAYLOAD);
+        if (priority) packet.setTos(0xa0); // IP precedence 5
+        queue.offer(packet);
+    }
+
+    private long drops() {
+        return network.getMetrics().getLinkDrops(connection, source);
+    }
+
+    @Test
+    void framesLeaveOneAfterAnotherAndArriveADelayLater() {
+        link("bandwidth=100M delay=2ms queue=100");
+        long serialization = connection.serializationTime(FRAME);
+        assertEquals(FRAME * 8 * 10, serialization); // 10 ns a bit at 100 Mbit/s
+        for (int i = 0; i < 10; i++) {
+            offer(i, false);
+        }
+        assertEquals(9, queue.depth()); // The first went straight onto the wire
+        network.run();
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), target.sequences);
+        for (int i = 0; i < 10; i++) {
+            assertEquals((i + 1) * serialization + 2 * SimulationEngine.NANOS_PER_MILLI, (long) target.times.get(i), "frame " + i);
+        }
+        assertEquals(0, queue.depth());
+        assertEquals(9, connection.getMaxQueueDepth(source));
+        assertEquals(0, drops());
+    }
+
+    @Test
+    void serializationTimeRoundsUp() {
+        link("bandwidth=3");
+        assertEquals(2_666_666_667L, connection.serializationTime(1));
+        connection.configure("bandwidth=1G");
+        assertEquals(12_000, connection.serializationTime(1500));
+    }
+
+    @Test
+    void jitterOnlyAddsDelay() {
+        link("bandwidth=1G delay=1ms jitter=0.5ms queue=100");
+        long serialization = connection.serializationTime(FRAME);
+        for (int i = 0; i < 50; i++) {
+            offer(i, false);
+        }
+        network.run();
+        assertEquals(50, target.times.size());
+        boolean varied = false;
+        for (int i = 0; i < 50; i++) {
+            long departure = (target.sequences.get(i) + 1) * serialization;
+            long extra = target.times.get(i) - departure - SimulationEngine.NANOS_PER_MILLI;
+            assertTrue(extra >= 0 && extra < SimulationEngine.NANOS_PER_MILLI / 2, "frame " + target.sequences.get(i) + ": " + extra);
+            varied |= extra > 0;
+        }
+        assertTrue(varied);
+    }
+
+    @Test
+    void dropTailDropsWhatFindsTheQueueFull() {
+        link("queue=8");
+        for (int i = 0; i < 20; i++) {
+            offer(i, false);
+        }
+        assertEquals(8, queue.depth());
+        assertEquals(11, drops());
+        network.run();
+        assertEquals(List.of(0, 1, 2, 3, 4, 5, 6, 7, 8), target.sequences);
+        assertEquals(8, connection.getMaxQueueDepth(source));
+        assertEquals(11, network.getMetrics().deviceCounters(source.toString()).get("drops"));
+    }
+
+    @Test
+    void priorityFramesGoFirstAndPushOutOrdinaryOnes() {
+        link("queue=4 discipline=priority");
+        offer(0, false); // Straight onto the wire
+        for (int i = 1; i <= 4; i++) {
+            offer(i, false);
+        }
+        offer(5, false); // Full: an ordinary frame is dropped
+        assertEquals(1, drops());
+        offer(6, true); // Pushes out the newest ordinary frame, 4
+        offer(7, true); // And then 3
+        offer(8, false); // Dropped, as the queue is still full
+        assertEquals(4, queue.depth());
+        assertEquals(4, drops());
+        network.run();
+        assertEquals(List.of(0, 6, 7, 1, 2), target.sequences);
+
+        // A priority frame finding only priority frames waiting is dropped itself
+        target.sequences.clear();
+        offer(9, false);
+        for (int i = 10; i <= 14; i++) {
+            offer(i, true);
+        }
+        offer(15, false);
+        assertEquals(6, drops());
+        network.run();
+        assertEquals(List.of(9, 10, 11, 12, 13), target.sequences);
+
+        // Ordinary frames still go in order behind the priority ones
+        target.sequences.clear();
+        offer(11, false);
+        offer(12, false);
+        offer(13, true);
+        offer(14, false);
+        offer(15, true);
+        network.run();
+        assertEquals(List.of(11, 13, 15, 12, 14), target.sequences);
+    }
+
+    @Test
+    void dropTailIgnoresPriority() {
+        link("queue=2");
+        offer(0, false);
+        offer(1, false);
+        offer(2, false);
+        offer(3, true);
+        network.run();
+        assertEquals(List.of(0, 1, 2), target.sequences);
+        assertEquals(1, drops());
+    }
+
+    @Test
+    void redDropsAsTheAverageQueueClimbs() {
+        // TransmitQueue's RED weight and top probability
+        double weight = 0.002, maxProbability = 0.1;
+        int capacity = 40_000;
+        double low = capacity / 4.0, high = 3 * low;
+        link("queue=" + capacity + " discipline=red");
+        double average = 0, expected = 0, variance = 0;
+        int early = 0, forced = 0;
+        for (int i = 0; i < 80_000; i++) {
+            int depth = queue.depth();
+            long before = drops();
+            offer(i, false);
+            boolean dropped = drops() > before;
+            average += weight * (depth - average);
+            if (average < low) {
+                assertFalse(dropped, "offer " + i + " with average " + average);
+            } else if (average >= high) {
+                assertTrue(dropped, "offer " + i + " with average " + average);
+                forced++;
+            } else {
+                double p = maxProbability * (average - low) / (high - low);
+                expected += p;
+                variance += p * (1 - p);
+                if (dropped) early++;
+            }
+        }
+        // Enough offers landed in each band for the test to mean something
+        assertTrue(expected > 500 && forced > 10_000, expected + " " + forced);
+        assertEquals(expected, early, 4 * Math.sqrt(variance), "early drops");
+        assertTrue(queue.depth() < capacity); // The queue never filled
+        network.run();
+        assertEquals(80_000 - drops(), target.sequences.size());
+    }
+}